@@ -0,0 +1,247 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the synthetic C++ sources used by the benchmarks. The output only
+ * depends on the seed and the requested size, so results are comparable
+ * across commits and machines without any external corpus.
+ */
+public final class CorpusGenerator {
+
+  public static final long SEED = 0x5eed_c0deL;
+
+  private final Random random;
+
+  public CorpusGenerator() {
+    this(SEED);
+  }
+
+  public CorpusGenerator(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Plain C++ code: namespaces, classes, functions with control flow and
+   * expressions, comments and literals.
+   */
+  public String source(int functions) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("// generated benchmark source\n");
+    sb.append("#include <vector>\n#include \"common.h\"\n\n");
+    sb.append("namespace bench").append(random.nextInt(100)).append(" {\n\n");
+    for (int i = 0; i < functions; i++) {
+      if (i % 5 == 0) {
+        appendClass(sb, i);
+      }
+      appendFunction(sb, i);
+    }
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Code shaped like real world sources: a block of includes, macro heavy
+   * declarations and conditional compilation around plain C++ code.
+   */
+  public String realWorldSource(int functions) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("#include \"stdafx.h\"\n#include \"common.h\"\n\n");
+    sb.append("#if defined(_WIN32) && _MSC_VER >= 1800\n#define BENCH_API __declspec(dllexport)\n#else\n#define BENCH_API\n#endif\n\n");
+    for (int i = 0; i < functions; i++) {
+      sb.append("DECLARE_PROPERTY(int, prop").append(i).append(")\n");
+      if (i % 3 == 0) {
+        sb.append("#ifdef FEATURE_").append(i % 7).append('\n');
+        appendFunction(sb, i);
+        sb.append("#else\n");
+        sb.append("BENCH_API int fn").append(i).append("() { return CHECK(").append(i).append(", LOG_ARGS(1, 2, 3)); }\n");
+        sb.append("#endif\n");
+      } else {
+        appendFunction(sb, i);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Macro definitions and uses: object like, function like, nested,
+   * stringification, token pasting and variadic macros.
+   */
+  public String macros(int uses) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(commonHeader());
+    for (int i = 0; i < uses; i++) {
+      switch (random.nextInt(5)) {
+        case 0:
+          sb.append("int v").append(i).append(" = MAX(MIN(").append(i).append(", LIMIT), OFFSET);\n");
+          break;
+        case 1:
+          sb.append("const char* s").append(i).append(" = STR(value").append(i).append(");\n");
+          break;
+        case 2:
+          sb.append("int CONCAT(var, ").append(i).append(") = CHECK(").append(i).append(", LOG_ARGS(a, b, c));\n");
+          break;
+        case 3:
+          sb.append("DECLARE_PROPERTY(long, p").append(i).append(")\n");
+          break;
+        default:
+          sb.append("int w").append(i).append(" = LOG_ARGS(").append(i).append(", ").append(i + 1).append(", LIMIT);\n");
+          break;
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Large disabled regions ('#if 0', unset feature macros) full of nested
+   * directives, as found in portability layers and generated headers.
+   */
+  public String disabledRegions(int regions) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < regions; i++) {
+      sb.append(i % 2 == 0 ? "#if 0\n" : "#ifdef UNSET_FEATURE_" + i + "\n");
+      for (int j = 0; j < 5; j++) {
+        sb.append("#  if defined(OS_").append(j).append(") && VERSION > ").append(random.nextInt(1000)).append('\n');
+        sb.append("#    define DISABLED_").append(i).append('_').append(j).append("(a, b) ((a) * (b) + ").append(j).append(")\n");
+        sb.append("#    include \"platform_").append(j).append(".h\"\n");
+        sb.append("#  elif HAS_FEATURE(").append(j).append(")\n");
+        sb.append("#    pragma message(\"fallback\")\n");
+        sb.append("#  endif\n");
+      }
+      sb.append("#else\n");
+      appendFunction(sb, i);
+      sb.append("#endif\n");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * One long variadic macro invocation, as produced by logging and
+   * serialization macros, followed by code that uses its expansion.
+   */
+  public String variadicMacro(int args) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("#define CALL(f, ...) f(__VA_ARGS__)\n");
+    sb.append("int table[] = { CALL(init");
+    for (int i = 0; i < args; i++) {
+      sb.append(", ").append(random.nextInt(1000));
+    }
+    sb.append(") };\n");
+    for (int i = 0; i < args / 10; i++) {
+      appendFunction(sb, i);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Chains of conditional directives as found in system and configuration
+   * headers (feature test macros, version checks).
+   */
+  public String conditionals(int chains) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("#define VERSION 0x0601\n#define FEATURE_LEVEL 3\n#define HAS_FEATURE(x) ((x) <= FEATURE_LEVEL)\n");
+    for (int i = 0; i < chains; i++) {
+      sb.append("#if defined(FEATURE_").append(i % 11).append(") && VERSION >= 0x0").append(500 + random.nextInt(200)).append('\n');
+      sb.append("int a").append(i).append(";\n");
+      sb.append("#elif HAS_FEATURE(").append(random.nextInt(6)).append(") || (VERSION & 0xff) == ").append(random.nextInt(255)).append('\n');
+      sb.append("int b").append(i).append(";\n");
+      sb.append("#elif !defined(NO_DEFAULT) && (").append(i).append(" * 3 + 1) % 7 > 2\n");
+      sb.append("int c").append(i).append(";\n");
+      sb.append("#else\n");
+      sb.append("int d").append(i).append(";\n");
+      sb.append("#endif\n");
+    }
+    return sb.toString();
+  }
+
+  public static String commonHeader() {
+    return "#ifndef COMMON_H\n"
+      + "#define COMMON_H\n"
+      + "#define LIMIT 100\n"
+      + "#define OFFSET (LIMIT / 2)\n"
+      + "#define MAX(a, b) ((a) > (b) ? (a) : (b))\n"
+      + "#define MIN(a, b) ((a) < (b) ? (a) : (b))\n"
+      + "#define STR(x) #x\n"
+      + "#define CONCAT(a, b) a ## b\n"
+      + "#define LOG_ARGS(...) log_args(__VA_ARGS__)\n"
+      + "#define CHECK(x, y) (MAX(x, LIMIT) + (y))\n"
+      + "#define DECLARE_PROPERTY(type, name) type name; type get_ ## name() const { return name; }\n"
+      + "int log_args(...);\n"
+      + "#endif\n";
+  }
+
+  /**
+   * Writes a project of the given number of files to the directory: sources
+   * in 'src', the shared headers in 'include'.
+   */
+  public List<File> writeProject(File dir, int files, int functionsPerFile) throws IOException {
+    File include = new File(dir, "include");
+    File src = new File(dir, "src");
+    include.mkdirs();
+    src.mkdirs();
+    write(new File(include, "common.h"), commonHeader());
+    write(new File(include, "stdafx.h"), "#pragma once\n#include \"common.h\"\n" + conditionals(20));
+
+    List<File> result = new ArrayList<>();
+    for (int i = 0; i < files; i++) {
+      File file = new File(src, "file" + i + ".cc");
+      write(file, i % 2 == 0 ? source(functionsPerFile) : realWorldSource(functionsPerFile));
+      result.add(file);
+    }
+    return result;
+  }
+
+  private static void write(File file, String content) throws IOException {
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void appendClass(StringBuilder sb, int i) {
+    sb.append("/**\n * Class ").append(i).append("\n */\n");
+    sb.append("class C").append(i).append(" : public Base {\npublic:\n");
+    sb.append("  C").append(i).append("() : m_value(").append(random.nextInt(1000)).append(") {}\n");
+    sb.append("  virtual ~C").append(i).append("() {}\n");
+    sb.append("  int value() const { return m_value; }\n");
+    sb.append("  template<typename T> T as() const { return static_cast<T>(m_value); }\n");
+    sb.append("private:\n  int m_value;\n};\n\n");
+  }
+
+  private void appendFunction(StringBuilder sb, int i) {
+    sb.append("// function ").append(i).append('\n');
+    sb.append("int fn").append(i).append("(int a, const std::vector<int>& v) {\n");
+    sb.append("  int sum = 0;\n");
+    sb.append("  for (int k = 0; k < ").append(random.nextInt(100)).append("; ++k) {\n");
+    sb.append("    if (a > k && (k % ").append(1 + random.nextInt(9)).append(" == 0 || a < ").append(random.nextInt(50)).append(")) {\n");
+    sb.append("      sum += v[k] * ").append(random.nextInt(10)).append(";\n");
+    sb.append("    } else {\n");
+    sb.append("      sum -= a >> 1;\n");
+    sb.append("    }\n  }\n");
+    sb.append("  switch (a) {\n  case 1: return sum;\n  case 2: return sum * 2;\n  default: break;\n  }\n");
+    sb.append("  const char* text = \"value ").append(i).append("\";\n");
+    sb.append("  return sum > 0 ? sum : 'x';\n}\n\n");
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.lexer.CxxLexer;
+
+/**
+ * Cost of lexing a short macro body with a freshly built lexer compared to a
+ * pooled one. Run with '-prof gc' to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerCreationBenchmark {
+
+  private static final String MACRO_BODY = "((a) > (b) ? (a) : (b))";
+
+  private final CxxConfiguration conf = new CxxConfiguration();
+
+  @Benchmark
+  public int newLexerPerCall() {
+    return CxxLexer.create(conf).lex(MACRO_BODY).size();
+  }
+
+  @Benchmark
+  public int pooledLexer() {
+    return CxxLexer.getPool(conf).getLexer().lex(MACRO_BODY).size();
+  }
+}
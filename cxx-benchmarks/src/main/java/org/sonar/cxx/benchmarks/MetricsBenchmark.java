@@ -0,0 +1,162 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.benchmarks;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Parser;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.api.CxxKeyword;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.api.CxxPunctuator;
+import org.sonar.cxx.parser.CxxGrammarImpl;
+import org.sonar.cxx.parser.CxxParser;
+import org.sonar.cxx.preprocessor.CxxPreprocessor;
+import org.sonar.cxx.visitors.CxxLinesOfCodeVisitor;
+import org.sonar.cxx.visitors.CxxMetricsVisitor;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.api.SourceProject;
+import org.sonar.squidbridge.metrics.ComplexityVisitor;
+import org.sonar.squidbridge.metrics.CounterVisitor;
+import org.sonar.squidbridge.metrics.LinesVisitor;
+
+/**
+ * Computation of the size and complexity metrics on an already parsed file:
+ * the fused CxxMetricsVisitor against the chain of one visitor per metric it
+ * replaces. Parsing is done once in the setup and excluded from the timings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+  @Param({"100", "1000"})
+  public int functions;
+
+  private File file;
+  private Parser<Grammar> parser;
+
+  @Setup
+  public void setup() throws IOException {
+    file = File.createTempFile("cxx-metrics", ".cc");
+    file.deleteOnExit();
+    Files.write(file.toPath(), new CorpusGenerator().source(functions).getBytes(StandardCharsets.UTF_8));
+    CxxConfiguration conf = new CxxConfiguration();
+    SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<>(new SourceProject(""));
+    Parser<Grammar> cxxParser = CxxParser.create(context, conf, new CxxPreprocessor(context, conf));
+    parser = new ParsedFile(cxxParser, cxxParser.parse(file));
+  }
+
+  @Benchmark
+  public int fused() {
+    return scan(new CxxMetricsVisitor<Grammar>());
+  }
+
+  @Benchmark
+  public int chain() {
+    return scan(
+      new LinesVisitor<Grammar>(CxxMetric.LINES),
+      new CxxLinesOfCodeVisitor<Grammar>(CxxMetric.LINES_OF_CODE),
+      CounterVisitor.<Grammar>builder()
+        .setMetricDef(CxxMetric.FUNCTIONS)
+        .subscribeTo(CxxGrammarImpl.functionDefinition)
+        .build(),
+      CounterVisitor.<Grammar>builder()
+        .setMetricDef(CxxMetric.CLASSES)
+        .subscribeTo(CxxGrammarImpl.classSpecifier)
+        .build(),
+      CounterVisitor.<Grammar>builder()
+        .setMetricDef(CxxMetric.STATEMENTS)
+        .subscribeTo(CxxGrammarImpl.statement)
+        .build(),
+      ComplexityVisitor.<Grammar>builder()
+        .setMetricDef(CxxMetric.COMPLEXITY)
+        .subscribeTo(CxxGrammarImpl.functionDefinition, CxxKeyword.IF, CxxKeyword.FOR, CxxKeyword.WHILE,
+          CxxKeyword.CATCH, CxxKeyword.CASE, CxxKeyword.DEFAULT, CxxPunctuator.AND, CxxPunctuator.OR,
+          CxxPunctuator.QUEST)
+        .build());
+  }
+
+  @SafeVarargs
+  private final int scan(SquidAstVisitor<Grammar>... visitors) {
+    SourceProject project = new SourceProject("");
+    SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<>(project);
+    AstScanner.Builder<Grammar> builder = AstScanner.<Grammar>builder(context).setBaseParser(parser);
+    builder.withMetrics(CxxMetric.values());
+    builder.setFilesMetric(CxxMetric.FILES);
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      builder.withSquidAstVisitor(visitor);
+    }
+    builder.build().scanFile(file);
+    return project.getInt(CxxMetric.LINES_OF_CODE);
+  }
+
+  /**
+   * Parser returning the tree parsed in the setup, so only the visitors are
+   * measured.
+   */
+  private static final class ParsedFile extends Parser<Grammar> {
+
+    private final AstNode ast;
+
+    ParsedFile(Parser<Grammar> parser, AstNode ast) {
+      super(parser.getGrammar());
+      this.ast = ast;
+    }
+
+    @Override
+    public AstNode parse(File file) {
+      return ast;
+    }
+
+    @Override
+    public AstNode parse(String source) {
+      return ast;
+    }
+
+    @Override
+    public AstNode parse(List<Token> tokens) {
+      return ast;
+    }
+  }
+}
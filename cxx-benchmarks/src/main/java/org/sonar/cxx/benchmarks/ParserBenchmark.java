@@ -0,0 +1,85 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.benchmarks;
+
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Parser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.parser.CxxParser;
+import org.sonar.cxx.preprocessor.CxxPreprocessor;
+import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.api.SourceProject;
+
+/**
+ * Lexing, preprocessing and parsing of a single translation unit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({"10", "100"})
+  public int functions;
+
+  private String source;
+  private String realWorldSource;
+  private CxxPreprocessor cxxpp;
+  private Parser<Grammar> parser;
+
+  @Setup
+  public void setup() {
+    CorpusGenerator generator = new CorpusGenerator();
+    source = generator.source(functions);
+    realWorldSource = CorpusGenerator.commonHeader() + generator.realWorldSource(functions);
+    CxxConfiguration conf = new CxxConfiguration();
+    SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<>(new SourceProject(""));
+    cxxpp = new CxxPreprocessor(context, conf);
+    parser = CxxParser.create(context, conf, cxxpp);
+  }
+
+  @Benchmark
+  public Object parse() {
+    Object ast = parser.parse(source);
+    cxxpp.finishedPreprocessing(null);
+    return ast;
+  }
+
+  @Benchmark
+  public Object parseRealWorld() {
+    Object ast = parser.parse(realWorldSource);
+    cxxpp.finishedPreprocessing(null);
+    return ast;
+  }
+}
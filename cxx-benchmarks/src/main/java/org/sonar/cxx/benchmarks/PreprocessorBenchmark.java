@@ -0,0 +1,104 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.benchmarks;
+
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Lexer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.lexer.CxxLexer;
+import org.sonar.cxx.preprocessor.CxxPreprocessor;
+import org.sonar.cxx.preprocessor.JoinStringsPreprocessor;
+import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.api.SourceProject;
+
+/**
+ * Lexing with preprocessing: macro expansion and evaluation of conditional
+ * directives (#if/#elif expressions).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreprocessorBenchmark {
+
+  @Param({"100", "1000"})
+  public int size;
+
+  private String macros;
+  private String conditionals;
+  private String variadicMacro;
+  private String disabledRegions;
+  private CxxPreprocessor cxxpp;
+  private Lexer lexer;
+
+  @Setup
+  public void setup() {
+    CorpusGenerator generator = new CorpusGenerator();
+    macros = generator.macros(size);
+    conditionals = generator.conditionals(size);
+    variadicMacro = generator.variadicMacro(size * 10);
+    disabledRegions = generator.disabledRegions(size);
+    CxxConfiguration conf = new CxxConfiguration();
+    cxxpp = new CxxPreprocessor(new SquidAstVisitorContextImpl<Grammar>(new SourceProject("")), conf);
+    lexer = CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor());
+  }
+
+  @Benchmark
+  public int expandMacros() {
+    int tokens = lexer.lex(macros).size();
+    cxxpp.finishedPreprocessing(null);
+    return tokens;
+  }
+
+  @Benchmark
+  public int evaluateConditionals() {
+    int tokens = lexer.lex(conditionals).size();
+    cxxpp.finishedPreprocessing(null);
+    return tokens;
+  }
+
+  @Benchmark
+  public int expandVariadicMacro() {
+    int tokens = lexer.lex(variadicMacro).size();
+    cxxpp.finishedPreprocessing(null);
+    return tokens;
+  }
+
+  @Benchmark
+  public int skipDisabledRegions() {
+    int tokens = lexer.lex(disabledRegions).size();
+    cxxpp.finishedPreprocessing(null);
+    return tokens;
+  }
+}
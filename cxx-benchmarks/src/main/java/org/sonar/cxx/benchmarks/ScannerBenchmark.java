@@ -0,0 +1,95 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.benchmarks;
+
+import com.sonar.sslr.api.Grammar;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.checks.CheckList;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.annotations.RuleTemplate;
+
+/**
+ * End to end analysis of a generated project: preprocessing, parsing,
+ * metrics and all non template checks of the default repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScannerBenchmark {
+
+  @Param({"20"})
+  public int files;
+
+  @Param({"50"})
+  public int functionsPerFile;
+
+  private CxxConfiguration conf;
+  private List<File> sources;
+
+  @Setup
+  public void setup() throws IOException {
+    File dir = Files.createTempDirectory("cxx-benchmark").toFile();
+    dir.deleteOnExit();
+    sources = new CorpusGenerator().writeProject(dir, files, functionsPerFile);
+    conf = new CxxConfiguration();
+    conf.setBaseDir(dir.getAbsolutePath());
+    conf.setIncludeDirectories(new String[]{new File(dir, "include").getAbsolutePath()});
+  }
+
+  @Benchmark
+  public int scan() throws ReflectiveOperationException {
+    AstScanner<Grammar> scanner = CxxAstScanner.create(conf, createChecks());
+    scanner.scanFiles(sources);
+    return sources.size();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static SquidAstVisitor<Grammar>[] createChecks() throws ReflectiveOperationException {
+    List<SquidAstVisitor<Grammar>> checks = new ArrayList<>();
+    for (Class check : CheckList.getChecks()) {
+      if (check.getAnnotation(RuleTemplate.class) == null) {
+        checks.add((SquidAstVisitor<Grammar>) check.newInstance());
+      }
+    }
+    return checks.toArray(new SquidAstVisitor[checks.size()]);
+  }
+}
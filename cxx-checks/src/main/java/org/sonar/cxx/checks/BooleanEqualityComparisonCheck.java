@@ -24,6 +24,7 @@ import org.sonar.check.Rule;
 import org.sonar.cxx.api.CxxKeyword;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.tag.Tag;
+import org.sonar.cxx.visitors.CxxParallelSafe;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.AstNode;
@@ -40,6 +41,7 @@ import org.sonar.squidbridge.annotations.SqaleSubCharacteristic;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.UNDERSTANDABILITY)
 @SqaleConstantRemediation("5min")
+@CxxParallelSafe
 public class BooleanEqualityComparisonCheck extends SquidCheck<Grammar> {
 
   @Override
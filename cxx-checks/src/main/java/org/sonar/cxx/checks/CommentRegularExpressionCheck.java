@@ -19,11 +19,20 @@
  */
 package org.sonar.cxx.checks;
 
+import java.util.regex.Pattern;
+
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
-import org.sonar.squidbridge.checks.AbstractCommentRegularExpressionCheck;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
+import org.sonar.cxx.visitors.CxxRegularExpressionAwareVisitor;
+import org.sonar.cxx.visitors.CxxRegularExpressions;
+import org.sonar.squidbridge.checks.SquidCheck;
+import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
 import org.sonar.squidbridge.annotations.NoSqale;
 import org.sonar.squidbridge.annotations.RuleTemplate;
 
@@ -33,7 +42,9 @@ import org.sonar.squidbridge.annotations.RuleTemplate;
   priority = Priority.MAJOR)
 @RuleTemplate
 @NoSqale
-public class CommentRegularExpressionCheck extends AbstractCommentRegularExpressionCheck<Grammar> {
+@CxxRequiresInput(CxxInput.TOKENS)
+public class CommentRegularExpressionCheck extends SquidCheck<Grammar> implements AstAndTokenVisitor,
+  CxxRegularExpressionAwareVisitor {
 
   private static final String DEFAULT_REGULAR_EXPRESSION = "";
   private static final String DEFAULT_MESSAGE = "The regular expression matches this comment";
@@ -50,14 +61,43 @@ public class CommentRegularExpressionCheck extends AbstractCommentRegularExpress
     defaultValue = DEFAULT_MESSAGE)
   public String message = DEFAULT_MESSAGE;
 
-  @Override
+  private CxxRegularExpressions regularExpressions;
+  private boolean active;
+
   public String getRegularExpression() {
     return regularExpression;
   }
 
-  @Override
   public String getMessage() {
     return message;
   }
 
+  @Override
+  public void setRegularExpressions(CxxRegularExpressions regularExpressions) {
+    this.regularExpressions = regularExpressions;
+  }
+
+  @Override
+  public void init() {
+    active = regularExpression != null && !regularExpression.isEmpty();
+    if (active) {
+      try {
+        regularExpressions.addCommentExpression(this, Pattern.compile(regularExpression, Pattern.DOTALL));
+      } catch (RuntimeException e) {
+        throw new IllegalStateException("Unable to compile regular expression: " + regularExpression, e);
+      }
+    }
+  }
+
+  @Override
+  public void visitToken(Token token) {
+    if (active) {
+      for (Trivia trivia : token.getTrivia()) {
+        if (trivia.isComment() && regularExpressions.matchesComment(this, trivia.getToken())) {
+          getContext().createLineViolation(this, message, trivia.getToken());
+        }
+      }
+    }
+  }
+
 }
@@ -26,6 +26,8 @@ import java.util.regex.Pattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.cxx.api.CppKeyword;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
 import org.sonar.squidbridge.checks.SquidCheck;
 import org.sonar.squidbridge.recognizer.CodeRecognizer;
 import org.sonar.squidbridge.recognizer.ContainsDetector;
@@ -51,6 +53,7 @@ import org.sonar.cxx.tag.Tag;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.UNDERSTANDABILITY)
 @SqaleConstantRemediation("5min")
+@CxxRequiresInput(CxxInput.TOKENS)
 public class CommentedCodeCheck extends SquidCheck<Grammar> implements AstAndTokenVisitor {
 
   private static final double THRESHOLD = 0.94;
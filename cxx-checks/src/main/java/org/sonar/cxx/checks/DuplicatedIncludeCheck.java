@@ -26,6 +26,8 @@ import org.sonar.api.batch.rule.ActiveRule;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.Grammar;
 import org.sonar.api.server.rule.RulesDefinition;
@@ -46,6 +48,7 @@ import org.sonar.cxx.tag.Tag;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.ARCHITECTURE_RELIABILITY)
 @SqaleConstantRemediation("5min")
+@CxxRequiresInput(CxxInput.TOKENS)
 public class DuplicatedIncludeCheck extends SquidCheck<Grammar> {
 
   public static final String RULE_KEY = "DuplicatedInclude";
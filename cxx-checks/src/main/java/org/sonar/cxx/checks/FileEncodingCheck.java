@@ -19,17 +19,16 @@
  */
 package org.sonar.cxx.checks;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.List;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
-import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
+import org.sonar.cxx.visitors.CxxSourceText;
+import org.sonar.cxx.visitors.CxxSourceTextAwareVisitor;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
-import java.nio.charset.CharsetEncoder;
-import java.nio.file.Files;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.NoSqale;
 
@@ -39,21 +38,21 @@ import org.sonar.squidbridge.annotations.NoSqale;
   priority = Priority.MINOR)
 @ActivatedByDefault
 @NoSqale
-public class FileEncodingCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
+@CxxRequiresInput(CxxInput.TEXT)
+public class FileEncodingCheck extends SquidCheck<Grammar> implements CxxSourceTextAwareVisitor {
 
-  private Charset charset;
+  private CxxSourceText sourceText;
 
   @Override
-  public void setCharset(Charset charset) {
-    this.charset = charset;
+  public void setSourceText(CxxSourceText sourceText) {
+    this.sourceText = sourceText;
   }
 
   @Override
   public void visitFile(AstNode astNode) {
-    try {
-      Files.readAllLines(getContext().getFile().toPath(), charset);
-    } catch (IOException e) {
-      getContext().createFileViolation(this, "Not all characters of the file can be encoded with the predefined charset " + charset.name() + ".");
+    if (sourceText.hasEncodingErrors()) {
+      getContext().createFileViolation(this, "Not all characters of the file can be encoded with the predefined charset "
+        + sourceText.getCharset().name() + ".");
     }
   }
   
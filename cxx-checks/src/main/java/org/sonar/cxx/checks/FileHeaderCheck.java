@@ -19,17 +19,16 @@
  */
 package org.sonar.cxx.checks;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.List;
 
-import com.google.common.io.Files;
-
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
-import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
+import org.sonar.cxx.visitors.CxxSourceText;
+import org.sonar.cxx.visitors.CxxSourceTextAwareVisitor;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
@@ -38,7 +37,6 @@ import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
 import org.sonar.squidbridge.annotations.SqaleSubCharacteristic;
-import org.sonar.squidbridge.api.AnalysisException;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -51,8 +49,9 @@ import java.util.regex.Pattern;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.READABILITY)
 @SqaleConstantRemediation("5min")
+@CxxRequiresInput(CxxInput.TEXT)
 //similar Vera++ rule T013 "No copyright notice found"
-public class FileHeaderCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
+public class FileHeaderCheck extends SquidCheck<Grammar> implements CxxSourceTextAwareVisitor {
 
   private static final String DEFAULT_HEADER_FORMAT = "";
   private static final String MESSAGE = "Add or update the header of this file.";
@@ -70,13 +69,13 @@ public class FileHeaderCheck extends SquidCheck<Grammar> implements CxxCharsetAw
     defaultValue = "false")
   public boolean isRegularExpression = false;
 
-  private Charset charset;
+  private CxxSourceText sourceText;
   private String[] expectedLines;
   private Pattern searchPattern = null;
 
   @Override
-  public void setCharset(Charset charset) {
-    this.charset = charset;
+  public void setSourceText(CxxSourceText sourceText) {
+    this.sourceText = sourceText;
   }
 
   @Override
@@ -97,20 +96,9 @@ public class FileHeaderCheck extends SquidCheck<Grammar> implements CxxCharsetAw
   @Override
   public void visitFile(AstNode astNode) {
     if (isRegularExpression) {
-      String fileContent;
-      try {
-        fileContent = Files.toString(getContext().getFile(), charset);
-      } catch (IOException e) {
-        throw new AnalysisException(e);
-      }
-      checkRegularExpression(fileContent);
+      checkRegularExpression(sourceText.getContent());
     } else {
-      List<String> lines;
-      try {
-        lines = Files.readLines(getContext().getFile(), charset);
-      } catch (IOException e) {
-        throw new IllegalStateException(e);
-      }
+      List<String> lines = sourceText.getLines();
 
       if (!matches(expectedLines, lines)) {
         getContext().createFileViolation(this, MESSAGE);
@@ -118,7 +106,7 @@ public class FileHeaderCheck extends SquidCheck<Grammar> implements CxxCharsetAw
     }
   }
 
-    private void checkRegularExpression(String fileContent) {
+    private void checkRegularExpression(CharSequence fileContent) {
       Matcher matcher = searchPattern.matcher(fileContent);
       if (!matcher.find() || matcher.start() != 0) {
         getContext().createFileViolation(this, MESSAGE);
@@ -24,20 +24,12 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import com.sonar.sslr.api.Grammar;
-import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
+import org.sonar.cxx.visitors.CxxRegularExpressionAwareVisitor;
+import org.sonar.cxx.visitors.CxxRegularExpressions;
 import org.sonar.squidbridge.checks.SquidCheck;
-import java.io.File;
-import java.io.FileInputStream;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
-import java.nio.charset.CodingErrorAction;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import org.sonar.api.utils.PathUtils;
-import org.sonar.api.utils.WildcardPattern;
 import org.sonar.squidbridge.annotations.NoSqale;
 import org.sonar.squidbridge.annotations.RuleTemplate;
 
@@ -47,7 +39,8 @@ import org.sonar.squidbridge.annotations.RuleTemplate;
   priority = Priority.MAJOR)
 @RuleTemplate
 @NoSqale
-public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
+@CxxRequiresInput(CxxInput.TEXT)
+public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements CxxRegularExpressionAwareVisitor {
 
   private static final String DEFAULT_MATCH_FILE_PATTERN = "";
   private static final boolean DEFAULT_INVERT_FILE_PATTERN = false;
@@ -55,9 +48,7 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements C
   private static final boolean DEFAULT_INVERT_REGULAR_EXPRESSION = false;
   private static final String DEFAULT_MESSAGE = "The regular expression matches this file";
 
-  private Charset charset;
-  private CharsetDecoder decoder;
-  private Pattern pattern;
+  private CxxRegularExpressions regularExpressions;
 
   @RuleProperty(
     key = "matchFilePattern",
@@ -92,29 +83,25 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements C
   @Override
   public void init() {
     try {
-      pattern = Pattern.compile(regularExpression);
-      decoder = charset.newDecoder();
-      decoder.onMalformedInput(CodingErrorAction.REPLACE);
-      decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+      regularExpressions.addFileExpression(this, Pattern.compile(regularExpression), matchFilePattern, invertFilePattern);
     } catch (Exception e) {
       throw new IllegalStateException(e);
     }
   }
 
   @Override
-  public void setCharset(Charset charset) {
-    this.charset = charset;
+  public void setRegularExpressions(CxxRegularExpressions regularExpressions) {
+    this.regularExpressions = regularExpressions;
   }
 
   @Override
   public void visitFile(AstNode fileNode) {
     if (fileNode != null) {
       try {
-        if (!compare(invertFilePattern, matchFile())) {
+        if (!regularExpressions.appliesToFile(this)) {
           return;
         }
-        Matcher matcher = pattern.matcher(fromFile(getContext().getFile()));
-        if (compare(invertRegularExpression, matcher.find())) {
+        if (compare(invertRegularExpression, regularExpressions.matchesFile(this))) {
           getContext().createFileViolation(this, message);
         }
       } catch (Exception e) {
@@ -123,30 +110,6 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements C
     }
   }
 
-  private boolean matchFile() {
-    if (!matchFilePattern.isEmpty()) {
-      WildcardPattern filePattern = WildcardPattern.create(matchFilePattern);
-      String path = PathUtils.sanitize(getContext().getFile().getPath());
-      return filePattern.match(path);
-    }
-    return true;
-  }
-
-  private CharSequence fromFile(File file) throws Exception {
-    FileInputStream input = null;
-    try {
-      input = new FileInputStream(file);
-      FileChannel channel = input.getChannel();
-      ByteBuffer bbuf = channel.map(FileChannel.MapMode.READ_ONLY, 0, (int) channel.size());
-      CharBuffer cbuf = decoder.decode(bbuf);
-      return cbuf;
-    } finally {
-      if (input != null) {
-        input.close();
-      }
-    }
-  }
-
   private boolean compare(boolean invert, boolean condition) {
     return invert ? !condition : condition;
   }
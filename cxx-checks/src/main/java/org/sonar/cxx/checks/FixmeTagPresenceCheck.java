@@ -22,6 +22,8 @@ package org.sonar.cxx.checks;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.cxx.tag.Tag;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.Grammar;
@@ -39,6 +41,7 @@ import org.sonar.squidbridge.annotations.SqaleSubCharacteristic;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.INSTRUCTION_RELIABILITY)
 @SqaleConstantRemediation("20min")
+@CxxRequiresInput(CxxInput.TOKENS)
 public class FixmeTagPresenceCheck extends SquidCheck<Grammar> implements AstAndTokenVisitor {
 
   private static final String PATTERN = "FIXME";
@@ -28,6 +28,7 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.cxx.parser.CxxGrammarImpl;
+import org.sonar.cxx.visitors.CxxParallelSafe;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
@@ -45,6 +46,7 @@ import org.sonar.cxx.tag.Tag;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.ARCHITECTURE_CHANGEABILITY)
 @SqaleConstantRemediation("30min")
+@CxxParallelSafe
 public class HardcodedAccountCheck extends SquidCheck<Grammar> {
 
   /*
@@ -56,7 +58,7 @@ public class HardcodedAccountCheck extends SquidCheck<Grammar> {
    *
    */
   private static final String DEFAULT_REGULAR_EXPRESSION = "\\bDSN\\b.*=.*;\\b(UID|PWD)\\b=.*;";
-  private static Matcher reg = null;
+  private Matcher reg = null;
 
   @RuleProperty(
     key = "regularExpression",
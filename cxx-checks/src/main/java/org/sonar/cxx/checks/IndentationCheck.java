@@ -19,19 +19,15 @@
  */
 package org.sonar.cxx.checks;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.util.List;
 import java.util.Stack;
 
-import com.google.common.io.Files;
-
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.cxx.api.CxxTokenType;
 import org.sonar.cxx.parser.CxxGrammarImpl;
-import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxSourceText;
+import org.sonar.cxx.visitors.CxxSourceTextAwareVisitor;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.AstNodeType;
@@ -56,7 +52,7 @@ import org.sonar.cxx.tag.Tag;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.READABILITY)
 @SqaleConstantRemediation("5min")
-public class IndentationCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
+public class IndentationCheck extends SquidCheck<Grammar> implements CxxSourceTextAwareVisitor {
 
   private static final AstNodeType[] BLOCK_TYPES = new AstNodeType[]{
     CxxGrammarImpl.statementSeq,
@@ -120,11 +116,11 @@ public class IndentationCheck extends SquidCheck<Grammar> implements CxxCharsetA
   private int expectedLevel;
   private boolean isBlockAlreadyReported;
 
-  private Charset charset;
+  private CxxSourceText sourceText;
 
   @Override
-  public void setCharset(Charset charset) {
-    this.charset = charset;
+  public void setSourceText(CxxSourceText sourceText) {
+    this.sourceText = sourceText;
   }
 
   @Override
@@ -139,26 +135,11 @@ public class IndentationCheck extends SquidCheck<Grammar> implements CxxCharsetA
     isBlockAlreadyReported = false;
   }
 
-  @Override
-  public void leaveFile(AstNode node) {
-    fileLines = null;
-  }
-
-  private List<String> fileLines = null;
-
   private int getTabColumn(Token token) {
-    if (fileLines == null) {
-      try {
-        fileLines = Files.readLines(getContext().getFile(), charset);
-      } catch (IOException e) {
-        throw new IllegalStateException(e);
-      }
-    }
-
-    int line = token.getLine() - 1;
+    int line = token.getLine();
     int column = token.getColumn();
-    if (fileLines != null && line < fileLines.size()) {
-      final String prefix = fileLines.get(line);
+    if (line <= sourceText.getLineCount()) {
+      final String prefix = sourceText.getLine(line);
       for (int i = 0; i < prefix.length() && i < token.getColumn(); i++) {
         if (prefix.charAt(i) == '\t') {
           column += tabWidth - 1;
@@ -19,23 +19,21 @@
  */
 package org.sonar.cxx.checks;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.util.List;
-import java.util.regex.Matcher;
+import java.util.BitSet;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import com.google.common.io.Files;
-
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import com.sonar.sslr.api.Grammar;
-import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
+import org.sonar.cxx.visitors.CxxRegularExpressionAwareVisitor;
+import org.sonar.cxx.visitors.CxxRegularExpressions;
+import org.sonar.cxx.visitors.CxxSourceText;
+import org.sonar.cxx.visitors.CxxSourceTextAwareVisitor;
 import org.sonar.squidbridge.checks.SquidCheck;
-import org.sonar.api.utils.PathUtils;
-import org.sonar.api.utils.WildcardPattern;
 import com.sonar.sslr.api.AstNode;
 
 import org.sonar.squidbridge.annotations.NoSqale;
@@ -47,7 +45,9 @@ import org.sonar.squidbridge.annotations.RuleTemplate;
   priority = Priority.MAJOR)
 @RuleTemplate
 @NoSqale
-public class LineRegularExpressionCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
+@CxxRequiresInput(CxxInput.TEXT)
+public class LineRegularExpressionCheck extends SquidCheck<Grammar> implements CxxSourceTextAwareVisitor,
+  CxxRegularExpressionAwareVisitor {
 
   private static final String DEFAULT_MATCH_FILE_PATTERN = "";
   private static final boolean DEFAULT_INVERT_FILE_PATTERN = false;
@@ -55,8 +55,8 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> implements C
   private static final boolean DEFAULT_INVERT_REGULAR_EXPRESSION = false;
   private static final String DEFAULT_MESSAGE = "The regular expression matches this line";
 
-  private Charset charset;
-  private Pattern pattern;
+  private CxxSourceText sourceText;
+  private CxxRegularExpressions regularExpressions;
 
   @RuleProperty(
     key = "matchFilePattern",
@@ -91,30 +91,30 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> implements C
   @Override
   public void init() {
     try {
-      pattern = Pattern.compile(regularExpression);
+      regularExpressions.addLineExpression(this, Pattern.compile(regularExpression), matchFilePattern, invertFilePattern);
     } catch (PatternSyntaxException e) {
       throw new IllegalStateException(e);
     }
   }
 
   @Override
-  public void setCharset(Charset charset) {
-    this.charset = charset;
+  public void setSourceText(CxxSourceText sourceText) {
+    this.sourceText = sourceText;
+  }
+
+  @Override
+  public void setRegularExpressions(CxxRegularExpressions regularExpressions) {
+    this.regularExpressions = regularExpressions;
   }
 
   @Override
   public void visitFile(AstNode fileNode) {
     if (fileNode != null) {
-      if (compare(invertFilePattern, matchFile())) {
-        List<String> lines;
-        try {
-          lines = Files.readLines(getContext().getFile(), charset);
-        } catch (IOException e) {
-          throw new IllegalStateException(e);
-        }
-        for (int i = 0; i < lines.size(); ++i) {
-          Matcher matcher = pattern.matcher(lines.get(i));
-          if (compare(invertRegularExpression, matcher.find())) {
+      if (regularExpressions.appliesToFile(this)) {
+        BitSet matchingLines = regularExpressions.getMatchingLines(this);
+        int lines = sourceText.getLineCount();
+        for (int i = 0; i < lines; ++i) {
+          if (compare(invertRegularExpression, matchingLines.get(i))) {
             getContext().createLineViolation(this, message, i + 1);
           }
         }
@@ -122,15 +122,6 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> implements C
     }
   }
 
-  private boolean matchFile() {
-    if (!matchFilePattern.isEmpty()) {
-      WildcardPattern filePattern = WildcardPattern.create(matchFilePattern);
-      String path = PathUtils.sanitize(getContext().getFile().getPath());
-      return filePattern.match(path);
-    }
-    return true;
-  }
-
   private boolean compare(boolean invert, boolean condition) {
     return invert ? !condition : condition;
   }
@@ -21,8 +21,10 @@ package org.sonar.cxx.checks;
 
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
-import org.sonar.cxx.parser.CxxParser;
 import org.sonar.cxx.preprocessor.CxxPreprocessor;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
+import org.sonar.cxx.visitors.CxxPreprocessorAwareVisitor;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
@@ -37,11 +39,22 @@ import org.sonar.cxx.tag.Tag;
   priority = Priority.INFO)
 @ActivatedByDefault
 @NoSqale
-public class MissingIncludeFileCheck extends SquidCheck<Grammar> {
+@CxxRequiresInput(CxxInput.TOKENS)
+public class MissingIncludeFileCheck extends SquidCheck<Grammar> implements CxxPreprocessorAwareVisitor {
+
+  private CxxPreprocessor cxxpp;
+
+  @Override
+  public void setPreprocessor(CxxPreprocessor preprocessor) {
+    this.cxxpp = preprocessor;
+  }
 
   @Override
   public void leaveFile(AstNode astNode) {
-    for (CxxPreprocessor.Include missingInclude : CxxParser.getMissingIncludeFiles(getContext().getFile())) {
+    if (cxxpp == null) {
+      return;
+    }
+    for (CxxPreprocessor.Include missingInclude : cxxpp.getMissingIncludeFiles(getContext().getFile())) {
       getContext().createLineViolation(this, "Unable to find the source for '" + missingInclude.getPath() + "'.",
         missingInclude.getLine());
     }
@@ -21,6 +21,8 @@ package org.sonar.cxx.checks;
 
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.Grammar;
@@ -39,6 +41,7 @@ import org.sonar.squidbridge.annotations.NoSqale;
   priority = Priority.INFO)
 @ActivatedByDefault
 @NoSqale
+@CxxRequiresInput(CxxInput.TOKENS)
 public class NoSonarCheck extends SquidCheck<Grammar> implements AstAndTokenVisitor {
 
   @Override
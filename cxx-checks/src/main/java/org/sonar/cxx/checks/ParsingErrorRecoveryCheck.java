@@ -22,6 +22,7 @@ package org.sonar.cxx.checks;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.cxx.parser.CxxGrammarImpl;
+import org.sonar.cxx.visitors.CxxParallelSafe;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
@@ -34,6 +35,7 @@ import org.sonar.squidbridge.annotations.NoSqale;
   priority = Priority.INFO)
 @ActivatedByDefault
 @NoSqale
+@CxxParallelSafe
 public class ParsingErrorRecoveryCheck extends SquidCheck<Grammar> {
 
   @Override
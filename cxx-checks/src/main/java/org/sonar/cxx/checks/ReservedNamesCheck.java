@@ -19,16 +19,15 @@
  */
 package org.sonar.cxx.checks;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.List;
 
-import com.google.common.io.Files;
-
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.cxx.api.CxxKeyword;
-import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
+import org.sonar.cxx.visitors.CxxSourceText;
+import org.sonar.cxx.visitors.CxxSourceTextAwareVisitor;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
@@ -47,11 +46,12 @@ import org.sonar.cxx.tag.Tag;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.COMPILER_RELATED_PORTABILITY)
 @SqaleConstantRemediation("5min")
+@CxxRequiresInput(CxxInput.TEXT)
 //similar Vera++ rule T002
-public class ReservedNamesCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
+public class ReservedNamesCheck extends SquidCheck<Grammar> implements CxxSourceTextAwareVisitor {
 
   private static String[] keywords = null;
-  private Charset charset;
+  private CxxSourceText sourceText;
 
   @Override
   public void init() {
@@ -60,12 +60,7 @@ public class ReservedNamesCheck extends SquidCheck<Grammar> implements CxxCharse
 
   @Override
   public void visitFile(AstNode astNode) {
-    List<String> lines;
-    try {
-      lines = Files.readLines(getContext().getFile(), charset);
-    } catch (IOException e) {
-      throw new IllegalStateException(e);
-    }
+    List<String> lines = sourceText.getLines();
     int nr = 0;
     for (String line : lines) {
       nr++;
@@ -90,7 +85,7 @@ public class ReservedNamesCheck extends SquidCheck<Grammar> implements CxxCharse
   }
 
   @Override
-  public void setCharset(Charset charset) {
-    this.charset = charset;
+  public void setSourceText(CxxSourceText sourceText) {
+    this.sourceText = sourceText;
   }
 }
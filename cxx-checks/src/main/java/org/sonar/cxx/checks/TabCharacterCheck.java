@@ -19,15 +19,14 @@
  */
 package org.sonar.cxx.checks;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.List;
 
-import com.google.common.io.Files;
-
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
-import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
+import org.sonar.cxx.visitors.CxxSourceText;
+import org.sonar.cxx.visitors.CxxSourceTextAwareVisitor;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
@@ -47,12 +46,13 @@ import org.sonar.cxx.tag.Tag;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.READABILITY)
 @SqaleConstantRemediation("5min")
+@CxxRequiresInput(CxxInput.TEXT)
 //similar Vera++ rule L002 "Don't use tab characters"
-public class TabCharacterCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
+public class TabCharacterCheck extends SquidCheck<Grammar> implements CxxSourceTextAwareVisitor {
 
   private static final boolean DEFAULT_CREATE_LINE_VIOLATION = false;
 
-  private Charset charset;
+  private CxxSourceText sourceText;
 
   @RuleProperty(
     key = "createLineViolation",
@@ -61,18 +61,13 @@ public class TabCharacterCheck extends SquidCheck<Grammar> implements CxxCharset
   public boolean createLineViolation = DEFAULT_CREATE_LINE_VIOLATION;
 
   @Override
-  public void setCharset(Charset charset) {
-    this.charset = charset;
+  public void setSourceText(CxxSourceText sourceText) {
+    this.sourceText = sourceText;
   }
 
   @Override
   public void visitFile(AstNode astNode) {
-    List<String> lines;
-    try {
-      lines = Files.readLines(getContext().getFile(), charset);
-    } catch (IOException e) {
-      throw new IllegalStateException(e);
-    }
+    List<String> lines = sourceText.getLines();
     for (int i = 0; i < lines.size(); i++) {
       if (lines.get(i).contains("\t")) {
         if (createLineViolation) {
@@ -28,6 +28,7 @@ import org.sonar.check.RuleProperty;
 import org.sonar.cxx.api.CppPunctuator;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.tag.Tag;
+import org.sonar.cxx.visitors.CxxParallelSafe;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
 import org.sonar.squidbridge.annotations.SqaleSubCharacteristic;
@@ -42,6 +43,7 @@ import org.sonar.squidbridge.checks.SquidCheck;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.READABILITY)
 @SqaleConstantRemediation("1h")
+@CxxParallelSafe
 public class TooManyLinesOfCodeInFunctionCheck extends SquidCheck<Grammar> {
   private static final int DEFAULT_MAXIMUM = 200;
 
@@ -19,16 +19,15 @@
  */
 package org.sonar.cxx.checks;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.List;
 import java.util.regex.Pattern;
 
-import com.google.common.io.Files;
-
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
-import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
+import org.sonar.cxx.visitors.CxxSourceText;
+import org.sonar.cxx.visitors.CxxSourceTextAwareVisitor;
 import org.sonar.squidbridge.checks.SquidCheck;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
@@ -46,7 +45,8 @@ import org.sonar.cxx.tag.Tag;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.READABILITY)
 @SqaleConstantRemediation("5min")
-public class UseCorrectIncludeCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
+@CxxRequiresInput(CxxInput.TEXT)
+public class UseCorrectIncludeCheck extends SquidCheck<Grammar> implements CxxSourceTextAwareVisitor {
 
   private static final String DEFAULT_REGULAR_EXPRESSION = "#include\\s+(?>\"|\\<)[\\\\/\\.]+";
   private static final String DEFAULT_MESSAGE = "Use correct #include directives";
@@ -54,7 +54,7 @@ public class UseCorrectIncludeCheck extends SquidCheck<Grammar> implements CxxCh
   public String regularExpression = DEFAULT_REGULAR_EXPRESSION;
   public String message = DEFAULT_MESSAGE;
   private Pattern pattern = null;
-  private Charset charset;
+  private CxxSourceText sourceText;
 
   @Override
   public void init() {
@@ -69,12 +69,7 @@ public class UseCorrectIncludeCheck extends SquidCheck<Grammar> implements CxxCh
 
   @Override
   public void visitFile(AstNode astNode) {
-    List<String> lines;
-    try {
-      lines = Files.readLines(getContext().getFile(), charset);
-    } catch (IOException e) {
-      throw new IllegalStateException(e);
-    }
+    List<String> lines = sourceText.getLines();
     for (int i = 0; i < lines.size(); i++) {
       String line = lines.get(i);
       if (pattern.matcher(line).find()) {
@@ -84,8 +79,8 @@ public class UseCorrectIncludeCheck extends SquidCheck<Grammar> implements CxxCh
   }
 
   @Override
-  public void setCharset(Charset charset) {
-    this.charset = charset;
+  public void setSourceText(CxxSourceText sourceText) {
+    this.sourceText = sourceText;
   }
 
 }
@@ -41,6 +41,30 @@ public class LineRegularExpressionCheckTest {
       .noMore();
   }
 
+  @Test
+  public void severalRulesAreEvaluatedTogether() {
+    LineRegularExpressionCheck include = new LineRegularExpressionCheck();
+    include.regularExpression = "stdafx\\.h";
+    include.message = "Found 'stdafx.h' in line!";
+    LineRegularExpressionCheck declaration = new LineRegularExpressionCheck();
+    declaration.matchFilePattern = "/**/*.cc";
+    declaration.regularExpression = "^int";
+    declaration.message = "Found 'int' declaration!";
+    LineRegularExpressionCheck function = new LineRegularExpressionCheck();
+    function.matchFilePattern = "/**/*.cc";
+    function.invertFilePattern = true;
+    function.regularExpression = "func";
+    function.message = "Found 'func' in a file which is not a .cc file!";
+
+    SourceFile file = CxxAstScanner.scanSingleFile(new File("src/test/resources/checks/LineRegEx.cc"),
+      include, declaration, function);
+    CheckMessagesVerifier.verify(file.getCheckMessages())
+      .next().atLine(2).withMessage(include.message)
+      .next().atLine(3).withMessage(include.message)
+      .next().atLine(4).withMessage(declaration.message)
+      .noMore();
+  }
+
   @Test
   public void lineRegExInvertWithoutFilePattern() {
     LineRegularExpressionCheck check = new LineRegularExpressionCheck();
@@ -20,18 +20,35 @@
 package org.sonar.cxx;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nullable;
 
-import org.sonar.cxx.api.CxxKeyword;
 import org.sonar.cxx.api.CxxMetric;
-import org.sonar.cxx.api.CxxPunctuator;
+import org.sonar.cxx.lexer.CxxLexer;
 import org.sonar.cxx.parser.CxxGrammarImpl;
-import org.sonar.cxx.parser.CxxParser;
+import org.sonar.cxx.parser.BudgetedParser;
+import org.sonar.cxx.parser.LexerOnlyParser;
+import org.sonar.cxx.parser.ParseBudget;
+import org.sonar.cxx.preprocessor.CxxPreprocessor;
+import org.sonar.cxx.preprocessor.JoinStringsPreprocessor;
+import org.sonar.cxx.profiling.ProfilingParser;
+import org.sonar.cxx.profiling.ProfilingVisitor;
+import org.sonar.cxx.profiling.ScanProfile;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
 import org.sonar.cxx.visitors.CxxFileVisitor;
-import org.sonar.cxx.visitors.CxxLinesOfCodeVisitor;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxMetricsVisitor;
+import org.sonar.cxx.visitors.CxxParallelChecks;
 import org.sonar.cxx.visitors.CxxParseErrorLoggerVisitor;
+import org.sonar.cxx.visitors.CxxPreprocessorAwareVisitor;
 import org.sonar.cxx.visitors.CxxPublicApiVisitor;
+import org.sonar.cxx.visitors.CxxRegularExpressionAwareVisitor;
+import org.sonar.cxx.visitors.CxxRegularExpressions;
+import org.sonar.cxx.visitors.CxxSourceText;
+import org.sonar.cxx.visitors.CxxSourceTextAwareVisitor;
 import org.sonar.squidbridge.AstScanner;
 import org.sonar.squidbridge.CommentAnalyser;
 import org.sonar.squidbridge.SourceCodeBuilderCallback;
@@ -45,15 +62,12 @@ import org.sonar.squidbridge.api.SourceFunction;
 import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.squidbridge.indexer.QueryByType;
 import org.sonar.squidbridge.metrics.CommentsVisitor;
-import org.sonar.squidbridge.metrics.ComplexityVisitor;
-import org.sonar.squidbridge.metrics.CounterVisitor;
-import org.sonar.squidbridge.metrics.LinesVisitor;
 
 import com.sonar.sslr.api.AstNode;
-import com.sonar.sslr.api.AstNodeType;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
 import com.sonar.sslr.impl.Parser;
 
 public final class CxxAstScanner {
@@ -86,8 +100,43 @@ public final class CxxAstScanner {
   }
 
   public static AstScanner<Grammar> create(CxxConfiguration conf, SquidAstVisitor<Grammar>... visitors) {
+    return create(conf, null, visitors);
+  }
+
+  /**
+   * Creates a scanner recording the time and the allocations of every phase
+   * and visitor into the given profile. Without a profile the scanner is not
+   * instrumented at all.
+   *
+   * With {@link CxxConfiguration#getLexerOnlyAnalysisEnabled()} and visitors
+   * which all declare to need no more than {@link CxxInput#TOKENS} the files
+   * are lexed and preprocessed but not parsed.
+   *
+   * With more than one {@link CxxConfiguration#getParallelCheckGroups()} the
+   * {@link org.sonar.cxx.visitors.CxxParallelSafe} visitors walk the tree in
+   * parallel, see {@link CxxParallelChecks}. Not when profiling, the
+   * measurements of the visitors would overlap.
+   */
+  public static AstScanner<Grammar> create(CxxConfiguration conf, @Nullable ScanProfile profile,
+    SquidAstVisitor<Grammar>... visitors) {
     final SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<>(new SourceProject("Cxx Project"));
-    final Parser<Grammar> parser = CxxParser.create(context, conf);
+    final CxxPreprocessor cxxpp = new CxxPreprocessor(context, conf);
+    ParseBudget budget = conf.getParseBudget();
+    ParseBudget.Tracker tracker = budget == null ? null : budget.createTracker();
+    boolean lexerOnly = isLexerOnly(conf, visitors);
+    // one lexer with the preprocessors, shared by the parser and its wrappers
+    Lexer lexer = CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor());
+    Parser<Grammar> parser = lexerOnly
+      ? new LexerOnlyParser(CxxGrammarImpl.create(conf), lexer)
+      : Parser.builder(CxxGrammarImpl.create(conf, tracker)).withLexer(lexer).build();
+    if (profile != null) {
+      cxxpp.setProfile(profile);
+      parser = new ProfilingParser(parser, lexer, profile);
+    }
+    if (budget != null) {
+      cxxpp.setParseBudgetTracker(tracker);
+      parser = new BudgetedParser(parser, budget, tracker, CxxLexer.getPool(conf));
+    }
 
     AstScanner.Builder<Grammar> builder = AstScanner.<Grammar>builder(context).setBaseParser(parser);
 
@@ -119,7 +168,7 @@ public final class CxxAstScanner {
       });
 
     /* Functions */
-    builder.withSquidAstVisitor(new SourceCodeBuilderVisitor<>(new SourceCodeBuilderCallback() {
+    builder.withSquidAstVisitor(instrument(new SourceCodeBuilderVisitor<>(new SourceCodeBuilderCallback() {
       @Override
       public SourceCode createSourceCode(SourceCode parentSourceCode, AstNode astNode) {
         StringBuilder sb = new StringBuilder();
@@ -142,15 +191,10 @@ public final class CxxAstScanner {
         function.setStartAtLine(astNode.getTokenLine());
         return function;
       }
-    }, CxxGrammarImpl.functionDefinition));
-
-    builder.withSquidAstVisitor(CounterVisitor.<Grammar>builder()
-      .setMetricDef(CxxMetric.FUNCTIONS)
-      .subscribeTo(CxxGrammarImpl.functionDefinition)
-      .build());
+    }, CxxGrammarImpl.functionDefinition), context, profile));
 
     /* Classes */
-    builder.withSquidAstVisitor(new SourceCodeBuilderVisitor<>(new SourceCodeBuilderCallback() {
+    builder.withSquidAstVisitor(instrument(new SourceCodeBuilderVisitor<>(new SourceCodeBuilderCallback() {
       @Override
       public SourceCode createSourceCode(SourceCode parentSourceCode, AstNode astNode) {
         AstNode classNameAst = astNode.getFirstDescendant(CxxGrammarImpl.className);
@@ -159,67 +203,83 @@ public final class CxxAstScanner {
         cls.setStartAtLine(astNode.getTokenLine());
         return cls;
       }
-    }, CxxGrammarImpl.classSpecifier));
-
-    builder.withSquidAstVisitor(CounterVisitor.<Grammar>builder()
-      .setMetricDef(CxxMetric.CLASSES)
-      .subscribeTo(CxxGrammarImpl.classSpecifier)
-      .build());
+    }, CxxGrammarImpl.classSpecifier), context, profile));
 
-    /* Metrics */
-    builder.withSquidAstVisitor(new LinesVisitor<>(CxxMetric.LINES));
-    builder.withSquidAstVisitor(new CxxLinesOfCodeVisitor<>(CxxMetric.LINES_OF_CODE));
-    builder.withSquidAstVisitor(new CxxPublicApiVisitor<>(CxxMetric.PUBLIC_API,
-      CxxMetric.PUBLIC_UNDOCUMENTED_API)
-      .withHeaderFileSuffixes(conf.getHeaderFileSuffixes()));
+    /* Metrics: lines, lines of code, functions, classes, statements and complexity */
+    builder.withSquidAstVisitor(instrument(new CxxMetricsVisitor<>(), context, profile));
+    if (!lexerOnly) {
+      builder.withSquidAstVisitor(instrument(new CxxPublicApiVisitor<>(CxxMetric.PUBLIC_API,
+        CxxMetric.PUBLIC_UNDOCUMENTED_API)
+        .withHeaderFileSuffixes(conf.getHeaderFileSuffixes()), context, profile));
+    }
 
-    builder.withSquidAstVisitor(CommentsVisitor.<Grammar>builder().withCommentMetric(CxxMetric.COMMENT_LINES)
+    builder.withSquidAstVisitor(instrument(CommentsVisitor.<Grammar>builder().withCommentMetric(CxxMetric.COMMENT_LINES)
       .withNoSonar(true)
       .withIgnoreHeaderComment(conf.getIgnoreHeaderComments())
-      .build());
-
-    /* Statements */
-    builder.withSquidAstVisitor(CounterVisitor.<Grammar>builder()
-      .setMetricDef(CxxMetric.STATEMENTS)
-      .subscribeTo(CxxGrammarImpl.statement)
-      .build());
-
-    AstNodeType[] complexityAstNodeType = new AstNodeType[]{
-      // Entry points
-      CxxGrammarImpl.functionDefinition,
-      CxxKeyword.IF,
-      CxxKeyword.FOR,
-      CxxKeyword.WHILE,
-      CxxKeyword.CATCH,
-      CxxKeyword.CASE,
-      CxxKeyword.DEFAULT,
-      CxxPunctuator.AND,
-      CxxPunctuator.OR,
-      CxxPunctuator.QUEST
-    };
-
-    builder.withSquidAstVisitor(ComplexityVisitor.<Grammar>builder()
-      .setMetricDef(CxxMetric.COMPLEXITY)
-      .subscribeTo(complexityAstNodeType)
-      .build());
+      .build(), context, profile));
 
     // to emit a 'new file' event to the internals of the plugin
-    builder.withSquidAstVisitor(new CxxFileVisitor<>(context));
+    builder.withSquidAstVisitor(instrument(new CxxFileVisitor<>(context, cxxpp), context, profile));
 
     // log syntax errors
-    builder.withSquidAstVisitor(new CxxParseErrorLoggerVisitor<>(context));
+    builder.withSquidAstVisitor(instrument(new CxxParseErrorLoggerVisitor<>(context), context, profile));
 
     /* External visitors (typically Check ones) */
+    boolean parallelChecks = profile == null && conf.getParallelCheckGroups() > 1;
+    List<SquidAstVisitor<Grammar>> parallelVisitors = new ArrayList<>();
+    final CxxSourceText sourceText = new CxxSourceText(context, conf.getCharset());
+    final CxxRegularExpressions regularExpressions = new CxxRegularExpressions(context, sourceText);
+    // registered before the checks, they see the text and matches of the file being visited
+    builder.withSquidAstVisitor(new SquidAstVisitor<Grammar>() {
+      @Override
+      public void visitFile(@Nullable AstNode ast) {
+        sourceText.reset();
+        regularExpressions.reset();
+      }
+    });
     for (SquidAstVisitor<Grammar> visitor : visitors) {
       if (visitor instanceof CxxCharsetAwareVisitor) {
         ((CxxCharsetAwareVisitor) visitor).setCharset(conf.getCharset());
       }
-      builder.withSquidAstVisitor(visitor);
+      if (visitor instanceof CxxSourceTextAwareVisitor) {
+        ((CxxSourceTextAwareVisitor) visitor).setSourceText(sourceText);
+      }
+      if (visitor instanceof CxxRegularExpressionAwareVisitor) {
+        ((CxxRegularExpressionAwareVisitor) visitor).setRegularExpressions(regularExpressions);
+      }
+      if (visitor instanceof CxxPreprocessorAwareVisitor) {
+        ((CxxPreprocessorAwareVisitor) visitor).setPreprocessor(cxxpp);
+      }
+      if (parallelChecks && CxxParallelChecks.isParallelSafe(visitor)) {
+        parallelVisitors.add(visitor);
+      } else {
+        builder.withSquidAstVisitor(instrument(visitor, context, profile));
+      }
+    }
+    if (!parallelVisitors.isEmpty()) {
+      builder.withSquidAstVisitor(new CxxParallelChecks(parallelVisitors, conf.getParallelCheckGroups()));
     }
 
     return builder.build();
   }
 
+  /**
+   * True if the files of a scan with the given configuration and visitors are
+   * not parsed, see {@link #create(CxxConfiguration, ScanProfile, SquidAstVisitor...)}.
+   */
+  public static boolean isLexerOnly(CxxConfiguration conf, SquidAstVisitor<Grammar>... visitors) {
+    return conf.getLexerOnlyAnalysisEnabled() && CxxInput.required((Object[]) visitors) != CxxInput.AST;
+  }
+
+  private static SquidAstVisitor<Grammar> instrument(SquidAstVisitor<Grammar> visitor,
+    SquidAstVisitorContextImpl<Grammar> context, @Nullable ScanProfile profile) {
+    if (profile == null) {
+      return visitor;
+    }
+    visitor.setContext(context);
+    return ProfilingVisitor.wrap(visitor, profile);
+  }
+
   // Concatenate two strings, but if there is overlap at the intersection,
   // include the intersection/overlap only once.
   public static String intersectingConcatenate(String a, String b) {
@@ -0,0 +1,276 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Reads the include directories and defines of each translation unit from a
+ * JSON compilation database (compile_commands.json, as written by CMake,
+ * Bear, Ninja and others).
+ *
+ * Like {@link CxxVCppBuildLogParser} the results are stored per source file
+ * in the maps of the configuration.
+ */
+public class CxxCompilationDatabase {
+
+  private static final org.slf4j.Logger LOG = LoggerFactory.getLogger("CxxCompilationDatabase");
+  private static final String[] INCLUDE_OPTIONS = {"-I", "-isystem", "-iquote", "-idirafter"};
+  private static final String[] DEFINE_OPTIONS = {"-D"};
+  private static final String[] MSVC_INCLUDE_OPTIONS = {"-I", "/I"};
+  private static final String[] MSVC_DEFINE_OPTIONS = {"-D", "/D"};
+
+  private final Map<String, List<String>> uniqueIncludes;
+  private final Map<String, Set<String>> uniqueDefines;
+
+  public CxxCompilationDatabase(Map<String, List<String>> uniqueIncludesIn,
+    Map<String, Set<String>> uniqueDefinesIn) {
+    uniqueIncludes = uniqueIncludesIn;
+    uniqueDefines = uniqueDefinesIn;
+  }
+
+  public void parse(File database) {
+    JsonElement json;
+    try (Reader reader = Files.newBufferedReader(database.toPath(), StandardCharsets.UTF_8)) {
+      json = new JsonParser().parse(reader);
+    } catch (IOException | JsonParseException e) {
+      LOG.error("Cannot read the compilation database '{}': {}", database, e.getMessage());
+      return;
+    }
+    if (!json.isJsonArray()) {
+      LOG.error("The compilation database '{}' does not contain an array of commands", database);
+      return;
+    }
+
+    String defaultDirectory = database.getAbsoluteFile().getParent();
+    int commands = 0;
+    for (JsonElement entry : json.getAsJsonArray()) {
+      if (entry.isJsonObject()) {
+        JsonObject command = entry.getAsJsonObject();
+        String directory = getString(command, "directory");
+        String file = getString(command, "file");
+        List<String> arguments = getArguments(command);
+        if (file != null && arguments != null) {
+          parseCommand(arguments, directory == null ? defaultDirectory : directory, file);
+          commands++;
+        }
+      }
+    }
+    LOG.debug("Parsed {} commands of the compilation database '{}'", commands, database);
+  }
+
+  private static String getString(JsonObject object, String name) {
+    JsonElement value = object.get(name);
+    return value != null && value.isJsonPrimitive() && value.getAsJsonPrimitive().isString() ? value.getAsString() : null;
+  }
+
+  private static List<String> getArguments(JsonObject command) {
+    JsonElement arguments = command.get("arguments");
+    if (arguments != null && arguments.isJsonArray()) {
+      List<String> result = new ArrayList<>();
+      for (JsonElement argument : (JsonArray) arguments) {
+        result.add(argument.isJsonPrimitive() ? argument.getAsString() : argument.toString());
+      }
+      return result;
+    }
+    String line = getString(command, "command");
+    if (line == null) {
+      return null;
+    }
+    String commandLine = line.trim();
+    int end = 0;
+    while (end < commandLine.length() && !Character.isWhitespace(commandLine.charAt(end))) {
+      end++;
+    }
+    return splitCommandLine(commandLine, isMsvc(commandLine.substring(0, end).replace("\"", "")));
+  }
+
+  /**
+   * Extracts the include directories and defines of a compiler invocation
+   * for the given source file. Relative paths are resolved against the
+   * working directory of the invocation.
+   */
+  public void parseCommand(List<String> arguments, String directory, String file) {
+    String unit;
+    try {
+      unit = Paths.get(directory).resolve(file).normalize().toAbsolutePath().toString();
+    } catch (InvalidPathException e) {
+      LOG.warn("Cannot extract information from current element: '{}' : {}", file, e.getMessage());
+      return;
+    }
+
+    List<String> includes = uniqueIncludes.get(unit);
+    if (includes == null) {
+      includes = new ArrayList<>();
+      uniqueIncludes.put(unit, includes);
+    }
+    Set<String> defines = uniqueDefines.get(unit);
+    if (defines == null) {
+      defines = new HashSet<>();
+      uniqueDefines.put(unit, defines);
+    }
+
+    boolean msvc = !arguments.isEmpty() && isMsvc(arguments.get(0));
+    String[] includeOptions = msvc ? MSVC_INCLUDE_OPTIONS : INCLUDE_OPTIONS;
+    String[] defineOptions = msvc ? MSVC_DEFINE_OPTIONS : DEFINE_OPTIONS;
+    for (int i = 1; i < arguments.size(); i++) {
+      String argument = arguments.get(i);
+      String include = optionValue(arguments, i, includeOptions);
+      String define = include == null ? optionValue(arguments, i, defineOptions) : null;
+      if (include != null) {
+        addInclude(includes, directory, include);
+      } else if (define != null) {
+        // like the compilers, '-DNAME' defines NAME as 1
+        int assign = define.indexOf('=');
+        defines.add(assign < 0 ? define + " 1" : define.substring(0, assign) + " " + define.substring(assign + 1));
+      } else {
+        continue;
+      }
+      if (isOption(argument, includeOptions) || isOption(argument, defineOptions)) {
+        // the value was the next argument
+        i++;
+      }
+    }
+  }
+
+  private static boolean isMsvc(String compiler) {
+    String name = compiler.replace('\\', '/');
+    name = name.substring(name.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+    return "cl".equals(name) || "cl.exe".equals(name) || name.startsWith("clang-cl");
+  }
+
+  private static void addInclude(List<String> includes, String directory, String include) {
+    try {
+      Path path = Paths.get(directory).resolve(include).normalize().toAbsolutePath();
+      String includePath = path.toString();
+      if (!includes.contains(includePath)) {
+        includes.add(includePath);
+      }
+    } catch (InvalidPathException e) {
+      LOG.warn("Cannot parse include path using element '{}' : '{}'", include, e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the value of the option at index i, either attached ('-Idir') or
+   * in the next argument ('-I dir'), null if the argument isn't this option.
+   */
+  private static String optionValue(List<String> arguments, int i, String[] options) {
+    String argument = arguments.get(i);
+    for (String option : options) {
+      if (argument.equals(option)) {
+        return i + 1 < arguments.size() ? arguments.get(i + 1) : null;
+      }
+      if (argument.startsWith(option) && argument.length() > option.length()) {
+        return argument.substring(option.length());
+      }
+    }
+    return null;
+  }
+
+  private static boolean isOption(String argument, String[] options) {
+    for (String option : options) {
+      if (argument.equals(option)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Splits a command line into its arguments. By default the quoting rules
+   * of a POSIX shell are applied: single and double quotes group, backslash
+   * escapes. On Windows only double quotes group and a backslash escapes
+   * double quotes only.
+   */
+  public static List<String> splitCommandLine(String line, boolean windows) {
+    List<String> arguments = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    boolean inArgument = false;
+    char quote = 0;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (windows) {
+        if (c == '\\' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          current.append(line.charAt(++i));
+          inArgument = true;
+          continue;
+        } else if (c == '\'') {
+          current.append(c);
+          inArgument = true;
+          continue;
+        }
+      }
+      if (quote == '\'') {
+        if (c == '\'') {
+          quote = 0;
+        } else {
+          current.append(c);
+        }
+      } else if (!windows && c == '\\' && i + 1 < line.length() && (quote == 0 || "\"\\$`".indexOf(line.charAt(i + 1)) >= 0)) {
+        current.append(line.charAt(++i));
+        inArgument = true;
+      } else if (quote == '"') {
+        if (c == '"') {
+          quote = 0;
+        } else {
+          current.append(c);
+        }
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+        inArgument = true;
+      } else if (Character.isWhitespace(c)) {
+        if (inArgument) {
+          arguments.add(current.toString());
+          current.setLength(0);
+          inArgument = false;
+        }
+      } else {
+        current.append(c);
+        inArgument = true;
+      }
+    }
+    if (inArgument) {
+      arguments.add(current.toString());
+    }
+    return arguments;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The defines and include directories used to preprocess a translation unit.
+ * Instances are immutable and interned by {@link CxxConfiguration}: all
+ * translation units compiled with the same options share one instance, which
+ * can be compared by identity.
+ */
+public final class CxxCompilationUnitSettings {
+
+  private final int id;
+  private final List<String> defines;
+  private final List<String> includeDirectories;
+
+  CxxCompilationUnitSettings(int id, Collection<String> defines, Collection<String> includeDirectories) {
+    this.id = id;
+    this.defines = Collections.unmodifiableList(new ArrayList<>(defines));
+    this.includeDirectories = Collections.unmodifiableList(new ArrayList<>(includeDirectories));
+  }
+
+  CxxCompilationUnitSettings withId(int id) {
+    return new CxxCompilationUnitSettings(id, defines, includeDirectories);
+  }
+
+  /**
+   * Unique number of an interned instance, used to tell the states of
+   * different settings apart (e.g. in the precompiled header cache).
+   */
+  public int getId() {
+    return id;
+  }
+
+  public List<String> getDefines() {
+    return defines;
+  }
+
+  public List<String> getIncludeDirectories() {
+    return includeDirectories;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    CxxCompilationUnitSettings other = (CxxCompilationUnitSettings) o;
+    return defines.equals(other.defines) && includeDirectories.equals(other.includeDirectories);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * defines.hashCode() + includeDirectories.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "defines: " + defines.size() + ", include directories: " + includeDirectories.size();
+  }
+}
@@ -23,14 +23,31 @@ import java.io.File;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.cxx.lexer.LexerPool;
+import org.sonar.cxx.lexer.TokenValueInterner;
+import org.sonar.cxx.parser.ParseBudget;
+import org.sonar.cxx.preprocessor.DirectoryIndex;
+import org.sonar.cxx.preprocessor.ParsedHeaderCache;
+import org.sonar.cxx.preprocessor.PrecompiledHeaderCache;
 import org.sonar.squidbridge.api.SquidConfiguration;
 
 public class CxxConfiguration extends SquidConfiguration {
@@ -50,9 +67,24 @@ public class CxxConfiguration extends SquidConfiguration {
   private boolean missingIncludeWarningsEnabled = true;
   private ResourcePerspectives perspectives;
   private FileSystem fs;
+  private ParsedHeaderCache headerCache = new ParsedHeaderCache();
+  private final DirectoryIndex directoryIndex = new DirectoryIndex();
+  private final TokenValueInterner tokenValueInterner = new TokenValueInterner();
+  private final ConcurrentMap<String, LexerPool> lexerPools = new ConcurrentHashMap<>();
+  private PrecompiledHeaderCache precompiledHeaderCache = null;
+  private ParseBudget parseBudget = null;
+  private boolean lexerOnlyAnalysisEnabled = false;
+  private int parallelCheckGroups = 0;
 
   private final CxxVCppBuildLogParser cxxVCppParser;
 
+  // per translation unit settings, compacted from uniqueIncludes/uniqueDefines
+  private final Map<String, CxxCompilationUnitSettings> compilationUnits = new HashMap<>();
+  private final Map<CxxCompilationUnitSettings, CxxCompilationUnitSettings> internedSettings = new HashMap<>();
+  private final Map<CxxCompilationUnitSettings, CxxCompilationUnitSettings> effectiveSettings = new IdentityHashMap<>();
+  private CxxCompilationUnitSettings globalSettings;
+  private int settingsCount;
+
   public CxxConfiguration() {
     uniqueIncludes.put(OverallIncludeKey, new ArrayList<String>());
     uniqueDefines.put(OverallDefineKey, new HashSet<String>());
@@ -93,6 +125,7 @@ public class CxxConfiguration extends SquidConfiguration {
   }
 
   public void setDefines(List<String> defines) {
+    invalidateSettings();
     Set<String> overallDefs = uniqueDefines.get(OverallDefineKey);
     for (String define : defines) {
       if (!overallDefs.contains(define)) {
@@ -102,6 +135,7 @@ public class CxxConfiguration extends SquidConfiguration {
   }
   
   public void addOverallDefine(String define) {
+    invalidateSettings();
     Set<String> overallDefs = uniqueDefines.get(OverallDefineKey);
     if (!overallDefs.contains(define)) {
       overallDefs.add(define);
@@ -114,21 +148,24 @@ public class CxxConfiguration extends SquidConfiguration {
     }
   }
 
+  /**
+   * Returns the defines of all translation units
+   */
   public List<String> getDefines() {
     Set<String> allDefines = new HashSet<>();
 
     for (Set<String> elemSet : uniqueDefines.values()) {
-      for (String value : elemSet) {
-        if (!allDefines.contains(value)) {
-          allDefines.add(value);
-        }
-      }
+      allDefines.addAll(elemSet);
+    }
+    for (CxxCompilationUnitSettings unit : getDistinctCompilationUnits()) {
+      allDefines.addAll(unit.getDefines());
     }
 
     return new ArrayList<>(allDefines);
   }
 
   public void setIncludeDirectories(List<String> includeDirectories) {
+    invalidateSettings();
     List<String> overallIncludes = uniqueIncludes.get(OverallIncludeKey);
     for (String include : includeDirectories) {
       if (!overallIncludes.contains(include)) {
@@ -139,6 +176,7 @@ public class CxxConfiguration extends SquidConfiguration {
   }
   
   public void addOverallIncludeDirectory(String includeDirectory) {
+    invalidateSettings();
     List<String> overallIncludes = uniqueIncludes.get(OverallIncludeKey);
     if (!overallIncludes.contains(includeDirectory)) {
       LOG.debug("setIncludeDirectories() adding dir '{}'", includeDirectory);
@@ -152,18 +190,129 @@ public class CxxConfiguration extends SquidConfiguration {
     }
   }
 
+  /**
+   * Returns the include directories of all translation units
+   */
   public List<String> getIncludeDirectories() {
-    List<String> allIncludes = new ArrayList<>();
+    Set<String> allIncludes = new LinkedHashSet<>(uniqueIncludes.get(OverallIncludeKey));
 
     for (List<String> elemList : uniqueIncludes.values()) {
-      for (String value : elemList) {
-        if (!allIncludes.contains(value)) {
-          allIncludes.add(value);
+      allIncludes.addAll(elemList);
+    }
+    for (CxxCompilationUnitSettings unit : getDistinctCompilationUnits()) {
+      allIncludes.addAll(unit.getIncludeDirectories());
+    }
+
+    return new ArrayList<>(allIncludes);
+  }
+
+  /**
+   * Returns the settings to preprocess the given translation unit with: the
+   * overall settings together with the ones of the unit, if it is known from
+   * a build log or compilation database. Files unknown to these (e.g.
+   * headers) get the settings of all translation units. Equal settings are
+   * returned as the same instance.
+   */
+  public synchronized CxxCompilationUnitSettings getCompilationUnitSettings(@Nullable File file) {
+    CxxCompilationUnitSettings unit = file == null ? null : findCompilationUnit(file);
+    if (unit == null) {
+      if (globalSettings == null) {
+        globalSettings = intern(getDefines(), getIncludeDirectories());
+      }
+      return globalSettings;
+    }
+
+    CxxCompilationUnitSettings settings = effectiveSettings.get(unit);
+    if (settings == null) {
+      Set<String> defines = new HashSet<>(uniqueDefines.get(OverallDefineKey));
+      defines.addAll(unit.getDefines());
+      // the include directories of the unit are searched first, like compilers do
+      Set<String> includes = new LinkedHashSet<>(unit.getIncludeDirectories());
+      includes.addAll(uniqueIncludes.get(OverallIncludeKey));
+      settings = intern(defines, includes);
+      effectiveSettings.put(unit, settings);
+    }
+    return settings;
+  }
+
+  @CheckForNull
+  private CxxCompilationUnitSettings findCompilationUnit(File file) {
+    if (compilationUnits.isEmpty()) {
+      return null;
+    }
+    CxxCompilationUnitSettings unit = compilationUnits.get(file.getAbsolutePath());
+    if (unit == null) {
+      unit = compilationUnits.get(file.getAbsoluteFile().toPath().normalize().toString());
+    }
+    return unit;
+  }
+
+  private Collection<CxxCompilationUnitSettings> getDistinctCompilationUnits() {
+    Map<CxxCompilationUnitSettings, Boolean> distinct = new IdentityHashMap<>();
+    for (CxxCompilationUnitSettings unit : compilationUnits.values()) {
+      distinct.put(unit, Boolean.TRUE);
+    }
+    return distinct.keySet();
+  }
+
+  private CxxCompilationUnitSettings intern(Collection<String> defines, Collection<String> includes) {
+    // the order of defines is irrelevant, sorting makes equal sets equal lists
+    CxxCompilationUnitSettings settings = new CxxCompilationUnitSettings(0, new TreeSet<>(defines), includes);
+    CxxCompilationUnitSettings interned = internedSettings.get(settings);
+    if (interned == null) {
+      interned = settings.withId(++settingsCount);
+      internedSettings.put(interned, interned);
+    }
+    return interned;
+  }
+
+  /**
+   * Moves the per file entries of uniqueIncludes/uniqueDefines into shared,
+   * immutable settings, so memory doesn't grow with the number of
+   * translation units using the same options.
+   */
+  private synchronized void compactCompilationUnits() {
+    Set<String> units = new HashSet<>(uniqueDefines.keySet());
+    units.addAll(uniqueIncludes.keySet());
+    units.remove(OverallDefineKey);
+    units.remove(OverallIncludeKey);
+
+    for (String unit : units) {
+      List<String> includes = new ArrayList<>();
+      Set<String> defines = new HashSet<>();
+      CxxCompilationUnitSettings existing = compilationUnits.get(unit);
+      if (existing != null) {
+        includes.addAll(existing.getIncludeDirectories());
+        defines.addAll(existing.getDefines());
+      }
+      List<String> unitIncludes = uniqueIncludes.remove(unit);
+      if (unitIncludes != null) {
+        for (String include : unitIncludes) {
+          if (!includes.contains(include)) {
+            includes.add(include);
+          }
         }
       }
+      Set<String> unitDefines = uniqueDefines.remove(unit);
+      if (unitDefines != null) {
+        defines.addAll(unitDefines);
+      }
+      compilationUnits.put(unit, intern(defines, includes));
+    }
+    invalidateSettings();
+
+    // drop settings which are no longer referenced
+    Set<CxxCompilationUnitSettings> used = new HashSet<>(compilationUnits.values());
+    for (Iterator<CxxCompilationUnitSettings> it = internedSettings.keySet().iterator(); it.hasNext();) {
+      if (!used.contains(it.next())) {
+        it.remove();
+      }
     }
+  }
 
-    return allIncludes;
+  private synchronized void invalidateSettings() {
+    globalSettings = null;
+    effectiveSettings.clear();
   }
 
   public void setForceIncludeFiles(List<String> forceIncludeFiles) {
@@ -228,6 +377,119 @@ public class CxxConfiguration extends SquidConfiguration {
     return this.missingIncludeWarningsEnabled;
   }
 
+  /**
+   * Limits the number of headers kept in the parsed header cache shared by
+   * all preprocessors created with this configuration.
+   */
+  public void setHeaderCacheSize(int maxEntries) {
+    this.headerCache = new ParsedHeaderCache(maxEntries);
+  }
+
+  public ParsedHeaderCache getHeaderCache() {
+    return headerCache;
+  }
+
+  /**
+   * The file system index used to resolve includes, shared by all
+   * preprocessors created with this configuration.
+   */
+  public DirectoryIndex getDirectoryIndex() {
+    return directoryIndex;
+  }
+
+  /**
+   * The table of token values shared by all lexers created with this
+   * configuration.
+   */
+  public TokenValueInterner getTokenValueInterner() {
+    return tokenValueInterner;
+  }
+
+  /**
+   * Returns the lexer pool registered with the given key or null.
+   */
+  @CheckForNull
+  public LexerPool getLexerPool(String key) {
+    return lexerPools.get(key);
+  }
+
+  /**
+   * Registers a lexer pool with the given key, unless there is one already;
+   * returns the registered pool.
+   */
+  public LexerPool addLexerPool(String key, LexerPool pool) {
+    LexerPool existing = lexerPools.putIfAbsent(key, pool);
+    return existing == null ? pool : existing;
+  }
+
+  /**
+   * Drops the lexer pools and the token values interned by their lexers, to be
+   * called when the scan is over. Lexers still referenced by a thread keep
+   * working but intern into an empty table.
+   */
+  public void releaseLexers() {
+    lexerPools.clear();
+    tokenValueInterner.clear();
+  }
+
+  /**
+   * Enables/disables the precompiled header mode: the macro state after the
+   * leading includes of a translation unit is reused by all translation
+   * units starting with the same includes.
+   */
+  public void setPrecompiledHeadersEnabled(boolean enabled) {
+    this.precompiledHeaderCache = enabled ? new PrecompiledHeaderCache() : null;
+  }
+
+  public boolean getPrecompiledHeadersEnabled() {
+    return precompiledHeaderCache != null;
+  }
+
+  public PrecompiledHeaderCache getPrecompiledHeaderCache() {
+    return precompiledHeaderCache;
+  }
+
+  /**
+   * Limits the time and memory spent in preprocessing and parsing a single
+   * file, null for no limit. Files exceeding the budget get lexer metrics
+   * only.
+   */
+  public void setParseBudget(@Nullable ParseBudget parseBudget) {
+    this.parseBudget = parseBudget;
+  }
+
+  @CheckForNull
+  public ParseBudget getParseBudget() {
+    return parseBudget;
+  }
+
+  /**
+   * Allows the scanner to skip the parsing when none of the checks needs the
+   * syntax tree. The files then get the lexer metrics (lines, lines of code,
+   * comments) only, no functions, classes, statements, complexity or public
+   * API.
+   */
+  public void setLexerOnlyAnalysisEnabled(boolean enabled) {
+    this.lexerOnlyAnalysisEnabled = enabled;
+  }
+
+  public boolean getLexerOnlyAnalysisEnabled() {
+    return lexerOnlyAnalysisEnabled;
+  }
+
+  /**
+   * Number of groups the parallel safe checks are distributed to, each group
+   * walks the syntax tree of a file in its own task. 0 or 1 to run all checks
+   * in the scanner thread.
+   */
+  public void setParallelCheckGroups(int groups) {
+    this.parallelCheckGroups = groups;
+  }
+
+  public int getParallelCheckGroups() {
+    return parallelCheckGroups;
+  }
+
   public void setCompilationPropertiesWithBuildLog(List<File> reports,
     String fileFormat,
     String charsetName) {
@@ -243,6 +505,9 @@ public class CxxConfiguration extends SquidConfiguration {
         }
         if (fileFormat.equals("Visual C++")) {
           cxxVCppParser.parseVCppLog(buildLog, baseDir, charsetName);
+        } else if (fileFormat.equals("GCC")) {
+          new CxxGccBuildLogParser(uniqueIncludes, uniqueDefines)
+            .parseGccLog(buildLog, baseDir == null ? "." : baseDir, charsetName);
         }
 
         LOG.debug("Parse build log OK: includes: '{}' defines: '{}'", uniqueIncludes.size(), uniqueDefines.size());
@@ -250,5 +515,21 @@ public class CxxConfiguration extends SquidConfiguration {
         LOG.error("Compilation log not found: '{}'", buildLog.getAbsolutePath());
       }
     }
+    compactCompilationUnits();
+  }
+
+  /**
+   * Reads the defines and include directories of each translation unit from
+   * a JSON compilation database (compile_commands.json).
+   */
+  public void setCompilationPropertiesWithCompilationDatabase(File database) {
+    if (database.isFile()) {
+      LOG.debug("Parse compilation database '{}'", database.getAbsolutePath());
+      new CxxCompilationDatabase(uniqueIncludes, uniqueDefines).parse(database);
+      compactCompilationUnits();
+      LOG.debug("Parse compilation database OK: translation units: '{}'", compilationUnits.size());
+    } else {
+      LOG.error("Compilation database not found: '{}'", database.getAbsolutePath());
+    }
   }
 }
@@ -0,0 +1,314 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the include directories and defines of each compilation unit from
+ * the compiler calls in a GCC or Clang build log, as written by "make V=1",
+ * "ninja -v" or CMake's verbose makefiles. Response files (@file) are
+ * expanded.
+ *
+ * The log is read sequentially, only keeping track of the working directory
+ * of make. The candidate lines are parsed in parallel chunks, at most a few
+ * chunks per thread are in memory at any time. The results are merged in
+ * log order into the same per file maps as {@link CxxVCppBuildLogParser}
+ * uses.
+ */
+public class CxxGccBuildLogParser {
+
+  private static final org.slf4j.Logger LOG = LoggerFactory.getLogger("CxxGccBuildLogParser");
+
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final int CHUNK_LINES = 2048;
+  private static final int CHUNKS_PER_THREAD = 2;
+  private static final int MAX_RESPONSE_FILE_DEPTH = 8;
+
+  // gcc, g++, cc, c++, clang, clang++ with optional target prefix and version suffix
+  private static final Pattern COMPILER = Pattern.compile(
+    "(?:.*[/\\\\])?(?:[\\w.]+-)*(?:gcc|g\\+\\+|cc|c\\+\\+|clang|clang\\+\\+)(?:-[0-9.]+)?(?:\\.exe)?");
+  private static final Pattern SOURCE_FILE = Pattern.compile(".*\\.(?:c|cc|cp|cpp|cxx|c\\+\\+|C|CC|CPP|CXX)");
+  // make[1]: Entering directory '/path' or `/path'
+  private static final Pattern MAKE_DIRECTORY = Pattern.compile(
+    "make(?:\\[\\d+\\])?: (Entering|Leaving) directory [`'\"](.*)['\"]");
+  private static final Set<String> OPTIONS_WITH_FILE = new HashSet<>();
+
+  static {
+    String[] options = {"-o", "-MF", "-MT", "-MQ", "-include", "-imacros", "-x", "-Xclang", "-Xpreprocessor"};
+    for (String option : options) {
+      OPTIONS_WITH_FILE.add(option);
+    }
+  }
+
+  private final Map<String, List<String>> uniqueIncludes;
+  private final Map<String, Set<String>> uniqueDefines;
+  private final int threads;
+  private final int chunkLines;
+
+  public CxxGccBuildLogParser(Map<String, List<String>> uniqueIncludesIn,
+    Map<String, Set<String>> uniqueDefinesIn) {
+    this(uniqueIncludesIn, uniqueDefinesIn, Runtime.getRuntime().availableProcessors(), CHUNK_LINES);
+  }
+
+  CxxGccBuildLogParser(Map<String, List<String>> uniqueIncludesIn,
+    Map<String, Set<String>> uniqueDefinesIn, int threads, int chunkLines) {
+    uniqueIncludes = uniqueIncludesIn;
+    uniqueDefines = uniqueDefinesIn;
+    this.threads = Math.max(threads, 1);
+    this.chunkLines = chunkLines;
+  }
+
+  public void parseGccLog(File buildLog, String baseDir, String charsetName) {
+    Charset charset;
+    try {
+      charset = Charset.forName(charsetName);
+    } catch (IllegalArgumentException ex) {
+      LOG.error("Cannot parse build log, unsupported charset '{}'", charsetName);
+      return;
+    }
+    CharsetDecoder decoder = charset.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    Deque<Future<Chunk>> pending = new ArrayDeque<>();
+    try (FileChannel channel = FileChannel.open(buildLog.toPath(), StandardOpenOption.READ);
+      BufferedReader br = new BufferedReader(Channels.newReader(channel, decoder, BUFFER_SIZE), BUFFER_SIZE)) {
+      Deque<String> directories = new ArrayDeque<>();
+      directories.push(new File(baseDir).getAbsolutePath());
+      Matcher makeDirectory = MAKE_DIRECTORY.matcher("");
+      Chunk chunk = new Chunk(charset);
+      int commands = 0;
+
+      String line;
+      while ((line = br.readLine()) != null) {
+        if (line.contains(" directory ") && makeDirectory.reset(line).find()) {
+          if ("Entering".equals(makeDirectory.group(1))) {
+            directories.push(makeDirectory.group(2));
+          } else if (directories.size() > 1) {
+            directories.pop();
+          }
+        } else if (line.contains("-c") || line.contains("@")) {
+          // cheap prefilter, the "-c" may also come from a response file: the
+          // exact check is done after their expansion
+          chunk.add(line, directories.peek());
+          if (chunk.size() >= chunkLines) {
+            pending.add(executor.submit(chunk));
+            chunk = new Chunk(charset);
+            while (pending.size() > threads * CHUNKS_PER_THREAD) {
+              commands += merge(pending.poll().get());
+            }
+          }
+        }
+      }
+      pending.add(executor.submit(chunk));
+      while (!pending.isEmpty()) {
+        commands += merge(pending.poll().get());
+      }
+      LOG.debug("Parse build log '{}': {} compiler calls", buildLog.getName(), commands);
+    } catch (IOException | ExecutionException ex) {
+      LOG.error("Cannot parse build log", ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      LOG.error("Parsing the build log was interrupted", ex);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private int merge(Chunk chunk) {
+    for (Map.Entry<String, List<String>> entry : chunk.includes.entrySet()) {
+      List<String> includes = uniqueIncludes.get(entry.getKey());
+      if (includes == null) {
+        includes = new ArrayList<>();
+        uniqueIncludes.put(entry.getKey(), includes);
+      }
+      for (String include : entry.getValue()) {
+        if (!includes.contains(include)) {
+          includes.add(include);
+        }
+      }
+    }
+    for (Map.Entry<String, Set<String>> entry : chunk.defines.entrySet()) {
+      Set<String> defines = uniqueDefines.get(entry.getKey());
+      if (defines == null) {
+        defines = new HashSet<>();
+        uniqueDefines.put(entry.getKey(), defines);
+      }
+      defines.addAll(entry.getValue());
+    }
+    return chunk.commands;
+  }
+
+  /**
+   * Parses a line of a build log, run in the given directory. A line may
+   * contain several commands, e.g. "cd dir &amp;&amp; gcc ...", the working
+   * directory follows the cd commands.
+   */
+  static int parseLine(String line, String directory, CxxCompilationDatabase database, Charset charset) {
+    List<String> arguments = CxxCompilationDatabase.splitCommandLine(line, false);
+    String currentDirectory = directory;
+    int commands = 0;
+    int start = 0;
+    for (int i = 0; i <= arguments.size(); i++) {
+      if (i == arguments.size() || isCommandSeparator(arguments.get(i))) {
+        List<String> command = arguments.subList(start, i);
+        // "cd dir", possibly behind a progress like "[12/345]"
+        int cd = command.indexOf("cd");
+        if (cd >= 0 && cd == command.size() - 2) {
+          currentDirectory = resolve(currentDirectory, command.get(cd + 1));
+        } else if (parseCommand(command, currentDirectory, database, charset)) {
+          commands++;
+        }
+        start = i + 1;
+      }
+    }
+    return commands;
+  }
+
+  private static boolean isCommandSeparator(String argument) {
+    return "&&".equals(argument) || ";".equals(argument) || "||".equals(argument);
+  }
+
+  private static boolean parseCommand(List<String> command, String directory, CxxCompilationDatabase database,
+    Charset charset) {
+    // skip launchers like ccache and progress like "[12/345]" in front of the compiler
+    int compiler = 0;
+    while (compiler < command.size() && !COMPILER.matcher(command.get(compiler)).matches()) {
+      compiler++;
+    }
+    if (compiler == command.size()) {
+      return false;
+    }
+
+    List<String> arguments = new ArrayList<>();
+    arguments.add(command.get(compiler));
+    expandResponseFiles(command.subList(compiler + 1, command.size()), directory, charset, arguments, 0);
+    if (!arguments.contains("-c")) {
+      // linking, or only preprocessing
+      return false;
+    }
+
+    boolean found = false;
+    for (int i = 1; i < arguments.size(); i++) {
+      String argument = arguments.get(i);
+      if (!argument.startsWith("-") && !OPTIONS_WITH_FILE.contains(arguments.get(i - 1))
+        && SOURCE_FILE.matcher(argument).matches()) {
+        database.parseCommand(arguments, directory, argument);
+        found = true;
+      }
+    }
+    return found;
+  }
+
+  private static void expandResponseFiles(List<String> arguments, String directory, Charset charset,
+    List<String> result, int depth) {
+    for (String argument : arguments) {
+      if (argument.length() > 1 && argument.charAt(0) == '@' && depth < MAX_RESPONSE_FILE_DEPTH) {
+        Path responseFile = Paths.get(resolve(directory, argument.substring(1)));
+        try {
+          String content = new String(Files.readAllBytes(responseFile), charset);
+          expandResponseFiles(CxxCompilationDatabase.splitCommandLine(content, false), directory, charset, result,
+            depth + 1);
+          continue;
+        } catch (IOException | InvalidPathException ex) {
+          // like the compiler keep the argument as it is
+          LOG.debug("Cannot read response file '{}': {}", responseFile, ex.getMessage());
+        }
+      }
+      result.add(argument);
+    }
+  }
+
+  private static String resolve(String directory, String path) {
+    try {
+      return Paths.get(directory).resolve(path).normalize().toString();
+    } catch (InvalidPathException ex) {
+      return directory;
+    }
+  }
+
+  /**
+   * Candidate lines of the log with their working directory, parsed into
+   * maps of their own.
+   */
+  private static final class Chunk implements Callable<Chunk> {
+
+    private final Charset charset;
+    private final List<String> lines = new ArrayList<>();
+    private final List<String> directories = new ArrayList<>();
+    private final Map<String, List<String>> includes = new LinkedHashMap<>();
+    private final Map<String, Set<String>> defines = new LinkedHashMap<>();
+    private int commands;
+
+    Chunk(Charset charset) {
+      this.charset = charset;
+    }
+
+    void add(String line, String directory) {
+      lines.add(line);
+      directories.add(directory);
+    }
+
+    int size() {
+      return lines.size();
+    }
+
+    @Override
+    public Chunk call() {
+      CxxCompilationDatabase database = new CxxCompilationDatabase(includes, defines);
+      for (int i = 0; i < lines.size(); i++) {
+        commands += parseLine(lines.get(i), directories.get(i), database, charset);
+      }
+      lines.clear();
+      directories.clear();
+      return this;
+    }
+  }
+}
@@ -21,27 +21,51 @@ package org.sonar.cxx;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Reads the include directories and defines of each compilation unit from a
+ * Visual C++ (MSBuild) build log. The log is streamed line by line, each CL
+ * command line is split once into its options which are then looked up.
+ */
 public class CxxVCppBuildLogParser {
 
   private static final org.slf4j.Logger LOG = LoggerFactory.getLogger("CxxVCppBuildLogParser");
 
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+  private static final String BIN_DIRECTORY = "\\bin\\";
+  private static final String CL_EXE = "CL.exe ";
+
+  // toolset, build targets, compiler
+  private static final String[][] TOOLSETS = {
+    {"V100", "\\V100\\Microsoft.CppBuild.targets", "Microsoft Visual Studio 10.0\\VC\\bin\\CL.exe"},
+    {"V110", "\\V110\\Microsoft.CppBuild.targets", "Microsoft Visual Studio 11.0\\VC\\bin\\CL.exe"},
+    {"V120", "\\V120\\Microsoft.CppBuild.targets", "Microsoft Visual Studio 12.0\\VC\\bin\\CL.exe"},
+    {"V140", "\\V140\\Microsoft.CppBuild.targets", "Microsoft Visual Studio 14.0\\VC\\bin\\CL.exe"}
+  };
+
   private final HashMap<String, List<String>> uniqueIncludes;
   private final HashMap<String, Set<String>> uniqueDefines;
+  private final Map<String, String> canonicalIncludes = new HashMap<>();
 
   private String platformToolset = "V120";
   private String platform = "Win32";
@@ -72,24 +96,43 @@ public class CxxVCppBuildLogParser {
    * @param compilationFile
    */
   public void parseVCppLine(String line, String projectPath, String compilationFile) {
-    this.parseVCppCompilerCLLine(line, projectPath, compilationFile);
+    this.parseVCppCompilerCLLine(splitOptions(line, 0), projectPath, compilationFile);
   }
   
   public void parseVCppLog(File buildLog, String baseDir, String charsetName) {
-
+    CharsetDecoder decoder;
     try {
-      BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(buildLog), charsetName));
+      decoder = Charset.forName(charsetName).newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    } catch (IllegalArgumentException ex) {
+      LOG.error("Cannot parse build log, unsupported charset '{}'", charsetName);
+      return;
+    }
+
+    try (FileChannel channel = FileChannel.open(buildLog.toPath(), StandardOpenOption.READ);
+      BufferedReader br = new BufferedReader(Channels.newReader(channel, decoder, BUFFER_SIZE), BUFFER_SIZE)) {
       String line;
       LOG.debug("build log parser baseDir='{}'", baseDir);
       Path currentProjectPath = Paths.get(baseDir);
 
       List<String> overallIncludes = uniqueIncludes.get(CxxConfiguration.OverallIncludeKey);
 
+      long size = channel.size();
+      long nextProgress = System.nanoTime() + PROGRESS_INTERVAL;
+      long lines = 0;
+
       while ((line = br.readLine()) != null) {
-        if (line.trim().startsWith("INCLUDE=")) { // handle environment includes 
-          String[] includes = line.split("=")[1].split(";");
+        if ((++lines & 0xFFF) == 0 && System.nanoTime() >= nextProgress) {
+          LOG.info("Parse build log '{}': {}% done", buildLog.getName(), channel.position() * 100 / Math.max(size, 1));
+          nextProgress = System.nanoTime() + PROGRESS_INTERVAL;
+        }
+
+        int first = firstNonWhitespace(line);
+        if (line.startsWith("INCLUDE=", first)) { // handle environment includes
+          String[] includes = line.substring(first + "INCLUDE=".length()).trim().split(";");
           for (String include : includes) {
-            if (!overallIncludes.contains(include)) {
+            if (!include.isEmpty() && !overallIncludes.contains(include)) {
               overallIncludes.add(include);
             }
           }
@@ -108,14 +151,13 @@ public class CxxVCppBuildLogParser {
           }
         }
 
-        if (line.contains("\\V100\\Microsoft.CppBuild.targets") || line.contains("Microsoft Visual Studio 10.0\\VC\\bin\\CL.exe")) {
-          platformToolset = "V100";
-        } else if (line.contains("\\V110\\Microsoft.CppBuild.targets") || line.contains("Microsoft Visual Studio 11.0\\VC\\bin\\CL.exe")) {
-          platformToolset = "V110";
-        } else if (line.contains("\\V120\\Microsoft.CppBuild.targets") || line.contains("Microsoft Visual Studio 12.0\\VC\\bin\\CL.exe")) {
-          platformToolset = "V120";
-        } else if (line.contains("\\V140\\Microsoft.CppBuild.targets") || line.contains("Microsoft Visual Studio 14.0\\VC\\bin\\CL.exe")) {
-          platformToolset = "V140";
+        if (line.contains("Microsoft.CppBuild.targets") || line.contains("\\VC\\bin\\CL.exe")) {
+          for (String[] toolset : TOOLSETS) {
+            if (line.contains(toolset[1]) || line.contains(toolset[2])) {
+              platformToolset = toolset[0];
+              break;
+            }
+          }
         }
 
           // 1>Task "Message"
@@ -126,10 +168,14 @@ public class CxxVCppBuildLogParser {
         if (line.trim().endsWith("Platform=x64")) {
           platform = "x64";
         }
-        // match "bin\CL.exe", "bin\amd64\CL.exe", "bin\x86_amd64\CL.exe"
-        if (line.matches("^.*\\\\bin\\\\.*CL.exe\\x20.*$")) {
-          String[] allElems = line.split("\\s+");
-          String data = allElems[allElems.length - 1];
+
+        int optionsStart = findCompilerOptions(line);
+        if (optionsStart >= 0) {
+          List<String> options = splitOptions(line, optionsStart);
+          if (options.isEmpty()) {
+            continue;
+          }
+          String data = options.get(options.size() - 1);
           try {
             String fileElement = Paths.get(currentProjectPath.toAbsolutePath().toString(), data).toAbsolutePath().toString();
 
@@ -141,7 +187,7 @@ public class CxxVCppBuildLogParser {
               uniqueIncludes.put(fileElement, new ArrayList<String>());
             }
 
-            parseVCppCompilerCLLine(line, currentProjectPath.toAbsolutePath().toString(), fileElement);
+            parseVCppCompilerCLLine(options, currentProjectPath.toAbsolutePath().toString(), fileElement);
           } catch (InvalidPathException ex) {
             LOG.warn("Cannot extract information from current element: " + data + " : " + ex.getMessage());
           } catch (NullPointerException ex) {
@@ -150,63 +196,147 @@ public class CxxVCppBuildLogParser {
           }
         }
       }
-      br.close();
+      LOG.debug("Parse build log '{}': {} lines", buildLog.getName(), lines);
     } catch (IOException ex) {
       LOG.error("Cannot parse build log", ex);
     }
   }
 
-  private void parseVCppCompilerCLLine(String line, String projectPath, String fileElement) {
-
-    for (String includeElem : getMatches(Pattern.compile("/I\"(.*?)\""), line)) {
-      ParseInclude(includeElem, projectPath, fileElement);
+  /**
+   * Returns the index of the options in a line calling the compiler, like
+   * "bin\CL.exe", "bin\amd64\CL.exe" or "bin\x86_amd64\CL.exe", -1 if
+   * the line isn't one.
+   */
+  private static int findCompilerOptions(String line) {
+    int bin = line.indexOf(BIN_DIRECTORY);
+    if (bin < 0) {
+      return -1;
     }
+    int compiler = line.indexOf(CL_EXE, bin + BIN_DIRECTORY.length());
+    return compiler < 0 ? -1 : compiler + CL_EXE.length();
+  }
 
-    for (String includeElem : getMatches(Pattern.compile("/I([^\\s\"]+) "), line)) {
-      ParseInclude(includeElem, projectPath, fileElement);
+  private static int firstNonWhitespace(String line) {
+    int i = 0;
+    while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+      i++;
     }
+    return i;
+  }
 
-    for (String macroElem : getMatches(Pattern.compile("[/-]D\\s([^\\s]+)"), line)) {
-      AddMacro(macroElem, fileElement);
+  /**
+   * Splits a CL command line into its arguments, starting at the given
+   * index. Double quotes group arguments containing spaces and are removed.
+   * Backslashes are kept as they are, paths like /I"C:\dir\" are common
+   * in build logs.
+   */
+  static List<String> splitOptions(String line, int start) {
+    List<String> options = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    boolean quoted = false;
+    boolean inOption = false;
+    for (int i = start; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+        inOption = true;
+      } else if (!quoted && Character.isWhitespace(c)) {
+        if (inOption) {
+          options.add(current.toString());
+          current.setLength(0);
+          inOption = false;
+        }
+      } else {
+        current.append(c);
+        inOption = true;
+      }
     }
+    if (inOption) {
+      options.add(current.toString());
+    }
+    return options;
+  }
 
-    for (String macroElem : getMatches(Pattern.compile("[/-]D([^\\s]+)"), line)) {
-      AddMacro(macroElem, fileElement);
+  private void parseVCppCompilerCLLine(List<String> arguments, String projectPath, String fileElement) {
+    // all options of the line, '-' prefixed ones normalized to '/'
+    Set<String> options = new HashSet<>();
+    Set<String> macros = new HashSet<>();
+
+    for (int i = 0; i < arguments.size(); i++) {
+      String argument = arguments.get(i);
+      if (argument.length() < 2 || (argument.charAt(0) != '/' && argument.charAt(0) != '-')) {
+        continue;
+      }
+      char option = argument.charAt(1);
+      if (option == 'I' || option == 'D') {
+        // value either attached (/Idir, /DNAME) or in the next argument (/I dir, /D NAME)
+        String value = argument.substring(2);
+        if (value.isEmpty() && i + 1 < arguments.size()) {
+          value = arguments.get(++i);
+        }
+        if (value.isEmpty()) {
+          continue;
+        }
+        if (option == 'I') {
+          ParseInclude(value, projectPath, fileElement);
+        } else {
+          AddMacro(value, fileElement);
+          int assign = value.indexOf('=');
+          macros.add(assign < 0 ? value : value.substring(0, assign));
+        }
+      } else {
+        options.add(argument.charAt(0) == '/' ? argument : "/" + argument.substring(1));
+      }
     }
 
     // https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.100).aspx
     // https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.110).aspx
     // https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.120).aspx 
     // https://msdn.microsoft.com/en-us/library/vstudio/b0084kay(v=vs.140).aspx
-    ParseCommonCompilerOptions(line, fileElement);
+    ParseCommonCompilerOptions(options, macros, fileElement);
 
     if (platformToolset.equals("V100")) {
-      ParseV100CompilerOptions(line, fileElement);
+      ParseV100CompilerOptions(options, fileElement);
     } else if (platformToolset.equals("V110")) {
-      ParseV110CompilerOptions(line, fileElement);
+      ParseV110CompilerOptions(options, fileElement);
     } else if (platformToolset.equals("V120")) {
-      ParseV120CompilerOptions(line, fileElement);
+      ParseV120CompilerOptions(options, fileElement);
     } else if (platformToolset.equals("V140")) {
-      ParseV140CompilerOptions(line, fileElement);
+      ParseV140CompilerOptions(options, fileElement);
     }
   }
 
-  private List<String> getMatches(Pattern pattern, String text) {
-    List<String> matches = new ArrayList<>();
-    Matcher m = pattern.matcher(text);
-    while (m.find()) {
-      matches.add(m.group(1));
+  private static boolean hasOptionStartingWith(Set<String> options, String prefix) {
+    for (String option : options) {
+      if (option.startsWith(prefix)) {
+        return true;
+      }
     }
-    return matches;
+    return false;
   }
 
   private void ParseInclude(String element, String project, String fileElement) {
 
     List<String> includesPerUnit = uniqueIncludes.get(fileElement);
 
+    // the same include directories are repeated for most compilation units
+    String key = project + '|' + element;
+    String includePath = canonicalIncludes.get(key);
+    if (includePath == null) {
+      includePath = resolveInclude(element, project);
+      if (includePath == null) {
+        return;
+      }
+      canonicalIncludes.put(key, includePath);
+    }
+    if (!includesPerUnit.contains(includePath)) {
+      includesPerUnit.add(includePath);
+    }
+  }
+
+  private static String resolveInclude(String element, String project) {
     try {
       File includeRoot = new File(element.replace("\"", ""));
-      String includePath;
       Path p = Paths.get(project);
       if (!includeRoot.isAbsolute()) {
         // handle path without drive information but represent absolute path
@@ -217,13 +347,11 @@ public class CxxVCppBuildLogParser {
         includeRoot = new File(project, includeRoot.getPath());
         }
       } 
-        includePath = includeRoot.getCanonicalPath();
-      if (!includesPerUnit.contains(includePath)) {
-        includesPerUnit.add(includePath);
-      }
+      return includeRoot.getCanonicalPath();
     } catch (java.io.IOException io) {
       LOG.error("Cannot parse include path using element '{}' : '{}'", element,
         io.getMessage());
+      return null;
     }
   }
 
@@ -237,7 +365,7 @@ public class CxxVCppBuildLogParser {
     }
   }
 
-  private void ParseCommonCompilerOptions(String line, String fileElement) {
+  private void ParseCommonCompilerOptions(Set<String> options, Set<String> macros, String fileElement) {
     // Always Defined //
     //_INTEGRAL_MAX_BITS Reports the maximum size (in bits) for an integral type.    
     AddMacro("_INTEGRAL_MAX_BITS=64", fileElement);
@@ -261,16 +389,16 @@ public class CxxVCppBuildLogParser {
     //    /G6 _M_IX86 = 600  Pentium Pro, Pentium II, and Pentium III 
     //    /G3 _M_IX86 = 300  80386
     //    /G4 _M_IX86 = 400  80486    
-    if (line.contains("/GB ") || line.contains("/G6")) {
+    if (options.contains("/GB") || hasOptionStartingWith(options, "/G6")) {
       AddMacro("_M_IX86=600", fileElement);
     }
-    if (line.contains("/G5")) {
+    if (hasOptionStartingWith(options, "/G5")) {
       AddMacro("_M_IX86=500", fileElement);
     }
-    if (line.contains("/G3")) {
+    if (hasOptionStartingWith(options, "/G3")) {
       AddMacro("_M_IX86=300", fileElement);
     }
-    if (line.contains("/G4")) {
+    if (hasOptionStartingWith(options, "/G4")) {
       AddMacro("_M_IX86=400", fileElement);
     }
     //_M_IX86_FP Expands to a value indicating which /arch compiler option was used:
@@ -279,120 +407,120 @@ public class CxxVCppBuildLogParser {
     //    2 if /arch:SSE2 was used.
     // Expands to an integer literal value indicating which /arch compiler option was used. The default value is '2' if /arch was not specified
     AddMacro("_M_IX86_FP=2", fileElement);
-    if (line.contains("/arch:IA32")) {
+    if (hasOptionStartingWith(options, "/arch:IA32")) {
       AddMacro("_M_IX86_FP=0", fileElement);
     }
-    if (line.contains("/arch:SSE")) {
+    if (hasOptionStartingWith(options, "/arch:SSE")) {
       AddMacro("_M_IX86_FP=1", fileElement);
     }
-    if (line.contains("/arch:AVX")) {
+    if (hasOptionStartingWith(options, "/arch:AVX")) {
       AddMacro("__AVX__", fileElement);
     }
-    if (line.contains("/arch:AVX2")) {
+    if (hasOptionStartingWith(options, "/arch:AVX2")) {
       AddMacro("__AVX2__", fileElement);
     }
     // WinCE and WinRT
     // see https://en.wikipedia.org/wiki/ARM_architecture
-    if (line.contains("/arch:IA32 ")
-      || line.contains("/arch:SSE ")
-      || line.contains("/arch:SSE2 ")
-      || line.contains("/arch:AVX2 ")
-      || line.contains("/arch:AVX ")
-      || line.contains("/arch:VFPv4 ")
-      || line.contains("/arch:ARMv7VE ")) {
+    if (options.contains("/arch:IA32")
+      || options.contains("/arch:SSE")
+      || options.contains("/arch:SSE2")
+      || options.contains("/arch:AVX2")
+      || options.contains("/arch:AVX")
+      || options.contains("/arch:VFPv4")
+      || options.contains("/arch:ARMv7VE")) {
       // In the range 30-39 if no /arch ARM option was specified, indicating the default architecture for ARM was used (VFPv3).
       // In the range 40-49 if /arch:VFPv4 was used.
       AddMacro("_M_ARM_FP", fileElement);
     }
     //__STDC__ Indicates full conformance with the ANSI C standard. Defined as the integer constant 1 only if the /Za compiler option is given and you are not compiling C++ code; otherwise is undefined.
-    if (line.contains("/Za ")) {
+    if (options.contains("/Za")) {
       AddMacro("__STDC__=1", fileElement);
     }
 
     //_CHAR_UNSIGNED Default char type is unsigned. Defined when /J is specified.
-    if (line.contains("/J ")) {
+    if (options.contains("/J")) {
       AddMacro("_CHAR_UNSIGNED", fileElement);
     }
 
     //_CPPRTTI Defined for code compiled with /GR (Enable Run-Time Type Information).
-    if (line.contains("/GR ")) {
+    if (options.contains("/GR")) {
       AddMacro("_CPPRTTI", fileElement);
     }
 
     //_MANAGED Defined to be 1 when /clr is specified.
-    if (line.contains("/clr ")) {
+    if (options.contains("/clr")) {
       AddMacro("_MANAGED", fileElement);
     }
     //_M_CEE_PURE Defined for a compilation that uses /clr:pure.
-    if (line.contains("/clr:pure ")) {
+    if (options.contains("/clr:pure")) {
       AddMacro("_M_CEE_PURE", fileElement);
     }
     //_M_CEE_SAFE Defined for a compilation that uses /clr:safe.
-    if (line.contains("/clr:safe ")) {
+    if (options.contains("/clr:safe")) {
       AddMacro("_M_CEE_SAFE", fileElement);
     }
     //__CLR_VER Defines the version of the common language runtime used when the application was compiled. The value returned will be in the following format:    
     //__cplusplus_cli Defined when you compile with /clr, /clr:pure, or /clr:safe. Value of __cplusplus_cli is 200406. __cplusplus_cli is in effect throughout the translation unit.    
     //_M_CEE Defined for a compilation that uses any form of /clr (/clr:oldSyntax, /clr:safe, for example).    
-    if (line.contains("/clr")) {
+    if (hasOptionStartingWith(options, "/clr")) {
 
       AddMacro("_M_CEE", fileElement);
       AddMacro("__cplusplus_cli=200406", fileElement);
       AddMacro("__CLR_VER", fileElement);
-      if (line.contains("/clr:pure ")) {
+      if (options.contains("/clr:pure")) {
         AddMacro("_M_CEE_PURE", fileElement);
       }
-      if (line.contains("/clr:safe ")) {
+      if (options.contains("/clr:safe")) {
         AddMacro("_M_CEE_SAFE", fileElement);
       }
     }
 
     //_MSC_EXTENSIONS This macro is defined when you compile with the /Ze compiler option (the default). Its value, when defined, is 1.
-    if (line.contains("/Ze ")) {
+    if (options.contains("/Ze")) {
       AddMacro("_MSC_EXTENSIONS", fileElement);
     }
 
     //__MSVC_RUNTIME_CHECKS Defined when one of the /RTC compiler options is specified.
-    if (line.contains("/RTC ")) {
+    if (options.contains("/RTC")) {
       AddMacro("__MSVC_RUNTIME_CHECKS", fileElement);
     }
 
     //_DEBUG Defined when you compile with /LDd, /MDd, and /MTd.
-    if (line.contains("/LDd ")) {
+    if (options.contains("/LDd")) {
       AddMacro("_DEBUG", fileElement);
     }
     //_DLL Defined when /MD or /MDd (Multithreaded DLL) is specified. 
-    if (line.contains("/MD ") || line.contains("/MDd ")) {
+    if (options.contains("/MD") || options.contains("/MDd")) {
       AddMacro("_DLL", fileElement);
     }
     //_MT Defined when /MD (Multithreaded DLL) or /MT (Multithreaded) is specified.
-    if (line.contains("/MD ") || line.contains("/MT ")) {
+    if (options.contains("/MD") || options.contains("/MT")) {
       AddMacro("_MT", fileElement);
     }
     //_MT Defined when /MDd (Multithreaded DLL) or /MTd (Multithreaded) is specified.
-    if (line.contains("/MDd ") || line.contains("/MTd ")) {
+    if (options.contains("/MDd") || options.contains("/MTd")) {
       AddMacro("_MT", fileElement);
       AddMacro("_DEBUG", fileElement);
     }
     //_OPENMP Defined when compiling with /openmp, returns an integer representing the date of the OpenMP specification implemented by Visual C++.
-    if (line.contains("/openmp ")) {
+    if (options.contains("/openmp")) {
       AddMacro("_OPENMP=200203", fileElement);
     }
 
     //_VC_NODEFAULTLIB Defined when /Zl is used; see /Zl (Omit Default Library Name) for more information.
-    if (line.contains("/Zl ")) {
+    if (options.contains("/Zl")) {
       AddMacro("_VC_NODEFAULTLIB", fileElement);
     }
 
     //_NATIVE_WCHAR_T_DEFINED Defined when /Zc:wchar_t is used.    
     //_WCHAR_T_DEFINED Defined when /Zc:wchar_t is used or if wchar_t is defined in a system header file included in your project.
-    if (line.contains("/Zc:wchar_t ")) {
+    if (options.contains("/Zc:wchar_t")) {
       AddMacro("_WCHAR_T_DEFINED=1", fileElement);
       AddMacro("_NATIVE_WCHAR_T_DEFINED=1", fileElement);
     }
 
     //_Wp64 Defined when specifying /Wp64. Deprecated in Visual Studio 2010 and Visual Studio 2012, and not supported starting in Visual Studio 2013
-    if (line.contains("/Wp64 ")) {
+    if (options.contains("/Wp64")) {
       AddMacro("_Wp64", fileElement);
     }
 
@@ -402,7 +530,7 @@ public class CxxVCppBuildLogParser {
     //_M_X64 Defined for x64 processors.
     //_M_IX86 Defined for x86 processors. See the Values for _M_IX86 table below for more information. This is not defined for x64 processors.
     //_M_IA64 Defined for Itanium Processor Family 64-bit processors.
-    if (platform.equals("x64") || line.contains("/D WIN64")) {
+    if (platform.equals("x64") || macros.contains("WIN64")) {
       // Defined for compilations that target x64 processors.
       AddMacro("_WIN32", fileElement);
       // This is not defined for x86 processors.
@@ -410,7 +538,7 @@ public class CxxVCppBuildLogParser {
       AddMacro("_M_X64", fileElement);
       AddMacro("_M_IA64", fileElement);
       AddMacro("_M_AMD64", fileElement);
-    } else if (platform.equals("Win32") || line.contains("/D WIN32")) {
+    } else if (platform.equals("Win32") || macros.contains("WIN32")) {
       // Defined for compilations that target x86 processors. 
       AddMacro("_WIN32", fileElement);
       //This is not defined for x64 processors.
@@ -418,19 +546,19 @@ public class CxxVCppBuildLogParser {
     }
     // VC++ 17.0, 18.0, 19.0
     // _CPPUNWIND Defined for code compiled by using one of the /EH (Exception Handling Model) flags.
-    if (line.contains("/EHs ")
-      || line.contains("/EHa ")
-      || line.contains("/EHsc ")
-      || line.contains("/EHac ")) {
+    if (options.contains("/EHs")
+      || options.contains("/EHa")
+      || options.contains("/EHsc")
+      || options.contains("/EHac")) {
       AddMacro("_CPPUNWIND", fileElement);
     }
   }
 
-  private void ParseV100CompilerOptions(String line, String fileElement) {
+  private void ParseV100CompilerOptions(Set<String> options, String fileElement) {
     // VC++ V16.0 - VS2010 (V10.0)
     AddMacro("__cplusplus=199711L", fileElement);
     // __cplusplus_winrt Defined when you use the /ZW option to compile. The value of __cplusplus_winrt is 201009.
-    if (line.contains("/ZW ")) {
+    if (options.contains("/ZW")) {
       AddMacro("__cplusplus_winrt=201009", fileElement);
     }
     AddMacro("_MSC_VER=1600", fileElement);
@@ -440,16 +568,16 @@ public class CxxVCppBuildLogParser {
     AddMacro("_MFC_VER=0x0A00", fileElement);
     AddMacro("_ATL_VER=0x0A00", fileElement);
     // VC++ 16.0
-    if (line.contains("/GX ")) {
+    if (options.contains("/GX")) {
       AddMacro("_CPPUNWIND", fileElement);
     }
   }
 
-  private void ParseV110CompilerOptions(String line, String fileElement) {
+  private void ParseV110CompilerOptions(Set<String> options, String fileElement) {
     // VC++ V17.0 - VS2012 (V11.0)
     AddMacro("__cplusplus=199711L", fileElement);
     // __cplusplus_winrt Defined when you use the /ZW option to compile. The value of __cplusplus_winrt is 201009.
-    if (line.contains("/ZW ")) {
+    if (options.contains("/ZW")) {
       AddMacro("__cplusplus_winrt=201009", fileElement);
     }
     AddMacro("_MSC_VER=1700", fileElement);
@@ -460,11 +588,11 @@ public class CxxVCppBuildLogParser {
     AddMacro("_ATL_VER=0x0B00", fileElement);
   }
 
-  private void ParseV120CompilerOptions(String line, String fileElement) {
+  private void ParseV120CompilerOptions(Set<String> options, String fileElement) {
     // VC++ V18.0 - VS2013 (V12.0)
     AddMacro("__cplusplus=199711L", fileElement);
     // __cplusplus_winrt Defined when you use the /ZW option to compile. The value of __cplusplus_winrt is 201009.
-    if (line.contains("/ZW ")) {
+    if (options.contains("/ZW")) {
       AddMacro("__cplusplus_winrt=201009", fileElement);
     }
     AddMacro("_MSC_VER=1800", fileElement);
@@ -475,11 +603,11 @@ public class CxxVCppBuildLogParser {
     AddMacro("_ATL_VER=0x0C00", fileElement);
   }
 
-  private void ParseV140CompilerOptions(String line, String fileElement) {
+  private void ParseV140CompilerOptions(Set<String> options, String fileElement) {
     // VC++ V19.0 - VS2015 (V14.0)
     AddMacro("__cplusplus=199711L", fileElement);
     // __cplusplus_winrt Defined when you use the /ZW option to compile. The value of __cplusplus_winrt is 201009.
-    if (line.contains("/ZW ")) {
+    if (options.contains("/ZW")) {
       AddMacro("__cplusplus_winrt=201009", fileElement);
     }
     AddMacro("_MSC_VER=1900", fileElement);
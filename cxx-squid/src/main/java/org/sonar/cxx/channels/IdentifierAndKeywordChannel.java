@@ -0,0 +1,81 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.channels;
+
+import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.sonar.cxx.lexer.TokenValueInterner;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.Lexer;
+
+/**
+ * Case sensitive identifier and keyword channel. Unlike the SSLR channel the
+ * token values are interned with the {@link TokenValueInterner} of the
+ * analysis, so repeated identifiers and keywords share one String and don't
+ * allocate a new one.
+ */
+public class IdentifierAndKeywordChannel extends Channel<Lexer> {
+
+  private final Map<String, TokenType> keywordsMap = new HashMap<>();
+  private final StringBuilder tmpBuilder = new StringBuilder();
+  private final Matcher matcher;
+  private final Token.Builder tokenBuilder = Token.builder();
+  private final TokenValueInterner tokenValues;
+
+  public IdentifierAndKeywordChannel(TokenValueInterner tokenValues, String regexp, TokenType[]... keywordSets) {
+    this.tokenValues = tokenValues;
+    for (TokenType[] keywords : keywordSets) {
+      for (TokenType keyword : keywords) {
+        keywordsMap.put(keyword.getValue(), keyword);
+      }
+    }
+    matcher = Pattern.compile(regexp).matcher("");
+  }
+
+  @Override
+  public boolean consume(CodeReader code, Lexer lexer) {
+    if (code.popTo(matcher, tmpBuilder) > 0) {
+      String word = tokenValues.intern(tmpBuilder);
+      tmpBuilder.setLength(0);
+
+      TokenType keywordType = keywordsMap.get(word);
+      Token token = tokenBuilder
+        .setType(keywordType == null ? IDENTIFIER : keywordType)
+        .setValueAndOriginalValue(word)
+        .setURI(lexer.getURI())
+        .setLine(code.getPreviousCursor().getLine())
+        .setColumn(code.getPreviousCursor().getColumn())
+        .build();
+
+      lexer.addToken(token);
+      return true;
+    }
+    return false;
+  }
+}
@@ -31,13 +31,13 @@ import org.sonar.cxx.api.CxxKeyword;
 import org.sonar.cxx.api.CxxPunctuator;
 import org.sonar.cxx.api.CxxTokenType;
 import org.sonar.cxx.channels.CharacterLiteralsChannel;
+import org.sonar.cxx.channels.IdentifierAndKeywordChannel;
 import org.sonar.cxx.channels.PreprocessorChannel;
 import org.sonar.cxx.channels.StringLiteralsChannel;
 
 import com.sonar.sslr.api.Preprocessor; //@todo: deprecated, see http://javadocs.sonarsource.org/4.5.2/apidocs/deprecated-list.html
 import com.sonar.sslr.impl.Lexer;
 import com.sonar.sslr.impl.channel.BlackHoleChannel;
-import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
 import com.sonar.sslr.impl.channel.PunctuatorChannel;
 import com.sonar.sslr.impl.channel.UnknownCharacterChannel;
 
@@ -46,6 +46,25 @@ public final class CxxLexer {
   private CxxLexer() {
   }
 
+  /**
+   * Returns the pool of lexers (without preprocessors) of the given
+   * configuration. The pool is kept by the configuration: its lexers intern
+   * their token values with the table of the configuration.
+   */
+  public static LexerPool getPool(final CxxConfiguration conf) {
+    String key = "CxxLexer:" + conf.getCharset().name();
+    LexerPool pool = conf.getLexerPool(key);
+    if (pool == null) {
+      pool = conf.addLexerPool(key, new LexerPool() {
+        @Override
+        protected Lexer createLexer() {
+          return create(conf);
+        }
+      });
+    }
+    return pool;
+  }
+
   public static Lexer create(Preprocessor... preprocessors) { //@todo deprecated Preprocessor
     return create(new CxxConfiguration(), preprocessors);
   }
@@ -86,7 +105,8 @@ public final class CxxLexer {
       .withChannel(regexp(CxxTokenType.NUMBER, CxxKeyword.NULLPTR.getValue()))
       // C++ Standard, Section 2.12 "Keywords"
       // C++ Standard, Section 2.11 "Identifiers"
-      .withChannel(new IdentifierAndKeywordChannel(and("[a-zA-Z_]", o2n("\\w")), true, CxxKeyword.values()))
+      .withChannel(new IdentifierAndKeywordChannel(conf.getTokenValueInterner(), and("[a-zA-Z_]", o2n("\\w")),
+        CxxKeyword.values()))
       // C++ Standard, Section 2.13 "Operators and punctuators"
       .withChannel(new PunctuatorChannel(CxxPunctuator.values()))
       .withChannel(new UnknownCharacterChannel());
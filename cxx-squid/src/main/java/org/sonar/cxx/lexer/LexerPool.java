@@ -0,0 +1,51 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.lexer;
+
+import com.sonar.sslr.impl.Lexer;
+
+/**
+ * Hands out reusable lexers without preprocessors. Building a lexer compiles
+ * all its channels, so every thread builds its lexer once and reuses it for
+ * all subsequent calls. Pools are kept by the configuration of the analysis
+ * and released with {@link org.sonar.cxx.CxxConfiguration#releaseLexers()}.
+ *
+ * A lexer returned by {@link #getLexer()} must not be used again before the
+ * previous call to lex has returned, and the returned token lists have to be
+ * consumed (or copied) before the next call.
+ */
+public abstract class LexerPool {
+
+  private final ThreadLocal<Lexer> lexers = new ThreadLocal<Lexer>() {
+    @Override
+    protected Lexer initialValue() {
+      return createLexer();
+    }
+  };
+
+  protected abstract Lexer createLexer();
+
+  /**
+   * Returns the lexer of the calling thread
+   */
+  public Lexer getLexer() {
+    return lexers.get();
+  }
+}
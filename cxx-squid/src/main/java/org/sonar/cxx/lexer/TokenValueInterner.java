@@ -0,0 +1,135 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.lexer;
+
+/**
+ * Table of the token values of one analysis. The same identifiers and
+ * keywords ('std', 'const', 'size_t', ...) occur millions of times in a
+ * project, interning them makes all their tokens share one String instance.
+ * The table is owned by the {@link org.sonar.cxx.CxxConfiguration} of the
+ * analysis and dropped with it, see
+ * {@link org.sonar.cxx.CxxConfiguration#releaseLexers()}.
+ *
+ * Values are looked up by their characters, so interning a value read into
+ * a buffer doesn't allocate a String unless it is seen for the first time.
+ * The table is split into independently locked segments to keep contention
+ * low when files are analyzed in parallel, and stops growing at a fixed
+ * size: values seen after that are returned as they are.
+ */
+public final class TokenValueInterner {
+
+  private static final int SEGMENT_BITS = 5;
+  private static final int MAX_SEGMENT_SIZE = 1 << 15;
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+  public TokenValueInterner() {
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  /**
+   * Returns the canonical String with the given characters
+   */
+  public String intern(CharSequence value) {
+    int hash = 0;
+    for (int i = 0; i < value.length(); i++) {
+      hash = 31 * hash + value.charAt(i);
+    }
+    int spread = hash ^ (hash >>> 16);
+    return segments[spread & (segments.length - 1)].intern(value, hash, spread >>> SEGMENT_BITS);
+  }
+
+  /**
+   * Returns the number of interned values
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * Removes all interned values
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * Open addressing hash table of Strings
+   */
+  private static final class Segment {
+
+    private String[] table = new String[64];
+    private int size;
+
+    synchronized String intern(CharSequence value, int hash, int index) {
+      int mask = table.length - 1;
+      int i = index & mask;
+      String existing;
+      while ((existing = table[i]) != null) {
+        if (existing.hashCode() == hash && existing.contentEquals(value)) {
+          return existing;
+        }
+        i = (i + 1) & mask;
+      }
+
+      String result = value.toString();
+      if (size < MAX_SEGMENT_SIZE) {
+        table[i] = result;
+        size++;
+        if (2 * size > table.length) {
+          rehash();
+        }
+      }
+      return result;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    synchronized void clear() {
+      table = new String[64];
+      size = 0;
+    }
+
+    private void rehash() {
+      String[] old = table;
+      table = new String[old.length * 2];
+      int mask = table.length - 1;
+      for (String value : old) {
+        if (value != null) {
+          int hash = value.hashCode();
+          int i = ((hash ^ (hash >>> 16)) >>> SEGMENT_BITS) & mask;
+          while (table[i] != null) {
+            i = (i + 1) & mask;
+          }
+          table[i] = value;
+        }
+      }
+    }
+  }
+}
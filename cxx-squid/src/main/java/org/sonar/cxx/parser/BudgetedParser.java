@@ -0,0 +1,115 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.parser;
+
+import java.io.File;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.cxx.lexer.LexerPool;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Parser;
+
+/**
+ * Parser enforcing a {@link ParseBudget} per file. A file exceeding the budget
+ * is registered as skipped and lexed again without preprocessing; the result
+ * is a flat tree of its tokens, which is enough for the lexer based metrics
+ * (lines, lines of code, comments).
+ */
+public class BudgetedParser extends Parser<Grammar> {
+
+  private static final Logger LOG = LoggerFactory.getLogger("BudgetedParser");
+
+  /**
+   * Root of the tree created for a skipped file, no check subscribes to it.
+   */
+  public enum SkippedFileType implements AstNodeType {
+    SKIPPED_FILE
+  }
+
+  private final Parser<Grammar> parser;
+  private final ParseBudget budget;
+  private final ParseBudget.Tracker tracker;
+  private final LexerPool plainLexers;
+
+  /**
+   * @param parser parser for the files, its grammar and preprocessor must
+   * check the tracker, see {@link CxxGrammarImpl#create(org.sonar.cxx.CxxConfiguration, ParseBudget.Tracker)}
+   * @param budget budget collecting the skipped files
+   * @param tracker tracker used by the grammar and the preprocessor
+   * @param plainLexers lexers without preprocessing used for skipped files
+   */
+  public BudgetedParser(Parser<Grammar> parser, ParseBudget budget, ParseBudget.Tracker tracker, LexerPool plainLexers) {
+    super(parser.getGrammar());
+    this.parser = parser;
+    this.budget = budget;
+    this.tracker = tracker;
+    this.plainLexers = plainLexers;
+  }
+
+  @Override
+  public AstNode parse(File file) {
+    tracker.start();
+    try {
+      return parser.parse(file);
+    } catch (RuntimeException e) {
+      ParseBudgetExceededException exceeded = getBudgetExceeded(e);
+      if (exceeded == null) {
+        throw e;
+      }
+      LOG.warn("Skipping the parsing of '{}': {}, only lexer metrics are computed", file, exceeded.getMessage());
+      budget.addSkippedFile(file, exceeded.getMessage());
+      return lexOnly(file);
+    }
+  }
+
+  @Override
+  public AstNode parse(String source) {
+    return parser.parse(source);
+  }
+
+  @Override
+  public AstNode parse(List<Token> tokens) {
+    return parser.parse(tokens);
+  }
+
+  private AstNode lexOnly(File file) {
+    return LexerOnlyParser.tokenTree(SkippedFileType.SKIPPED_FILE, plainLexers.getLexer().lex(file));
+  }
+
+  @Nullable
+  private static ParseBudgetExceededException getBudgetExceeded(Throwable e) {
+    Throwable cause = e;
+    while (cause != null) {
+      if (cause instanceof ParseBudgetExceededException) {
+        return (ParseBudgetExceededException) cause;
+      }
+      cause = cause.getCause();
+    }
+    return null;
+  }
+}
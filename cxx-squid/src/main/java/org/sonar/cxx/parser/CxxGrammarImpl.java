@@ -25,6 +25,8 @@ import static org.sonar.cxx.api.CxxTokenType.CHARACTER;
 import static org.sonar.cxx.api.CxxTokenType.NUMBER;
 import static org.sonar.cxx.api.CxxTokenType.STRING;
 
+import javax.annotation.Nullable;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.cxx.CxxConfiguration;
@@ -327,12 +329,21 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
   public static final Logger LOG = LoggerFactory.getLogger("CxxGrammarImpl");
 
   public static Grammar create(CxxConfiguration conf) {
+    return create(conf, null);
+  }
+
+  /**
+   * Creates the grammar; with a tracker, the declaration, statement and
+   * primary expression rules check its budget and abort the parse once it is
+   * exceeded.
+   */
+  public static Grammar create(CxxConfiguration conf, @Nullable ParseBudget.Tracker tracker) {
     LexerfulGrammarBuilder b = LexerfulGrammarBuilder.create();
 
     toplevel(b, conf);
-    expressions(b);
-    statements(b);
-    declarations(b);
+    expressions(b, tracker);
+    statements(b, tracker);
+    declarations(b, tracker);
     declarators(b);
     classes(b);
     properties(b);
@@ -352,6 +363,10 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
     return b.buildWithMemoizationOfMatchesForAllRules();
   }
 
+  private static Object budgetChecked(LexerfulGrammarBuilder b, @Nullable ParseBudget.Tracker tracker, Object e) {
+    return tracker == null ? e : b.sequence(new ParseBudgetCheck(tracker), e);
+  }
+
 
   private static void misc(LexerfulGrammarBuilder b) {
     // C++ Standard, Section 2.14.6 "Boolean literals"
@@ -386,8 +401,8 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
 
   // A.4 Expressions
   //
-  private static void expressions(LexerfulGrammarBuilder b) {
-    b.rule(primaryExpression).is(
+  private static void expressions(LexerfulGrammarBuilder b, @Nullable ParseBudget.Tracker tracker) {
+    b.rule(primaryExpression).is(budgetChecked(b, tracker,
       b.firstOf(
         LITERAL, // C++
         CxxKeyword.THIS, // C++
@@ -396,7 +411,7 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
         idExpression, // C++
         lambdaExpression, // C++
         foldExpression // C++
-      )
+      ))
     ).skipIfOneChild();
 
     b.rule(idExpression).is(
@@ -682,9 +697,9 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
 
   // A.5 Statements
   //
-  private static void statements(LexerfulGrammarBuilder b) {
+  private static void statements(LexerfulGrammarBuilder b, @Nullable ParseBudget.Tracker tracker) {
 
-    b.rule(statement).is(
+    b.rule(statement).is(budgetChecked(b, tracker,
       b.firstOf(
         labeledStatement, // C++
         b.sequence(b.optional(attributeSpecifierSeq), expressionStatement), // C++
@@ -695,7 +710,7 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
         declarationStatement, // C++
         b.sequence(b.optional(attributeSpecifierSeq), tryBlock), // C++
         emptyStatement // todo: not C++ => remove
-    )
+    ))
     );
 
     b.rule(emptyStatement).is(";"); // todo: not C++
@@ -788,10 +803,10 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
 
   // A.6 Declarations
   //
-  private static void declarations(LexerfulGrammarBuilder b) {
+  private static void declarations(LexerfulGrammarBuilder b, @Nullable ParseBudget.Tracker tracker) {
     b.rule(declarationSeq).is(b.oneOrMore(declaration)); // C++
 
-    b.rule(declaration).is(
+    b.rule(declaration).is(budgetChecked(b, tracker,
       b.firstOf(
         blockDeclaration, // C++
         functionDefinition, // C++
@@ -804,7 +819,7 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
         emptyDeclaration, // C++
         attributeDeclaration, // C++
         vcAtlDeclaration // Attributted-ATL
-      )
+      ))
     );
 
     b.rule(blockDeclaration).is(
@@ -19,8 +19,7 @@
  */
 package org.sonar.cxx.parser;
 
-import java.io.File;
-import java.util.Collection;
+import javax.annotation.Nullable;
 
 import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.lexer.CxxLexer;
@@ -35,23 +34,9 @@ import com.sonar.sslr.impl.Parser;
 
 public final class CxxParser {
 
-  private static CxxPreprocessor cxxpp = null;
-
   private CxxParser() {
   }
 
-  public static void finishedParsing(File path) {
-    cxxpp.finishedPreprocessing(path);
-  }
-
-  public static Collection<CxxPreprocessor.Include> getIncludedFiles(File path) {
-    return cxxpp.getIncludedFiles(path);
-  }
-
-  public static Collection<CxxPreprocessor.Include> getMissingIncludeFiles(File path) {
-    return cxxpp.getMissingIncludeFiles(path);
-  }
-
   public static Parser<Grammar> create() {
     return create(new SquidAstVisitorContextImpl<>(new SourceProject("")),
       new CxxConfiguration());
@@ -63,8 +48,26 @@ public final class CxxParser {
 
   public static Parser<Grammar> create(SquidAstVisitorContext<Grammar> context,
     CxxConfiguration conf) {
-    cxxpp = new CxxPreprocessor(context, conf);
-    return Parser.builder(CxxGrammarImpl.create(conf))
+    return create(context, conf, new CxxPreprocessor(context, conf));
+  }
+
+  /**
+   * Creates a parser using the given preprocessor. The caller keeps the
+   * reference to the preprocessor to finish the preprocessing of a file and to
+   * look up the include directives found in it.
+   */
+  public static Parser<Grammar> create(SquidAstVisitorContext<Grammar> context,
+    CxxConfiguration conf, CxxPreprocessor cxxpp) {
+    return create(context, conf, cxxpp, null);
+  }
+
+  /**
+   * Creates a parser whose grammar checks the budget of the given tracker,
+   * see {@link CxxGrammarImpl#create(CxxConfiguration, ParseBudget.Tracker)}.
+   */
+  public static Parser<Grammar> create(SquidAstVisitorContext<Grammar> context,
+    CxxConfiguration conf, CxxPreprocessor cxxpp, @Nullable ParseBudget.Tracker tracker) {
+    return Parser.builder(CxxGrammarImpl.create(conf, tracker))
       .withLexer(CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor()))
       .build();
   }
@@ -0,0 +1,93 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.parser;
+
+import java.io.File;
+import java.util.List;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.LexerException;
+import com.sonar.sslr.impl.Parser;
+
+/**
+ * Parser skipping the grammar: the result is a flat tree of the (preprocessed)
+ * tokens of the file. Used when none of the visitors needs the syntax tree,
+ * the token and comment based metrics are the same as with a full parse.
+ */
+public class LexerOnlyParser extends Parser<Grammar> {
+
+  /**
+   * Root of the tree created for a file, no check subscribes to it.
+   */
+  public enum LexedFileType implements AstNodeType {
+    LEXED_FILE
+  }
+
+  private final Lexer lexer;
+
+  /**
+   * @param grammar grammar reported by {@link #getGrammar()}, not used for
+   * parsing
+   * @param lexer lexer with the preprocessors
+   */
+  public LexerOnlyParser(Grammar grammar, Lexer lexer) {
+    super(grammar);
+    this.lexer = lexer;
+  }
+
+  @Override
+  public AstNode parse(File file) {
+    try {
+      return parse(lexer.lex(file));
+    } catch (LexerException e) {
+      throw new RecognitionException(e);
+    }
+  }
+
+  @Override
+  public AstNode parse(String source) {
+    try {
+      return parse(lexer.lex(source));
+    } catch (LexerException e) {
+      throw new RecognitionException(e);
+    }
+  }
+
+  @Override
+  public AstNode parse(List<Token> tokens) {
+    return tokenTree(LexedFileType.LEXED_FILE, tokens);
+  }
+
+  /**
+   * Creates a tree with a root of the given type and one child per token.
+   */
+  static AstNode tokenTree(AstNodeType type, List<Token> tokens) {
+    AstNode root = new AstNode(type, type.toString(), tokens.get(0));
+    for (Token token : tokens) {
+      root.addChild(new AstNode(token));
+    }
+    return root;
+  }
+}
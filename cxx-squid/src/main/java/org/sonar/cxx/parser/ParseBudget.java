@@ -0,0 +1,152 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.parser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.sonar.cxx.profiling.ScanProfile;
+
+/**
+ * Time and memory budget for the preprocessing and parsing of a single file.
+ * The budget is shared by all scanners of an analysis and collects the files
+ * which exceeded it; the measurements are done by a {@link Tracker} per
+ * scanner.
+ */
+public class ParseBudget {
+
+  private final long timeoutMillis;
+  private final long memoryLimit;
+  private final Queue<SkippedFile> skippedFiles = new ConcurrentLinkedQueue<>();
+
+  /**
+   * @param timeoutMillis maximum wall time per file, 0 for no limit
+   * @param memoryLimit maximum number of bytes allocated per file, 0 for no
+   * limit
+   */
+  public ParseBudget(long timeoutMillis, long memoryLimit) {
+    this.timeoutMillis = timeoutMillis;
+    this.memoryLimit = memoryLimit;
+  }
+
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  public long getMemoryLimit() {
+    return memoryLimit;
+  }
+
+  public Tracker createTracker() {
+    return new Tracker();
+  }
+
+  void addSkippedFile(File file, String reason) {
+    skippedFiles.add(new SkippedFile(file.getPath(), reason));
+  }
+
+  /**
+   * Files which exceeded the budget and were analysed with lexer metrics only.
+   */
+  public Collection<SkippedFile> getSkippedFiles() {
+    return new ArrayList<>(skippedFiles);
+  }
+
+  public static final class SkippedFile {
+
+    private final String path;
+    private final String reason;
+
+    SkippedFile(String path, String reason) {
+      this.path = path;
+      this.reason = reason;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public String getReason() {
+      return reason;
+    }
+
+    @Override
+    public String toString() {
+      return path + ": " + reason;
+    }
+  }
+
+  /**
+   * Measures the budget of the file analysed by one thread.
+   *
+   * The budget is checked cooperatively with {@link #check()}: by the
+   * preprocessor while it expands the tokens and by the grammar, see
+   * {@link CxxGrammarImpl#create(org.sonar.cxx.CxxConfiguration, Tracker)},
+   * while it matches them.
+   */
+  public final class Tracker {
+
+    private Thread thread;
+    private long startNanos;
+    private long startAllocated;
+
+    private Tracker() {
+    }
+
+    public void start() {
+      thread = Thread.currentThread();
+      startNanos = System.nanoTime();
+      startAllocated = ScanProfile.allocatedBytes(thread);
+    }
+
+    /**
+     * @throws ParseBudgetExceededException if the budget of the current file
+     * is exceeded
+     */
+    public void check() {
+      String reason = exceededReason();
+      if (reason != null) {
+        throw new ParseBudgetExceededException(reason);
+      }
+    }
+
+    @Nullable
+    private String exceededReason() {
+      if (thread == null) {
+        // not started, e.g. parsing a string outside of a file analysis
+        return null;
+      }
+      long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      if (timeoutMillis > 0 && elapsedMillis > timeoutMillis) {
+        return "time limit of " + timeoutMillis + " ms exceeded";
+      }
+      if (memoryLimit > 0 && ScanProfile.allocatedBytes(thread) - startAllocated > memoryLimit) {
+        return "memory limit of " + memoryLimit + " bytes exceeded";
+      }
+      return null;
+    }
+  }
+}
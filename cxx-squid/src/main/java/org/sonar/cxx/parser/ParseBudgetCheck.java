@@ -0,0 +1,63 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.parser;
+
+import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.NativeExpression;
+
+/**
+ * Parsing expression matching the empty input, used to check the budget of
+ * the current file from within the grammar phase. The check is done every
+ * {@value #CHECK_INTERVAL} evaluations; once the budget is exceeded the parse
+ * is aborted with a {@link ParseBudgetExceededException}.
+ *
+ * SSLR has no public API for a custom parsing expression, this class extends
+ * the internal {@code org.sonar.sslr.internal.vm.NativeExpression} of the SSLR
+ * version pinned by the 'sslr.version' property of the root pom (1.21). The
+ * contract relied upon: {@code execute(Machine)} is called each time the
+ * expression is evaluated and {@code machine.jump(1)} continues with the next
+ * instruction, i.e. matches the empty input. It has to be verified when SSLR
+ * is updated, ParseBudgetTest fails if the check is no longer executed.
+ */
+final class ParseBudgetCheck extends NativeExpression {
+
+  private static final int CHECK_INTERVAL = 256;
+
+  private final ParseBudget.Tracker tracker;
+  private int countdown = CHECK_INTERVAL;
+
+  ParseBudgetCheck(ParseBudget.Tracker tracker) {
+    this.tracker = tracker;
+  }
+
+  @Override
+  public void execute(Machine machine) {
+    if (--countdown <= 0) {
+      countdown = CHECK_INTERVAL;
+      tracker.check();
+    }
+    machine.jump(1);
+  }
+
+  @Override
+  public String toString() {
+    return "ParseBudgetCheck";
+  }
+}
@@ -0,0 +1,599 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import org.sonar.cxx.api.CppPunctuator;
+import org.sonar.cxx.api.CxxTokenType;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+
+/**
+ * A constant expression compiled into a tree of nodes working on primitive
+ * longs. Macro references are resolved at evaluation time, so a compiled
+ * expression stays valid while the macro table changes.
+ *
+ * Evaluation throws an {@link ArithmeticException} as soon as a value does
+ * not fit into a signed 64 bit long; the caller has to repeat the evaluation
+ * using {@link BigInteger} arithmetic in this case.
+ */
+final class CompiledExpression {
+
+  private final AstNode ast;
+  private final Node root;
+
+  private CompiledExpression(@Nullable AstNode ast, @Nullable Node root) {
+    this.ast = ast;
+    this.root = root;
+  }
+
+  static CompiledExpression compile(AstNode exprAst) {
+    return new CompiledExpression(exprAst, compileNode(exprAst));
+  }
+
+  static CompiledExpression unparsable() {
+    return new CompiledExpression(null, null);
+  }
+
+  boolean isParsable() {
+    return ast != null;
+  }
+
+  /**
+   * The syntax tree this expression was compiled from, null if it could not be parsed.
+   */
+  @CheckForNull
+  AstNode getAst() {
+    return ast;
+  }
+
+  long evaluate(ExpressionEvaluator evaluator) {
+    return root.evaluate(evaluator);
+  }
+
+  private static Node compileNode(AstNode exprAst) {
+    int noChildren = exprAst.getNumberOfChildren();
+    AstNodeType nodeType = exprAst.getType();
+
+    if (noChildren == 0) {
+      if (CxxTokenType.NUMBER == nodeType) {
+        return constant(ExpressionEvaluator.evalNumber(exprAst.getTokenValue()));
+      } else if (CxxTokenType.CHARACTER == nodeType) {
+        return constant(ExpressionEvaluator.evalCharacter(exprAst.getTokenValue()));
+      } else if (GenericTokenType.IDENTIFIER == nodeType) {
+        return new Identifier(exprAst);
+      }
+    } else if (noChildren == 1) {
+      if (CppGrammar.bool == nodeType) {
+        return constant(ExpressionEvaluator.evalBool(exprAst.getTokenValue()));
+      }
+      return compileNode(exprAst.getFirstChild());
+    } else if (CppGrammar.unaryExpression == nodeType) {
+      return compileUnary(exprAst);
+    } else if (CppGrammar.conditionalExpression == nodeType) {
+      return compileConditional(exprAst);
+    } else if (CppGrammar.primaryExpression == nodeType) {
+      return compileNode(exprAst.getFirstChild().getNextSibling());
+    } else if (CppGrammar.definedExpression == nodeType) {
+      AstNode child = exprAst.getFirstChild();
+      if (noChildren != 2) {
+        child = child.getNextSibling();
+      }
+      return new Defined(child.getNextSibling().getTokenValue());
+    } else if (CppGrammar.functionlikeMacro == nodeType) {
+      return new FunctionlikeMacro(exprAst);
+    } else if (CppGrammar.equalityExpression == nodeType) {
+      return compileEquality(exprAst);
+    } else {
+      Operator operator = Operator.forExpression(nodeType);
+      if (operator != null) {
+        return compileBinary(exprAst, operator);
+      }
+    }
+
+    // anything unusual is left to the BigInteger evaluation, which also reports the errors
+    return new Fallback(exprAst);
+  }
+
+  private static Node compileUnary(AstNode exprAst) {
+    AstNode operator = exprAst.getFirstChild();
+    Node operand = compileNode(operator.getNextSibling());
+    AstNodeType operatorType = operator.getFirstChild().getType();
+
+    if (CppPunctuator.PLUS == operatorType) {
+      return operand;
+    } else if (CppPunctuator.MINUS == operatorType) {
+      return new Negate(operand);
+    } else if (CppPunctuator.NOT == operatorType) {
+      return new Not(operand);
+    } else if (CppPunctuator.BW_NOT == operatorType) {
+      return new BitwiseNot(operand);
+    }
+    return new Fallback(exprAst);
+  }
+
+  private static Node compileConditional(AstNode exprAst) {
+    AstNode decisionOperand = exprAst.getFirstChild();
+    AstNode operand = decisionOperand.getNextSibling().getNextSibling();
+    if (exprAst.getNumberOfChildren() == 5) {
+      AstNode falseCaseOperand = operand.getNextSibling().getNextSibling();
+      return new Conditional(compileNode(decisionOperand), compileNode(operand), compileNode(falseCaseOperand));
+    }
+    // GNU extension 'a ?: b', operand is the ':'
+    return new Conditional(compileNode(decisionOperand), null, compileNode(operand.getNextSibling()));
+  }
+
+  private static Node compileEquality(AstNode exprAst) {
+    AstNode lhs = exprAst.getFirstChild();
+    AstNode operator = lhs.getNextSibling();
+    AstNode rhs = operator.getNextSibling();
+    Node result = binary(operator.getType(), Operator.EQ, Operator.NOT_EQ, compileNode(lhs), compileNode(rhs));
+
+    // chained comparisons compare the truth values of the operands
+    while (result != null && (operator = rhs.getNextSibling()) != null) {
+      rhs = operator.getNextSibling();
+      result = binary(operator.getType(), Operator.EQ_BOOL, Operator.NOT_EQ_BOOL, result, compileNode(rhs));
+    }
+    return result != null ? result : new Fallback(exprAst);
+  }
+
+  @CheckForNull
+  private static Node binary(AstNodeType operatorType, Operator eq, Operator notEq, Node lhs, Node rhs) {
+    if (CppPunctuator.EQ == operatorType) {
+      return new Binary(eq, lhs, rhs);
+    } else if (CppPunctuator.NOT_EQ == operatorType) {
+      return new Binary(notEq, lhs, rhs);
+    }
+    return null;
+  }
+
+  private static Node compileBinary(AstNode exprAst, Operator expressionOperator) {
+    AstNode rhs = exprAst.getFirstChild();
+    AstNode operator;
+    Node result = compileNode(rhs);
+
+    while ((operator = rhs.getNextSibling()) != null) {
+      rhs = operator.getNextSibling();
+      Operator op = expressionOperator.isLogicalOrBitwise() ? expressionOperator : Operator.forPunctuator(operator.getType());
+      if (op == null || op.group() != expressionOperator) {
+        return new Fallback(exprAst);
+      }
+      result = new Binary(op, result, compileNode(rhs));
+    }
+    return result;
+  }
+
+  private static Node constant(BigInteger value) {
+    return value.bitLength() < Long.SIZE ? new Constant(value.longValue()) : new Fallback(null);
+  }
+
+  static long overflow() {
+    throw new ArithmeticException("value exceeds 64 bit");
+  }
+
+  private abstract static class Node {
+
+    abstract long evaluate(ExpressionEvaluator evaluator);
+  }
+
+  private static final class Constant extends Node {
+
+    private final long value;
+
+    Constant(long value) {
+      this.value = value;
+    }
+
+    @Override
+    long evaluate(ExpressionEvaluator evaluator) {
+      return value;
+    }
+  }
+
+  private static final class Identifier extends Node {
+
+    private final AstNode ast;
+
+    Identifier(AstNode ast) {
+      this.ast = ast;
+    }
+
+    @Override
+    long evaluate(ExpressionEvaluator evaluator) {
+      String value = evaluator.valueOf(ast.getTokenValue());
+      return value == null ? 0 : evaluator.evalToLong(value, ast);
+    }
+  }
+
+  private static final class Defined extends Node {
+
+    private final String macroName;
+
+    Defined(String macroName) {
+      this.macroName = macroName;
+    }
+
+    @Override
+    long evaluate(ExpressionEvaluator evaluator) {
+      return evaluator.valueOf(macroName) == null ? 0 : 1;
+    }
+  }
+
+  private static final class FunctionlikeMacro extends Node {
+
+    private final AstNode ast;
+    private final String macroName;
+    private final List<Token> restTokens;
+
+    FunctionlikeMacro(AstNode ast) {
+      this.ast = ast;
+      this.macroName = ast.getFirstChild().getTokenValue();
+      List<Token> tokens = ast.getTokens();
+      this.restTokens = new ArrayList<>(tokens.subList(1, tokens.size()));
+    }
+
+    @Override
+    long evaluate(ExpressionEvaluator evaluator) {
+      String value = evaluator.expandFunctionLikeMacro(macroName, restTokens);
+      if (value == null || value.isEmpty()) {
+        ExpressionEvaluator.LOG.error("Undefined functionlike macro '{}' assuming 0", macroName);
+        return 0;
+      }
+      return evaluator.evalToLong(value, ast);
+    }
+  }
+
+  /**
+   * Evaluates a sub tree (or a literal) with BigInteger arithmetic.
+   */
+  private static final class Fallback extends Node {
+
+    private final AstNode ast;
+
+    Fallback(@Nullable AstNode ast) {
+      this.ast = ast;
+    }
+
+    @Override
+    long evaluate(ExpressionEvaluator evaluator) {
+      if (ast == null) {
+        return overflow();
+      }
+      BigInteger value = evaluator.evalToInt(ast);
+      return value.bitLength() < Long.SIZE ? value.longValue() : overflow();
+    }
+  }
+
+  private static final class Negate extends Node {
+
+    private final Node operand;
+
+    Negate(Node operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    long evaluate(ExpressionEvaluator evaluator) {
+      return Math.negateExact(operand.evaluate(evaluator));
+    }
+  }
+
+  private static final class Not extends Node {
+
+    private final Node operand;
+
+    Not(Node operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    long evaluate(ExpressionEvaluator evaluator) {
+      return operand.evaluate(evaluator) == 0 ? 1 : 0;
+    }
+  }
+
+  private static final class BitwiseNot extends Node {
+
+    private final Node operand;
+
+    BitwiseNot(Node operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    long evaluate(ExpressionEvaluator evaluator) {
+      // the result is masked to 64 bit unsigned, only negative operands stay below 2^63
+      long value = operand.evaluate(evaluator);
+      return value < 0 ? ~value : overflow();
+    }
+  }
+
+  private static final class Conditional extends Node {
+
+    private final Node decision;
+    private final Node trueCase;
+    private final Node falseCase;
+
+    Conditional(Node decision, @Nullable Node trueCase, Node falseCase) {
+      this.decision = decision;
+      this.trueCase = trueCase;
+      this.falseCase = falseCase;
+    }
+
+    @Override
+    long evaluate(ExpressionEvaluator evaluator) {
+      long value = decision.evaluate(evaluator);
+      if (value != 0) {
+        return trueCase != null ? trueCase.evaluate(evaluator) : value;
+      }
+      return falseCase.evaluate(evaluator);
+    }
+  }
+
+  private static final class Binary extends Node {
+
+    private final Operator operator;
+    private final Node lhs;
+    private final Node rhs;
+
+    Binary(Operator operator, Node lhs, Node rhs) {
+      this.operator = operator;
+      this.lhs = lhs;
+      this.rhs = rhs;
+    }
+
+    @Override
+    long evaluate(ExpressionEvaluator evaluator) {
+      long left = lhs.evaluate(evaluator);
+      if (operator == Operator.LOGICAL_OR && left != 0) {
+        return 1;
+      } else if (operator == Operator.LOGICAL_AND && left == 0) {
+        return 0;
+      }
+      return operator.apply(left, rhs.evaluate(evaluator));
+    }
+  }
+
+  private enum Operator {
+    LOGICAL_OR {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs != 0 || rhs != 0 ? 1 : 0;
+      }
+    },
+    LOGICAL_AND {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs != 0 && rhs != 0 ? 1 : 0;
+      }
+    },
+    BW_OR {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs | rhs;
+      }
+    },
+    BW_XOR {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs ^ rhs;
+      }
+    },
+    BW_AND {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs & rhs;
+      }
+    },
+    EQ {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs == rhs ? 1 : 0;
+      }
+    },
+    NOT_EQ {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs != rhs ? 1 : 0;
+      }
+    },
+    EQ_BOOL {
+      @Override
+      long apply(long lhs, long rhs) {
+        return (lhs != 0) == (rhs != 0) ? 1 : 0;
+      }
+    },
+    NOT_EQ_BOOL {
+      @Override
+      long apply(long lhs, long rhs) {
+        return (lhs != 0) != (rhs != 0) ? 1 : 0;
+      }
+    },
+    LT {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs < rhs ? 1 : 0;
+      }
+    },
+    GT {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs > rhs ? 1 : 0;
+      }
+    },
+    LT_EQ {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs <= rhs ? 1 : 0;
+      }
+    },
+    GT_EQ {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs >= rhs ? 1 : 0;
+      }
+    },
+    LSHIFT {
+      @Override
+      long apply(long lhs, long rhs) {
+        // BigInteger semantics: shiftLeft(rhs.intValue()) masked to 64 bit unsigned
+        int count = (int) rhs;
+        long result;
+        if (count < 0) {
+          result = lhs >> Math.min(-(long) count, Long.SIZE - 1);
+        } else if (count >= Long.SIZE) {
+          result = 0;
+        } else {
+          result = lhs << count;
+        }
+        return result < 0 ? overflow() : result;
+      }
+    },
+    RSHIFT {
+      @Override
+      long apply(long lhs, long rhs) {
+        int count = (int) rhs;
+        if (count < 0) {
+          return lhs == 0 ? 0 : overflow();
+        }
+        return lhs >> Math.min(count, Long.SIZE - 1);
+      }
+    },
+    PLUS {
+      @Override
+      long apply(long lhs, long rhs) {
+        return Math.addExact(lhs, rhs);
+      }
+    },
+    MINUS {
+      @Override
+      long apply(long lhs, long rhs) {
+        return Math.subtractExact(lhs, rhs);
+      }
+    },
+    MUL {
+      @Override
+      long apply(long lhs, long rhs) {
+        return Math.multiplyExact(lhs, rhs);
+      }
+    },
+    DIV {
+      @Override
+      long apply(long lhs, long rhs) {
+        return lhs == Long.MIN_VALUE && rhs == -1 ? overflow() : lhs / rhs;
+      }
+    },
+    MODULO {
+      @Override
+      long apply(long lhs, long rhs) {
+        // BigInteger.mod: non negative result, positive modulus only
+        return rhs <= 0 ? overflow() : Math.floorMod(lhs, rhs);
+      }
+    };
+
+    abstract long apply(long lhs, long rhs);
+
+    boolean isLogicalOrBitwise() {
+      return ordinal() <= BW_AND.ordinal();
+    }
+
+    /**
+     * The operator {@link #forExpression} returns for expressions using this operator.
+     */
+    Operator group() {
+      switch (this) {
+        case GT:
+        case LT_EQ:
+        case GT_EQ:
+          return LT;
+        case RSHIFT:
+          return LSHIFT;
+        case MINUS:
+          return PLUS;
+        case DIV:
+        case MODULO:
+          return MUL;
+        default:
+          return this;
+      }
+    }
+
+    @CheckForNull
+    static Operator forExpression(AstNodeType nodeType) {
+      if (CppGrammar.logicalOrExpression == nodeType) {
+        return LOGICAL_OR;
+      } else if (CppGrammar.logicalAndExpression == nodeType) {
+        return LOGICAL_AND;
+      } else if (CppGrammar.inclusiveOrExpression == nodeType) {
+        return BW_OR;
+      } else if (CppGrammar.exclusiveOrExpression == nodeType) {
+        return BW_XOR;
+      } else if (CppGrammar.andExpression == nodeType) {
+        return BW_AND;
+      } else if (CppGrammar.relationalExpression == nodeType) {
+        return LT;
+      } else if (CppGrammar.shiftExpression == nodeType) {
+        return LSHIFT;
+      } else if (CppGrammar.additiveExpression == nodeType) {
+        return PLUS;
+      } else if (CppGrammar.multiplicativeExpression == nodeType) {
+        return MUL;
+      }
+      return null;
+    }
+
+    @CheckForNull
+    static Operator forPunctuator(AstNodeType operatorType) {
+      if (CppPunctuator.LT == operatorType) {
+        return LT;
+      } else if (CppPunctuator.GT == operatorType) {
+        return GT;
+      } else if (CppPunctuator.LT_EQ == operatorType) {
+        return LT_EQ;
+      } else if (CppPunctuator.GT_EQ == operatorType) {
+        return GT_EQ;
+      } else if (CppPunctuator.BW_LSHIFT == operatorType) {
+        return LSHIFT;
+      } else if (CppPunctuator.BW_RSHIFT == operatorType) {
+        return RSHIFT;
+      } else if (CppPunctuator.PLUS == operatorType) {
+        return PLUS;
+      } else if (CppPunctuator.MINUS == operatorType) {
+        return MINUS;
+      } else if (CppPunctuator.MUL == operatorType) {
+        return MUL;
+      } else if (CppPunctuator.DIV == operatorType) {
+        return DIV;
+      } else if (CppPunctuator.MODULO == operatorType) {
+        return MODULO;
+      }
+      return null;
+    }
+  }
+}
@@ -31,10 +31,10 @@ import org.sonar.cxx.api.CppKeyword;
 import org.sonar.cxx.api.CppPunctuator;
 import org.sonar.cxx.api.CxxTokenType;
 import org.sonar.cxx.channels.CharacterLiteralsChannel;
+import org.sonar.cxx.channels.IdentifierAndKeywordChannel;
 import org.sonar.cxx.channels.StringLiteralsChannel;
 
 import com.sonar.sslr.impl.Lexer;
-import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
 import com.sonar.sslr.impl.channel.PunctuatorChannel;
 import com.sonar.sslr.impl.channel.UnknownCharacterChannel;
 
@@ -72,8 +72,9 @@ public final class CppLexer {
       .withChannel(regexp(CxxTokenType.NUMBER, "0[xX][0-9a-fA-F]([']?+[0-9a-fA-F]++)*+" + opt(UD_SUFFIX))) // Hex Literals      
       .withChannel(regexp(CxxTokenType.NUMBER, "0" + opt(UD_SUFFIX))) // Decimal zero
 
-      .withChannel(new KeywordChannel(and("#", o2n("\\s"), "[a-z]", o2n("\\w")), CppKeyword.values()))
-      .withChannel(new IdentifierAndKeywordChannel(and("[a-zA-Z_]", o2n("\\w")), true))
+      .withChannel(new KeywordChannel(conf.getTokenValueInterner(), and("#", o2n("\\s"), "[a-z]", o2n("\\w")),
+        CppKeyword.values()))
+      .withChannel(new IdentifierAndKeywordChannel(conf.getTokenValueInterner(), and("[a-zA-Z_]", o2n("\\w"))))
       .withChannel(new PunctuatorChannel(CppPunctuator.values()))
       .withChannel(new UnknownCharacterChannel());
 
@@ -23,17 +23,22 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
 import java.io.File;
+import java.net.URI;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.TreeSet;
+
+import javax.annotation.Nullable;
 
 import static org.apache.commons.io.FilenameUtils.wildcardMatchOnSystem;
 
@@ -50,8 +55,12 @@ import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.api.Trivia;
 import com.sonar.sslr.impl.Parser;
 
+import org.sonar.cxx.CxxCompilationUnitSettings;
 import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.lexer.CxxLexer;
+import org.sonar.cxx.lexer.LexerPool;
+import org.sonar.cxx.parser.ParseBudget;
+import org.sonar.cxx.profiling.ScanProfile;
 import org.sonar.squidbridge.SquidAstVisitorContext;
 
 import static com.sonar.sslr.api.GenericTokenType.EOF;
@@ -60,10 +69,7 @@ import java.util.Collections;
 
 import static org.sonar.cxx.api.CppKeyword.IFDEF;
 import static org.sonar.cxx.api.CppKeyword.IFNDEF;
-import static org.sonar.cxx.api.CppPunctuator.COMMA;
 import static org.sonar.cxx.api.CppPunctuator.LT;
-import static org.sonar.cxx.api.CppPunctuator.BR_RIGHT;
-import static org.sonar.cxx.api.CppPunctuator.HASHHASH;
 import static org.sonar.cxx.api.CxxTokenType.NUMBER;
 import static org.sonar.cxx.api.CxxTokenType.PREPROCESSOR;
 import static org.sonar.cxx.api.CxxTokenType.STRING;
@@ -102,23 +108,6 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
     }
   }
 
-  static class MismatchException extends Exception {
-    private static final long serialVersionUID = 1960113363232807009L;
-
-    MismatchException(String message) {
-      super(message);
-    }
-    MismatchException(Throwable cause) {
-      super(cause);
-    }
-    MismatchException(String message, Throwable cause) {
-      super(message, cause);
-    }
-    MismatchException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
-      super(message, cause, enableSuppression, writableStackTrace);;
-    }
-  }
-
   class Macro {
 
     public Macro(String name, List<Token> params, List<Token> body, boolean variadic) {
@@ -141,10 +130,24 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
         : count == params.size();
     }
 
+    /**
+     * The replacement list prepared for the expansion on token lists, created
+     * on first use.
+     */
+    MacroReplacement getReplacement(MacroReplacement.Expander expander) {
+      MacroReplacement result = replacement;
+      if (result == null) {
+        result = MacroReplacement.create(body, params, expander);
+        replacement = result;
+      }
+      return result;
+    }
+
     public String name;
     public List<Token> params;
     public List<Token> body;
     public boolean isVariadic;
+    private MacroReplacement replacement;
   }
 
   private static final Logger LOG = LoggerFactory.getLogger("CxxPreprocessor");
@@ -156,7 +159,55 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
   private ExpressionEvaluator ifExprEvaluator;
   private List<String> cFilesPatterns;
   private CxxConfiguration conf;
+  private final ParsedHeaderCache headerCache;
+  private final LexerPool macroLexers;
+  private final Map<String, List<Token>> lexedExpressions = new LinkedHashMap<String, List<Token>>(16, 0.75f, true) {
+    private static final long serialVersionUID = -4093446484155781651L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, List<Token>> eldest) {
+      return size() > MAX_LEXED_EXPRESSIONS;
+    }
+  };
+  private static final int MAX_LEXED_EXPRESSIONS = 10000;
+  private final MacroReplacement.Expander expander = new MacroReplacement.Expander() {
+    @Override
+    public List<Token> lex(String text) {
+      return stripEOF(CxxPreprocessor.this.lex(text));
+    }
+
+    @Override
+    public List<Token> expand(List<Token> tokens) {
+      return expandTokens(tokens);
+    }
+  };
+  private CxxCompilationUnitSettings currentSettings;
+  private final Map<CxxCompilationUnitSettings, Map<String, Macro>> highPrioMacros
+    = new LinkedHashMap<CxxCompilationUnitSettings, Map<String, Macro>>(16, 0.75f, true) {
+    private static final long serialVersionUID = 6140926520435181943L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<CxxCompilationUnitSettings, Map<String, Macro>> eldest) {
+      return size() > MAX_SETTINGS;
+    }
+  };
+  private static final int MAX_SETTINGS = 64;
+  private final PrecompiledHeaderCache pchCache;
+  private final StringBuilder includePrefix = new StringBuilder();
+  private boolean inIncludePrefix = true;
+  // the include graph found in the headers of the include prefix, stored in the snapshots
+  private boolean inPrefixHeader;
+  private final List<Include> prefixIncludes = new ArrayList<>();
+  private final List<Include> prefixMissingIncludes = new ArrayList<>();
+  private final Set<IncludeLookup> prefixLookups = new HashSet<>();
+  private ScanProfile profile;
+  private int processDepth;
+  private ParseBudget.Tracker budgetTracker;
+  private int budgetCheckCountdown = BUDGET_CHECK_INTERVAL;
+  private static final int BUDGET_CHECK_INTERVAL = 256;
   private static final String variadicParameter = "__VA_ARGS__";
+  // shared by the bodies of all predefined macros
+  private static final URI MACRO_URI = URI.create("");
 
   public static class Include {
 
@@ -202,8 +253,67 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
       return line;
     }
   }
+  /**
+   * A lookup of an included file: the name as written in the include
+   * directive, the directory searched first (quoted includes only) and the
+   * canonical path of the file found, null if none was found.
+   */
+  public static class IncludeLookup {
+
+    private final String name;
+    private final String directory;
+    private final String resolvedPath;
+
+    public IncludeLookup(String name, @Nullable String directory, @Nullable String resolvedPath) {
+      this.name = name;
+      this.directory = directory;
+      this.resolvedPath = resolvedPath;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      IncludeLookup that = (IncludeLookup) o;
+
+      if (!name.equals(that.name)) {
+        return false;
+      }
+      if (directory != null ? !directory.equals(that.directory) : that.directory != null) {
+        return false;
+      }
+      return resolvedPath != null ? resolvedPath.equals(that.resolvedPath) : that.resolvedPath == null;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = name.hashCode();
+      result = 31 * result + (directory != null ? directory.hashCode() : 0);
+      return 31 * result + (resolvedPath != null ? resolvedPath.hashCode() : 0);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    @Nullable
+    public String getDirectory() {
+      return directory;
+    }
+
+    @Nullable
+    public String getResolvedPath() {
+      return resolvedPath;
+    }
+  }
   private final Multimap<String, Include> includedFiles = HashMultimap.create();
   private final Multimap<String, Include> missingIncludeFiles = HashMultimap.create();
+  private final Multimap<String, IncludeLookup> includeLookups = HashMultimap.create();
 
   private State currentFileState = new State(null);
   private final Deque<State> globalStateStack = new LinkedList<>();
@@ -213,23 +323,18 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
   }
 
   public CxxPreprocessor(SquidAstVisitorContext<Grammar> context, CxxConfiguration conf) {
-    this(context, conf, new SourceCodeProvider());
+    this(context, conf, new SourceCodeProvider(conf.getDirectoryIndex()));
   }
 
   private void registerMacros(Map<String, String> standardMacros) {
     for (Map.Entry<String, String> entry : standardMacros.entrySet()) {
-      Token bodyToken;
-      try {
-        bodyToken = Token.builder()
-          .setLine(1)
-          .setColumn(0)
-          .setURI(new java.net.URI(""))
-          .setValueAndOriginalValue(entry.getValue())
-          .setType(STRING)
-          .build();
-      } catch (java.net.URISyntaxException e) {
-        throw new RuntimeException(e);
-      }
+      Token bodyToken = Token.builder()
+        .setLine(1)
+        .setColumn(0)
+        .setURI(MACRO_URI)
+        .setValueAndOriginalValue(entry.getValue())
+        .setType(STRING)
+        .build();
 
       macros.put(entry.getKey(), new Macro(entry.getKey(), null, Collections.singletonList(bodyToken), false));
     }
@@ -242,17 +347,42 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
     this.ifExprEvaluator = new ExpressionEvaluator(conf, this);
     this.cFilesPatterns = conf.getCFilesPatterns();
     this.conf = conf;
+    this.headerCache = conf.getHeaderCache();
+    this.macroLexers = CxxLexer.getPool(conf);
+    this.pchCache = conf.getPrecompiledHeaderCache();
 
     codeProvider = sourceCodeProvider;
-    codeProvider.setIncludeRoots(conf.getIncludeDirectories(), conf.getBaseDir());
+    codeProvider.setCharset(conf.getCharset());
 
     pplineParser = CppParser.create(conf);
 
+    applySettings(conf.getCompilationUnitSettings(null));
+  }
+
+  /**
+   * Switches to the defines and include directories of a translation unit.
+   * The resulting high prio macros (configured defines, standard macros and
+   * macros of the force includes) are computed once per distinct settings.
+   */
+  private void applySettings(CxxCompilationUnitSettings settings) {
+    if (settings == currentSettings) {
+      return;
+    }
+    currentSettings = settings;
+    codeProvider.setIncludeRoots(settings.getIncludeDirectories(), conf.getBaseDir());
+
+    Map<String, Macro> snapshot = highPrioMacros.get(settings);
+    if (snapshot != null) {
+      macros.restoreHighPrio(snapshot);
+      return;
+    }
+
+    macros.restoreHighPrio(Collections.<String, Macro>emptyMap());
     try {
       macros.setHighPrio(true);
 
       // parse the configured defines and store into the macro library
-      for (String define : conf.getDefines()) {
+      for (String define : settings.getDefines()) {
         LOG.debug("parsing external macro: '{}'", define);
         if (!"".equals(define)) {
           Macro macro = parseMacroDefinition("#define " + define);
@@ -276,16 +406,44 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
     } finally {
       macros.setHighPrio(false);
     }
+    highPrioMacros.put(settings, macros.getHighPrioSnapshot());
   }
 
   public Collection<Include> getIncludedFiles(File file) {
     return includedFiles.get(file.getPath());
   }
 
+  /**
+   * Returns the paths of all files included directly or indirectly by the
+   * given file, sorted.
+   */
+  public Set<String> getIncludeClosure(File file) {
+    Set<String> closure = new TreeSet<>();
+    Deque<String> pending = new ArrayDeque<>();
+    pending.push(file.getPath());
+    while (!pending.isEmpty()) {
+      for (Include include : includedFiles.get(pending.pop())) {
+        if (closure.add(include.getPath())) {
+          pending.push(include.getPath());
+        }
+      }
+    }
+    return closure;
+  }
+
   public Collection<Include> getMissingIncludeFiles(File file) {
     return missingIncludeFiles.get(file.getPath());
   }
 
+  /**
+   * Returns the lookups of included files done while preprocessing the given
+   * file, including the lookups of the files it includes and the unresolved
+   * ones.
+   */
+  public Collection<IncludeLookup> getIncludeLookups(File file) {
+    return includeLookups.get(file.getPath());
+  }
+
   private boolean isCFile(String filePath) {
     for (String pattern : cFilesPatterns) {
       if (wildcardMatchOnSystem(filePath, pattern)) {
@@ -303,8 +461,44 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
 
   private File currentContextFile = null;
 
+  /**
+   * Accounts the time spent in the preprocessor to the given profile, null
+   * disables the measurements.
+   */
+  public void setProfile(@Nullable ScanProfile profile) {
+    this.profile = profile;
+  }
+
+  /**
+   * Checks the budget of the current file while preprocessing, null disables
+   * the checks.
+   */
+  public void setParseBudgetTracker(@Nullable ParseBudget.Tracker tracker) {
+    this.budgetTracker = tracker;
+  }
+
   @Override
   public PreprocessorAction process(List<Token> tokens) { //@todo: deprecated PreprocessorAction
+    // checked periodically and at the end of each file, before its tokens are parsed
+    if (budgetTracker != null && (--budgetCheckCountdown <= 0 || tokens.get(0).getType() == EOF)) {
+      budgetCheckCountdown = BUDGET_CHECK_INTERVAL;
+      budgetTracker.check();
+    }
+    if (profile == null || processDepth > 0) {
+      return processToken(tokens);
+    }
+    long start = System.nanoTime();
+    long allocated = ScanProfile.allocatedBytes();
+    processDepth++;
+    try {
+      return processToken(tokens);
+    } finally {
+      processDepth--;
+      profile.addPhase(ScanProfile.PREPROCESS, System.nanoTime() - start, ScanProfile.allocatedBytes() - allocated);
+    }
+  }
+
+  private PreprocessorAction processToken(List<Token> tokens) { //@todo: deprecated PreprocessorAction
     Token token = tokens.get(0);
     TokenType ttype = token.getType();
     File file = getFileUnderAnalysis();
@@ -312,17 +506,37 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
 
     if (context.getFile() != currentContextFile) {
       currentContextFile = context.getFile();
+      // an aborted file may have left macros disabled in the middle of an expansion
+      macros.enableAll();
+      applySettings(conf.getCompilationUnitSettings(currentContextFile));
+      includePrefix.append(currentSettings.getId()).append(':');
       if (isCFile(currentContextFile.getAbsolutePath())) {
         //Create macros to replace C++ keywords when parsing C files
         registerMacros(StandardDefinitions.compatibilityMacros());
         macros.disable("__cplusplus");
+        includePrefix.append("C:");
       } else {
         macros.enable("__cplusplus");
+        includePrefix.append("C++:");
       }
     }
 
+    boolean isIncludePrefix = inIncludePrefix;
+    inIncludePrefix = false;
+
     if (ttype == PREPROCESSOR) {
 
+      // classify by keyword first: skipped and ignored directives are never parsed
+      DirectiveKind kind = DirectiveKind.of(token.getValue());
+      if (currentFileState.skipPreprocessorDirectives) {
+        PreprocessorAction action = handleSkippedDirective(kind, token, filePath); //@todo: deprecated PreprocessorAction
+        if (action != null) {
+          return action;
+        }
+      } else if (kind == DirectiveKind.IGNORED) {
+        return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
+      }
+
       AstNode lineAst;
       try {
         lineAst = pplineParser.parse(token.getValue()).getFirstChild();
@@ -331,35 +545,12 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
         return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
       }
 
-      AstNodeType lineKind = lineAst.getType();
-
-      if (lineKind == ifdefLine) {
-        return handleIfdefLine(lineAst, token, filePath);
-      } else if (lineKind == ifLine) {
-        return handleIfLine(lineAst, token, filePath);
-      } else if (lineKind == endifLine) {
-        return handleEndifLine(lineAst, token, filePath);
-      } else if (lineKind == elseLine) {
-        return handleElseLine(lineAst, token, filePath);
-      } else if (lineKind == elifLine) {
-        return handleElIfLine(lineAst, token, filePath);
-      }
-
-      if (currentFileState.skipPreprocessorDirectives) {
-        return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
-      }
-
-      if (lineKind == defineLine) {
-        return handleDefineLine(lineAst, token, filePath);
-      } else if (lineKind == includeLine) {
-        return handleIncludeLine(lineAst, token, filePath);
-      } else if (lineKind == undefLine) {
-        return handleUndefLine(lineAst, token, filePath);
+      if (isIncludePrefix && pchCache != null && lineAst.getType() == includeLine
+        && !currentFileState.skipPreprocessorDirectives && globalStateStack.isEmpty()) {
+        return handlePrefixIncludeLine(lineAst, token, filePath);
       }
 
-      // Ignore all other preprocessor directives (which are not handled explicitly)
-      // and strip them from the stream
-      return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
+      return handlePreprocessorDirective(lineAst, token, filePath);
     }
 
     if (ttype != EOF) {
@@ -375,6 +566,58 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
     return PreprocessorAction.NO_OPERATION; //@todo: deprecated PreprocessorAction
   }
 
+  /**
+   * Inside a skipped region only the nesting of conditionals matters, so the
+   * directives are handled by their keyword alone. Returns null for an '#elif'
+   * which may end the region: its expression has to be parsed and evaluated.
+   */
+  @Nullable
+  private PreprocessorAction handleSkippedDirective(DirectiveKind kind, Token token, String filePath) { //@todo: deprecated PreprocessorAction
+    if (kind.opensConditional()) {
+      currentFileState.conditionalInclusionCounter++;
+    } else if (kind == DirectiveKind.ELSE) {
+      return handleElseLine(null, token, filePath);
+    } else if (kind == DirectiveKind.ENDIF) {
+      return handleEndifLine(null, token, filePath);
+    } else if (kind == DirectiveKind.ELIF
+      && currentFileState.conditionalInclusionCounter == 0 && !currentFileState.conditionWasTrue) {
+      return null;
+    }
+    return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
+  }
+
+  private PreprocessorAction handlePreprocessorDirective(AstNode lineAst, Token token, String filePath) { //@todo: deprecated PreprocessorAction
+    AstNodeType lineKind = lineAst.getType();
+
+    if (lineKind == ifdefLine) {
+      return handleIfdefLine(lineAst, token, filePath);
+    } else if (lineKind == ifLine) {
+      return handleIfLine(lineAst, token, filePath);
+    } else if (lineKind == endifLine) {
+      return handleEndifLine(lineAst, token, filePath);
+    } else if (lineKind == elseLine) {
+      return handleElseLine(lineAst, token, filePath);
+    } else if (lineKind == elifLine) {
+      return handleElIfLine(lineAst, token, filePath);
+    }
+
+    if (currentFileState.skipPreprocessorDirectives) {
+      return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
+    }
+
+    if (lineKind == defineLine) {
+      return handleDefineLine(lineAst, token, filePath);
+    } else if (lineKind == includeLine) {
+      return handleIncludeLine(lineAst, token, filePath);
+    } else if (lineKind == undefLine) {
+      return handleUndefLine(lineAst, token, filePath);
+    }
+
+    // Ignore all other preprocessor directives (which are not handled explicitly)
+    // and strip them from the stream
+    return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
+  }
+
   public void finishedPreprocessing(File file) {
     // From 16.3.5 "Scope of macro definitions":
     // A macro definition lasts (independent of block structure) until
@@ -384,9 +627,15 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
     LOG.debug("finished preprocessing '{}'", file);
 
     analysedFiles.clear();
+    macros.enableAll();
     macros.clearLowPrio();
     currentFileState.reset();
     currentContextFile = null;
+    includePrefix.setLength(0);
+    inIncludePrefix = true;
+    prefixIncludes.clear();
+    prefixMissingIncludes.clear();
+    prefixLookups.clear();
   }
 
   public String valueOf(String macroname) {
@@ -488,7 +737,7 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
     return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
   }
 
-  PreprocessorAction handleElseLine(AstNode ast, Token token, String filename) { //@todo: deprecated PreprocessorAction
+  PreprocessorAction handleElseLine(@Nullable AstNode ast, Token token, String filename) { //@todo: deprecated PreprocessorAction
     if (currentFileState.conditionalInclusionCounter == 0) {
       if (currentFileState.skipPreprocessorDirectives && !currentFileState.conditionWasTrue) {
         if (LOG.isTraceEnabled()) {
@@ -507,7 +756,7 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
     return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
   }
 
-  PreprocessorAction handleEndifLine(AstNode ast, Token token, String filename) { //@todo: deprecated PreprocessorAction
+  PreprocessorAction handleEndifLine(@Nullable AstNode ast, Token token, String filename) { //@todo: deprecated PreprocessorAction
     if (currentFileState.conditionalInclusionCounter > 0) {
       currentFileState.conditionalInclusionCounter--;
     } else {
@@ -550,14 +799,68 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
     // a) pipe the body of the include directive through a lexer to properly expand
     //    all macros which may be in there.
     // b) extract the filename out of the include body and try to find it
-    // c) if not done yet, process it using a special lexer, which calls back only
-    //    if it finds relevant preprocessor directives (currently: include's and define's)
+    // c) if not done yet, process its preprocessor directives. They are extracted
+    //    using a special lexer and parsed only once per header (see ParsedHeaderCache)
 
+    handleIncludedFile(findIncludedFile(ast, token, filename), token, filename);
+    return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
+  }
+
+  private PreprocessorAction handlePrefixIncludeLine(AstNode ast, Token token, String filename) { //@todo: deprecated PreprocessorAction
+    //
+    // Precompiled header mode: the include directives at the very beginning of
+    // a translation unit are often the same for many files. After processing
+    // such a sequence of includes, the resulting macro state is stored and
+    // later translation units starting with the same includes continue from it.
+    //
     File includedFile = findIncludedFile(ast, token, filename);
+    if (includedFile == null || analysedFiles.contains(includedFile)) {
+      handleIncludedFile(includedFile, token, filename);
+    } else {
+      includePrefix.append(includedFile.getPath()).append('\n');
+      String key = includePrefix.toString();
+      PrecompiledHeaderCache.Snapshot snapshot = pchCache.get(key);
+      if (snapshot != null) {
+        LOG.debug("[{}:{}]: restoring precompiled state of '{}'", new Object[]{filename, token.getLine(), key});
+        String path = getFileUnderAnalysis().getPath();
+        includedFiles.put(path, new Include(token.getLine(), includedFile.getAbsolutePath()));
+        includedFiles.putAll(path, snapshot.getIncludes());
+        missingIncludeFiles.putAll(path, snapshot.getMissingIncludes());
+        if (context.getFile() != null) {
+          includeLookups.putAll(context.getFile().getPath(), snapshot.getIncludeLookups());
+        }
+        prefixIncludes.addAll(snapshot.getIncludes());
+        prefixMissingIncludes.addAll(snapshot.getMissingIncludes());
+        prefixLookups.addAll(snapshot.getIncludeLookups());
+        macros.restoreLowPrio(snapshot.getMacros());
+        analysedFiles.clear();
+        analysedFiles.addAll(snapshot.getAnalysedFiles());
+      } else {
+        inPrefixHeader = true;
+        try {
+          handleIncludedFile(includedFile, token, filename);
+        } finally {
+          inPrefixHeader = false;
+        }
+        if (pchCache.shouldCapture(key)) {
+          pchCache.put(key, new PrecompiledHeaderCache.Snapshot(macros.getLowPrioSnapshot(), new HashSet<>(analysedFiles),
+            prefixIncludes, prefixMissingIncludes, prefixLookups));
+        }
+      }
+      inIncludePrefix = true;
+    }
+
+    return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
+  }
 
+  private void handleIncludedFile(File includedFile, Token token, String filename) {
     File currentFile = this.getFileUnderAnalysis();
     if (currentFile != null && includedFile != null) {
-      includedFiles.put(currentFile.getPath(), new Include(token.getLine(), includedFile.getAbsolutePath()));
+      Include include = new Include(token.getLine(), includedFile.getAbsolutePath());
+      includedFiles.put(currentFile.getPath(), include);
+      if (isInPrefixHeader()) {
+        prefixIncludes.add(include);
+      }
     }
 
     if (includedFile == null) {
@@ -566,10 +869,18 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
           + token.getValue() + "'");
       }
       if (currentFile != null) {
-        missingIncludeFiles.put(currentFile.getPath(), new Include(token.getLine(), token.getValue()));
+        Include include = new Include(token.getLine(), token.getValue());
+        missingIncludeFiles.put(currentFile.getPath(), include);
+        if (isInPrefixHeader()) {
+          prefixMissingIncludes.add(include);
+        }
       }
+    } else if (isGuarded(includedFile)) {
+      LOG.debug("[{}:{}]: skipping '{}', its include guard is defined",
+        new Object[]{filename, token.getLine(), includedFile.getAbsolutePath()});
+      headerCache.guardedSkip();
     } else if (!analysedFiles.contains(includedFile)) {
-      analysedFiles.add(includedFile.getAbsoluteFile());
+      analysedFiles.add(includedFile);
       LOG.debug("[{}:{}]: processing {}, resolved to file '{}'",
         new Object[]{filename, token.getLine(), token.getValue(), includedFile.getAbsolutePath()});
 
@@ -577,7 +888,14 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
       currentFileState = new State(includedFile);
 
       try {
-        IncludeLexer.create(this).lex(codeProvider.getSourceCode(includedFile));
+        String includedFilePath = includedFile.getAbsolutePath();
+        for (ParsedHeaderCache.Directive directive : getDirectives(includedFile)) {
+          if (directive.getAst() == null) {
+            LOG.warn("Cannot parse '{}', ignoring...", directive.getToken().getValue());
+          } else {
+            handlePreprocessorDirective(directive.getAst(), directive.getToken(), includedFilePath);
+          }
+        }
       } finally {
         currentFileState = globalStateStack.pop();
       }
@@ -585,8 +903,52 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
 //    else {
 //      LOG.debug("[{}:{}]: skipping already included file '{}'", new Object[] {filename, token.getLine(), includedFile});
 //    }
+  }
 
-    return new PreprocessorAction(1,  Collections.singletonList(Trivia.createSkippedText(token)), new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
+  /**
+   * Tells whether a directive of a header of the include prefix is processed,
+   * as opposed to the include directives of the translation unit itself: only
+   * the former are stored in a precompiled header snapshot.
+   */
+  private boolean isInPrefixHeader() {
+    return inPrefixHeader && !globalStateStack.isEmpty();
+  }
+
+  /**
+   * Multiple-include optimization: a header whose guard macro is defined
+   * wouldn't contribute anything, so there is no need to read or replay it,
+   * whether it was included before in this translation unit or not (e.g. its
+   * guard is defined by a forced include). '#pragma once' is covered by
+   * analysedFiles, every header is processed at most once per translation
+   * unit.
+   */
+  private boolean isGuarded(File includedFile) {
+    IncludeGuard guard = headerCache.getIncludeGuard(includedFile);
+    return guard != null && macros.get(guard.getMacro()) != null;
+  }
+
+  private List<ParsedHeaderCache.Directive> getDirectives(File includedFile) {
+    List<ParsedHeaderCache.Directive> directives = headerCache.get(includedFile);
+    if (directives == null) {
+      long lastModified = headerCache.lastModified(includedFile);
+      directives = new ArrayList<>();
+      String code = codeProvider.getSourceCode(includedFile);
+      if (code != null) {
+        for (Token token : IncludeLexer.getPool(conf).getLexer().lex(code)) {
+          if (token.getType() == PREPROCESSOR) {
+            AstNode lineAst = null;
+            try {
+              lineAst = pplineParser.parse(token.getValue()).getFirstChild();
+            } catch (com.sonar.sslr.api.RecognitionException re) {
+              // reported each time the directive is replayed
+            }
+            directives.add(new ParsedHeaderCache.Directive(token, lineAst));
+          }
+        }
+      }
+      headerCache.put(includedFile, lastModified, directives);
+    }
+    return directives;
   }
 
   PreprocessorAction handleUndefLine(AstNode ast, Token token, String filename) { //@todo: deprecated PreprocessorAction
@@ -597,21 +959,22 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
 
   PreprocessorAction handleIdentifiersAndKeywords(List<Token> tokens, Token curr, String filename) { //@todo: deprecated PreprocessorAction
     //
-    // Every identifier and every keyword can be a macro instance.
-    // Pipe the resulting string through a lexer to create proper Tokens
-    // and to expand recursively all macros which may be in there.
+    // Every identifier and every keyword can be a macro instance. The
+    // replacement is built from the tokens of the macro definition and the
+    // arguments, and rescanned to expand the macros which may be in there.
     //
 
     PreprocessorAction ppaction = PreprocessorAction.NO_OPERATION; //@todo: deprecated PreprocessorAction
     Macro macro = macros.get(curr.getValue());
     if (macro != null) {
-      List<Token> replTokens = new LinkedList<>();
+      List<Token> replTokens;
       int tokensConsumed = 0;
 
       if (macro.params == null) {
         tokensConsumed = 1;
-        replTokens = new LinkedList<>(expandMacro(macro.name, serialize(evaluateHashhashOperators(macro.body))));
+        replTokens = expandMacro(macro.name, macro.getReplacement(expander).expand());
       } else {
+        replTokens = new TokenBuffer();
         int tokensConsumedMatchingArgs = expandFunctionLikeMacro(macro.name,
           tokens.subList(1, tokens.size()),
           replTokens);
@@ -622,33 +985,39 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
 
       if (tokensConsumed > 0) {
 
-        // Rescanning to expand function like macros, in case it requires consuming more tokens
-        List<Token> outTokens = new LinkedList<>();
+        // Rescanning to expand function like macros, in case it requires consuming more tokens.
+        // The replacement is walked with a cursor, the rest of the stream is a view: nothing is copied.
+        List<Token> outTokens = new TokenBuffer(replTokens.size());
         macros.disable(macro.name);
-        while (!replTokens.isEmpty()) {
-          Token c = replTokens.get(0);
-          PreprocessorAction action = PreprocessorAction.NO_OPERATION; //@todo: deprecated PreprocessorAction
-          if (c.getType() == IDENTIFIER) {
-            List<Token> rest = new ArrayList(replTokens);
-            rest.addAll(tokens.subList(tokensConsumed, tokens.size()));
-            action = handleIdentifiersAndKeywords(rest, c, filename);
-          }
-          if (action == PreprocessorAction.NO_OPERATION) { //@todo: deprecated PreprocessorAction
-            replTokens.remove(0);
-            outTokens.add(c);
-          } else {
-            outTokens.addAll(action.getTokensToInject());
-            int tokensConsumedRescanning = action.getNumberOfConsumedTokens();
-            if (tokensConsumedRescanning >= replTokens.size()) {
-              tokensConsumed += tokensConsumedRescanning - replTokens.size();
-              replTokens.clear();
+        try {
+          int replPos = 0;
+          while (replPos < replTokens.size()) {
+            Token c = replTokens.get(replPos);
+            PreprocessorAction action = PreprocessorAction.NO_OPERATION; //@todo: deprecated PreprocessorAction
+            if (c.getType() == IDENTIFIER) {
+              List<Token> rest = TokenBuffer.concat(replTokens.subList(replPos, replTokens.size()),
+                tokens.subList(tokensConsumed, tokens.size()));
+              action = handleIdentifiersAndKeywords(rest, c, filename);
+            }
+            if (action == PreprocessorAction.NO_OPERATION) { //@todo: deprecated PreprocessorAction
+              replPos++;
+              outTokens.add(c);
             } else {
-              replTokens.subList(0, tokensConsumedRescanning).clear();
+              outTokens.addAll(action.getTokensToInject());
+              int tokensConsumedRescanning = action.getNumberOfConsumedTokens();
+              int replRemaining = replTokens.size() - replPos;
+              if (tokensConsumedRescanning >= replRemaining) {
+                tokensConsumed += tokensConsumedRescanning - replRemaining;
+                replPos = replTokens.size();
+              } else {
+                replPos += tokensConsumedRescanning;
+              }
             }
           }
+        } finally {
+          macros.enable(macro.name);
         }
         replTokens = outTokens;
-        macros.enable(macro.name);
 
         replTokens = reallocate(replTokens, curr);
 
@@ -671,50 +1040,82 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
   }
 
   public String expandFunctionLikeMacro(String macroName, List<Token> restTokens) {
-    List<Token> expansion = new LinkedList<>();
+    List<Token> expansion = new TokenBuffer();
     expandFunctionLikeMacro(macroName, restTokens, expansion);
     return serialize(expansion);
   }
 
   private int expandFunctionLikeMacro(String macroName, List<Token> restTokens, List<Token> expansion) {
-    List<Token> arguments = new ArrayList<>();
-    int tokensConsumedMatchingArgs = matchArguments(restTokens, arguments);
-
     Macro macro = macros.get(macroName);
-    if (macro != null && macro.checkArgumentsCount(arguments.size())) {
-      if (arguments.size() > macro.params.size()) {
-        //Group all arguments into the last one
-        List<Token> vaargs = arguments.subList(macro.params.size() - 1, arguments.size());
-        Token firstToken = vaargs.get(0);
-        arguments = arguments.subList(0, macro.params.size() - 1);
-        arguments.add(Token.builder()
-          .setLine(firstToken.getLine())
-          .setColumn(firstToken.getColumn())
-          .setURI(firstToken.getURI())
-          .setValueAndOriginalValue(serialize(vaargs, ","))
-          .setType(STRING)
-          .build());
+    List<List<Token>> arguments = new ArrayList<>();
+    int tokensConsumedMatchingArgs = matchArguments(restTokens, arguments,
+      macro != null && macro.isVariadic ? macro.params.size() - 1 : -1);
+
+    if (macro != null) {
+      if (tokensConsumedMatchingArgs > 0 && arguments.isEmpty() && macro.params.size() == 1) {
+        // "()" passes one empty argument
+        arguments.add(Collections.<Token>emptyList());
+      }
+      if (macro.checkArgumentsCount(arguments.size())) {
+        expansion.addAll(expandMacro(macro.name, macro.getReplacement(expander).expand(arguments, expander)));
       }
-      List<Token> replTokens = replaceParams(macro.body, macro.params, arguments);
-      replTokens = evaluateHashhashOperators(replTokens);
-      expansion.addAll(expandMacro(macro.name, serialize(replTokens)));
     }
 
     return tokensConsumedMatchingArgs;
   }
 
-  private List<Token> expandMacro(String macroName, String macroExpression) {
+  /**
+   * Rescans the replacement of a macro. Recursion is prevented by disabling
+   * the macro while its replacement is rescanned.
+   */
+  private List<Token> expandMacro(String macroName, List<Token> replacement) {
     // C++ standard 16.3.4/2 Macro Replacement - Rescanning and further replacement
     List<Token> tokens = null;
     macros.disable(macroName);
     try {
-      tokens = stripEOF(CxxLexer.create(this).lex(macroExpression));
+      tokens = expandTokens(replacement);
     } finally {
       macros.enable(macroName);
     }
     return tokens;
   }
 
+  /**
+   * Turns the given text into tokens and expands the macros in there.
+   */
+  private List<Token> lexAndExpand(String expression) {
+    return expandTokens(lex(expression));
+  }
+
+  /**
+   * Returns the tokens of the given text. The lexing of a text is memoized:
+   * the tokens are cached, least recently used first out.
+   */
+  private List<Token> lex(String text) {
+    List<Token> tokens = lexedExpressions.get(text);
+    if (tokens == null) {
+      tokens = Collections.unmodifiableList(new ArrayList<>(macroLexers.getLexer().lex(text)));
+      lexedExpressions.put(text, tokens);
+    }
+    return tokens;
+  }
+
+  private List<Token> expandTokens(List<Token> tokens) {
+    List<Token> result = new ArrayList<>(tokens.size());
+    int i = 0;
+    while (i < tokens.size()) {
+      PreprocessorAction action = process(tokens.subList(i, tokens.size())); //@todo: deprecated PreprocessorAction
+      result.addAll(action.getTokensToInject());
+      if (action.getNumberOfConsumedTokens() == 0) {
+        result.add(tokens.get(i));
+        i++;
+      } else {
+        i += action.getNumberOfConsumedTokens();
+      }
+    }
+    return result;
+  }
+
   private List<Token> stripEOF(List<Token> tokens) {
     if (tokens.get(tokens.size() - 1).getType() == EOF) {
       return tokens.subList(0, tokens.size() - 1);
@@ -735,309 +1136,61 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
     return js.toString();
   }
 
-  private int matchArguments(List<Token> tokens, List<Token> arguments) {
-    List<Token> rest = tokens;
-    try {
-      rest = match(rest, "(");
-    } catch (MismatchException me) {
+  /**
+   * Matches the parenthesized arguments of a function like macro, returns the
+   * number of tokens consumed or 0 if there are none. From the given index on
+   * the commas don't separate the arguments: the rest is the variadic one.
+   */
+  private static int matchArguments(List<Token> tokens, List<List<Token>> arguments, int variadicIndex) {
+    if (tokens.isEmpty() || !"(".equals(tokens.get(0).getValue())) {
       return 0;
     }
 
-    try {
-      do {
-        rest = matchArgument(rest, arguments);
-        try {
-          rest = match(rest, ",");
-        } catch (MismatchException me) {
-          break;
-        }
-      } while (true);
-    } catch (MismatchException me) {}
-    try {
-      rest = match(rest, ")");
-    } catch (MismatchException me) {
-      LOG.error("MismatchException : '{}' rest: '{}'", me.getMessage(), rest);
-      return 0;
-    }
-    return tokens.size() - rest.size();
-  }
-
-  private List<Token> match(List<Token> tokens, String str) throws MismatchException {
-    if (!tokens.get(0).getValue().equals(str)) {
-      throw new MismatchException("Mismatch: expected '" + str + "' got: '"
-          + tokens.get(0).getValue() + "'" + " [" + tokens.get(0).getURI() + "("
-          + tokens.get(0).getLine() + "," + tokens.get(0).getColumn() + ")]");
-    }
-    return tokens.subList(1, tokens.size());
-  }
-
-  private List<Token> matchArgument(List<Token> tokens, List<Token> arguments) throws MismatchException {
     int nestingLevel = 0;
-    int tokensConsumed = 0;
-    int noTokens = tokens.size();
-    Token firstToken = tokens.get(0);
-    Token currToken = firstToken;
-    String curr = currToken.getValue();
-    List<Token> matchedTokens = new LinkedList<>();
-
-    while (true) {
-      if (nestingLevel == 0 && (",".equals(curr) || ")".equals(curr))) {
-        if (tokensConsumed > 0) {
-          arguments.add(Token.builder()
-            .setLine(firstToken.getLine())
-            .setColumn(firstToken.getColumn())
-            .setURI(firstToken.getURI())
-            .setValueAndOriginalValue(serialize(matchedTokens).trim())
-            .setType(STRING)
-            .build());
-        }
-        return tokens.subList(tokensConsumed, noTokens);
-      }
-
+    int start = 1;
+    for (int pos = 1; pos < tokens.size(); pos++) {
+      String curr = tokens.get(pos).getValue();
       if ("(".equals(curr)) {
         nestingLevel++;
-      } else if (")".equals(curr)) {
+      } else if (nestingLevel > 0 && ")".equals(curr)) {
         nestingLevel--;
-      }
-
-      tokensConsumed++;
-      if (tokensConsumed == noTokens) {
-        throw new MismatchException("reached the end of the stream while matching a macro argument");
-      }
-
-      matchedTokens.add(currToken);
-      currToken = tokens.get(tokensConsumed);
-      curr = currToken.getValue();
-    }
-  }
-
-  private List<Token> replaceParams(List<Token> body, List<Token> parameters, List<Token> arguments) {
-    // Replace all parameters by according arguments
-    // "Stringify" the argument if the according parameter is preceded by an #
-
-    List<Token> newTokens = new ArrayList<>();
-    if (!body.isEmpty()) {
-      List<String> defParamValues = new ArrayList<>();
-      for (Token t : parameters) {
-        defParamValues.add(t.getValue());
-      }
-
-      boolean tokenPastingLeftOp = false;
-      boolean tokenPastingRightOp = false;
-
-      for (int i = 0; i < body.size(); ++i) {
-        Token curr = body.get(i);
-        int index = defParamValues.indexOf(curr.getValue());
-        if (index == -1) {
-          if (tokenPastingRightOp) {
-            if (curr.getType() != WS && curr.getType() != HASHHASH) {
-              tokenPastingRightOp = false;
-            }
-          }
-          newTokens.add(curr);
-        } else if (index == arguments.size()) {
-          // EXTENSION: GCC's special meaning of token paste operator
-          // If variable argument is left out then the comma before the paste
-          // operator will be deleted
-          int j = i;
-          while (j > 0 && body.get(j - 1).getType() == WS) {
-            j--;
-          }
-          if (j == 0 || !"##".equals(body.get(--j).getValue())) {
-            continue;
-          }
-          int k = j;
-          while (j > 0 && body.get(j - 1).getType() == WS) {
-            j--;
+      } else if (nestingLevel == 0 && (")".equals(curr)
+        || (",".equals(curr) && arguments.size() != variadicIndex))) {
+        arguments.add(withoutWhitespace(tokens.subList(start, pos)));
+        start = pos + 1;
+        if (")".equals(curr)) {
+          if (arguments.size() == 1 && arguments.get(0).isEmpty()) {
+            // "()": no arguments
+            arguments.clear();
           }
-          if (j > 0 && ",".equals(body.get(j - 1).getValue())) {
-            newTokens.remove(newTokens.size() - 1 + j - i); // remove the comma
-            newTokens.remove(newTokens.size() - 1 + k - i); // remove the paste
-                                                            // operator
-          }
-        } else if (index < arguments.size()) {
-          // token pasting operator?
-          int j = i + 1;
-          while (j < body.size() && body.get(j).getType() == WS) {
-            j++;
-          }
-          if (j < body.size() && "##".equals(body.get(j).getValue())) {
-            tokenPastingLeftOp = true;
-          }
-          // in case of token pasting operator do not fully expand
-          Token replacement = arguments.get(index);
-          String newValue;
-          if (tokenPastingLeftOp) {
-            newValue = replacement.getValue();
-            tokenPastingLeftOp = false;
-            tokenPastingRightOp = true;
-          } else if (tokenPastingRightOp) {
-            newValue = replacement.getValue();
-            tokenPastingLeftOp = false;
-            tokenPastingRightOp = false;
-          } else {
-            if (i > 0 && "#".equals(body.get(i - 1).getValue())) {
-              // If the token is a macro, the macro is not expanded - the macro
-              // name is converted into a string.
-              newTokens.remove(newTokens.size() - 1);
-              newValue = encloseWithQuotes(quote(replacement.getValue()));
-            } else {
-              // otherwise the arguments have to be fully expanded before
-              // expanding the body of the macro
-              newValue = serialize(expandMacro("", replacement.getValue()));
-            }
-          }
-
-          if (newValue.isEmpty() && variadicParameter.equals(curr.getValue())) {
-            // the Visual C++ implementation will suppress a trailing comma
-            // if no arguments are passed to the ellipsis
-            for (int n = newTokens.size() - 1; n != 0; n = newTokens.size() - 1) {
-              if (newTokens.get(n).getType() == WS) {
-                newTokens.remove(n);
-              } else if (newTokens.get(n).getType() == COMMA) {
-                newTokens.remove(n);
-                break;
-              } else {
-                break;
-              }
-            }
-          } else {
-            newTokens.add(Token.builder().setLine(replacement.getLine()).setColumn(replacement.getColumn())
-                .setURI(replacement.getURI()).setValueAndOriginalValue(newValue).setType(replacement.getType())
-                .setGeneratedCode(true).build());
-          }
-        }
-      }
-    }
-
-    // drop COMMA from sequence COMMA "," BR ")"
-    if (newTokens.size() > 2 && newTokens.get(newTokens.size() - 1).getType() == BR_RIGHT) {
-      for (int n = newTokens.size() - 2; n != 0; n--) {
-        if (newTokens.get(n).getType() == WS) {
-          newTokens.remove(n);
-        } else if (newTokens.get(n).getType() == COMMA) {
-          newTokens.remove(n);
-          break;
-        } else {
-          break;
+          return pos + 1;
         }
       }
     }
-    return newTokens;
-  }
 
-  private List<Token> evaluateHashhashOperators(List<Token> tokens) {
-    List<Token> newTokens = new ArrayList<>();
-
-    Iterator<Token> it = tokens.iterator();
-    while (it.hasNext()) {
-      Token curr = it.next();
-      if ("##".equals(curr.getValue())) {
-        Token pred = predConcatToken(newTokens);
-        Token succ = succConcatToken(it);
-        newTokens.add(Token.builder()
-          .setLine(pred.getLine())
-          .setColumn(pred.getColumn())
-          .setURI(pred.getURI())
-          .setValueAndOriginalValue(pred.getValue() + succ.getValue())
-          .setType(pred.getType())
-          .setGeneratedCode(true)
-          .build());
-      } else {
-        newTokens.add(curr);
-      }
-    }
-
-    return newTokens;
+    LOG.error("[{}:{}]: reached the end of the stream while matching the arguments of a macro",
+      tokens.get(0).getURI(), tokens.get(0).getLine());
+    arguments.clear();
+    return 0;
   }
 
-  private Token predConcatToken(List<Token> tokens) {
-    while (!tokens.isEmpty()) {
-      Token last = tokens.remove(tokens.size() - 1);
-      if (last.getType() != WS) {
-        if (!tokens.isEmpty()) {
-          Token pred = tokens.get(tokens.size() - 1);
-          if (pred.getType() != WS && !pred.hasTrivia()) {
-            // Needed to paste tokens 0 and x back together after #define N(hex) 0x ## hex
-            tokens.remove(tokens.size() - 1);
-            String replacement = pred.getValue() + last.getValue();
-            last = Token.builder()
-              .setLine(pred.getLine())
-              .setColumn(pred.getColumn())
-              .setURI(pred.getURI())
-              .setValueAndOriginalValue(replacement)
-              .setType(pred.getType())
-              .setGeneratedCode(true)
-              .build();
+  private static List<Token> withoutWhitespace(List<Token> tokens) {
+    for (Token token : tokens) {
+      if (token.getType() == WS) {
+        List<Token> result = new ArrayList<>(tokens.size());
+        for (Token t : tokens) {
+          if (t.getType() != WS) {
+            result.add(t);
           }
         }
-        return last;
-      }
-    }
-    return null;
-  }
-
-  private Token succConcatToken(Iterator<Token> it) {
-    Token succ = null;
-    while (it.hasNext()) {
-      succ = it.next();
-      if (!"##".equals(succ.getValue()) && succ.getType() != WS) {
-        break;
+        return result;
       }
     }
-    return succ;
-  }
-
-  private String quote(String str) {
-    StringBuilder result = new StringBuilder(2 * str.length());
-    boolean addBlank = false;
-    boolean ignoreNextBlank = false;
-    for (int i = 0; i < str.length(); i++) {
-      char c = str.charAt(i);
-      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_') { // token
-        if (addBlank) {
-          result.append(' ');
-          addBlank = false;
-        }
-        result.append(c);
-      } else { // special characters
-        switch (c) {
-          case ' ':
-            if (ignoreNextBlank) {
-              ignoreNextBlank = false;
-            } else {
-              addBlank = true;
-            }
-            break;
-          case '\"':
-            if (addBlank) {
-              result.append(' ');
-              addBlank = false;
-            }
-            result.append("\\\"");
-            break;
-          case '\\':
-            result.append("\\\\");
-            addBlank = false;
-            ignoreNextBlank = true;
-            break;
-          default: // operator
-            result.append(c);
-            addBlank = false;
-            ignoreNextBlank = true;
-            break;
-        }
-      }
-    }
-    return result.toString();
-  }
-
-  private String encloseWithQuotes(String str) {
-    return "\"" + str + "\"";
+    return tokens;
   }
 
   private List<Token> reallocate(List<Token> tokens, Token token) {
-    List<Token> reallocated = new LinkedList<>();
+    List<Token> reallocated = new TokenBuffer(tokens.size());
     int currColumn = token.getColumn();
     for (Token t : tokens) {
       reallocated.add(Token.builder()
@@ -1066,7 +1219,7 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
 
     AstNode paramList = ast.getFirstDescendant(CppGrammar.parameterList);
     List<Token> macroParams = paramList == null
-      ? "objectlikeMacroDefinition".equals(ast.getName()) ? null : new LinkedList<Token>()
+      ? "objectlikeMacroDefinition".equals(ast.getName()) ? null : new ArrayList<Token>()
       : getParams(paramList);
 
     AstNode vaargs = ast.getFirstDescendant(CppGrammar.variadicparameter);
@@ -1086,7 +1239,7 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
 
     AstNode replList = ast.getFirstDescendant(CppGrammar.replacementList);
     List<Token> macroBody = replList == null
-      ? new LinkedList<Token>()
+      ? new ArrayList<Token>()
       : replList.getTokens().subList(0, replList.getTokens().size() - 1);
 
     return new Macro(macroName, macroParams, macroBody, vaargs != null);
@@ -1128,7 +1281,7 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
     } else if ((node = ast.getFirstDescendant(CppGrammar.includeBodyFreeform)) != null) {
       // expand and recurse
       String includeBody = serialize(stripEOF(node.getTokens()), "");
-      String expandedIncludeBody = serialize(stripEOF(CxxLexer.create(this).lex(includeBody)), "");
+      String expandedIncludeBody = serialize(stripEOF(lexAndExpand(includeBody)), "");
       if (LOG.isTraceEnabled()) {
         LOG.trace("Include resolve macros: includeBody '{}' - expandedIncludeBody: '{}'", includeBody, expandedIncludeBody);
       }
@@ -1154,6 +1307,14 @@ public class CxxPreprocessor extends Preprocessor { //@todo: deprecated Preproce
       File file = getFileUnderAnalysis();
       String dir = file == null ? "" : file.getParent();
       includedFile = codeProvider.getSourceCodeFile(includedFileName, dir, quoted);
+      if (context.getFile() != null) {
+        IncludeLookup lookup = new IncludeLookup(includedFileName, quoted ? dir : null,
+          includedFile == null ? null : includedFile.getPath());
+        includeLookups.put(context.getFile().getPath(), lookup);
+        if (isInPrefixHeader()) {
+          prefixLookups.add(lookup);
+        }
+      }
     }
 
     return includedFile;
@@ -0,0 +1,102 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+/**
+ * Cheap classification of a preprocessor line by its directive keyword,
+ * without running the preprocessor grammar. Used to track the nesting of
+ * conditionals inside skipped regions, where nothing but the keyword
+ * matters, and to drop directives the preprocessor ignores anyway.
+ */
+enum DirectiveKind {
+  IF,
+  IFDEF,
+  IFNDEF,
+  ELIF,
+  ELSE,
+  ENDIF,
+  /**
+   * '#line', '#error', '#pragma' and '#warning': stripped from the token
+   * stream without any further processing
+   */
+  IGNORED,
+  OTHER;
+
+  /**
+   * Classifies a preprocessor line as delivered by the lexer: a '#',
+   * optional whitespace and the directive name ('#  ifdef X').
+   */
+  static DirectiveKind of(String line) {
+    int length = line.length();
+    int pos = 0;
+    while (pos < length && Character.isWhitespace(line.charAt(pos))) {
+      pos++;
+    }
+    if (pos == length || line.charAt(pos) != '#') {
+      return OTHER;
+    }
+    pos++;
+    while (pos < length && Character.isWhitespace(line.charAt(pos))) {
+      pos++;
+    }
+    int start = pos;
+    while (pos < length && isWordChar(line.charAt(pos))) {
+      pos++;
+    }
+
+    switch (pos - start) {
+      case 2:
+        return line.startsWith("if", start) ? IF : OTHER;
+      case 4:
+        if (line.startsWith("elif", start)) {
+          return ELIF;
+        }
+        if (line.startsWith("else", start)) {
+          return ELSE;
+        }
+        return line.startsWith("line", start) ? IGNORED : OTHER;
+      case 5:
+        if (line.startsWith("ifdef", start)) {
+          return IFDEF;
+        }
+        if (line.startsWith("endif", start)) {
+          return ENDIF;
+        }
+        return line.startsWith("error", start) ? IGNORED : OTHER;
+      case 6:
+        if (line.startsWith("ifndef", start)) {
+          return IFNDEF;
+        }
+        return line.startsWith("pragma", start) ? IGNORED : OTHER;
+      case 7:
+        return line.startsWith("warning", start) ? IGNORED : OTHER;
+      default:
+        return OTHER;
+    }
+  }
+
+  boolean opensConditional() {
+    return this == IF || this == IFDEF || this == IFNDEF;
+  }
+
+  private static boolean isWordChar(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+  }
+}
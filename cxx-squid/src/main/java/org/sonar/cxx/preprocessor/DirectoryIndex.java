@@ -0,0 +1,164 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of the file system used to resolve include directives.
+ * Each directory is listed once, the first time a file in it is looked up.
+ * Afterwards lookups of missing files (the common case when searching many
+ * include roots) are answered without any system call. Directory entries are
+ * compared case-insensitively, a hit is verified with the file system once.
+ * Directories which cannot be listed (e.g. execute-only ones) are not
+ * indexed, their files are checked with the file system.
+ *
+ * Canonical files are interned: all lookups resolving to the same file
+ * return the same instance.
+ *
+ * The index is built once per analysis, changes of the file system during
+ * the analysis are not detected. It is safe to be shared between scanners
+ * running in parallel.
+ */
+public class DirectoryIndex {
+
+  // marks the directories whose entries are unknown, compared by identity
+  private static final Set<String> UNLISTED = Collections.unmodifiableSet(new HashSet<String>());
+
+  private final ConcurrentMap<String, Set<String>> listings = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Boolean> files = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, File> canonicalFiles = new ConcurrentHashMap<>();
+  private final AtomicLong listedDirectories = new AtomicLong();
+  private final AtomicLong checkedFiles = new AtomicLong();
+
+  /**
+   * Same as {@link File#isFile()}, but answered from the index whenever the
+   * file doesn't exist.
+   */
+  public boolean isFile(File file) {
+    String name = file.getName();
+    File dir = file.getParentFile();
+    if (dir == null || isSpecial(name)) {
+      return file.isFile();
+    }
+    Set<String> entries = getEntries(dir);
+    if (entries != UNLISTED && !entries.contains(toKey(name))) {
+      return false;
+    }
+
+    String path = file.getPath();
+    Boolean isFile = files.get(path);
+    if (isFile == null) {
+      checkedFiles.incrementAndGet();
+      isFile = file.isFile();
+      files.put(path, isFile);
+    }
+    return isFile;
+  }
+
+  /**
+   * Returns the interned canonical form of the given file, or the file
+   * itself if the canonical form cannot be determined.
+   */
+  public File getCanonicalFile(File file) {
+    String path = file.getPath();
+    File canonical = canonicalFiles.get(path);
+    if (canonical == null) {
+      try {
+        canonical = file.getCanonicalFile();
+      } catch (IOException e) {
+        SourceCodeProvider.LOG.error("cannot get canonical form of: '{}'", file);
+        canonical = file;
+      }
+      File existing = canonicalFiles.putIfAbsent(canonical.getPath(), canonical);
+      if (existing != null) {
+        canonical = existing;
+      }
+      canonicalFiles.put(path, canonical);
+    }
+    return canonical;
+  }
+
+  public long getListedDirectories() {
+    return listedDirectories.get();
+  }
+
+  public long getCheckedFiles() {
+    return checkedFiles.get();
+  }
+
+  private Set<String> getEntries(File dir) {
+    String path = dir.getPath();
+    Set<String> entries = listings.get(path);
+    if (entries == null) {
+      entries = list(dir);
+      Set<String> existing = listings.putIfAbsent(path, entries);
+      if (existing != null) {
+        entries = existing;
+      }
+    }
+    return entries;
+  }
+
+  private Set<String> list(File dir) {
+    // a directory missing in its parent's listing doesn't need to be listed
+    File parent = dir.getParentFile();
+    String name = dir.getName();
+    if (parent != null && !isSpecial(name)) {
+      Set<String> parentEntries = getEntries(parent);
+      if (parentEntries != UNLISTED && !parentEntries.contains(toKey(name))) {
+        return Collections.emptySet();
+      }
+    }
+
+    listedDirectories.incrementAndGet();
+    String[] names = dir.list();
+    if (names == null) {
+      // an existing directory without read permission, its files may still be accessible
+      return dir.isDirectory() ? UNLISTED : Collections.<String>emptySet();
+    }
+    Set<String> entries = new HashSet<>(names.length * 2);
+    for (String entry : names) {
+      entries.add(toKey(entry));
+    }
+    return entries;
+  }
+
+  private static boolean isSpecial(String name) {
+    return name.isEmpty() || ".".equals(name) || "..".equals(name);
+  }
+
+  private static String toKey(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  @Override
+  public String toString() {
+    return "directories: " + getListedDirectories() + ", checked files: " + getCheckedFiles();
+  }
+}
@@ -20,10 +20,14 @@
 package org.sonar.cxx.preprocessor;
 
 import java.math.BigInteger;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.cxx.CxxConfiguration;
@@ -40,11 +44,20 @@ import org.sonar.cxx.api.CppPunctuator;
 public final class ExpressionEvaluator {
 
   private static final BigInteger UINT64_MAX = new BigInteger("FFFFFFFFFFFFFFFF", 16);
-  private static final String HEX_REGEX = "0[xX]([0-9A-Fa-f]+)(ui64)?";
+  private static final Pattern HEX_PATTERN = Pattern.compile("0[xX]([0-9A-Fa-f]+)(ui64)?");
   public static final Logger LOG = LoggerFactory.getLogger("Evaluator");
 
   private final Parser<Grammar> parser;
   private final CxxPreprocessor preprocessor;
+  private final Map<String, CompiledExpression> compiledExpressions = new LinkedHashMap<String, CompiledExpression>(16, 0.75f, true) {
+    private static final long serialVersionUID = 3418290264471541172L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+      return size() > MAX_COMPILED_EXPRESSIONS;
+    }
+  };
+  private static final int MAX_COMPILED_EXPRESSIONS = 10000;
 
   public ExpressionEvaluator(CxxConfiguration conf, CxxPreprocessor preprocessor) {
     parser = CppParser.createConstantExpressionParser(conf);
@@ -52,32 +65,99 @@ public final class ExpressionEvaluator {
     this.preprocessor = preprocessor;
   }
 
+  /**
+   * Expressions are evaluated with long arithmetic first. Only if an
+   * intermediate value does not fit into 64 bit the expression is evaluated
+   * again using BigInteger.
+   */
   public boolean eval(String constExpr) {
-    return evalToInt(constExpr, null).compareTo(BigInteger.ZERO) != 0;
+    try {
+      return evalToLong(constExpr, null) != 0;
+    } catch (ArithmeticException e) {
+      return evalToInt(constExpr, null).compareTo(BigInteger.ZERO) != 0;
+    }
   }
 
   public boolean eval(AstNode constExpr) {
-    return evalToInt(constExpr).compareTo(BigInteger.ZERO) != 0;
+    try {
+      return compile(constExpr).evaluate(this) != 0;
+    } catch (ArithmeticException e) {
+      return isTrue(constExpr);
+    }
   }
 
-  private BigInteger evalToInt(String constExpr, AstNode exprAst) {
-    AstNode constExprAst = null;
-    try {
-      constExprAst = parser.parse(constExpr);
-    } catch (com.sonar.sslr.api.RecognitionException re) {
-      if (exprAst != null) {
-        LOG.warn("Error evaluating expression '{}' for AstExp '{}', assuming 0", constExpr, exprAst.getToken());
-      } else {
-        LOG.warn("Error evaluating expression '{}', assuming 0", constExpr);
+  long evalToLong(String constExpr, @Nullable AstNode exprAst) {
+    CompiledExpression compiled = compile(constExpr);
+    if (!compiled.isParsable()) {
+      warnUnparsable(constExpr, exprAst);
+      return 0;
+    }
+    return compiled.evaluate(this);
+  }
+
+  @Nullable
+  String valueOf(String macroName) {
+    return preprocessor.valueOf(macroName);
+  }
+
+  @Nullable
+  String expandFunctionLikeMacro(String macroName, List<Token> restTokens) {
+    return preprocessor.expandFunctionLikeMacro(macroName, restTokens);
+  }
+
+  private CompiledExpression compile(String constExpr) {
+    CompiledExpression compiled = compiledExpressions.get(constExpr);
+    if (compiled == null) {
+      try {
+        compiled = CompiledExpression.compile(parser.parse(constExpr));
+      } catch (com.sonar.sslr.api.RecognitionException re) {
+        compiled = CompiledExpression.unparsable();
       }
+      compiledExpressions.put(constExpr, compiled);
+    }
+    return compiled;
+  }
+
+  private CompiledExpression compile(AstNode constExpr) {
+    StringBuilder key = new StringBuilder();
+    for (Token token : constExpr.getTokens()) {
+      if (key.length() > 0) {
+        key.append(' ');
+      }
+      key.append(token.getValue());
+    }
+    String text = key.toString();
+    CompiledExpression compiled = compiledExpressions.get(text);
+    if (compiled == null || !compiled.isParsable()) {
+      compiled = CompiledExpression.compile(constExpr);
+      compiledExpressions.put(text, compiled);
+    }
+    return compiled;
+  }
 
+  private static void warnUnparsable(String constExpr, @Nullable AstNode exprAst) {
+    if (exprAst != null) {
+      LOG.warn("Error evaluating expression '{}' for AstExp '{}', assuming 0", constExpr, exprAst.getToken());
+    } else {
+      LOG.warn("Error evaluating expression '{}', assuming 0", constExpr);
+    }
+  }
+
+  private BigInteger evalToInt(String constExpr, @Nullable AstNode exprAst) {
+    AstNode constExprAst = compile(constExpr).getAst();
+    if (constExprAst == null) {
+      warnUnparsable(constExpr, exprAst);
       return BigInteger.ZERO;
     }
 
     return evalToInt(constExprAst);
   }
 
-  private BigInteger evalToInt(AstNode exprAst) {
+  private boolean isTrue(AstNode exprAst) {
+    return evalToInt(exprAst).compareTo(BigInteger.ZERO) != 0;
+  }
+
+  BigInteger evalToInt(AstNode exprAst) {
     LOG.trace("Evaluating expression: {}", exprAst);
 
     int noChildren = exprAst.getNumberOfChildren();
@@ -100,7 +180,7 @@ public final class ExpressionEvaluator {
     } else if (CxxTokenType.CHARACTER == nodeType) {
       return evalCharacter(exprAst.getTokenValue());
     } else if (GenericTokenType.IDENTIFIER == nodeType) {
-      String value = preprocessor.valueOf(exprAst.getTokenValue());
+      String value = valueOf(exprAst.getTokenValue());
       return value == null ? BigInteger.ZERO : evalToInt(value, exprAst);
     } else {
       throw new EvaluationException("Unknown expression type '" + nodeType.toString() + "'");
@@ -159,11 +239,11 @@ public final class ExpressionEvaluator {
   }
 
   // ///////////////// Primitives //////////////////////
-  private static BigInteger evalBool(String boolValue) {
+  static BigInteger evalBool(String boolValue) {
     return "true".equalsIgnoreCase(boolValue) ? BigInteger.ONE : BigInteger.ZERO;
   }
 
-  private static BigInteger evalNumber(String intValue) {
+  static BigInteger evalNumber(String intValue) {
     // the if expressions aren't allowed to contain floats
     BigInteger number;
     try {
@@ -176,7 +256,7 @@ public final class ExpressionEvaluator {
     return number;
   }
 
-  private static BigInteger evalCharacter(String charValue) {
+  static BigInteger evalCharacter(String charValue) {
     // TODO: replace this simplification by something more sane
     return "'\0'".equals(charValue) ? BigInteger.ZERO : BigInteger.ONE;
   }
@@ -194,10 +274,10 @@ public final class ExpressionEvaluator {
   // ////////////// logical expressions ///////////////////////////
   private BigInteger evalLogicalOrExpression(AstNode exprAst) {
     AstNode operand = exprAst.getFirstChild();
-    boolean result = eval(operand);
+    boolean result = isTrue(operand);
 
     while ((result != true) && ((operand = getNextOperand(operand)) != null)) {
-      result = result || eval(operand);
+      result = result || isTrue(operand);
     }
 
     return result ? BigInteger.ONE : BigInteger.ZERO;
@@ -205,10 +285,10 @@ public final class ExpressionEvaluator {
 
   private BigInteger evalLogicalAndExpression(AstNode exprAst) {
     AstNode operand = exprAst.getFirstChild();
-    boolean result = eval(operand);
+    boolean result = isTrue(operand);
 
     while ((result != false) && ((operand = getNextOperand(operand)) != null)) {
-      result = result && eval(operand);
+      result = result && isTrue(operand);
     }
 
     return result ? BigInteger.ONE : BigInteger.ZERO;
@@ -233,9 +313,9 @@ public final class ExpressionEvaluator {
       operatorType = operator.getType();
       rhs = operator.getNextSibling();
       if (CppPunctuator.EQ == operatorType) {
-        result = result == eval(rhs);
+        result = result == isTrue(rhs);
       } else if (CppPunctuator.NOT_EQ == operatorType) {
-        result = result != eval(rhs);
+        result = result != isTrue(rhs);
       } else {
         throw new EvaluationException("Unknown equality operator '" + operatorType.toString() + "'");
       }
@@ -332,7 +412,7 @@ public final class ExpressionEvaluator {
     } else if (CppPunctuator.MINUS == operatorType) {
       return evalToInt(operand).negate();
     } else if (CppPunctuator.NOT == operatorType) {
-      boolean result = !eval(operand);
+      boolean result = !isTrue(operand);
       return result ? BigInteger.ONE : BigInteger.ZERO;
     } else if (CppPunctuator.BW_NOT == operatorType) {
       //todo: need more information (signed/unsigned, data type length) to invert bits in all cases correct
@@ -414,7 +494,7 @@ public final class ExpressionEvaluator {
       AstNode trueCaseOperand = operator.getNextSibling();
       operator = trueCaseOperand.getNextSibling();
       AstNode falseCaseOperand = operator.getNextSibling();
-      return eval(decisionOperand) ? evalToInt(trueCaseOperand) : evalToInt(falseCaseOperand);
+      return isTrue(decisionOperand) ? evalToInt(trueCaseOperand) : evalToInt(falseCaseOperand);
     } else {
       AstNode decisionOperand = exprAst.getFirstChild();
       AstNode operator = decisionOperand.getNextSibling();
@@ -469,8 +549,7 @@ public final class ExpressionEvaluator {
       if (number.charAt(0) == '0') {
         radix = 8; // 0...
         try {
-          Pattern p = Pattern.compile(HEX_REGEX);
-          Matcher m = p.matcher(number);
+          Matcher m = HEX_PATTERN.matcher(number);
           if (m.find()) {
             radix = 16;
             number = m.group(1);
@@ -0,0 +1,128 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
+import static org.sonar.cxx.api.CppKeyword.IFNDEF;
+import static org.sonar.cxx.preprocessor.CppGrammar.elifLine;
+import static org.sonar.cxx.preprocessor.CppGrammar.elseLine;
+import static org.sonar.cxx.preprocessor.CppGrammar.endifLine;
+import static org.sonar.cxx.preprocessor.CppGrammar.ifLine;
+import static org.sonar.cxx.preprocessor.CppGrammar.ifdefLine;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.CheckForNull;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+
+/**
+ * Multiple-include optimization: describes how a header protects itself
+ * against being included more than once.
+ *
+ * A header has a guard macro if all of its directives are enclosed by
+ * '#ifndef MACRO' (or '#if !defined MACRO') and the matching '#endif'
+ * without an '#else' or '#elif' branch; a leading '#pragma once' is allowed.
+ * While this macro is defined, including the header again has no effect and
+ * can be skipped without reading it. '#pragma once' alone needs no guard:
+ * every header is processed at most once per translation unit anyway.
+ */
+public final class IncludeGuard {
+
+  private static final Pattern PRAGMA_ONCE = Pattern.compile("#\\s*pragma\\s+once\\s*(//.*)?");
+  private static final Pattern IF_NOT_DEFINED
+    = Pattern.compile("#\\s*if\\s*!\\s*defined\\s*(?:\\(\\s*(\\w+)\\s*\\)|\\s(\\w+))\\s*(//.*)?");
+
+  private final String macro;
+
+  IncludeGuard(String macro) {
+    this.macro = macro;
+  }
+
+  /**
+   * The guard macro
+   */
+  public String getMacro() {
+    return macro;
+  }
+
+  /**
+   * Analyses the directives of a header, returns null if the header has no
+   * include guard.
+   */
+  @CheckForNull
+  public static IncludeGuard detect(List<ParsedHeaderCache.Directive> directives) {
+    int first = 0;
+    while (first < directives.size() && isPragmaOnce(directives.get(first))) {
+      first++;
+    }
+
+    String guardMacro = first < directives.size() ? getGuardMacro(directives.get(first)) : null;
+    if (guardMacro == null || !isClosedByLastDirective(directives, first)) {
+      return null;
+    }
+    return new IncludeGuard(guardMacro);
+  }
+
+  private static boolean isPragmaOnce(ParsedHeaderCache.Directive directive) {
+    return PRAGMA_ONCE.matcher(directive.getToken().getValue().trim()).matches();
+  }
+
+  @CheckForNull
+  private static String getGuardMacro(ParsedHeaderCache.Directive directive) {
+    AstNode ast = directive.getAst();
+    if (ast == null) {
+      return null;
+    }
+    if (ast.getType() == ifdefLine && ast.getToken().getType() == IFNDEF) {
+      return ast.getFirstDescendant(IDENTIFIER).getTokenValue();
+    }
+    if (ast.getType() == ifLine) {
+      Matcher matcher = IF_NOT_DEFINED.matcher(directive.getToken().getValue().trim());
+      if (matcher.matches()) {
+        return matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks that the conditional opened by the directive at 'first' ends with
+   * the last directive and has no alternative branch.
+   */
+  private static boolean isClosedByLastDirective(List<ParsedHeaderCache.Directive> directives, int first) {
+    int depth = 0;
+    for (int i = first; i < directives.size(); i++) {
+      AstNode ast = directives.get(i).getAst();
+      AstNodeType type = ast == null ? null : ast.getType();
+      if (type == ifdefLine || type == ifLine) {
+        depth++;
+      } else if (depth == 1 && (type == elseLine || type == elifLine)) {
+        return false;
+      } else if (type == endifLine && --depth == 0) {
+        return i == directives.size() - 1;
+      }
+    }
+    return false;
+  }
+}
@@ -24,6 +24,7 @@ import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.commentRegexp;
 
 import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.channels.PreprocessorChannel;
+import org.sonar.cxx.lexer.LexerPool;
 
 import com.sonar.sslr.api.Preprocessor; //@todo: deprecated, see http://javadocs.sonarsource.org/4.5.2/apidocs/deprecated-list.html
 import com.sonar.sslr.impl.Lexer;
@@ -34,6 +35,25 @@ public final class IncludeLexer {
   private IncludeLexer() {
   }
 
+  /**
+   * Returns the pool of include lexers (without preprocessors) for the charset
+   * of the given configuration, the pool is released with the other lexers of
+   * the configuration
+   */
+  public static LexerPool getPool(final CxxConfiguration conf) {
+    String key = "IncludeLexer:" + conf.getCharset().name();
+    LexerPool pool = conf.getLexerPool(key);
+    if (pool == null) {
+      pool = conf.addLexerPool(key, new LexerPool() {
+        @Override
+        protected Lexer createLexer() {
+          return create(conf);
+        }
+      });
+    }
+    return pool;
+  }
+
   public static Lexer create(Preprocessor... preprocessors) { //@todo deprecated Preprocessor
     return create(new CxxConfiguration(), preprocessors);
   }
@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.sonar.cxx.lexer.TokenValueInterner;
 import org.sonar.sslr.channel.Channel;
 import org.sonar.sslr.channel.CodeReader;
 
@@ -40,8 +41,10 @@ public class KeywordChannel extends Channel<Lexer> {
   private final StringBuilder tmpBuilder = new StringBuilder();
   private final Matcher matcher;
   private final Token.Builder tokenBuilder = Token.builder();
+  private final TokenValueInterner tokenValues;
 
-  public KeywordChannel(String regexp, TokenType[]... keywordSets) {
+  public KeywordChannel(TokenValueInterner tokenValues, String regexp, TokenType[]... keywordSets) {
+    this.tokenValues = tokenValues;
     for (TokenType[] keywords : keywordSets) {
       for (TokenType keyword : keywords) {
         keywordsMap.put(keyword.getValue(), keyword);
@@ -57,14 +60,14 @@ public class KeywordChannel extends Channel<Lexer> {
       tmpBuilder.delete(0, tmpBuilder.length());
 
       // do this work to strip potential whitespace between the hash and the directive
-      String identifier = word.substring(1, word.length()).trim();
+      String identifier = tokenValues.intern(word.substring(1, word.length()).trim());
       String potentialKeyword = HASH.getValue() + identifier;
 
       TokenType keywordType = keywordsMap.get(potentialKeyword);
       if (keywordType != null) {
         Token token = tokenBuilder
           .setType(keywordType)
-          .setValueAndOriginalValue(potentialKeyword)
+          .setValueAndOriginalValue(keywordType.getValue())
           .setURI(lexer.getURI())
           .setLine(code.getPreviousCursor().getLine())
           .setColumn(code.getPreviousCursor().getColumn())
@@ -0,0 +1,357 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import static org.sonar.cxx.api.CxxTokenType.STRING;
+import static org.sonar.cxx.api.CxxTokenType.WS;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.sonar.sslr.api.Token;
+
+/**
+ * Replacement list of a macro prepared for the expansion on token lists. The
+ * text between the parameters and the # and ## operators is lexed once, when
+ * the replacement is created. An expansion substitutes the arguments, turns
+ * the operands of # into string literals and pastes the operands of ##; only
+ * the result of a paste is lexed again.
+ *
+ * Instances are immutable and may be shared by the preprocessors of parallel
+ * analyses (e.g. through precompiled header snapshots), the lexing and the
+ * expansion of arguments are done by the {@link Expander} of the caller.
+ */
+final class MacroReplacement {
+
+  /**
+   * Lexing and macro expansion of the preprocessor using the replacement.
+   */
+  interface Expander {
+
+    /**
+     * Returns the tokens of the given text, without EOF.
+     */
+    List<Token> lex(String text);
+
+    /**
+     * Returns the given tokens with all macros expanded.
+     */
+    List<Token> expand(List<Token> tokens);
+  }
+
+  private static final String VARIADIC_PARAMETER = "__VA_ARGS__";
+
+  private enum Kind {
+    TOKEN, PARAMETER, STRINGIFY, PASTE
+  }
+
+  private static final class Element {
+
+    private final Kind kind;
+    private final Token token;
+    private final int parameter;
+
+    Element(Kind kind, Token token, int parameter) {
+      this.kind = kind;
+      this.token = token;
+      this.parameter = parameter;
+    }
+  }
+
+  private final List<Element> elements;
+  private final int variadicParameter;
+  private final List<Token> objectLikeExpansion;
+
+  private MacroReplacement(List<Element> elements, int variadicParameter, @Nullable List<Token> objectLikeExpansion) {
+    this.elements = elements;
+    this.variadicParameter = variadicParameter;
+    this.objectLikeExpansion = objectLikeExpansion;
+  }
+
+  /**
+   * @param body replacement list as parsed from the #define line, including
+   * the whitespace
+   * @param params parameters of a function like macro, null for an object like
+   * macro
+   */
+  static MacroReplacement create(List<Token> body, @Nullable List<Token> params, Expander expander) {
+    List<String> names = new ArrayList<>();
+    if (params != null) {
+      for (Token param : params) {
+        names.add(param.getValue());
+      }
+    }
+
+    List<Element> elements = new ArrayList<>();
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < body.size(); i++) {
+      Token token = body.get(i);
+      if (token.getType() == WS) {
+        if (text.length() > 0) {
+          text.append(' ');
+        }
+        continue;
+      }
+      String value = token.getValue();
+      if ("##".equals(value)) {
+        flush(text, elements, expander);
+        elements.add(new Element(Kind.PASTE, token, -1));
+      } else if ("#".equals(value)) {
+        flush(text, elements, expander);
+        int next = skipWhitespace(body, i + 1);
+        int param = next < body.size() ? names.indexOf(body.get(next).getValue()) : -1;
+        if (param >= 0) {
+          elements.add(new Element(Kind.STRINGIFY, token, param));
+          i = next;
+        } else {
+          // the C++ lexer would take it for the start of a directive
+          elements.add(new Element(Kind.TOKEN, token, -1));
+        }
+      } else if (names.contains(value)) {
+        flush(text, elements, expander);
+        elements.add(new Element(Kind.PARAMETER, token, names.indexOf(value)));
+      } else {
+        if (token.hasTrivia() && text.length() > 0) {
+          // a comment separates the tokens
+          text.append(' ');
+        }
+        text.append(value);
+      }
+    }
+    flush(text, elements, expander);
+
+    List<Element> unmodifiable = Collections.unmodifiableList(elements);
+    int variadic = params == null ? -1 : names.lastIndexOf(VARIADIC_PARAMETER);
+    List<Token> objectLike = null;
+    if (params == null) {
+      objectLike = Collections.unmodifiableList(
+        substitute(unmodifiable, variadic, Collections.<List<Token>>emptyList(), expander));
+    }
+    return new MacroReplacement(unmodifiable, variadic, objectLike);
+  }
+
+  /**
+   * The replacement of an object like macro, before rescanning.
+   */
+  List<Token> expand() {
+    return objectLikeExpansion;
+  }
+
+  /**
+   * The replacement of a function like macro for the given arguments, before
+   * rescanning. Missing arguments are empty.
+   */
+  List<Token> expand(List<List<Token>> arguments, Expander expander) {
+    return substitute(elements, variadicParameter, arguments, expander);
+  }
+
+  private static List<Token> substitute(List<Element> elements, int variadicParameter, List<List<Token>> arguments,
+    Expander expander) {
+    List<Token> result = new ArrayList<>();
+    // start of the output of the current operand chain of ##
+    int operandStart = 0;
+    int size = elements.size();
+    for (int i = 0; i < size; i++) {
+      Element element = elements.get(i);
+      if (element.kind == Kind.PASTE) {
+        // a sequence of ## is a single one
+        while (i + 1 < size && elements.get(i + 1).kind == Kind.PASTE) {
+          i++;
+        }
+        if (i + 1 < size) {
+          i++;
+          paste(result, operandStart, elements.get(i), variadicParameter, arguments, expander);
+        }
+        continue;
+      }
+
+      operandStart = result.size();
+      if (element.kind == Kind.PARAMETER) {
+        List<Token> argument = argument(arguments, element.parameter);
+        if (i + 1 < size && elements.get(i + 1).kind == Kind.PASTE) {
+          // operands of ## are not macro expanded
+          result.addAll(argument);
+        } else if (!argument.isEmpty()) {
+          result.addAll(expander.expand(argument));
+        } else if (element.parameter == variadicParameter) {
+          // the Visual C++ implementation will suppress a trailing comma
+          // if no arguments are passed to the ellipsis
+          removeTrailingComma(result);
+        }
+      } else {
+        result.add(operand(element, arguments).get(0));
+      }
+    }
+
+    // drop COMMA from sequence COMMA ")"
+    int last = result.size() - 1;
+    if (last > 1 && ")".equals(result.get(last).getValue()) && ",".equals(result.get(last - 1).getValue())) {
+      result.remove(last - 1);
+    }
+    return result;
+  }
+
+  private static void paste(List<Token> result, int operandStart, Element right, int variadicParameter,
+    List<List<Token>> arguments, Expander expander) {
+    List<Token> operand = operand(right, arguments);
+    boolean hasLeft = result.size() > operandStart;
+
+    if (right.kind == Kind.PARAMETER && right.parameter == variadicParameter && hasLeft
+      && ",".equals(result.get(result.size() - 1).getValue())) {
+      // EXTENSION: GCC's special meaning of token paste operator
+      // If variable argument is left out then the comma before the paste
+      // operator will be deleted
+      if (operand.isEmpty()) {
+        result.remove(result.size() - 1);
+      } else {
+        result.addAll(operand);
+      }
+      return;
+    }
+
+    if (operand.isEmpty()) {
+      // pasting an empty argument leaves the other operand as it is
+      return;
+    }
+    if (!hasLeft) {
+      result.addAll(operand);
+      return;
+    }
+
+    Token left = result.remove(result.size() - 1);
+    for (Token token : expander.lex(left.getValue() + operand.get(0).getValue())) {
+      result.add(Token.builder()
+        .setLine(left.getLine())
+        .setColumn(left.getColumn())
+        .setURI(left.getURI())
+        .setValueAndOriginalValue(token.getValue())
+        .setType(token.getType())
+        .setGeneratedCode(true)
+        .build());
+    }
+    result.addAll(operand.subList(1, operand.size()));
+  }
+
+  private static List<Token> operand(Element element, List<List<Token>> arguments) {
+    switch (element.kind) {
+      case PARAMETER:
+        return argument(arguments, element.parameter);
+      case STRINGIFY:
+        return Collections.singletonList(stringify(element.token, argument(arguments, element.parameter)));
+      default:
+        return Collections.singletonList(element.token);
+    }
+  }
+
+  private static List<Token> argument(List<List<Token>> arguments, int parameter) {
+    return parameter < arguments.size() ? arguments.get(parameter) : Collections.<Token>emptyList();
+  }
+
+  private static void removeTrailingComma(List<Token> result) {
+    int last = result.size() - 1;
+    if (last > 0 && ",".equals(result.get(last).getValue())) {
+      result.remove(last);
+    }
+  }
+
+  private static void flush(StringBuilder text, List<Element> elements, Expander expander) {
+    if (text.length() > 0) {
+      for (Token token : expander.lex(text.toString())) {
+        elements.add(new Element(Kind.TOKEN, token, -1));
+      }
+      text.setLength(0);
+    }
+  }
+
+  private static int skipWhitespace(List<Token> tokens, int start) {
+    int i = start;
+    while (i < tokens.size() && tokens.get(i).getType() == WS) {
+      i++;
+    }
+    return i;
+  }
+
+  private static Token stringify(Token hash, List<Token> argument) {
+    StringBuilder value = new StringBuilder();
+    for (Token token : argument) {
+      if (value.length() > 0) {
+        value.append(' ');
+      }
+      value.append(token.getValue());
+    }
+    // If the token is a macro, the macro is not expanded - the macro
+    // name is converted into a string.
+    return Token.builder()
+      .setLine(hash.getLine())
+      .setColumn(hash.getColumn())
+      .setURI(hash.getURI())
+      .setValueAndOriginalValue("\"" + quote(value.toString()) + "\"")
+      .setType(STRING)
+      .setGeneratedCode(true)
+      .build();
+  }
+
+  static String quote(String str) {
+    StringBuilder result = new StringBuilder(2 * str.length());
+    boolean addBlank = false;
+    boolean ignoreNextBlank = false;
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_') { // token
+        if (addBlank) {
+          result.append(' ');
+          addBlank = false;
+        }
+        result.append(c);
+      } else { // special characters
+        switch (c) {
+          case ' ':
+            if (ignoreNextBlank) {
+              ignoreNextBlank = false;
+            } else {
+              addBlank = true;
+            }
+            break;
+          case '\"':
+            if (addBlank) {
+              result.append(' ');
+              addBlank = false;
+            }
+            result.append("\\\"");
+            break;
+          case '\\':
+            result.append("\\\\");
+            addBlank = false;
+            ignoreNextBlank = true;
+            break;
+          default: // operator
+            result.append(c);
+            addBlank = false;
+            ignoreNextBlank = true;
+            break;
+        }
+      }
+    }
+    return result.toString();
+  }
+}
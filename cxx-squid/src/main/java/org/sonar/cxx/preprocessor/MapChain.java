@@ -19,6 +19,7 @@
  */
 package org.sonar.cxx.preprocessor;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -55,6 +56,38 @@ public class MapChain<K, V> {
     lowPrioMap.clear();
   }
 
+  /**
+   * Returns an immutable copy of the current low prio mappings
+   */
+  public Map<K, V> getLowPrioSnapshot() {
+    return Collections.unmodifiableMap(new HashMap<>(lowPrioMap));
+  }
+
+  /**
+   * Replaces the low prio mappings by the ones of the given snapshot
+   */
+  public void restoreLowPrio(Map<K, V> snapshot) {
+    lowPrioMap.clear();
+    lowPrioMap.putAll(snapshot);
+  }
+
+  /**
+   * Returns an immutable copy of the current high prio mappings
+   */
+  public Map<K, V> getHighPrioSnapshot() {
+    return Collections.unmodifiableMap(new HashMap<>(highPrioMap));
+  }
+
+  /**
+   * Replaces the high prio mappings by the ones of the given snapshot, all of
+   * them enabled
+   */
+  public void restoreHighPrio(Map<K, V> snapshot) {
+    highPrioMap.clear();
+    highPrioDisabled.clear();
+    highPrioMap.putAll(snapshot);
+  }
+
   public void disable(K key) {
     move(key, lowPrioMap, lowPrioDisabled);
     move(key, highPrioMap, highPrioDisabled);
@@ -65,6 +98,16 @@ public class MapChain<K, V> {
     move(key, highPrioDisabled, highPrioMap);
   }
 
+  /**
+   * Enables all disabled mappings again, leaving no disabled mapping behind
+   */
+  public void enableAll() {
+    lowPrioMap.putAll(lowPrioDisabled);
+    lowPrioDisabled.clear();
+    highPrioMap.putAll(highPrioDisabled);
+    highPrioDisabled.clear();
+  }
+
   private void move(K key, Map<K, V> from, Map<K, V> to) {
     V value = from.remove(key);
     if (value != null) {
@@ -0,0 +1,208 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+
+/**
+ * Project wide cache of the preprocessor directives found in header files.
+ * Every directive is stored together with its (already parsed) AST, so
+ * including a cached header again replays its directives without reading,
+ * lexing or parsing the file. Entries are keyed by the canonical path of the
+ * header and invalidated when its modification time changes. The cache is
+ * bounded and evicts the least recently used header first.
+ *
+ * The modification time of a header is read once per analysis, like the
+ * listings of the {@link DirectoryIndex}: changes of a header during the
+ * analysis are not detected, but including it doesn't cost a system call.
+ *
+ * Besides the directives the {@link IncludeGuard} of each header is kept, so
+ * a header whose guard macro is already defined can be skipped without
+ * reading it.
+ *
+ * The cache is safe to be shared between scanners running in parallel.
+ */
+public class ParsedHeaderCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 5000;
+
+  /**
+   * A preprocessor directive of a header and its parse result. The AST is
+   * null if the directive could not be parsed.
+   */
+  public static class Directive {
+
+    private final Token token;
+    private final AstNode ast;
+
+    Directive(Token token, AstNode ast) {
+      this.token = token;
+      this.ast = ast;
+    }
+
+    public Token getToken() {
+      return token;
+    }
+
+    public AstNode getAst() {
+      return ast;
+    }
+  }
+
+  private static class Entry {
+
+    private final long lastModified;
+    private final List<Directive> directives;
+    private final IncludeGuard guard;
+
+    Entry(long lastModified, List<Directive> directives) {
+      this.lastModified = lastModified;
+      this.directives = directives;
+      this.guard = IncludeGuard.detect(directives);
+    }
+  }
+
+  private final Map<String, Entry> entries;
+  private final ConcurrentMap<String, Long> modificationTimes = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong guardedSkips = new AtomicLong();
+
+  public ParsedHeaderCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  public ParsedHeaderCache(final int maxEntries) {
+    entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 2576301327418235452L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > maxEntries) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached directives of the given header or null, if the header
+   * isn't cached yet or has been modified since it was cached.
+   */
+  public List<Directive> get(File file) {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(file.getPath());
+    }
+    if (entry != null && entry.lastModified == lastModified(file)) {
+      hits.incrementAndGet();
+      return entry.directives;
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Returns the include guard of a cached header or null, if the header isn't
+   * cached, has been modified since it was cached or has no guard.
+   */
+  @CheckForNull
+  public IncludeGuard getIncludeGuard(File file) {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(file.getPath());
+    }
+    if (entry == null || entry.lastModified != lastModified(file)) {
+      return null;
+    }
+    return entry.guard;
+  }
+
+  /**
+   * Same as {@link File#lastModified()}, but read only once per file and
+   * analysis.
+   */
+  public long lastModified(File file) {
+    String path = file.getPath();
+    Long lastModified = modificationTimes.get(path);
+    if (lastModified == null) {
+      lastModified = file.lastModified();
+      modificationTimes.putIfAbsent(path, lastModified);
+    }
+    return lastModified;
+  }
+
+  /**
+   * Counts an include which was skipped because of its include guard.
+   */
+  public void guardedSkip() {
+    guardedSkips.incrementAndGet();
+  }
+
+  public void put(File file, long lastModified, List<Directive> directives) {
+    Entry entry = new Entry(lastModified, Collections.unmodifiableList(directives));
+    synchronized (entries) {
+      entries.put(file.getPath(), entry);
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  public long getGuardedSkips() {
+    return guardedSkips.get();
+  }
+
+  @Override
+  public String toString() {
+    return "headers: " + size() + ", hits: " + getHits() + ", misses: " + getMisses()
+      + ", evictions: " + getEvictions() + ", skipped by include guard: " + getGuardedSkips();
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snapshots of the macro state after processing the leading includes of a
+ * translation unit (e.g. a 'stdafx.h'). Translation units starting with the
+ * same sequence of includes continue from the snapshot instead of processing
+ * the included headers again. Besides the macros, a snapshot holds the
+ * includes, missing includes and include lookups found in the included
+ * headers, so that the restored translation unit reports the same include
+ * graph as if the headers had been processed.
+ *
+ * A snapshot is keyed by the sequence of included files and is only valid as
+ * long as none of the files processed while creating it has been modified.
+ * Snapshots are only taken for include sequences used by more than one
+ * translation unit and their number is bounded. The cache is safe to be
+ * shared between scanners running in parallel.
+ */
+public class PrecompiledHeaderCache {
+
+  public static final int DEFAULT_MAX_SNAPSHOTS = 1000;
+
+  static class Snapshot {
+
+    private final Map<String, CxxPreprocessor.Macro> macros;
+    private final Map<File, Long> analysedFiles = new HashMap<>();
+    private final List<CxxPreprocessor.Include> includes;
+    private final List<CxxPreprocessor.Include> missingIncludes;
+    private final List<CxxPreprocessor.IncludeLookup> includeLookups;
+
+    Snapshot(Map<String, CxxPreprocessor.Macro> macros, Set<File> files,
+      Collection<CxxPreprocessor.Include> includes, Collection<CxxPreprocessor.Include> missingIncludes,
+      Collection<CxxPreprocessor.IncludeLookup> includeLookups) {
+      this.macros = macros;
+      for (File file : files) {
+        analysedFiles.put(file, file.lastModified());
+      }
+      this.includes = new ArrayList<>(includes);
+      this.missingIncludes = new ArrayList<>(missingIncludes);
+      this.includeLookups = new ArrayList<>(includeLookups);
+    }
+
+    Map<String, CxxPreprocessor.Macro> getMacros() {
+      return macros;
+    }
+
+    Set<File> getAnalysedFiles() {
+      return analysedFiles.keySet();
+    }
+
+    /**
+     * The includes done by the headers of the snapshot, each with the line of
+     * its own include directive. The includes of the translation unit itself
+     * are not part of the snapshot.
+     */
+    List<CxxPreprocessor.Include> getIncludes() {
+      return includes;
+    }
+
+    List<CxxPreprocessor.Include> getMissingIncludes() {
+      return missingIncludes;
+    }
+
+    List<CxxPreprocessor.IncludeLookup> getIncludeLookups() {
+      return includeLookups;
+    }
+
+    boolean isUpToDate() {
+      for (Map.Entry<File, Long> entry : analysedFiles.entrySet()) {
+        if (entry.getKey().lastModified() != entry.getValue()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+  private final Set<String> seenPrefixes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final int maxSnapshots;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public PrecompiledHeaderCache() {
+    this(DEFAULT_MAX_SNAPSHOTS);
+  }
+
+  public PrecompiledHeaderCache(int maxSnapshots) {
+    this.maxSnapshots = maxSnapshots;
+  }
+
+  Snapshot get(String includePrefix) {
+    Snapshot snapshot = snapshots.get(includePrefix);
+    if (snapshot != null && snapshot.isUpToDate()) {
+      hits.incrementAndGet();
+      return snapshot;
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Tells whether a snapshot should be taken after processing the given
+   * include sequence, i.e. the sequence has been seen before.
+   */
+  boolean shouldCapture(String includePrefix) {
+    return !seenPrefixes.add(includePrefix) && snapshots.size() < maxSnapshots;
+  }
+
+  void put(String includePrefix, Snapshot snapshot) {
+    snapshots.put(includePrefix, snapshot);
+  }
+
+  public int size() {
+    return snapshots.size();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  @Override
+  public String toString() {
+    return "snapshots: " + size() + ", hits: " + getHits() + ", misses: " + getMisses();
+  }
+}
@@ -20,10 +20,13 @@
 package org.sonar.cxx.preprocessor;
 
 import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,13 +35,63 @@ import org.slf4j.LoggerFactory;
  * their content. A source file can be specified both as an absolute and as a
  * relative file system path. In the latter case the scanner searches a list of
  * directories (known to him) for a file with such a name.
+ *
+ * Lookups are answered from a {@link DirectoryIndex} and memoized, including
+ * the misses. All files returned are canonical and interned. Source code is
+ * read with the charset of the analysis (see {@link SourceReader}).
  */
 public class SourceCodeProvider {
 
-  private final List<File> includeRoots = new LinkedList<>();
+  private static final File NOT_FOUND = new File("");
+
+  private List<File> includeRoots = new LinkedList<>();
+  private final DirectoryIndex index;
+  private Map<String, File> resolved = new HashMap<>();
+  private final Map<List<String>, IncludeRoots> includeRootsCache = new HashMap<>();
+  private SourceReader reader = new SourceReader(Charset.defaultCharset());
   public static final Logger LOG = LoggerFactory.getLogger("SourceCodeProvider");
 
+  public SourceCodeProvider() {
+    this(new DirectoryIndex());
+  }
+
+  public SourceCodeProvider(DirectoryIndex index) {
+    this.index = index;
+  }
+
+  public void setCharset(Charset charset) {
+    if (!charset.equals(reader.getCharset())) {
+      reader = new SourceReader(charset);
+    }
+  }
+
+  /**
+   * The memoized lookups of one list of include roots
+   */
+  private static class IncludeRoots {
+
+    private final List<File> roots = new LinkedList<>();
+    private final Map<String, File> resolved = new HashMap<>();
+  }
+
+  /**
+   * Replaces the include roots. Switching back to roots used before reuses
+   * their memoized lookups.
+   */
   public void setIncludeRoots(List<String> includeRoots, String baseDir) {
+    List<String> key = new ArrayList<>(includeRoots);
+    key.add(String.valueOf(baseDir));
+    IncludeRoots roots = includeRootsCache.get(key);
+    if (roots == null) {
+      roots = new IncludeRoots();
+      addIncludeRoots(roots.roots, includeRoots, baseDir);
+      includeRootsCache.put(key, roots);
+    }
+    this.includeRoots = roots.roots;
+    this.resolved = roots.resolved;
+  }
+
+  private static void addIncludeRoots(List<File> roots, List<String> includeRoots, String baseDir) {
     for (String tmp : includeRoots) {
 
       File includeRoot = new File(tmp);
@@ -54,7 +107,7 @@ public class SourceCodeProvider {
 
       if (includeRoot.isDirectory()) {
         LOG.debug("storing include root: '{}'", includeRoot);
-        this.includeRoots.add(includeRoot);
+        roots.add(includeRoot);
       } else {
         LOG.warn("the include root '{}' doesn't exist", includeRoot.getAbsolutePath());
       }
@@ -62,10 +115,20 @@ public class SourceCodeProvider {
   }
 
   public File getSourceCodeFile(String filename, String cwd, boolean quoted) {
+    String key = quoted ? cwd + '\n' + filename : filename;
+    File result = resolved.get(key);
+    if (result == null) {
+      result = findSourceCodeFile(filename, cwd, quoted);
+      resolved.put(key, result == null ? NOT_FOUND : result);
+    }
+    return result == NOT_FOUND ? null : result;
+  }
+
+  private File findSourceCodeFile(String filename, String cwd, boolean quoted) {
     File result = null;
     File file = new File(filename);
     if (file.isAbsolute()) {
-      if (file.isFile()) {
+      if (index.isFile(file)) {
         result = file;
       }
     } else {
@@ -74,7 +137,7 @@ public class SourceCodeProvider {
       // current directory.
       if (quoted) {
         File abspath = new File(new File(cwd), file.getPath());
-        if (abspath.isFile()) {
+        if (index.isFile(abspath)) {
           result = abspath;
         }
         else {
@@ -89,7 +152,7 @@ public class SourceCodeProvider {
       if (result == null) {
         for (File folder : includeRoots) {
           File abspath = new File(folder.getPath(), filename);
-          if (abspath.isFile()) {
+          if (index.isFile(abspath)) {
             result = abspath;
             break;
           }
@@ -98,11 +161,7 @@ public class SourceCodeProvider {
     }
 
     if (result != null) {
-      try {
-        result = result.getCanonicalFile();
-      } catch (java.io.IOException io) {
-        LOG.error("cannot get canonical form of: '{}'", result);
-      }
+      result = index.getCanonicalFile(result);
     }
 
     return result;
@@ -110,9 +169,9 @@ public class SourceCodeProvider {
 
   public String getSourceCode(File file) {
     String code = null;
-    if (file.isFile()) {
+    if (index.isFile(file)) {
       try {
-        code = FileUtils.readFileToString(file);
+        code = reader.read(file).toString();
       } catch (java.io.IOException e) {
         LOG.error("Cannot read contents of the file '{}'", file);
       }
@@ -0,0 +1,120 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads source files using a given charset. Small files are read into a
+ * reused byte buffer, larger ones are memory mapped. Both are decoded into a
+ * reused char buffer, a leading byte order mark is skipped.
+ *
+ * A reader isn't thread safe, the content returned by {@link #read(File)} is
+ * only valid until the next call.
+ */
+public class SourceReader {
+
+  static final int MAPPING_THRESHOLD = 64 * 1024;
+  private static final int INITIAL_CAPACITY = 8 * 1024;
+  private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+  private final Charset charset;
+  private final CharsetDecoder decoder;
+  private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_CAPACITY);
+  private CharBuffer chars = CharBuffer.allocate(INITIAL_CAPACITY);
+
+  public SourceReader(Charset charset) {
+    this.charset = charset;
+    this.decoder = charset.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * Returns a view of the decoded content of the given file.
+   */
+  public CharSequence read(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("file too large: " + file);
+      }
+
+      ByteBuffer input;
+      if (size >= MAPPING_THRESHOLD) {
+        input = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        input = byteBuffer((int) size);
+        while (input.hasRemaining() && channel.read(input) >= 0) {
+          // read until the buffer is full or the end of the file is reached
+        }
+        input.flip();
+      }
+      return decode(input);
+    }
+  }
+
+  private ByteBuffer byteBuffer(int size) {
+    if (bytes.capacity() < size) {
+      bytes = ByteBuffer.allocate(size);
+    }
+    bytes.clear();
+    bytes.limit(size);
+    return bytes;
+  }
+
+  private CharBuffer decode(ByteBuffer input) throws CharacterCodingException {
+    int capacity = (int) (input.remaining() * (double) decoder.maxCharsPerByte()) + 1;
+    if (chars.capacity() < capacity) {
+      chars = CharBuffer.allocate(capacity);
+    }
+    chars.clear();
+    decoder.reset();
+
+    CoderResult result = decoder.decode(input, chars, true);
+    if (!result.isUnderflow()) {
+      result.throwException();
+    }
+    result = decoder.flush(chars);
+    if (!result.isUnderflow()) {
+      result.throwException();
+    }
+    chars.flip();
+
+    if (chars.hasRemaining() && chars.get(0) == BYTE_ORDER_MARK) {
+      chars.position(1);
+    }
+    return chars;
+  }
+}
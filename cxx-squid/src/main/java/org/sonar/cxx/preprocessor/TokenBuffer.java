@@ -0,0 +1,166 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.sonar.sslr.api.Token;
+
+/**
+ * Array backed list of tokens used for the macro expansion. Tokens can only
+ * be appended. Slices share the array of the buffer they are taken from and
+ * slicing a slice doesn't nest views, so access stays O(1) however the
+ * preprocessor walks through a token stream.
+ */
+final class TokenBuffer extends AbstractList<Token> implements RandomAccess {
+
+  private Token[] tokens;
+  private final int offset;
+  private int size;
+  private final boolean slice;
+
+  TokenBuffer() {
+    this(16);
+  }
+
+  TokenBuffer(int capacity) {
+    this(new Token[Math.max(capacity, 4)], 0, 0, false);
+  }
+
+  private TokenBuffer(Token[] tokens, int offset, int size, boolean slice) {
+    this.tokens = tokens;
+    this.offset = offset;
+    this.size = size;
+    this.slice = slice;
+  }
+
+  @Override
+  public Token get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return tokens[offset + index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean add(Token token) {
+    ensureCapacity(size + 1);
+    tokens[size++] = token;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends Token> collection) {
+    int added = collection.size();
+    ensureCapacity(size + added);
+    Iterator<? extends Token> iterator = collection.iterator();
+    for (int i = 0; i < added; i++) {
+      tokens[size + i] = iterator.next();
+    }
+    size += added;
+    modCount++;
+    return added > 0;
+  }
+
+  /**
+   * Returns a read only view of the given range, sharing the array of this
+   * buffer. Tokens appended later on are not part of the view.
+   */
+  @Override
+  public List<Token> subList(int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size);
+    }
+    return new TokenBuffer(tokens, offset + fromIndex, toIndex - fromIndex, true);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (slice) {
+      throw new UnsupportedOperationException("slices are read only");
+    }
+    if (capacity > tokens.length) {
+      tokens = Arrays.copyOf(tokens, Math.max(capacity, tokens.length * 2));
+    }
+  }
+
+  /**
+   * Returns a read only view of the tokens of first followed by the ones of
+   * second, without copying any of them.
+   */
+  static List<Token> concat(List<Token> first, List<Token> second) {
+    if (first.isEmpty()) {
+      return second;
+    }
+    if (second.isEmpty()) {
+      return first;
+    }
+    return new Concatenation(first, second);
+  }
+
+  private static final class Concatenation extends AbstractList<Token> implements RandomAccess {
+
+    private final List<Token> first;
+    private final List<Token> second;
+    private final int split;
+    private final int size;
+
+    Concatenation(List<Token> first, List<Token> second) {
+      this.first = first;
+      this.second = second;
+      this.split = first.size();
+      this.size = split + second.size();
+    }
+
+    @Override
+    public Token get(int index) {
+      return index < split ? first.get(index) : second.get(index - split);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public List<Token> subList(int fromIndex, int toIndex) {
+      if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+        throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size);
+      }
+      if (toIndex <= split) {
+        return first.subList(fromIndex, toIndex);
+      }
+      if (fromIndex >= split) {
+        return second.subList(fromIndex - split, toIndex - split);
+      }
+      return concat(first.subList(fromIndex, split), second.subList(0, toIndex - split));
+    }
+  }
+}
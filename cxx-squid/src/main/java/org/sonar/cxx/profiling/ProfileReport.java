@@ -0,0 +1,169 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.profiling;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.sonar.cxx.profiling.ScanProfile.FileProfile;
+import org.sonar.cxx.profiling.ScanProfile.Measurement;
+
+/**
+ * Aggregates a {@link ScanProfile} into top-N tables of the most expensive
+ * visitors and files and writes them as JSON or to a log.
+ */
+public class ProfileReport {
+
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  private final ScanProfile profile;
+  private final int top;
+
+  public ProfileReport(ScanProfile profile, int top) {
+    this.profile = profile;
+    this.top = top;
+  }
+
+  /**
+   * Visitors ordered by the time spent in them, most expensive first.
+   */
+  public List<Map.Entry<String, Measurement>> getTopVisitors() {
+    List<Map.Entry<String, Measurement>> visitors = new ArrayList<>(profile.getVisitors().entrySet());
+    Collections.sort(visitors, new Comparator<Map.Entry<String, Measurement>>() {
+      @Override
+      public int compare(Map.Entry<String, Measurement> e1, Map.Entry<String, Measurement> e2) {
+        return Long.compare(e2.getValue().getNanos(), e1.getValue().getNanos());
+      }
+    });
+    return visitors.subList(0, Math.min(top, visitors.size()));
+  }
+
+  /**
+   * Files ordered by the total time spent in them, most expensive first.
+   */
+  public List<FileProfile> getTopFiles() {
+    List<FileProfile> files = new ArrayList<>(profile.getFiles());
+    Collections.sort(files, new Comparator<FileProfile>() {
+      @Override
+      public int compare(FileProfile f1, FileProfile f2) {
+        return Long.compare(f2.getNanos(), f1.getNanos());
+      }
+    });
+    return files.subList(0, Math.min(top, files.size()));
+  }
+
+  public void writeJson(File file) throws IOException {
+    try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+      writeJson(writer);
+    }
+  }
+
+  public void writeJson(Writer writer) throws IOException {
+    writer.write("{\n  \"fileCount\": " + profile.getFiles().size() + ",\n");
+
+    writer.write("  \"phases\": ");
+    writePhases(writer, profile.getPhases());
+    writer.write(",\n");
+
+    writer.write("  \"visitors\": [");
+    String separator = "\n";
+    for (Map.Entry<String, Measurement> entry : getTopVisitors()) {
+      writer.write(separator + "    {\"name\": " + quote(entry.getKey())
+        + ", \"calls\": " + entry.getValue().getCalls() + ", " + measurement(entry.getValue()) + "}");
+      separator = ",\n";
+    }
+    writer.write("\n  ],\n");
+
+    writer.write("  \"files\": [");
+    separator = "\n";
+    for (FileProfile file : getTopFiles()) {
+      writer.write(separator + "    {\"path\": " + quote(file.getPath())
+        + ", \"ms\": " + millis(file.getNanos()) + ", \"phases\": ");
+      writePhases(writer, file.getPhases());
+      if (file.getSlowestVisitor() != null) {
+        writer.write(", \"slowestVisitor\": " + quote(file.getSlowestVisitor())
+          + ", \"slowestVisitorMs\": " + millis(file.getSlowestVisitorNanos()));
+      }
+      writer.write("}");
+      separator = ",\n";
+    }
+    writer.write("\n  ]\n}\n");
+  }
+
+  public void log(Logger log) {
+    StringBuilder phases = new StringBuilder();
+    for (Map.Entry<String, Measurement> entry : profile.getPhases().entrySet()) {
+      phases.append(' ').append(entry.getKey()).append('=').append(millis(entry.getValue().getNanos())).append("ms");
+    }
+    log.info("Scan profile of {} files:{}", profile.getFiles().size(), phases);
+    for (Map.Entry<String, Measurement> entry : getTopVisitors()) {
+      log.info("  visitor {}: {}ms, {} bytes", entry.getKey(), millis(entry.getValue().getNanos()),
+        entry.getValue().getBytes());
+    }
+    for (FileProfile file : getTopFiles()) {
+      log.info("  file {}: {}ms (slowest visitor {})", file.getPath(), millis(file.getNanos()),
+        file.getSlowestVisitor());
+    }
+  }
+
+  private static void writePhases(Writer writer, Map<String, Measurement> phases) throws IOException {
+    writer.write("{");
+    String separator = "";
+    for (Map.Entry<String, Measurement> entry : phases.entrySet()) {
+      writer.write(separator + quote(entry.getKey()) + ": {" + measurement(entry.getValue()) + "}");
+      separator = ", ";
+    }
+    writer.write("}");
+  }
+
+  private static String measurement(Measurement measurement) {
+    return "\"ms\": " + millis(measurement.getNanos()) + ", \"bytes\": " + measurement.getBytes();
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ENGLISH, "%.3f", nanos / NANOS_PER_MILLI);
+  }
+
+  static String quote(String value) {
+    StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+}
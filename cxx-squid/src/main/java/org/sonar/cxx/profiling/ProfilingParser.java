@@ -0,0 +1,110 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.profiling;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.sonar.cxx.profiling.ScanProfile.Measurement;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.LexerException;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.Parser;
+
+/**
+ * Parser measuring the read, lex, preprocess and parse phases of every file
+ * separately.
+ *
+ * The file is read once upfront to measure the I/O, the lexer reads it again
+ * from the file system cache. The preprocessor runs inside of the lexer, its
+ * own measurement is subtracted from the lex phase.
+ */
+public class ProfilingParser extends Parser<Grammar> {
+
+  private final Parser<Grammar> parser;
+  private final Lexer lexer;
+  private final ScanProfile profile;
+
+  /**
+   * @param parser parser used for the tokens
+   * @param lexer the lexer of the parser, the tokens are passed to
+   * {@link Parser#parse(List)} so that each file is lexed once only
+   * @param profile profile receiving the measurements
+   */
+  public ProfilingParser(Parser<Grammar> parser, Lexer lexer, ScanProfile profile) {
+    super(parser.getGrammar());
+    this.parser = parser;
+    this.lexer = lexer;
+    this.profile = profile;
+  }
+
+  @Override
+  public AstNode parse(File file) {
+    profile.startFile(file);
+
+    long start = System.nanoTime();
+    long allocated = ScanProfile.allocatedBytes();
+    try {
+      Files.readAllBytes(file.toPath());
+    } catch (IOException e) {
+      // reported by the lexer
+    }
+    profile.addPhase(ScanProfile.READ, System.nanoTime() - start, ScanProfile.allocatedBytes() - allocated);
+
+    start = System.nanoTime();
+    allocated = ScanProfile.allocatedBytes();
+    List<Token> tokens;
+    try {
+      tokens = lexer.lex(file);
+    } catch (LexerException e) {
+      throw new RecognitionException(e);
+    } finally {
+      Measurement preprocess = profile.getCurrentPhase(ScanProfile.PREPROCESS);
+      long preprocessNanos = preprocess == null ? 0 : preprocess.getNanos();
+      long preprocessBytes = preprocess == null ? 0 : preprocess.getBytes();
+      profile.addPhase(ScanProfile.LEX, System.nanoTime() - start - preprocessNanos,
+        ScanProfile.allocatedBytes() - allocated - preprocessBytes);
+    }
+
+    start = System.nanoTime();
+    allocated = ScanProfile.allocatedBytes();
+    try {
+      return parser.parse(tokens);
+    } finally {
+      profile.addPhase(ScanProfile.PARSE, System.nanoTime() - start, ScanProfile.allocatedBytes() - allocated);
+    }
+  }
+
+  @Override
+  public AstNode parse(String source) {
+    return parser.parse(source);
+  }
+
+  @Override
+  public AstNode parse(List<Token> tokens) {
+    return parser.parse(tokens);
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.profiling;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.sonar.squidbridge.AstScannerExceptionHandler;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+
+/**
+ * Visitor forwarding all calls to another visitor and measuring the time and
+ * the allocations spent in it. Use {@link #wrap(SquidAstVisitor, ScanProfile)}
+ * to keep the token visitor capability of the wrapped visitor; visitors which
+ * are not wrapped are not affected at all.
+ */
+public class ProfilingVisitor extends SquidAstVisitor<Grammar> implements AstScannerExceptionHandler {
+
+  private final SquidAstVisitor<Grammar> visitor;
+  private final String name;
+  private final ScanProfile profile;
+
+  ProfilingVisitor(SquidAstVisitor<Grammar> visitor, ScanProfile profile) {
+    this.visitor = visitor;
+    this.name = visitor.getClass().getSimpleName().isEmpty() ? visitor.getClass().getName() : visitor.getClass().getSimpleName();
+    this.profile = profile;
+  }
+
+  public static ProfilingVisitor wrap(SquidAstVisitor<Grammar> visitor, ScanProfile profile) {
+    if (visitor instanceof AstAndTokenVisitor) {
+      return new ProfilingTokenVisitor(visitor, profile);
+    }
+    return new ProfilingVisitor(visitor, profile);
+  }
+
+  public SquidAstVisitor<Grammar> getVisitor() {
+    return visitor;
+  }
+
+  @Override
+  public void init() {
+    visitor.init();
+    List<AstNodeType> types = visitor.getAstNodeTypesToVisit();
+    subscribeTo(types.toArray(new AstNodeType[types.size()]));
+  }
+
+  @Override
+  public void visitFile(@Nullable AstNode ast) {
+    long start = System.nanoTime();
+    long allocated = ScanProfile.allocatedBytes();
+    visitor.visitFile(ast);
+    record(start, allocated);
+  }
+
+  @Override
+  public void leaveFile(@Nullable AstNode ast) {
+    long start = System.nanoTime();
+    long allocated = ScanProfile.allocatedBytes();
+    visitor.leaveFile(ast);
+    record(start, allocated);
+  }
+
+  @Override
+  public void visitNode(AstNode ast) {
+    long start = System.nanoTime();
+    long allocated = ScanProfile.allocatedBytes();
+    visitor.visitNode(ast);
+    record(start, allocated);
+  }
+
+  @Override
+  public void leaveNode(AstNode ast) {
+    long start = System.nanoTime();
+    long allocated = ScanProfile.allocatedBytes();
+    visitor.leaveNode(ast);
+    record(start, allocated);
+  }
+
+  @Override
+  public void destroy() {
+    visitor.destroy();
+  }
+
+  @Override
+  public void processException(Exception e) {
+    if (visitor instanceof AstScannerExceptionHandler) {
+      ((AstScannerExceptionHandler) visitor).processException(e);
+    }
+  }
+
+  @Override
+  public void processRecognitionException(RecognitionException e) {
+    if (visitor instanceof AstScannerExceptionHandler) {
+      ((AstScannerExceptionHandler) visitor).processRecognitionException(e);
+    }
+  }
+
+  void record(long start, long allocated) {
+    profile.addVisitor(name, System.nanoTime() - start, ScanProfile.allocatedBytes() - allocated);
+  }
+
+  private static class ProfilingTokenVisitor extends ProfilingVisitor implements AstAndTokenVisitor {
+
+    ProfilingTokenVisitor(SquidAstVisitor<Grammar> visitor, ScanProfile profile) {
+      super(visitor, profile);
+    }
+
+    @Override
+    public void visitToken(Token token) {
+      long start = System.nanoTime();
+      long allocated = ScanProfile.allocatedBytes();
+      ((AstAndTokenVisitor) getVisitor()).visitToken(token);
+      record(start, allocated);
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.profiling;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Collects the wall time and the allocated bytes spent per file in the phases
+ * of a scan (read, lex, preprocess, parse) and in every visitor.
+ *
+ * A profile belongs to one scanner and is not thread-safe; the profiles of
+ * several scanners are combined with {@link #merge(ScanProfile)}.
+ */
+public class ScanProfile {
+
+  public static final String READ = "read";
+  public static final String LEX = "lex";
+  public static final String PREPROCESS = "preprocess";
+  public static final String PARSE = "parse";
+  public static final String VISITORS = "visitors";
+
+  private static final com.sun.management.ThreadMXBean THREAD_BEAN = createThreadBean();
+
+  private final Map<String, Measurement> phases = new LinkedHashMap<>();
+  private final Map<String, Measurement> visitors = new HashMap<>();
+  private final List<FileProfile> files = new ArrayList<>();
+  private FileProfile currentFile;
+
+  /**
+   * Starts the measurements of a new file, all following measurements are
+   * accounted to it.
+   */
+  public void startFile(File file) {
+    if (currentFile != null) {
+      currentFile.visitorNanos.clear();
+    }
+    currentFile = new FileProfile(file.getPath());
+    files.add(currentFile);
+  }
+
+  public void addPhase(String phase, long nanos, long bytes) {
+    get(phases, phase).add(nanos, bytes);
+    if (currentFile != null) {
+      get(currentFile.phases, phase).add(nanos, bytes);
+    }
+  }
+
+  public void addVisitor(String visitor, long nanos, long bytes) {
+    get(visitors, visitor).add(nanos, bytes);
+    addPhase(VISITORS, nanos, bytes);
+    if (currentFile != null) {
+      currentFile.addVisitor(visitor, nanos);
+    }
+  }
+
+  /**
+   * Returns the measurement of the phase for the current file, null if there
+   * is none yet.
+   */
+  @Nullable
+  public Measurement getCurrentPhase(String phase) {
+    return currentFile == null ? null : currentFile.phases.get(phase);
+  }
+
+  public void merge(ScanProfile other) {
+    for (Map.Entry<String, Measurement> entry : other.phases.entrySet()) {
+      get(phases, entry.getKey()).add(entry.getValue());
+    }
+    for (Map.Entry<String, Measurement> entry : other.visitors.entrySet()) {
+      get(visitors, entry.getKey()).add(entry.getValue());
+    }
+    files.addAll(other.files);
+  }
+
+  public Map<String, Measurement> getPhases() {
+    return Collections.unmodifiableMap(phases);
+  }
+
+  public Map<String, Measurement> getVisitors() {
+    return Collections.unmodifiableMap(visitors);
+  }
+
+  public List<FileProfile> getFiles() {
+    return Collections.unmodifiableList(files);
+  }
+
+  /**
+   * Bytes allocated by the current thread so far, 0 if the JVM is not able to
+   * tell.
+   */
+  public static long allocatedBytes() {
+    return allocatedBytes(Thread.currentThread());
+  }
+
+  /**
+   * Bytes allocated by the given thread so far, 0 if the JVM is not able to
+   * tell.
+   */
+  public static long allocatedBytes(Thread thread) {
+    return THREAD_BEAN == null ? 0 : THREAD_BEAN.getThreadAllocatedBytes(thread.getId());
+  }
+
+  private static com.sun.management.ThreadMXBean createThreadBean() {
+    try {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled()) {
+          return threadBean;
+        }
+      }
+    } catch (LinkageError e) {
+      // not available on this JVM, allocations are reported as 0
+    }
+    return null;
+  }
+
+  private static Measurement get(Map<String, Measurement> map, String key) {
+    Measurement measurement = map.get(key);
+    if (measurement == null) {
+      measurement = new Measurement();
+      map.put(key, measurement);
+    }
+    return measurement;
+  }
+
+  /**
+   * Accumulated wall time and allocated bytes of a number of calls.
+   */
+  public static final class Measurement {
+
+    private long calls;
+    private long nanos;
+    private long bytes;
+
+    void add(long nanos, long bytes) {
+      this.calls++;
+      this.nanos += nanos;
+      this.bytes += bytes;
+    }
+
+    void add(Measurement other) {
+      this.calls += other.calls;
+      this.nanos += other.nanos;
+      this.bytes += other.bytes;
+    }
+
+    public long getCalls() {
+      return calls;
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+  }
+
+  /**
+   * Measurements of a single file. Only the slowest visitor is kept per file
+   * to bound the memory used for big projects.
+   */
+  public static final class FileProfile {
+
+    private final String path;
+    private final Map<String, Measurement> phases = new LinkedHashMap<>();
+    private final Map<String, Long> visitorNanos = new HashMap<>();
+    private String slowestVisitor;
+    private long slowestVisitorNanos;
+
+    FileProfile(String path) {
+      this.path = path;
+    }
+
+    private void addVisitor(String visitor, long nanos) {
+      Long previous = visitorNanos.get(visitor);
+      long total = previous == null ? nanos : previous + nanos;
+      visitorNanos.put(visitor, total);
+      if (total > slowestVisitorNanos) {
+        slowestVisitorNanos = total;
+        slowestVisitor = visitor;
+      }
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public Map<String, Measurement> getPhases() {
+      return Collections.unmodifiableMap(phases);
+    }
+
+    public long getNanos() {
+      long total = 0;
+      for (Measurement measurement : phases.values()) {
+        total += measurement.nanos;
+      }
+      return total;
+    }
+
+    @Nullable
+    public String getSlowestVisitor() {
+      return slowestVisitor;
+    }
+
+    public long getSlowestVisitorNanos() {
+      return slowestVisitorNanos;
+    }
+  }
+}
@@ -19,7 +19,7 @@
  */
 package org.sonar.cxx.visitors;
 
-import org.sonar.cxx.parser.CxxParser;
+import org.sonar.cxx.preprocessor.CxxPreprocessor;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.SquidAstVisitorContext;
 
@@ -32,9 +32,11 @@ public class CxxFileVisitor<GRAMMAR extends Grammar> extends SquidAstVisitor<GRA
   implements AstAndTokenVisitor {
 
   private SquidAstVisitorContext<?> context = null;
+  private final CxxPreprocessor cxxpp;
 
-  public CxxFileVisitor(SquidAstVisitorContext<?> context) {
+  public CxxFileVisitor(SquidAstVisitorContext<?> context, CxxPreprocessor cxxpp) {
     this.context = context;
+    this.cxxpp = cxxpp;
   }
 
   /**
@@ -42,7 +44,7 @@ public class CxxFileVisitor<GRAMMAR extends Grammar> extends SquidAstVisitor<GRA
    */
   @Override
   public void visitFile(AstNode node) {
-    CxxParser.finishedParsing(context.getFile());
+    cxxpp.finishedPreprocessing(context.getFile());
   }
 
   /**
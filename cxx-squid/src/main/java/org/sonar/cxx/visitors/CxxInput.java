@@ -0,0 +1,66 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+/**
+ * Input a visitor needs from the scanner, from the cheapest to the most
+ * expensive one. Visitors declare it with {@link CxxRequiresInput}, the ones
+ * without the annotation need the syntax tree.
+ */
+public enum CxxInput {
+
+  /**
+   * Only the source text of the file, see {@link CxxSourceText}.
+   */
+  TEXT,
+
+  /**
+   * The preprocessed tokens and their comments, the tree is flat.
+   */
+  TOKENS,
+
+  /**
+   * The full syntax tree of the file.
+   */
+  AST;
+
+  /**
+   * Input declared by the class of the given visitor.
+   */
+  public static CxxInput of(Object visitor) {
+    CxxRequiresInput annotation = visitor.getClass().getAnnotation(CxxRequiresInput.class);
+    return annotation == null ? AST : annotation.value();
+  }
+
+  /**
+   * Most expensive input needed by any of the given visitors, {@link #TEXT}
+   * without visitors.
+   */
+  public static CxxInput required(Object... visitors) {
+    CxxInput required = TEXT;
+    for (Object visitor : visitors) {
+      CxxInput input = of(visitor);
+      if (input.compareTo(required) > 0) {
+        required = input;
+      }
+    }
+    return required;
+  }
+}
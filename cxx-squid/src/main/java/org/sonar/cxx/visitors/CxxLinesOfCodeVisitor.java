@@ -31,7 +31,11 @@ import com.sonar.sslr.api.Token;
 
 /**
  * Visitor that computes the number of lines of code of a file.
+ *
+ * @deprecated the lines of code are computed by {@link CxxMetricsVisitor},
+ * together with the other size and complexity metrics
  */
+@Deprecated
 public class CxxLinesOfCodeVisitor<GRAMMAR extends Grammar> extends SquidAstVisitor<GRAMMAR> implements AstAndTokenVisitor {
 
   private final MetricDef metric;
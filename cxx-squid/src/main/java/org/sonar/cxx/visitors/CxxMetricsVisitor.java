@@ -0,0 +1,143 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import static com.sonar.sslr.api.GenericTokenType.EOF;
+
+import org.sonar.cxx.api.CxxKeyword;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.api.CxxPunctuator;
+import org.sonar.cxx.parser.BudgetedParser;
+import org.sonar.cxx.parser.CxxGrammarImpl;
+import org.sonar.cxx.parser.LexerOnlyParser;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCode;
+
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+
+/**
+ * Visitor computing the size and complexity metrics of a file in a single
+ * traversal: {@link CxxMetric#LINES}, {@link CxxMetric#LINES_OF_CODE},
+ * {@link CxxMetric#FUNCTIONS}, {@link CxxMetric#CLASSES},
+ * {@link CxxMetric#STATEMENTS} and {@link CxxMetric#COMPLEXITY}.
+ *
+ * The results are the same as the ones of the former chain of separate
+ * LinesVisitor, lines of code, CounterVisitor and ComplexityVisitor instances,
+ * the measures are added to the current source code (file, class or function).
+ * The flat token trees of files analysed without the grammar (lexer only mode
+ * or files exceeding the parse budget) only get the line based metrics, their
+ * complexity would count keywords outside of any function.
+ *
+ * The comment lines and the public API are left to CommentsVisitor and
+ * CxxPublicApiVisitor: the former implements the NOSONAR and header comment
+ * handling of the squid bridge on top of the comment analyser of the scanner,
+ * the latter only runs with a syntax tree and keeps its own state per
+ * declaration, fusing them would duplicate this logic for no measurable gain.
+ */
+public class CxxMetricsVisitor<GRAMMAR extends Grammar> extends SquidAstVisitor<GRAMMAR> implements AstAndTokenVisitor {
+
+  /**
+   * Node types increasing the cyclomatic complexity, function definitions are
+   * the entry points.
+   */
+  private static final AstNodeType[] COMPLEXITY_TYPES = {
+    CxxKeyword.IF,
+    CxxKeyword.FOR,
+    CxxKeyword.WHILE,
+    CxxKeyword.CATCH,
+    CxxKeyword.CASE,
+    CxxKeyword.DEFAULT,
+    CxxPunctuator.AND,
+    CxxPunctuator.OR,
+    CxxPunctuator.QUEST
+  };
+
+  private int lastTokenLine;
+  private boolean tokenTree;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void init() {
+    subscribeTo(CxxGrammarImpl.functionDefinition, CxxGrammarImpl.classSpecifier, CxxGrammarImpl.statement);
+    subscribeTo(COMPLEXITY_TYPES);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void visitFile(AstNode node) {
+    lastTokenLine = -1;
+    tokenTree = node != null
+      && (node.is(LexerOnlyParser.LexedFileType.LEXED_FILE) || node.is(BudgetedParser.SkippedFileType.SKIPPED_FILE));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void visitNode(AstNode node) {
+    if (tokenTree) {
+      return;
+    }
+    SourceCode sourceCode = getContext().peekSourceCode();
+    AstNodeType type = node.getType();
+    if (type == CxxGrammarImpl.functionDefinition) {
+      sourceCode.add(CxxMetric.FUNCTIONS, 1);
+      sourceCode.add(CxxMetric.COMPLEXITY, 1);
+    } else if (type == CxxGrammarImpl.classSpecifier) {
+      sourceCode.add(CxxMetric.CLASSES, 1);
+    } else if (type == CxxGrammarImpl.statement) {
+      sourceCode.add(CxxMetric.STATEMENTS, 1);
+    } else {
+      sourceCode.add(CxxMetric.COMPLEXITY, 1);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void visitToken(Token token) {
+    if (token.getType() == EOF) {
+      getContext().peekSourceCode().setMeasure(CxxMetric.LINES, token.getLine());
+      return;
+    }
+
+    /* Handle all the lines of the token */
+    String value = token.getValue();
+    int newLines = 0;
+    for (int i = value.indexOf('\n'); i != -1; i = value.indexOf('\n', i + 1)) {
+      newLines++;
+    }
+
+    int firstLineAlreadyCounted = lastTokenLine == token.getLine() ? 1 : 0;
+    getContext().peekSourceCode().add(CxxMetric.LINES_OF_CODE, newLines + 1 - firstLineAlreadyCounted);
+
+    lastTokenLine = token.getLine() + newLines;
+  }
+
+}
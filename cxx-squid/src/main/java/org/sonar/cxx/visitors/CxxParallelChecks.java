@@ -0,0 +1,218 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+import javax.annotation.Nullable;
+
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.api.CheckMessage;
+import org.sonar.squidbridge.api.SourceProject;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.ast.AstWalker;
+
+/**
+ * Runs {@link CxxParallelSafe} checks in groups, every group walking the
+ * syntax tree of a file in its own fork/join task while the scanner walks it
+ * with the other visitors. None of the visitors modifies the tree, so the
+ * walks only share read access to it.
+ *
+ * Every check belongs to exactly one group and the tasks of a file are joined
+ * before the next file is visited, so the per file fields of a check are
+ * confined to one thread at a time. Each group has its own context collecting
+ * the issues, they are logged in the order of the groups when the file is
+ * left. Small files are not worth the forking, their groups run in the
+ * scanner thread.
+ */
+public class CxxParallelChecks extends SquidAstVisitor<Grammar> {
+
+  private static final int MIN_PARALLEL_LINES = 1000;
+
+  private final List<CheckGroup> groups = new ArrayList<>();
+  private final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+  private final int minParallelLines;
+
+  /**
+   * @param checks checks which are {@link CxxParallelSafe}
+   * @param groupCount number of groups the checks are distributed to
+   */
+  public CxxParallelChecks(List<SquidAstVisitor<Grammar>> checks, int groupCount) {
+    this(checks, groupCount, MIN_PARALLEL_LINES);
+  }
+
+  CxxParallelChecks(List<SquidAstVisitor<Grammar>> checks, int groupCount, int minParallelLines) {
+    this.minParallelLines = minParallelLines;
+    int count = Math.max(1, Math.min(groupCount, checks.size()));
+    for (int i = 0; i < count; i++) {
+      groups.add(new CheckGroup());
+    }
+    for (int i = 0; i < checks.size(); i++) {
+      groups.get(i % count).add(checks.get(i));
+    }
+  }
+
+  public static boolean isParallelSafe(Object visitor) {
+    return visitor.getClass().isAnnotationPresent(CxxParallelSafe.class);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void init() {
+    for (CheckGroup group : groups) {
+      group.init();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void visitFile(@Nullable AstNode ast) {
+    // the tasks of a file whose analysis failed are not needed anymore
+    joinTasks();
+    for (CheckGroup group : groups) {
+      group.clear();
+    }
+
+    final File file = getContext().getFile();
+    Token lastToken = ast == null ? null : ast.getLastToken();
+    boolean parallel = lastToken != null && lastToken.getLine() >= minParallelLines;
+    for (final CheckGroup group : groups) {
+      if (parallel) {
+        final AstNode tree = ast;
+        tasks.add(ForkJoinTask.adapt(new Runnable() {
+          @Override
+          public void run() {
+            group.scan(file, tree);
+          }
+        }).fork());
+      } else {
+        group.scan(file, ast);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void leaveFile(@Nullable AstNode ast) {
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+    tasks.clear();
+    for (CheckGroup group : groups) {
+      for (CheckMessage message : group.messages) {
+        getContext().log(message);
+      }
+      group.clear();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void destroy() {
+    joinTasks();
+    for (CheckGroup group : groups) {
+      group.destroy();
+    }
+  }
+
+  private void joinTasks() {
+    for (ForkJoinTask<?> task : tasks) {
+      task.quietlyJoin();
+    }
+    tasks.clear();
+  }
+
+  /**
+   * Checks walking the tree together, the group is their context: it only
+   * knows the current file and collects the issues.
+   */
+  private static final class CheckGroup extends SquidAstVisitorContextImpl<Grammar> {
+
+    private final List<SquidAstVisitor<Grammar>> checks = new ArrayList<>();
+    private final List<CheckMessage> messages = new ArrayList<>();
+    private AstWalker walker;
+    private File file;
+
+    CheckGroup() {
+      super(new SourceProject("Cxx Check Group"));
+    }
+
+    void add(SquidAstVisitor<Grammar> check) {
+      check.setContext(this);
+      checks.add(check);
+    }
+
+    void init() {
+      for (SquidAstVisitor<Grammar> check : checks) {
+        check.init();
+      }
+      walker = new AstWalker(checks);
+    }
+
+    void scan(File file, @Nullable AstNode ast) {
+      this.file = file;
+      if (ast != null) {
+        walker.walkAndVisit(ast);
+        return;
+      }
+      for (SquidAstVisitor<Grammar> check : checks) {
+        check.visitFile(null);
+      }
+      for (int i = checks.size() - 1; i >= 0; i--) {
+        checks.get(i).leaveFile(null);
+      }
+    }
+
+    void clear() {
+      messages.clear();
+    }
+
+    void destroy() {
+      for (SquidAstVisitor<Grammar> check : checks) {
+        check.destroy();
+      }
+    }
+
+    @Override
+    public File getFile() {
+      return file;
+    }
+
+    @Override
+    public void log(CheckMessage message) {
+      messages.add(message);
+    }
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.sonar.api.utils.PathUtils;
+import org.sonar.api.utils.WildcardPattern;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+import com.sonar.sslr.api.Token;
+
+/**
+ * Evaluates the regular expressions of all regex template rules of a scanner
+ * together. Rules register their expression once, rules with the same file
+ * pattern form a group and the expressions of a group are compiled into one
+ * {@link MultiPatternMatcher}. The lines of a file are scanned once for all
+ * line rules, the content once for all file rules and every comment once for
+ * all comment rules, however many rules are active.
+ *
+ * Rules are identified by the object registering them, usually the check
+ * itself. Registering again replaces the previous expression.
+ *
+ * The matches are computed once per visit of a file, see {@link #reset()}.
+ */
+public class CxxRegularExpressions {
+
+  private enum Kind {
+    LINE, FILE, COMMENT
+  }
+
+  private static final class Rule {
+
+    private final Kind kind;
+    private final Pattern pattern;
+    private final String matchFilePattern;
+    private final boolean invertFilePattern;
+    private Group group;
+    private int index;
+
+    Rule(Kind kind, Pattern pattern, String matchFilePattern, boolean invertFilePattern) {
+      this.kind = kind;
+      this.pattern = pattern;
+      this.matchFilePattern = matchFilePattern;
+      this.invertFilePattern = invertFilePattern;
+    }
+  }
+
+  private static final class Group {
+
+    private final WildcardPattern filePattern;
+    private final boolean invertFilePattern;
+    private final List<Pattern> linePatterns = new ArrayList<>();
+    private final List<Pattern> filePatterns = new ArrayList<>();
+    private MultiPatternMatcher lineMatcher;
+    private MultiPatternMatcher fileMatcher;
+
+    private boolean applies;
+    private BitSet[] matchingLines;
+    private BitSet matchingFile;
+
+    Group(String matchFilePattern, boolean invertFilePattern) {
+      this.filePattern = matchFilePattern.isEmpty() ? null : WildcardPattern.create(matchFilePattern);
+      this.invertFilePattern = invertFilePattern;
+    }
+
+    void compile() {
+      lineMatcher = new MultiPatternMatcher(linePatterns);
+      fileMatcher = new MultiPatternMatcher(filePatterns);
+    }
+
+    void reset(String path) {
+      boolean matches = filePattern == null || filePattern.match(path);
+      applies = invertFilePattern ? !matches : matches;
+      matchingLines = null;
+      matchingFile = null;
+    }
+  }
+
+  private final SquidAstVisitorContext<?> context;
+  private final CxxSourceText sourceText;
+  private final Map<Object, Rule> rules = new LinkedHashMap<>();
+  private List<Group> groups;
+  private MultiPatternMatcher commentMatcher;
+
+  private File file;
+  private boolean linesScanned;
+  private Token comment;
+  private final BitSet matchingComment = new BitSet();
+
+  public CxxRegularExpressions(SquidAstVisitorContext<?> context, CxxSourceText sourceText) {
+    this.context = context;
+    this.sourceText = sourceText;
+  }
+
+  /**
+   * Registers an expression to be searched in every line of the files
+   * selected by the file pattern (all files if empty, all others if
+   * inverted).
+   */
+  public void addLineExpression(Object owner, Pattern pattern, String matchFilePattern, boolean invertFilePattern) {
+    add(owner, new Rule(Kind.LINE, pattern, matchFilePattern, invertFilePattern));
+  }
+
+  /**
+   * Registers an expression to be searched in the content of the files
+   * selected by the file pattern.
+   */
+  public void addFileExpression(Object owner, Pattern pattern, String matchFilePattern, boolean invertFilePattern) {
+    add(owner, new Rule(Kind.FILE, pattern, matchFilePattern, invertFilePattern));
+  }
+
+  /**
+   * Registers an expression which has to match comments entirely.
+   */
+  public void addCommentExpression(Object owner, Pattern pattern) {
+    add(owner, new Rule(Kind.COMMENT, pattern, "", false));
+  }
+
+  /**
+   * True if the file pattern of the rule selects the current file.
+   */
+  public boolean appliesToFile(Object owner) {
+    Rule rule = rule(owner);
+    update();
+    return rule.group.applies;
+  }
+
+  /**
+   * The (0-based) indexes of the lines of the current file the expression
+   * of the rule is found in. Empty if the rule doesn't apply to the file.
+   */
+  public BitSet getMatchingLines(Object owner) {
+    Rule rule = rule(owner);
+    update();
+    if (!linesScanned) {
+      scanLines();
+    }
+    return rule.group.applies ? rule.group.matchingLines[rule.index] : new BitSet();
+  }
+
+  /**
+   * True if the expression of the rule is found in the current file and the
+   * rule applies to the file.
+   */
+  public boolean matchesFile(Object owner) {
+    Rule rule = rule(owner);
+    update();
+    Group group = rule.group;
+    if (!group.applies) {
+      return false;
+    }
+    if (group.matchingFile == null) {
+      group.matchingFile = new BitSet();
+      group.fileMatcher.find(sourceText.getContent(), group.matchingFile);
+    }
+    return group.matchingFile.get(rule.index);
+  }
+
+  /**
+   * True if the expression of the rule matches the given comment entirely.
+   */
+  public boolean matchesComment(Object owner, Token token) {
+    Rule rule = rule(owner);
+    compile();
+    if (token != comment) {
+      comment = token;
+      commentMatcher.matches(token.getOriginalValue(), matchingComment);
+    }
+    return matchingComment.get(rule.index);
+  }
+
+  /**
+   * Forgets the matches found so far. Called whenever a new file is visited,
+   * together with {@link CxxSourceText#reset()}: the same file may be analysed
+   * again after it has been modified.
+   */
+  public void reset() {
+    file = null;
+    comment = null;
+  }
+
+  private void add(Object owner, Rule rule) {
+    rules.put(owner, rule);
+    groups = null;
+    commentMatcher = null;
+    file = null;
+    comment = null;
+  }
+
+  private Rule rule(Object owner) {
+    Rule rule = rules.get(owner);
+    if (rule == null) {
+      throw new IllegalStateException("No regular expression registered for " + owner);
+    }
+    return rule;
+  }
+
+  private void compile() {
+    if (groups != null) {
+      return;
+    }
+    Map<String, Group> byFilePattern = new LinkedHashMap<>();
+    List<Pattern> commentPatterns = new ArrayList<>();
+    for (Rule rule : rules.values()) {
+      if (rule.kind == Kind.COMMENT) {
+        rule.index = commentPatterns.size();
+        commentPatterns.add(rule.pattern);
+        continue;
+      }
+      String key = rule.invertFilePattern + ":" + rule.matchFilePattern;
+      Group group = byFilePattern.get(key);
+      if (group == null) {
+        group = new Group(rule.matchFilePattern, rule.invertFilePattern);
+        byFilePattern.put(key, group);
+      }
+      rule.group = group;
+      List<Pattern> patterns = rule.kind == Kind.LINE ? group.linePatterns : group.filePatterns;
+      rule.index = patterns.size();
+      patterns.add(rule.pattern);
+    }
+    for (Group group : byFilePattern.values()) {
+      group.compile();
+    }
+    groups = new ArrayList<>(byFilePattern.values());
+    commentMatcher = new MultiPatternMatcher(commentPatterns);
+  }
+
+  private void update() {
+    compile();
+    File current = context.getFile();
+    if (current != file) {
+      file = current;
+      linesScanned = false;
+      String path = PathUtils.sanitize(current.getPath());
+      for (Group group : groups) {
+        group.reset(path);
+      }
+    }
+  }
+
+  /**
+   * Scans each line of the current file once, with the matchers of all
+   * groups applying to the file.
+   */
+  private void scanLines() {
+    List<Group> applying = new ArrayList<>();
+    for (Group group : groups) {
+      if (group.applies && group.lineMatcher.size() > 0) {
+        group.matchingLines = new BitSet[group.lineMatcher.size()];
+        for (int i = 0; i < group.matchingLines.length; i++) {
+          group.matchingLines[i] = new BitSet();
+        }
+        applying.add(group);
+      }
+    }
+    if (!applying.isEmpty()) {
+      BitSet found = new BitSet();
+      int lines = sourceText.getLineCount();
+      for (int line = 0; line < lines; line++) {
+        String text = sourceText.getLine(line + 1);
+        for (Group group : applying) {
+          group.lineMatcher.find(text, found);
+          for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            group.matchingLines[i].set(line);
+          }
+        }
+      }
+    }
+    linesScanned = true;
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+/**
+ * Text of the file under analysis, shared by all visitors of a scanner. The
+ * file is read and decoded once per visit, on first use, however many line
+ * based checks ask for it, see {@link #reset()}. The line index is built on first use as well.
+ *
+ * Lines follow the rules of {@link java.io.BufferedReader#readLine()}: they
+ * are terminated by '\n', '\r' or "\r\n", the terminators are not part of the
+ * lines and a terminator at the end of the file doesn't start another line.
+ * Line numbers are 1-based like the ones of tokens and violations.
+ */
+public class CxxSourceText {
+
+  private static final int[] NO_LINES = new int[0];
+
+  private final SquidAstVisitorContext<?> context;
+  private final Charset charset;
+
+  private File file;
+  private String content;
+  private boolean encodingErrors;
+  private int[] lineStarts;
+  private int[] lineEnds;
+  private int lineCount;
+
+  public CxxSourceText(SquidAstVisitorContext<?> context, Charset charset) {
+    this.context = context;
+    this.charset = charset;
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * The content of the current file. Characters which cannot be decoded with
+   * the configured charset are replaced by U+FFFD.
+   */
+  public CharSequence getContent() {
+    return load();
+  }
+
+  /**
+   * True if the current file contains byte sequences which are not valid in
+   * the configured charset.
+   */
+  public boolean hasEncodingErrors() {
+    load();
+    return encodingErrors;
+  }
+
+  public int getLineCount() {
+    index();
+    return lineCount;
+  }
+
+  /**
+   * Returns the given (1-based) line without its terminator.
+   */
+  public String getLine(int line) {
+    index();
+    if (line < 1 || line > lineCount) {
+      throw new IndexOutOfBoundsException("Line: " + line + ", Lines: " + lineCount);
+    }
+    return content.substring(lineStarts[line - 1], lineEnds[line - 1]);
+  }
+
+  /**
+   * Offset of the first character of the given (1-based) line in the content.
+   */
+  public int getLineOffset(int line) {
+    index();
+    if (line < 1 || line > lineCount) {
+      throw new IndexOutOfBoundsException("Line: " + line + ", Lines: " + lineCount);
+    }
+    return lineStarts[line - 1];
+  }
+
+  /**
+   * The lines of the current file as a list: element i is line i + 1. The
+   * lines are cut from the content when they are accessed.
+   */
+  public List<String> getLines() {
+    index();
+    return new Lines();
+  }
+
+  /**
+   * Forgets the text read so far. Called whenever a new file is visited: the
+   * same file may be analysed again after it has been modified.
+   */
+  public void reset() {
+    file = null;
+    content = null;
+    lineStarts = null;
+    lineEnds = null;
+    lineCount = 0;
+  }
+
+  private String load() {
+    File current = context.getFile();
+    if (current != file || content == null) {
+      byte[] bytes;
+      try {
+        bytes = Files.readAllBytes(current.toPath());
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      file = current;
+      lineStarts = null;
+      lineEnds = null;
+      lineCount = 0;
+      try {
+        content = charset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPORT)
+          .onUnmappableCharacter(CodingErrorAction.REPORT)
+          .decode(ByteBuffer.wrap(bytes))
+          .toString();
+        encodingErrors = false;
+      } catch (CharacterCodingException e) {
+        content = new String(bytes, charset);
+        encodingErrors = true;
+      }
+    }
+    return content;
+  }
+
+  private void index() {
+    String text = load();
+    if (lineStarts != null) {
+      return;
+    }
+    int length = text.length();
+    if (length == 0) {
+      lineStarts = NO_LINES;
+      lineEnds = NO_LINES;
+      return;
+    }
+    int[] starts = new int[Math.max(16, length / 32)];
+    int[] ends = new int[starts.length];
+    int count = 0;
+    int start = 0;
+    int pos = 0;
+    while (pos < length) {
+      char c = text.charAt(pos);
+      if (c == '\n' || c == '\r') {
+        if (count == starts.length) {
+          starts = Arrays.copyOf(starts, count * 2);
+          ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = pos;
+        count++;
+        pos += (c == '\r' && pos + 1 < length && text.charAt(pos + 1) == '\n') ? 2 : 1;
+        start = pos;
+      } else {
+        pos++;
+      }
+    }
+    if (start < length) {
+      if (count == starts.length) {
+        starts = Arrays.copyOf(starts, count + 1);
+        ends = Arrays.copyOf(ends, count + 1);
+      }
+      starts[count] = start;
+      ends[count] = length;
+      count++;
+    }
+    lineStarts = starts;
+    lineEnds = ends;
+    lineCount = count;
+  }
+
+  private class Lines extends AbstractList<String> implements RandomAccess {
+
+    @Override
+    public String get(int index) {
+      return getLine(index + 1);
+    }
+
+    @Override
+    public int size() {
+      return lineCount;
+    }
+  }
+}
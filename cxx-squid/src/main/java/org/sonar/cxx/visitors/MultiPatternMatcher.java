@@ -0,0 +1,269 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Matches a set of regular expressions against an input with a single scan
+ * of the input for all of them.
+ *
+ * Most regular expressions of rules start with some literal text. For each
+ * expression the literal prefix is extracted, all prefixes are searched at
+ * once with an Aho-Corasick automaton and only the expressions whose prefix
+ * occurs in the input (plus the ones without a prefix) are run afterwards.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public final class MultiPatternMatcher {
+
+  private static final int ALPHABET = 128;
+  private static final String META_CHARACTERS = ".[](){}*+?^$|";
+
+  private final Pattern[] patterns;
+  private final BitSet unconditional = new BitSet();
+  private final int[][] transitions;
+  private final int[][] outputs;
+
+  public MultiPatternMatcher(List<Pattern> patterns) {
+    this.patterns = patterns.toArray(new Pattern[patterns.size()]);
+
+    List<int[]> trie = new ArrayList<>();
+    List<int[]> trieOutputs = new ArrayList<>();
+    trie.add(newState());
+    trieOutputs.add(null);
+    for (int i = 0; i < this.patterns.length; i++) {
+      String literal = requiredLiteral(this.patterns[i]);
+      if (literal.isEmpty()) {
+        unconditional.set(i);
+        continue;
+      }
+      int state = 0;
+      for (int pos = 0; pos < literal.length(); pos++) {
+        char c = literal.charAt(pos);
+        if (trie.get(state)[c] < 0) {
+          trie.get(state)[c] = trie.size();
+          trie.add(newState());
+          trieOutputs.add(null);
+        }
+        state = trie.get(state)[c];
+      }
+      trieOutputs.set(state, append(trieOutputs.get(state), i));
+    }
+
+    transitions = trie.toArray(new int[trie.size()][]);
+    outputs = trieOutputs.toArray(new int[trie.size()][]);
+    buildAutomaton();
+  }
+
+  public int size() {
+    return patterns.length;
+  }
+
+  /**
+   * Sets the bits of the expressions which find a match in the input
+   * ({@link java.util.regex.Matcher#find()}), all other bits are cleared.
+   */
+  public void find(CharSequence input, BitSet result) {
+    candidates(input, result);
+    for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+      if (!patterns[i].matcher(input).find()) {
+        result.clear(i);
+      }
+    }
+  }
+
+  /**
+   * Sets the bits of the expressions which match the entire input
+   * ({@link java.util.regex.Matcher#matches()}), all other bits are cleared.
+   */
+  public void matches(CharSequence input, BitSet result) {
+    candidates(input, result);
+    for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+      if (!patterns[i].matcher(input).matches()) {
+        result.clear(i);
+      }
+    }
+  }
+
+  private void candidates(CharSequence input, BitSet result) {
+    result.clear();
+    result.or(unconditional);
+    if (transitions.length == 1) {
+      return;
+    }
+    int state = 0;
+    for (int pos = 0, length = input.length(); pos < length; pos++) {
+      char c = input.charAt(pos);
+      state = c < ALPHABET ? transitions[state][c] : 0;
+      int[] found = outputs[state];
+      if (found != null) {
+        for (int pattern : found) {
+          result.set(pattern);
+        }
+      }
+    }
+  }
+
+  /**
+   * Turns the trie into a deterministic automaton: missing transitions
+   * follow the failure links and the outputs of the failure states are
+   * merged into the states.
+   */
+  private void buildAutomaton() {
+    int[] failure = new int[transitions.length];
+    Deque<Integer> queue = new ArrayDeque<>();
+    for (int c = 0; c < ALPHABET; c++) {
+      int next = transitions[0][c];
+      if (next < 0) {
+        transitions[0][c] = 0;
+      } else {
+        failure[next] = 0;
+        queue.add(next);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      int[] inherited = outputs[failure[state]];
+      if (inherited != null) {
+        for (int pattern : inherited) {
+          outputs[state] = append(outputs[state], pattern);
+        }
+      }
+      for (int c = 0; c < ALPHABET; c++) {
+        int next = transitions[state][c];
+        if (next < 0) {
+          transitions[state][c] = transitions[failure[state]][c];
+        } else {
+          failure[next] = transitions[failure[state]][c];
+          queue.add(next);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the literal text every match of the expression starts with (after
+   * an optional '^'), an empty string if there is none or if it cannot be
+   * determined safely. Only ASCII characters are taken into account.
+   */
+  static String requiredLiteral(Pattern pattern) {
+    String regex = pattern.pattern();
+    int flags = pattern.flags();
+    if ((flags & Pattern.CASE_INSENSITIVE) != 0) {
+      return "";
+    }
+    if ((flags & Pattern.LITERAL) != 0) {
+      return asciiPrefix(regex);
+    }
+    if ((flags & Pattern.COMMENTS) != 0 || regex.contains("\\Q") || hasTopLevelAlternation(regex)) {
+      return "";
+    }
+
+    StringBuilder literal = new StringBuilder();
+    int length = regex.length();
+    int pos = regex.startsWith("^") ? 1 : 0;
+    while (pos < length) {
+      char c = regex.charAt(pos);
+      int next = pos + 1;
+      if (c == '\\') {
+        if (next == length || Character.isLetterOrDigit(regex.charAt(next))) {
+          break;
+        }
+        c = regex.charAt(next);
+        next++;
+      } else if (META_CHARACTERS.indexOf(c) >= 0) {
+        break;
+      }
+      if (c >= ALPHABET) {
+        break;
+      }
+      if (next < length) {
+        char quantifier = regex.charAt(next);
+        if (quantifier == '?' || quantifier == '*' || quantifier == '{') {
+          break;
+        }
+        if (quantifier == '+') {
+          literal.append(c);
+          break;
+        }
+      }
+      literal.append(c);
+      pos = next;
+    }
+    return literal.toString();
+  }
+
+  private static String asciiPrefix(String text) {
+    int pos = 0;
+    while (pos < text.length() && text.charAt(pos) < ALPHABET) {
+      pos++;
+    }
+    return text.substring(0, pos);
+  }
+
+  private static boolean hasTopLevelAlternation(String regex) {
+    int depth = 0;
+    boolean inClass = false;
+    for (int pos = 0; pos < regex.length(); pos++) {
+      char c = regex.charAt(pos);
+      if (c == '\\') {
+        pos++;
+      } else if (inClass) {
+        inClass = c != ']';
+      } else if (c == '[') {
+        inClass = true;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (c == '|' && depth <= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int[] newState() {
+    int[] state = new int[ALPHABET];
+    Arrays.fill(state, -1);
+    return state;
+  }
+
+  private static int[] append(int[] values, int value) {
+    if (values == null) {
+      return new int[]{value};
+    }
+    for (int existing : values) {
+      if (existing == value) {
+        return values;
+      }
+    }
+    int[] result = Arrays.copyOf(values, values.length + 1);
+    result[values.length] = value;
+    return result;
+  }
+}
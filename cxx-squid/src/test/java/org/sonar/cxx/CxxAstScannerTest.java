@@ -26,7 +26,13 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.parser.ParseBudget;
+import org.sonar.cxx.profiling.ScanProfile;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxRequiresInput;
 import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.squidbridge.indexer.QueryByType;
@@ -46,6 +52,73 @@ public class CxxAstScannerTest {
     assertThat(project.getInt(CxxMetric.FILES)).isEqualTo(2);
   }
 
+  @Test
+  public void profiling() {
+    ScanProfile profile = new ScanProfile();
+    AstScanner<Grammar> scanner = CxxAstScanner.create(new CxxConfiguration(), profile);
+    scanner.scanFiles(new ArrayList<>(Arrays.asList(
+      new File("src/test/resources/metrics/trivial.cc"),
+      new File("src/test/resources/metrics/classes.cc")))
+    );
+    SourceProject project = (SourceProject) scanner.getIndex().search(new QueryByType(SourceProject.class)).iterator().next();
+    assertThat(project.getInt(CxxMetric.FILES)).isEqualTo(2);
+    assertThat(profile.getFiles()).hasSize(2);
+    assertThat(profile.getPhases().keySet()).contains(ScanProfile.READ, ScanProfile.LEX, ScanProfile.PARSE, ScanProfile.VISITORS);
+    assertThat(profile.getVisitors().keySet()).contains("CxxMetricsVisitor", "CxxFileVisitor");
+  }
+
+  @Test
+  public void files_exceeding_the_parse_budget_get_lexer_metrics() {
+    CxxConfiguration conf = new CxxConfiguration();
+    conf.setParseBudget(new ParseBudget(0, 1));
+    AstScanner<Grammar> scanner = CxxAstScanner.create(conf);
+    scanner.scanFiles(new ArrayList<>(Arrays.asList(new File("src/test/resources/metrics/classes.cc"),
+      new File("src/test/resources/metrics/complexity.cc"))));
+
+    for (SourceCode sourceCode : scanner.getIndex().search(new QueryByType(SourceFile.class))) {
+      SourceFile file = (SourceFile) sourceCode;
+      if (file.getKey().endsWith("classes.cc")) {
+        assertThat(file.getInt(CxxMetric.LINES)).isEqualTo(7);
+        assertThat(file.getInt(CxxMetric.LINES_OF_CODE)).isEqualTo(5);
+        assertThat(file.getInt(CxxMetric.CLASSES)).isEqualTo(0);
+      }
+      assertThat(file.getInt(CxxMetric.COMPLEXITY)).isEqualTo(0);
+    }
+    assertThat(conf.getParseBudget().getSkippedFiles()).hasSize(2);
+    assertThat(conf.getParseBudget().getSkippedFiles().iterator().next().getReason()).contains("memory limit");
+  }
+
+  @Test
+  public void lexer_only_analysis_keeps_the_lexer_metrics() {
+    CxxConfiguration conf = new CxxConfiguration();
+    conf.setLexerOnlyAnalysisEnabled(true);
+    SourceFile file = CxxAstScanner.scanSingleFileConfig(new File("src/test/resources/metrics/classes.cc"), conf);
+    assertThat(file.getInt(CxxMetric.LINES)).isEqualTo(7);
+    assertThat(file.getInt(CxxMetric.LINES_OF_CODE)).isEqualTo(5);
+    assertThat(file.getInt(CxxMetric.CLASSES)).isEqualTo(0);
+    assertThat(file.getInt(CxxMetric.COMPLEXITY)).isEqualTo(0);
+
+    file = CxxAstScanner.scanSingleFileConfig(new File("src/test/resources/metrics/complexity.cc"), conf);
+    assertThat(file.getInt(CxxMetric.COMPLEXITY)).isEqualTo(0);
+
+    file = CxxAstScanner.scanSingleFileConfig(new File("src/test/resources/metrics/comments.cc"), conf);
+    assertThat(file.getInt(CxxMetric.COMMENT_LINES)).isEqualTo(6);
+    assertThat(file.getNoSonarTagLines()).contains(8).hasSize(1);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void lexer_only_analysis_requires_visitors_without_tree() {
+    CxxConfiguration conf = new CxxConfiguration();
+    assertThat(CxxAstScanner.isLexerOnly(conf, new TokenVisitor())).isFalse();
+
+    conf.setLexerOnlyAnalysisEnabled(true);
+    assertThat(CxxAstScanner.isLexerOnly(conf)).isTrue();
+    assertThat(CxxAstScanner.isLexerOnly(conf, new TokenVisitor())).isTrue();
+    assertThat(CxxAstScanner.isLexerOnly(conf, new TokenVisitor(), new SquidAstVisitor<Grammar>() {
+    })).isFalse();
+  }
+
   @Test
   public void comments() {
     SourceFile file = CxxAstScanner.scanSingleFile(new File("src/test/resources/metrics/comments.cc"));
@@ -94,4 +167,8 @@ public class CxxAstScannerTest {
     SourceFile file = CxxAstScanner.scanSingleFile(new File("src/test/resources/parser/bad/error_recovery_declaration.cc"));
     assertThat(file.getInt(CxxMetric.FUNCTIONS)).isEqualTo(2);
   }
+
+  @CxxRequiresInput(CxxInput.TOKENS)
+  private static class TokenVisitor extends SquidAstVisitor<Grammar> {
+  }
 }
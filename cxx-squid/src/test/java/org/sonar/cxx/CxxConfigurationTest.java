@@ -22,17 +22,26 @@ package org.sonar.cxx;
 import static org.fest.assertions.Assertions.assertThat;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.fest.assertions.Assertions;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class CxxConfigurationTest {
 
   private static final String vcKey = "Visual C++";
   private static final String vcCharSet = "UTF8";
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   @Test
   public void emptyValueShouldReturnNoDirsOrDefines() {
     CxxConfiguration config = new CxxConfiguration();
@@ -222,6 +231,48 @@ public class CxxConfigurationTest {
     assertThat(config.getDefines().size()).isEqualTo(30);
   }  
 
+  @Test
+  public void shouldHandleCompilationDatabase() throws IOException {
+    File root = tmp.getRoot();
+    String dir = root.getAbsolutePath().replace('\\', '/');
+    File database = tmp.newFile("compile_commands.json");
+    String json = "[\n"
+      + "{ \"directory\": \"" + dir + "\", \"file\": \"a.cpp\",\n"
+      + "  \"command\": \"g++ -Iinc -DA=1 -D B -c a.cpp\" },\n"
+      + "{ \"directory\": \"" + dir + "\", \"file\": \"b.cpp\",\n"
+      + "  \"arguments\": [\"g++\", \"-D\", \"B\", \"-DA=1\", \"-I\", \"inc\", \"b.cpp\"] },\n"
+      + "{ \"directory\": \"" + dir + "\", \"file\": \"c.cpp\",\n"
+      + "  \"command\": \"g++ -isystem sys -DC -c c.cpp\" }\n"
+      + "]\n";
+    Files.write(database.toPath(), json.getBytes(StandardCharsets.UTF_8));
+
+    CxxConfiguration config = new CxxConfiguration();
+    config.setDefines(Arrays.asList("OVERALL 1"));
+    config.setCompilationPropertiesWithCompilationDatabase(database);
+
+    CxxCompilationUnitSettings a = config.getCompilationUnitSettings(new File(root, "a.cpp"));
+    CxxCompilationUnitSettings b = config.getCompilationUnitSettings(new File(root, "b.cpp"));
+    CxxCompilationUnitSettings c = config.getCompilationUnitSettings(new File(root, "c.cpp"));
+    CxxCompilationUnitSettings header = config.getCompilationUnitSettings(new File(root, "a.h"));
+
+    assertThat(a.getDefines()).containsOnly("OVERALL 1", "A 1", "B 1");
+    assertThat(a.getIncludeDirectories()).containsOnly(new File(root, "inc").getAbsolutePath());
+    assertThat(b).isSameAs(a);
+    assertThat(c.getDefines()).containsOnly("OVERALL 1", "C 1");
+    assertThat(c.getIncludeDirectories()).containsOnly(new File(root, "sys").getAbsolutePath());
+    assertThat(c.getId()).isNotEqualTo(a.getId());
+    assertThat(header.getDefines()).containsOnly("OVERALL 1", "A 1", "B 1", "C 1");
+    assertThat(config.getCompilationUnitSettings(null)).isSameAs(header);
+  }
+
+  @Test
+  public void shouldSplitCommandLines() {
+    assertThat(CxxCompilationDatabase.splitCommandLine("g++ \"-DX=\\\"a b\\\"\" 'c d' e\\ f", false))
+      .containsExactly("g++", "-DX=\"a b\"", "c d", "e f");
+    assertThat(CxxCompilationDatabase.splitCommandLine("cl.exe /I\"C:\\Program Files\\inc\" /DX", true))
+      .containsExactly("cl.exe", "/IC:\\Program Files\\inc", "/DX");
+  }
+
   private void ValidateDefaultAsserts(List<String> defines) {
     Assertions.assertThat(defines).as("_INTEGRAL_MAX_BITS");
     Assertions.assertThat(defines).as("_MSC_VER");
@@ -0,0 +1,109 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CxxGccBuildLogParserTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File root;
+  private File buildLog;
+
+  @Before
+  public void setUp() throws IOException {
+    root = tmp.getRoot();
+    write("flags.rsp", "-DRSP \"-DQUOTED=a b\" -I rsp");
+    buildLog = write("build.log",
+      "make[1]: Entering directory '" + path("lib") + "'",
+      "gcc -DLIB=1 -Iinclude -c -o a.o a.c",
+      "make[1]: Leaving directory '" + path("lib") + "'",
+      "[1/3] cd " + path("app") + " && /usr/bin/c++ -DAPP -I../lib/include -o CMakeFiles/main.cpp.o -c main.cpp",
+      "ccache x86_64-linux-gnu-g++-9 @flags.rsp -c b.cpp",
+      "g++ -DLINK -o app main.o a.o",
+      "make: *** [all] Error 2");
+  }
+
+  @Test
+  public void shouldExtractSettingsPerFile() {
+    HashMap<String, List<String>> includes = new HashMap<>();
+    HashMap<String, Set<String>> defines = new HashMap<>();
+    new CxxGccBuildLogParser(includes, defines, 2, 1).parseGccLog(buildLog, root.getPath(), "UTF-8");
+
+    assertThat(includes.keySet()).containsOnly(path("lib/a.c"), path("app/main.cpp"), path("b.cpp"));
+    assertThat(includes.get(path("lib/a.c"))).containsExactly(path("lib/include"));
+    assertThat(defines.get(path("lib/a.c"))).containsOnly("LIB 1");
+    assertThat(includes.get(path("app/main.cpp"))).containsExactly(path("lib/include"));
+    assertThat(defines.get(path("app/main.cpp"))).containsOnly("APP 1");
+    assertThat(includes.get(path("b.cpp"))).containsExactly(path("rsp"));
+    assertThat(defines.get(path("b.cpp"))).containsOnly("RSP 1", "QUOTED a b");
+  }
+
+  @Test
+  public void shouldReadTheCompileFlagFromResponseFiles() throws IOException {
+    write("compile.rsp", "-DCOMPILE -c c.cpp");
+    write("link.rsp", "-o app d.o d.cpp");
+    File log = write("response.log", "g++ @compile.rsp", "g++ @link.rsp");
+
+    HashMap<String, List<String>> includes = new HashMap<>();
+    HashMap<String, Set<String>> defines = new HashMap<>();
+    new CxxGccBuildLogParser(includes, defines, 2, 1).parseGccLog(log, root.getPath(), "UTF-8");
+
+    assertThat(defines.keySet()).containsOnly(path("c.cpp"));
+    assertThat(defines.get(path("c.cpp"))).containsOnly("COMPILE 1");
+  }
+
+  @Test
+  public void shouldBeUsedForGccBuildLogs() {
+    CxxConfiguration config = new CxxConfiguration();
+    config.setBaseDir(root.getPath());
+    config.setCompilationPropertiesWithBuildLog(Arrays.asList(buildLog), "GCC", "UTF-8");
+
+    assertThat(config.getCompilationUnitSettings(new File(path("lib/a.c"))).getDefines()).containsOnly("LIB 1");
+    assertThat(config.getIncludeDirectories()).containsOnly(path("lib/include"), path("rsp"));
+  }
+
+  private String path(String relative) {
+    return new File(root, relative).getAbsolutePath();
+  }
+
+  private File write(String name, String... lines) throws IOException {
+    File file = new File(root, name);
+    Files.write(file.toPath(), new ArrayList<>(Arrays.asList(lines)), StandardCharsets.UTF_8);
+    return file;
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class CxxVCppBuildLogParserTest {
+
+  @Test
+  public void splitOptionsShouldGroupQuotedArguments() {
+    assertThat(CxxVCppBuildLogParser.splitOptions("/c /I\"C:\\Program Files\\inc\\\"  /D X file.cpp", 0))
+      .containsExactly("/c", "/IC:\\Program Files\\inc\\", "/D", "X", "file.cpp");
+    assertThat(CxxVCppBuildLogParser.splitOptions("bin\\CL.exe /c a.cpp", 11)).containsExactly("/c", "a.cpp");
+  }
+
+  @Test
+  public void shouldParseOptionsOfLine() {
+    HashMap<String, List<String>> includes = new HashMap<>();
+    HashMap<String, Set<String>> defines = new HashMap<>();
+    includes.put("a.cpp", new ArrayList<String>());
+    defines.put("a.cpp", new HashSet<String>());
+    CxxVCppBuildLogParser parser = new CxxVCppBuildLogParser(includes, defines);
+    File project = new File("src/test/resources/compiler").getAbsoluteFile();
+
+    parser.parseVCppLine("/c /I inc /Iinc2 -DA=1 /D B /MDd /arch:SSE2 a.cpp", project.getPath(), "a.cpp");
+
+    assertThat(includes.get("a.cpp")).hasSize(2);
+    assertThat(defines.get("a.cpp")).contains("A 1", "B", "_DLL", "_MT", "_DEBUG", "_M_IX86_FP 1", "_M_ARM_FP");
+    assertThat(defines.get("a.cpp")).excludes("_OPENMP 200203", "_CPPRTTI");
+  }
+
+}
@@ -83,6 +83,15 @@ public class CxxLexerWithPreprocessingTest {
     assertThat(tokens, hasToken("\"haha\"", CxxTokenType.STRING));
   }
 
+  @Test
+  public void expanding_macros_repeatedly() {
+    List<Token> tokens = lexer.lex("#define lala(a) a + hoho\n#define hoho 2\nlala(1) lala(3) lala(1)");
+    assertThat(tokens).hasSize(10);
+    assertThat(tokens, hasToken("1", CxxTokenType.NUMBER));
+    assertThat(tokens, hasToken("3", CxxTokenType.NUMBER));
+    assertThat(tokens, hasToken("2", CxxTokenType.NUMBER));
+  }
+
   @Test
   public void expanding_functionlike_macros() {
     List<Token> tokens = lexer.lex("#define plus(a, b) a + b\n plus(1, 2)");
@@ -98,6 +107,19 @@ public class CxxLexerWithPreprocessingTest {
     assertThat(tokens, hasToken("2", CxxTokenType.NUMBER));
   }
 
+  @Test
+  public void expanding_long_variadic_macro() {
+    StringBuilder source = new StringBuilder("#define CALL(f, ...) f(__VA_ARGS__)\n CALL(g");
+    for (int i = 0; i < 2000; i++) {
+      source.append(", a").append(i);
+    }
+    source.append(");\n");
+    List<Token> tokens = lexer.lex(source.toString());
+    // g ( a0 , ... , a1999 ) ; EOF
+    assertThat(tokens).hasSize(2 + 2 * 2000 - 1 + 3);
+    assertThat(tokens, hasToken("a1999", GenericTokenType.IDENTIFIER));
+  }
+
   @Test
   public void expanding_functionlike_macros_withnamedvarargs() {
     List<Token> tokens = lexer.lex("#define wrapper(args...) args\n wrapper(1, 2)");
@@ -164,6 +186,27 @@ public class CxxLexerWithPreprocessingTest {
     assertThat(tokens, hasToken("cccc", GenericTokenType.IDENTIFIER));
   }
 
+  @Test
+  public void expanding_hashhash_operator_with_empty_arguments() {
+    List<Token> tokens = lexer.lex("#define concat(a,b) x a ## b y\n concat(,) concat(z,)");
+    assertThat(tokens).hasSize(6); // x y x z y + EOF
+    assertThat(tokens, hasToken("z", GenericTokenType.IDENTIFIER));
+  }
+
+  @Test
+  public void expanding_hashhash_operator_relexes_the_result() {
+    List<Token> tokens = lexer.lex("#define hex(n) 0x##n\n hex(cf)");
+    assertThat(tokens).hasSize(2); // 0xcf + EOF
+    assertThat(tokens, hasToken("0xcf", CxxTokenType.NUMBER));
+  }
+
+  @Test
+  public void expanding_hashhash_operator_deletes_comma_before_empty_varargs() {
+    List<Token> tokens = lexer.lex("#define log(fmt, ...) f(fmt, ## __VA_ARGS__)\n log(a) log(a, b)");
+    assertThat(tokens).hasSize(11); // f ( a ) f ( a , b ) + EOF
+    assertThat(tokens, hasToken("b", GenericTokenType.IDENTIFIER));
+  }
+
   //@Test @todo
   public void hashhash_arguments_with_whitespace_before_comma() {
     // The blank behind FOO finds its way into the expansion.
@@ -347,6 +390,27 @@ public class CxxLexerWithPreprocessingTest {
     assertThat(tokens, hasToken("B", GenericTokenType.IDENTIFIER));
   }
 
+  @Test
+  public void headers_with_a_defined_include_guard_are_skipped() {
+    SourceCodeProvider scp = mock(SourceCodeProvider.class);
+    when(scp.getSourceCodeFile(anyString(), anyString(), eq(false))).thenReturn(new File("guarded.h"));
+    when(scp.getSourceCode(any(File.class))).thenReturn("#ifndef GUARDED_H\n#define GUARDED_H\n#define A B\n#endif\n");
+
+    SquidAstVisitorContext<Grammar> ctx = mock(SquidAstVisitorContext.class);
+    when(ctx.getFile()).thenReturn(new File("/home/joe/file.cc"));
+
+    CxxConfiguration conf = new CxxConfiguration();
+    CxxPreprocessor pp = new CxxPreprocessor(ctx, conf, scp);
+    lexer = CxxLexer.create(pp, new JoinStringsPreprocessor());
+
+    List<Token> tokens = lexer.lex("#include <guarded.h>\n"
+      + "#include <guarded.h>\n"
+      + "A");
+    assertThat(tokens).hasSize(2); // B + EOF
+    assertThat(tokens, hasToken("B", GenericTokenType.IDENTIFIER));
+    assertThat(conf.getHeaderCache().getGuardedSkips()).isEqualTo(1);
+  }
+
   @Test
   public void macro_replacement_in_includes_is_working() {
     List<Token> tokens = lexer.lex("#define A \"B\"\n"
@@ -488,6 +552,24 @@ public class CxxLexerWithPreprocessingTest {
     assertThat(tokens).hasSize(2); // nota + EOF
   }
 
+  @Test
+  public void skipped_regions_track_nesting_only() {
+    // directives inside a skipped region are never parsed: malformed ones don't matter
+    List<Token> tokens = lexer.lex("#if 0\n"
+      + "  #if (\n"
+      + "    #define broken(\n"
+      + "  #elif\n"
+      + "  #else\n"
+      + "    #include\n"
+      + "  #endif\n"
+      + "#elif 1\n"
+      + "  a\n"
+      + "#endif\n");
+
+    assertThat(tokens, hasToken("a", GenericTokenType.IDENTIFIER));
+    assertThat(tokens).hasSize(2); // a + EOF
+  }
+
   // Proper separation of parametrized macros and macros expand to a string enclosed
   // in parentheses
   @Test
@@ -519,8 +601,8 @@ public class CxxLexerWithPreprocessingTest {
 
   @Test
   public void externalMacrosCannotBeOverriden() {
-    CxxConfiguration conf = mock(CxxConfiguration.class);
-    when(conf.getDefines()).thenReturn(Arrays.asList("name goodvalue"));
+    CxxConfiguration conf = new CxxConfiguration();
+    conf.setDefines(Arrays.asList("name goodvalue"));
     CxxPreprocessor cxxpp = new CxxPreprocessor(mock(SquidAstVisitorContext.class), conf);
     lexer = CxxLexer.create(conf, cxxpp);
 
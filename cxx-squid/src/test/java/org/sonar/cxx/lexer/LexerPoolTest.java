@@ -0,0 +1,68 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.lexer;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.sonar.cxx.CxxConfiguration;
+
+import com.sonar.sslr.impl.Lexer;
+
+public class LexerPoolTest {
+
+  @Test
+  public void reusingLexerOfSameThread() {
+    CxxConfiguration conf = new CxxConfiguration();
+    LexerPool pool = CxxLexer.getPool(conf);
+    assertThat(pool.getLexer()).isSameAs(pool.getLexer());
+    assertThat(CxxLexer.getPool(conf)).isSameAs(pool);
+    assertThat(pool.getLexer().lex("int a;")).hasSize(4);
+    assertThat(pool.getLexer().lex("int a; int b;")).hasSize(7);
+  }
+
+  @Test
+  public void poolsAreOwnedByTheConfiguration() {
+    CxxConfiguration conf = new CxxConfiguration();
+    LexerPool pool = CxxLexer.getPool(conf);
+    assertThat(CxxLexer.getPool(new CxxConfiguration())).isNotSameAs(pool);
+
+    conf.releaseLexers();
+    assertThat(CxxLexer.getPool(conf)).isNotSameAs(pool);
+  }
+
+  @Test
+  public void creatingLexerPerThread() throws InterruptedException {
+    final LexerPool pool = CxxLexer.getPool(new CxxConfiguration());
+    final AtomicReference<Lexer> other = new AtomicReference<>();
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        other.set(pool.getLexer());
+      }
+    });
+    thread.start();
+    thread.join();
+    assertThat(other.get()).isNotNull();
+    assertThat(other.get()).isNotSameAs(pool.getLexer());
+  }
+}
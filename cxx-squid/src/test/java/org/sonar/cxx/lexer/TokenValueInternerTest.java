@@ -0,0 +1,76 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.lexer;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.sonar.cxx.CxxConfiguration;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+
+public class TokenValueInternerTest {
+
+  private final TokenValueInterner interner = new TokenValueInterner();
+
+  @Test
+  public void equalValuesAreTheSameInstance() {
+    String value = interner.intern(new StringBuilder("interned_").append("value"));
+    assertThat(value).isEqualTo("interned_value");
+    assertThat(interner.intern(new StringBuilder("interned_value"))).isSameAs(value);
+    assertThat(interner.intern("interned_value")).isSameAs(value);
+    assertThat(interner.intern("other_value")).isNotSameAs(value);
+  }
+
+  @Test
+  public void tableGrows() {
+    String[] values = new String[1000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = interner.intern("grow_" + i);
+    }
+    assertThat(interner.size()).isEqualTo(values.length);
+    for (int i = 0; i < values.length; i++) {
+      assertThat(interner.intern(new StringBuilder("grow_").append(i))).isSameAs(values[i]);
+    }
+  }
+
+  @Test
+  public void clearingDropsAllValues() {
+    String value = interner.intern(new StringBuilder("dropped"));
+    interner.clear();
+    assertThat(interner.size()).isEqualTo(0);
+    assertThat(interner.intern(new StringBuilder("dropped"))).isNotSameAs(value);
+  }
+
+  @Test
+  public void lexedIdentifiersShareTheirValue() {
+    CxxConfiguration conf = new CxxConfiguration();
+    List<Token> first = CxxLexer.create(conf).lex("std::size_t a; const int b;");
+    List<Token> second = CxxLexer.create(conf).lex("const std::size_t c;");
+    assertThat(first.get(0).getType()).isEqualTo(GenericTokenType.IDENTIFIER);
+    assertThat(second.get(1).getValue()).isSameAs(first.get(0).getValue());
+    assertThat(conf.getTokenValueInterner().size()).isGreaterThan(0);
+    assertThat(second.get(3).getValue()).isSameAs(first.get(2).getValue());
+    assertThat(second.get(0).getValue()).isSameAs(first.get(5).getValue());
+  }
+}
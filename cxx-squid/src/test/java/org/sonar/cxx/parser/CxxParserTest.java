@@ -34,6 +34,7 @@ import java.util.List;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.preprocessor.CxxPreprocessor;
 import org.sonar.cxx.preprocessor.SourceCodeProvider;
 import org.sonar.squidbridge.SquidAstVisitorContext;
 
@@ -56,10 +57,13 @@ public class CxxParserTest extends ParserBaseTest {
 
   @Test
   public void testParsingOnDiverseSourceFiles() {
+    SquidAstVisitorContext context = mock(SquidAstVisitorContext.class);
+    CxxPreprocessor cxxpp = new CxxPreprocessor(context, conf);
+    p = CxxParser.create(context, conf, cxxpp);
     Collection<File> files = listFiles(goodFiles, new String[]{"cc", "cpp", "hpp"});
     for (File file : files) {
       p.parse(file);
-      CxxParser.finishedParsing(file);
+      cxxpp.finishedPreprocessing(file);
     }
   }
 
@@ -70,11 +74,13 @@ public class CxxParserTest extends ParserBaseTest {
     String baseDir = new File("src/test").getAbsolutePath();
     conf.setBaseDir(baseDir);
     conf.setIncludeDirectories(Arrays.asList("resources"));
-    p = CxxParser.create(mock(SquidAstVisitorContext.class), conf);
+    SquidAstVisitorContext context = mock(SquidAstVisitorContext.class);
+    CxxPreprocessor cxxpp = new CxxPreprocessor(context, conf);
+    p = CxxParser.create(context, conf, cxxpp);
     Collection<File> files = listFiles(preprocessorFiles, new String[]{"cc", "cpp", "hpp"});
     for (File file : files) {
       p.parse(file);
-      CxxParser.finishedParsing(file);
+      cxxpp.finishedPreprocessing(file);
     }
   }
 
@@ -0,0 +1,106 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.parser;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.lexer.CxxLexer;
+import org.sonar.cxx.preprocessor.CxxPreprocessor;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Parser;
+
+public class ParseBudgetTest {
+
+  @Test
+  public void unlimited_budget_is_never_exceeded() throws InterruptedException {
+    ParseBudget.Tracker tracker = new ParseBudget(0, 0).createTracker();
+    tracker.start();
+    Thread.sleep(5);
+    tracker.check();
+  }
+
+  @Test(expected = ParseBudgetExceededException.class)
+  public void exceeding_the_time_limit() throws InterruptedException {
+    ParseBudget.Tracker tracker = new ParseBudget(1, 0).createTracker();
+    tracker.start();
+    Thread.sleep(5);
+    tracker.check();
+  }
+
+  @Test
+  public void grammar_aborts_once_the_budget_is_exceeded() throws InterruptedException {
+    CxxConfiguration conf = new CxxConfiguration();
+    SquidAstVisitorContext<Grammar> context = mock(SquidAstVisitorContext.class);
+    ParseBudget.Tracker tracker = new ParseBudget(1, 0).createTracker();
+    // the tracker is only known to the grammar, not to the preprocessor
+    Parser<Grammar> parser = CxxParser.create(context, conf, new CxxPreprocessor(context, conf), tracker);
+    StringBuilder source = new StringBuilder("void f() {\n");
+    for (int i = 0; i < 1000; i++) {
+      source.append("  a = b + c;\n");
+    }
+    source.append("}\n");
+    // lexed before the budget starts, only the grammar runs with an exceeded budget
+    List<Token> tokens = CxxLexer.create(conf).lex(source.toString());
+
+    tracker.start();
+    Thread.sleep(5);
+    RuntimeException aborted = null;
+    try {
+      parser.parse(tokens);
+    } catch (RuntimeException e) {
+      aborted = e;
+    }
+
+    assertThat(aborted).isNotNull();
+    Throwable cause = aborted;
+    while (!(cause instanceof ParseBudgetExceededException) && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    assertThat(cause).isInstanceOf(ParseBudgetExceededException.class);
+    assertThat(thrownBy(cause, ParseBudgetCheck.class)).isTrue();
+  }
+
+  private static boolean thrownBy(Throwable throwable, Class<?> type) {
+    for (StackTraceElement element : throwable.getStackTrace()) {
+      if (element.getClassName().equals(type.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Test
+  public void collecting_skipped_files() {
+    ParseBudget budget = new ParseBudget(1, 0);
+    budget.addSkippedFile(new File("a.cc"), "time limit of 1 ms exceeded");
+
+    assertThat(budget.getSkippedFiles()).hasSize(1);
+    assertThat(budget.getSkippedFiles().iterator().next().toString()).isEqualTo("a.cc: time limit of 1 ms exceeded");
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class DirectiveKindTest {
+
+  @Test
+  public void conditionals() {
+    assertThat(DirectiveKind.of("#if 0")).isEqualTo(DirectiveKind.IF);
+    assertThat(DirectiveKind.of("#if(A)")).isEqualTo(DirectiveKind.IF);
+    assertThat(DirectiveKind.of("#ifdef A")).isEqualTo(DirectiveKind.IFDEF);
+    assertThat(DirectiveKind.of("#  ifndef A")).isEqualTo(DirectiveKind.IFNDEF);
+    assertThat(DirectiveKind.of("#elif defined(A)")).isEqualTo(DirectiveKind.ELIF);
+    assertThat(DirectiveKind.of("#else// comment")).isEqualTo(DirectiveKind.ELSE);
+    assertThat(DirectiveKind.of("\t#\tendif")).isEqualTo(DirectiveKind.ENDIF);
+  }
+
+  @Test
+  public void ignored_directives() {
+    assertThat(DirectiveKind.of("#pragma once")).isEqualTo(DirectiveKind.IGNORED);
+    assertThat(DirectiveKind.of("#error not supported")).isEqualTo(DirectiveKind.IGNORED);
+    assertThat(DirectiveKind.of("#warning deprecated")).isEqualTo(DirectiveKind.IGNORED);
+    assertThat(DirectiveKind.of("#line 10 \"a.c\"")).isEqualTo(DirectiveKind.IGNORED);
+  }
+
+  @Test
+  public void other_directives() {
+    assertThat(DirectiveKind.of("#define A")).isEqualTo(DirectiveKind.OTHER);
+    assertThat(DirectiveKind.of("#include <a.h>")).isEqualTo(DirectiveKind.OTHER);
+    assertThat(DirectiveKind.of("#ifdefined A")).isEqualTo(DirectiveKind.OTHER);
+    assertThat(DirectiveKind.of("#pragmas")).isEqualTo(DirectiveKind.OTHER);
+    assertThat(DirectiveKind.of("#")).isEqualTo(DirectiveKind.OTHER);
+    assertThat(DirectiveKind.of("int a;")).isEqualTo(DirectiveKind.OTHER);
+  }
+}
@@ -316,6 +316,34 @@ public class ExpressionEvaluatorTest {
     assertFalse(evaluator.eval("defined(LALA)"));
   }
 
+  @Test
+  public void values_exceeding_64bit_fall_back_to_bigint_arithmetic() {
+    assertTrue(evaluator.eval("0x7FFFFFFFFFFFFFFF + 1 > 0x7FFFFFFFFFFFFFFF"));
+    assertTrue(evaluator.eval("-0x7FFFFFFFFFFFFFFF - 2 < -0x7FFFFFFFFFFFFFFF"));
+    assertTrue(evaluator.eval("0x100000000 * 0x100000000 == 0x10000000000000000"));
+    assertTrue(evaluator.eval("~0 == 0xFFFFFFFFFFFFFFFF"));
+    assertTrue(evaluator.eval("1 << 63 == 0x8000000000000000"));
+    assertTrue(evaluator.eval("(1 << 64) == 0"));
+    assertTrue(evaluator.eval("~-1 == 0"));
+    assertTrue(evaluator.eval("-7 % 3 == 2"));
+    assertTrue(evaluator.eval("-7 / 2 == -3"));
+  }
+
+  @Test
+  public void compiled_expressions_use_the_current_macro_values() {
+    CxxPreprocessor pp = mock(CxxPreprocessor.class);
+    ExpressionEvaluator evaluator = new ExpressionEvaluator(mock(CxxConfiguration.class), pp);
+
+    when(pp.valueOf("LALA")).thenReturn("1");
+    assertTrue(evaluator.eval("LALA + 1 == 2"));
+    when(pp.valueOf("LALA")).thenReturn("0x7FFFFFFFFFFFFFFF");
+    assertFalse(evaluator.eval("LALA + 1 == 2"));
+    assertTrue(evaluator.eval("LALA + 1 > LALA"));
+    when(pp.valueOf("LALA")).thenReturn(null);
+    assertFalse(evaluator.eval("defined LALA"));
+    assertTrue(evaluator.eval("LALA + 1 == 1"));
+  }
+
   @Test
   public void stripping_suffix_from_numbers() {
     assertEquals(evaluator.stripSuffix("1L"), "1");
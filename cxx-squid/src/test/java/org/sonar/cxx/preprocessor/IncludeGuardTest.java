@@ -0,0 +1,104 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.api.CxxTokenType;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Parser;
+
+public class IncludeGuardTest {
+
+  private final Parser<Grammar> parser = CppParser.create(new CxxConfiguration());
+
+  @Test
+  public void classic_include_guard() {
+    IncludeGuard guard = IncludeGuard.detect(directives(
+      "#ifndef FOO_H\n#define FOO_H\n#if A\n#define B\n#else\n#endif\nint i;\n#endif // FOO_H\n"));
+    assertThat(guard.getMacro()).isEqualTo("FOO_H");
+  }
+
+  @Test
+  public void if_not_defined_include_guard() {
+    assertThat(IncludeGuard.detect(directives("#if !defined(FOO_H)\n#define FOO_H\n#endif\n")).getMacro())
+      .isEqualTo("FOO_H");
+    assertThat(IncludeGuard.detect(directives("#if !defined FOO_H\n#define FOO_H\n#endif\n")).getMacro())
+      .isEqualTo("FOO_H");
+  }
+
+  @Test
+  public void pragma_once() {
+    assertThat(IncludeGuard.detect(directives("#pragma once\n#define FOO 1\n"))).isNull();
+
+    IncludeGuard guard = IncludeGuard.detect(directives("#pragma once\n#ifndef FOO_H\n#define FOO_H\n#endif\n"));
+    assertThat(guard.getMacro()).isEqualTo("FOO_H");
+  }
+
+  @Test
+  public void no_include_guard() {
+    assertThat(IncludeGuard.detect(directives("#define FOO 1\n"))).isNull();
+    assertThat(IncludeGuard.detect(directives("#ifndef FOO_H\n#define FOO_H\n#endif\n#define BAR\n"))).isNull();
+    assertThat(IncludeGuard.detect(directives("#define BAR\n#ifndef FOO_H\n#define FOO_H\n#endif\n"))).isNull();
+    assertThat(IncludeGuard.detect(directives("#ifndef FOO_H\n#define FOO_H\n#else\n#define BAR\n#endif\n"))).isNull();
+    assertThat(IncludeGuard.detect(directives("#ifdef FOO_H\n#define BAR\n#endif\n"))).isNull();
+    assertThat(IncludeGuard.detect(directives("#if !defined(FOO_H) || BAR\n#define FOO_H\n#endif\n"))).isNull();
+    assertThat(IncludeGuard.detect(directives("#ifndef FOO_H\n#define FOO_H\n"))).isNull();
+  }
+
+  @Test
+  public void header_cache_keeps_the_guard() {
+    ParsedHeaderCache cache = new ParsedHeaderCache();
+    File header = new File("not/existing/header.h");
+    assertThat(cache.getIncludeGuard(header)).isNull();
+
+    cache.put(header, 0, directives("#ifndef FOO_H\n#define FOO_H\n#endif\n"));
+    assertThat(cache.getIncludeGuard(header).getMacro()).isEqualTo("FOO_H");
+  }
+
+  @Test
+  public void header_cache_drops_the_guard_of_modified_headers() {
+    ParsedHeaderCache cache = new ParsedHeaderCache();
+    File header = new File("not/existing/header.h");
+
+    cache.put(header, 1, directives("#ifndef FOO_H\n#define FOO_H\n#endif\n"));
+    assertThat(cache.getIncludeGuard(header)).isNull();
+  }
+
+  private List<ParsedHeaderCache.Directive> directives(String code) {
+    List<ParsedHeaderCache.Directive> directives = new ArrayList<>();
+    for (Token token : IncludeLexer.create().lex(code)) {
+      if (token.getType() == CxxTokenType.PREPROCESSOR) {
+        AstNode lineAst = parser.parse(token.getValue()).getFirstChild();
+        directives.add(new ParsedHeaderCache.Directive(token, lineAst));
+      }
+    }
+    return directives;
+  }
+}
@@ -27,7 +27,10 @@ import static org.junit.Assert.assertThat;
 import java.util.List;
 
 import org.junit.Test;
+import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.api.CxxTokenType;
+import org.sonar.cxx.lexer.CxxLexer;
+import org.sonar.cxx.lexer.LexerPool;
 
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.Lexer;
@@ -72,4 +75,16 @@ public class IncludeLexerTest {
     assertThat(tokens).hasSize(1);
     assertThat(tokens, hasToken("EOF", EOF));
   }
+
+  @Test
+  public void pools_are_owned_by_the_configuration() {
+    CxxConfiguration conf = new CxxConfiguration();
+    LexerPool pool = IncludeLexer.getPool(conf);
+    assertThat(IncludeLexer.getPool(conf)).isSameAs(pool);
+    assertThat(IncludeLexer.getPool(conf)).isNotSameAs(CxxLexer.getPool(conf));
+    assertThat(IncludeLexer.getPool(new CxxConfiguration())).isNotSameAs(pool);
+
+    conf.releaseLexers();
+    assertThat(IncludeLexer.getPool(conf)).isNotSameAs(pool);
+  }
 }
@@ -21,6 +21,8 @@ package org.sonar.cxx.preprocessor;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Map;
+
 import org.junit.Test;
 
 public class MapChainTest {
@@ -112,4 +114,33 @@ public class MapChainTest {
     assertEquals(mc.get("khigh"), "vhigh");
     assertEquals(mc.get("klow"), "vlow");
   }
+
+  @Test
+  public void enableAll() {
+    mc.setHighPrio(true);
+    mc.put("khigh", "vhigh");
+    mc.setHighPrio(false);
+    mc.put("klow", "vlow");
+    mc.disable("khigh");
+    mc.disable("klow");
+
+    mc.enableAll();
+    mc.enable("khigh");
+    mc.clearLowPrio();
+
+    assertEquals(mc.get("khigh"), "vhigh");
+    assertEquals(mc.get("klow"), null);
+  }
+
+  @Test
+  public void restoringLowPrioSnapshot() {
+    mc.setHighPrio(false);
+    mc.put("k", "v");
+    Map<String, String> snapshot = mc.getLowPrioSnapshot();
+    mc.put("k2", "v2");
+    mc.removeLowPrio("k");
+    mc.restoreLowPrio(snapshot);
+    assertEquals(mc.get("k"), "v");
+    assertEquals(mc.get("k2"), null);
+  }
 }
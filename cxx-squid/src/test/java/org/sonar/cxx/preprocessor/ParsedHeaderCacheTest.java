@@ -0,0 +1,90 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParsedHeaderCacheTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final File header = new File("not/existing/header.h");
+  private final List<ParsedHeaderCache.Directive> directives = new ArrayList<>();
+
+  @Test
+  public void gettingCachedHeader() {
+    ParsedHeaderCache cache = new ParsedHeaderCache();
+    assertNull(cache.get(header));
+    cache.put(header, header.lastModified(), directives);
+    assertEquals(cache.get(header), directives);
+    assertEquals(cache.getHits(), 1);
+    assertEquals(cache.getMisses(), 1);
+  }
+
+  @Test
+  public void modifiedHeaderIsNotReturned() {
+    ParsedHeaderCache cache = new ParsedHeaderCache();
+    cache.put(header, header.lastModified() + 1, directives);
+    assertNull(cache.get(header));
+    assertEquals(cache.getMisses(), 1);
+  }
+
+  @Test
+  public void modificationTimeIsReadOncePerAnalysis() throws IOException {
+    ParsedHeaderCache cache = new ParsedHeaderCache();
+    File file = tmp.newFile("header.h");
+    assertTrue(file.setLastModified(10000));
+    cache.put(file, cache.lastModified(file), directives);
+
+    assertTrue(file.setLastModified(20000));
+    assertEquals(cache.lastModified(file), 10000);
+    assertEquals(cache.get(file), directives);
+  }
+
+  @Test
+  public void leastRecentlyUsedHeaderIsEvicted() {
+    ParsedHeaderCache cache = new ParsedHeaderCache(2);
+    File other = new File("not/existing/other.h");
+    File third = new File("not/existing/third.h");
+    cache.put(header, 0, directives);
+    cache.put(other, 0, directives);
+    cache.get(header);
+    cache.put(third, 0, directives);
+
+    assertEquals(cache.size(), 2);
+    assertEquals(cache.getEvictions(), 1);
+    assertNull(cache.get(other));
+    assertNotNull(cache.get(header));
+    assertNotNull(cache.get(third));
+  }
+}
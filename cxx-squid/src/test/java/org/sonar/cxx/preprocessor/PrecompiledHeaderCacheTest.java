@@ -0,0 +1,167 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.visitors.CxxPreprocessorAwareVisitor;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.indexer.QueryByType;
+
+import com.sonar.sslr.api.Grammar;
+
+public class PrecompiledHeaderCacheTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File a;
+  private File b;
+  private File c;
+
+  @Before
+  public void setUp() throws IOException {
+    // the header declares one function in inc1 and two in inc2
+    write("inc1/stdafx.h", "#define DECLARE(name) void name() {}\n");
+    write("inc2/stdafx.h", "#define DECLARE(name) void name() {} void name##2() {}\n");
+    a = write("src/a.cc", "#include \"stdafx.h\"\nDECLARE(a)\n");
+    b = write("src/b.cc", "#include \"stdafx.h\"\nDECLARE(b)\n");
+    c = write("src/c.cc", "#include \"stdafx.h\"\nDECLARE(c)\n");
+  }
+
+  @Test
+  public void snapshot_is_captured_and_reused() throws IOException {
+    CxxConfiguration conf = configuration("-Iinc1", "-Iinc1", "-Iinc1");
+    Map<String, Integer> functions = scan(conf);
+
+    PrecompiledHeaderCache cache = conf.getPrecompiledHeaderCache();
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(2);
+    assertThat(functions.get("a.cc")).isEqualTo(1);
+    assertThat(functions.get("b.cc")).isEqualTo(1);
+    assertThat(functions.get("c.cc")).isEqualTo(1);
+  }
+
+  @Test
+  public void snapshot_is_not_reused_with_different_settings() throws IOException {
+    CxxConfiguration conf = configuration("-Iinc1", "-Iinc1", "-Iinc1 -DOTHER");
+    Map<String, Integer> functions = scan(conf);
+
+    PrecompiledHeaderCache cache = conf.getPrecompiledHeaderCache();
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.getHits()).isEqualTo(0);
+    assertThat(cache.getMisses()).isEqualTo(3);
+    assertThat(functions.get("c.cc")).isEqualTo(1);
+  }
+
+  @Test
+  public void snapshot_is_not_reused_for_a_different_header() throws IOException {
+    CxxConfiguration conf = configuration("-Iinc1", "-Iinc1", "-Iinc2");
+    Map<String, Integer> functions = scan(conf);
+
+    PrecompiledHeaderCache cache = conf.getPrecompiledHeaderCache();
+    assertThat(cache.getHits()).isEqualTo(0);
+    assertThat(functions.get("a.cc")).isEqualTo(1);
+    assertThat(functions.get("c.cc")).isEqualTo(2);
+  }
+
+  @Test
+  public void restored_snapshot_replays_the_include_graph_of_the_headers() throws IOException {
+    File header = write("inc3/stdafx.h", "#define DECLARE(name) void name() {}\n#include \"sub.h\"\n#include \"missing.h\"\n");
+    File sub = write("inc3/sub.h", "\n");
+    CxxConfiguration conf = configuration("-Iinc3", "-Iinc3", "-Iinc3");
+    PreprocessorVisitor visitor = new PreprocessorVisitor();
+    AstScanner<Grammar> scanner = CxxAstScanner.create(conf, visitor);
+    scanner.scanFiles(new ArrayList<>(Arrays.asList(a, b, c)));
+
+    assertThat(conf.getPrecompiledHeaderCache().getHits()).isEqualTo(1);
+    CxxPreprocessor cxxpp = visitor.preprocessor;
+    assertThat(new HashSet<>(cxxpp.getIncludedFiles(c))).isEqualTo(new HashSet<>(cxxpp.getIncludedFiles(a)));
+    assertThat(cxxpp.getIncludedFiles(c)).contains(
+      new CxxPreprocessor.Include(1, header.getCanonicalPath()),
+      new CxxPreprocessor.Include(2, sub.getCanonicalPath()));
+    assertThat(cxxpp.getMissingIncludeFiles(c)).hasSize(1);
+    assertThat(cxxpp.getMissingIncludeFiles(c).iterator().next().getLine()).isEqualTo(3);
+    assertThat(new HashSet<>(cxxpp.getIncludeLookups(c))).isEqualTo(new HashSet<>(cxxpp.getIncludeLookups(a)));
+    assertThat(cxxpp.getIncludeLookups(c)).hasSize(3);
+  }
+
+  private static class PreprocessorVisitor extends SquidAstVisitor<Grammar> implements CxxPreprocessorAwareVisitor {
+
+    private CxxPreprocessor preprocessor;
+
+    @Override
+    public void setPreprocessor(CxxPreprocessor preprocessor) {
+      this.preprocessor = preprocessor;
+    }
+  }
+
+  private CxxConfiguration configuration(String aFlags, String bFlags, String cFlags) throws IOException {
+    String dir = tmp.getRoot().getAbsolutePath().replace('\\', '/');
+    File database = write("compile_commands.json", "[\n"
+      + "{ \"directory\": \"" + dir + "\", \"file\": \"src/a.cc\", \"command\": \"g++ " + aFlags + " -c src/a.cc\" },\n"
+      + "{ \"directory\": \"" + dir + "\", \"file\": \"src/b.cc\", \"command\": \"g++ " + bFlags + " -c src/b.cc\" },\n"
+      + "{ \"directory\": \"" + dir + "\", \"file\": \"src/c.cc\", \"command\": \"g++ " + cFlags + " -c src/c.cc\" }\n"
+      + "]\n");
+    CxxConfiguration conf = new CxxConfiguration();
+    conf.setBaseDir(tmp.getRoot().getAbsolutePath());
+    conf.setPrecompiledHeadersEnabled(true);
+    conf.setCompilationPropertiesWithCompilationDatabase(database);
+    return conf;
+  }
+
+  private Map<String, Integer> scan(CxxConfiguration conf) {
+    AstScanner<Grammar> scanner = CxxAstScanner.create(conf);
+    scanner.scanFiles(new ArrayList<>(Arrays.asList(a, b, c)));
+    Map<String, Integer> functions = new HashMap<>();
+    for (SourceCode file : scanner.getIndex().search(new QueryByType(SourceFile.class))) {
+      functions.put(new File(file.getKey()).getName(), file.getInt(CxxMetric.FUNCTIONS));
+    }
+    return functions;
+  }
+
+  private File write(String path, String content) throws IOException {
+    File file = new File(tmp.getRoot(), path);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}
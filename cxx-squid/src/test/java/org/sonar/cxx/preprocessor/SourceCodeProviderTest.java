@@ -20,14 +20,25 @@
 package org.sonar.cxx.preprocessor;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class SourceCodeProviderTest {
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   private final SourceCodeProvider codeProvider = new SourceCodeProvider();
   private final File expected = new File(new File("src/test/resources/codeprovider/source.hh").getAbsolutePath());
 
@@ -135,4 +146,72 @@ public class SourceCodeProviderTest {
   public void getting_source_code() {
     assertEquals("source code", codeProvider.getSourceCode(expected));
   }
+
+  // ////////////////////////////////////////////////////////////////////////////
+  // Memoization
+  @Test
+  public void resolved_files_are_interned() {
+    String cwd = new File("src/test/resources/codeprovider").getAbsolutePath();
+    File viaCwd = codeProvider.getSourceCodeFile("source.hh", cwd, true);
+    File viaBacksteps = codeProvider.getSourceCodeFile("../source.hh", cwd + File.separator + "folder", true);
+    assertEquals(expected, viaCwd);
+    assertSame(viaCwd, viaBacksteps);
+  }
+
+  @Test
+  public void missing_files_are_cached() throws IOException {
+    File root = tmp.newFolder("include");
+    codeProvider.setIncludeRoots(Arrays.asList(root.getAbsolutePath()), root.getAbsolutePath());
+    assertNull(codeProvider.getSourceCodeFile("late.h", "/", false));
+
+    assertTrue(new File(root, "late.h").createNewFile());
+    assertNull(codeProvider.getSourceCodeFile("late.h", "/", false));
+  }
+
+  @Test
+  public void directory_index_lists_each_directory_once() throws IOException {
+    DirectoryIndex index = new DirectoryIndex();
+    File root = tmp.newFolder("root");
+    File header = new File(root, "Header.h");
+    assertTrue(header.createNewFile());
+    assertTrue(new File(root, "sub").mkdir());
+
+    assertTrue(index.isFile(header));
+    assertFalse(index.isFile(new File(root, "missing.h")));
+    assertFalse(index.isFile(new File(root, "sub")));
+    assertFalse(index.isFile(new File(new File(root, "missing"), "header.h")));
+    assertEquals(header.getCanonicalFile(), index.getCanonicalFile(header));
+    assertSame(index.getCanonicalFile(header), index.getCanonicalFile(new File(new File(root, "sub"), "../Header.h")));
+
+    long listed = index.getListedDirectories();
+    assertFalse(index.isFile(new File(root, "other.h")));
+    assertEquals(listed, index.getListedDirectories());
+  }
+
+  @Test
+  public void directory_index_checks_the_files_of_unreadable_directories() throws IOException {
+    DirectoryIndex index = new DirectoryIndex();
+    File parent = tmp.newFolder("parent");
+    File dir = new File(parent, "inc");
+    assertTrue(dir.mkdir());
+    File header = new File(dir, "header.h");
+    assertTrue(header.createNewFile());
+    File other = tmp.newFolder("other");
+    File otherHeader = new File(other, "header.h");
+    assertTrue(otherHeader.createNewFile());
+
+    try {
+      // like an execute-only directory, not applicable if the permissions are not enforced (e.g. root)
+      Assume.assumeTrue(parent.setReadable(false) && parent.list() == null);
+      Assume.assumeTrue(other.setReadable(false) && other.list() == null);
+
+      assertTrue(index.isFile(header));
+      assertFalse(index.isFile(new File(dir, "missing.h")));
+      assertTrue(index.isFile(otherHeader));
+      assertFalse(index.isFile(new File(other, "missing.h")));
+    } finally {
+      parent.setReadable(true);
+      other.setReadable(true);
+    }
+  }
 }
@@ -0,0 +1,74 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourceReaderTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void decodes_with_the_given_charset() throws IOException {
+    File file = write("#define A \"\u00E4\u00F6\u00FC\"", StandardCharsets.ISO_8859_1);
+    assertThat(new SourceReader(StandardCharsets.ISO_8859_1).read(file).toString())
+      .isEqualTo("#define A \"\u00E4\u00F6\u00FC\"");
+
+    file = write("#define A \"\u00E4\u00F6\u00FC\"", StandardCharsets.UTF_16);
+    assertThat(new SourceReader(StandardCharsets.UTF_16).read(file).toString())
+      .isEqualTo("#define A \"\u00E4\u00F6\u00FC\"");
+  }
+
+  @Test
+  public void skips_byte_order_mark() throws IOException {
+    File file = write("\uFEFF#define A 1", StandardCharsets.UTF_8);
+    assertThat(new SourceReader(StandardCharsets.UTF_8).read(file).toString()).isEqualTo("#define A 1");
+  }
+
+  @Test
+  public void reads_large_and_small_files_with_the_same_reader() throws IOException {
+    StringBuilder large = new StringBuilder();
+    while (large.length() <= SourceReader.MAPPING_THRESHOLD) {
+      large.append("#define MACRO_").append(large.length()).append(" \u00E4\n");
+    }
+    SourceReader reader = new SourceReader(StandardCharsets.UTF_8);
+
+    assertThat(reader.read(write(large.toString(), StandardCharsets.UTF_8)).toString()).isEqualTo(large.toString());
+    assertThat(reader.read(write("#define A 1", StandardCharsets.UTF_8)).toString()).isEqualTo("#define A 1");
+    assertThat(reader.read(write("", StandardCharsets.UTF_8)).toString()).isEmpty();
+  }
+
+  private File write(String content, Charset charset) throws IOException {
+    File file = tmp.newFile();
+    Files.write(file.toPath(), content.getBytes(charset));
+    return file;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.sonar.cxx.lexer.CxxLexer;
+
+import com.sonar.sslr.api.Token;
+
+public class TokenBufferTest {
+
+  private final List<Token> tokens = CxxLexer.create().lex("a b c d e");
+
+  @Test
+  public void appendAndGet() {
+    TokenBuffer buffer = new TokenBuffer(1);
+    buffer.add(tokens.get(0));
+    buffer.addAll(tokens.subList(1, 5));
+    buffer.addAll(buffer);
+    assertThat(values(buffer)).isEqualTo("abcdeabcde");
+  }
+
+  @Test
+  public void slicesShareTheBuffer() {
+    TokenBuffer buffer = new TokenBuffer();
+    buffer.addAll(tokens.subList(0, 5));
+    List<Token> slice = buffer.subList(1, 4).subList(1, 3);
+    assertThat(values(slice)).isEqualTo("cd");
+    buffer.add(tokens.get(0));
+    assertThat(values(slice)).isEqualTo("cd");
+    assertThat(slice.getClass()).isEqualTo(TokenBuffer.class);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void slicesAreReadOnly() {
+    TokenBuffer buffer = new TokenBuffer();
+    buffer.addAll(tokens.subList(0, 5));
+    buffer.subList(0, 2).add(tokens.get(0));
+  }
+
+  @Test
+  public void concatenation() {
+    List<Token> joined = TokenBuffer.concat(tokens.subList(0, 2), tokens.subList(2, 5));
+    assertThat(values(joined)).isEqualTo("abcde");
+    assertThat(values(joined.subList(1, 4))).isEqualTo("bcd");
+    assertThat(values(joined.subList(0, 2))).isEqualTo("ab");
+    assertThat(values(joined.subList(3, 5))).isEqualTo("de");
+    assertThat(TokenBuffer.concat(tokens.subList(0, 0), tokens)).isSameAs(tokens);
+  }
+
+  private static String values(List<Token> tokens) {
+    StringBuilder sb = new StringBuilder();
+    for (Token token : tokens) {
+      sb.append(token.getValue());
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.profiling;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class ProfileReportTest {
+
+  private static ScanProfile createProfile() {
+    ScanProfile profile = new ScanProfile();
+    profile.startFile(new File("a.cc"));
+    profile.addPhase(ScanProfile.PARSE, 1000000, 100);
+    profile.addVisitor("FastCheck", 1000, 10);
+    profile.addVisitor("SlowCheck", 5000000, 20);
+    profile.startFile(new File("b.cc"));
+    profile.addPhase(ScanProfile.PARSE, 9000000, 100);
+    profile.addVisitor("SlowCheck", 1000000, 20);
+    return profile;
+  }
+
+  @Test
+  public void orders_visitors_and_files_by_time() {
+    ProfileReport report = new ProfileReport(createProfile(), 1);
+
+    assertThat(report.getTopVisitors()).hasSize(1);
+    assertThat(report.getTopVisitors().get(0).getKey()).isEqualTo("SlowCheck");
+    assertThat(report.getTopVisitors().get(0).getValue().getCalls()).isEqualTo(2);
+    assertThat(report.getTopFiles()).hasSize(1);
+    assertThat(report.getTopFiles().get(0).getPath()).isEqualTo("b.cc");
+    assertThat(report.getTopFiles().get(0).getSlowestVisitor()).isEqualTo("SlowCheck");
+  }
+
+  @Test
+  public void merges_profiles() {
+    ScanProfile profile = createProfile();
+    profile.merge(createProfile());
+
+    assertThat(profile.getFiles()).hasSize(4);
+    assertThat(profile.getVisitors().get("SlowCheck").getNanos()).isEqualTo(12000000);
+    assertThat(profile.getPhases().get(ScanProfile.PARSE).getBytes()).isEqualTo(400);
+  }
+
+  @Test
+  public void writes_json() throws IOException {
+    StringWriter writer = new StringWriter();
+    new ProfileReport(createProfile(), 10).writeJson(writer);
+
+    String json = writer.toString();
+    assertThat(json).contains("\"fileCount\": 2");
+    assertThat(json).contains("{\"name\": \"SlowCheck\", \"calls\": 2, \"ms\": 6.000, \"bytes\": 40}");
+    assertThat(json).contains("\"path\": \"b.cc\", \"ms\": 10.000");
+  }
+
+  @Test
+  public void quotes_json_strings() {
+    assertThat(ProfileReport.quote("C:\\src\\\"a\".cc")).isEqualTo("\"C:\\\\src\\\\\\\"a\\\".cc\"");
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.api.CxxKeyword;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.api.CxxPunctuator;
+import org.sonar.cxx.parser.CxxGrammarImpl;
+import org.sonar.cxx.parser.CxxParser;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SourceCodeBuilderCallback;
+import org.sonar.squidbridge.SourceCodeBuilderVisitor;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.api.SourceClass;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.api.SourceFunction;
+import org.sonar.squidbridge.api.SourceProject;
+import org.sonar.squidbridge.indexer.QueryByType;
+import org.sonar.squidbridge.metrics.ComplexityVisitor;
+import org.sonar.squidbridge.metrics.CounterVisitor;
+import org.sonar.squidbridge.metrics.LinesVisitor;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+
+public class CxxMetricsVisitorTest {
+
+  private static final CxxMetric[] METRICS = {
+    CxxMetric.LINES,
+    CxxMetric.LINES_OF_CODE,
+    CxxMetric.STATEMENTS,
+    CxxMetric.FUNCTIONS,
+    CxxMetric.CLASSES,
+    CxxMetric.COMPLEXITY
+  };
+
+  @Test
+  @SuppressWarnings({"unchecked", "deprecation"})
+  public void same_metrics_as_the_visitor_chain() {
+    List<File> files = new ArrayList<>();
+    collect(new File("src/test/resources/metrics"), files);
+    collect(new File("src/test/resources/parser/own"), files);
+
+    Map<String, SourceCode> fused = scan(files, new CxxMetricsVisitor<Grammar>());
+    Map<String, SourceCode> chain = scan(files,
+      new LinesVisitor<Grammar>(CxxMetric.LINES),
+      new CxxLinesOfCodeVisitor<Grammar>(CxxMetric.LINES_OF_CODE),
+      CounterVisitor.<Grammar>builder()
+        .setMetricDef(CxxMetric.FUNCTIONS)
+        .subscribeTo(CxxGrammarImpl.functionDefinition)
+        .build(),
+      CounterVisitor.<Grammar>builder()
+        .setMetricDef(CxxMetric.CLASSES)
+        .subscribeTo(CxxGrammarImpl.classSpecifier)
+        .build(),
+      CounterVisitor.<Grammar>builder()
+        .setMetricDef(CxxMetric.STATEMENTS)
+        .subscribeTo(CxxGrammarImpl.statement)
+        .build(),
+      ComplexityVisitor.<Grammar>builder()
+        .setMetricDef(CxxMetric.COMPLEXITY)
+        .subscribeTo(CxxGrammarImpl.functionDefinition, CxxKeyword.IF, CxxKeyword.FOR, CxxKeyword.WHILE,
+          CxxKeyword.CATCH, CxxKeyword.CASE, CxxKeyword.DEFAULT, CxxPunctuator.AND, CxxPunctuator.OR,
+          CxxPunctuator.QUEST)
+        .build());
+
+    assertThat(fused.size()).isGreaterThan(files.size());
+    assertThat(fused.keySet()).isEqualTo(chain.keySet());
+    for (Map.Entry<String, SourceCode> code : fused.entrySet()) {
+      for (CxxMetric metric : METRICS) {
+        assertThat(code.getValue().getInt(metric)).as(code.getKey() + " " + metric)
+          .isEqualTo(chain.get(code.getKey()).getInt(metric));
+      }
+    }
+  }
+
+  /**
+   * Scans the files with the function and class builders of the analysis, the
+   * measures are compared for the files and for each function and class.
+   */
+
+  @SafeVarargs
+  private static Map<String, SourceCode> scan(List<File> files, SquidAstVisitor<Grammar>... visitors) {
+    SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<>(new SourceProject(""));
+    AstScanner.Builder<Grammar> builder = AstScanner.<Grammar>builder(context)
+      .setBaseParser(CxxParser.create(context, new CxxConfiguration()));
+    builder.withMetrics(CxxMetric.values());
+    builder.setFilesMetric(CxxMetric.FILES);
+    builder.withSquidAstVisitor(new SourceCodeBuilderVisitor<>(new SourceCodeBuilderCallback() {
+      @Override
+      public SourceCode createSourceCode(SourceCode parentSourceCode, AstNode astNode) {
+        SourceFunction function = new SourceFunction(position(astNode));
+        function.setStartAtLine(astNode.getTokenLine());
+        return function;
+      }
+    }, CxxGrammarImpl.functionDefinition));
+    builder.withSquidAstVisitor(new SourceCodeBuilderVisitor<>(new SourceCodeBuilderCallback() {
+      @Override
+      public SourceCode createSourceCode(SourceCode parentSourceCode, AstNode astNode) {
+        SourceClass cls = new SourceClass(position(astNode));
+        cls.setStartAtLine(astNode.getTokenLine());
+        return cls;
+      }
+    }, CxxGrammarImpl.classSpecifier));
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      builder.withSquidAstVisitor(visitor);
+    }
+    AstScanner<Grammar> scanner = builder.build();
+    scanner.scanFiles(files);
+
+    Map<String, SourceCode> result = new HashMap<>();
+    for (SourceCode file : scanner.getIndex().search(new QueryByType(SourceFile.class))) {
+      collect(file.getKey(), file, result);
+    }
+    return result;
+  }
+
+  private static String position(AstNode astNode) {
+    return astNode.getToken().getLine() + ":" + astNode.getToken().getColumn();
+  }
+
+  private static void collect(String key, SourceCode code, Map<String, SourceCode> result) {
+    result.put(key, code);
+    if (code.hasChildren()) {
+      for (SourceCode child : code.getChildren()) {
+        collect(key + "/" + child.getKey(), child, result);
+      }
+    }
+  }
+
+  private static void collect(File dir, List<File> files) {
+    for (File file : dir.listFiles()) {
+      if (file.isDirectory()) {
+        collect(file, files);
+      } else if (file.getName().matches(".*\\.(c|cc|cpp|h|hpp)")) {
+        files.add(file);
+      }
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.parser.CxxGrammarImpl;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.CheckMessage;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.checks.SquidCheck;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+
+public class CxxParallelChecksTest {
+
+  private static final File FILE = new File("src/test/resources/metrics/functions.cc");
+
+  @Test
+  public void parallel_groups_report_the_issues_of_their_checks() {
+    assertIssues(0);
+  }
+
+  @Test
+  public void groups_of_small_files_run_in_the_scanner_thread() {
+    assertIssues(Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void parallel_safe_checks_are_annotated() {
+    assertThat(CxxParallelChecks.isParallelSafe(new FunctionCheck())).isTrue();
+    assertThat(CxxParallelChecks.isParallelSafe(new CxxMetricsVisitor<Grammar>())).isFalse();
+  }
+
+  private static void assertIssues(int minParallelLines) {
+    List<FunctionCheck> checks = Arrays.asList(new FunctionCheck(), new FunctionCheck(), new FunctionCheck());
+    CxxParallelChecks parallelChecks = new CxxParallelChecks(new ArrayList<SquidAstVisitor<Grammar>>(checks), 2,
+      minParallelLines);
+    SourceFile file = CxxAstScanner.scanSingleFile(FILE, parallelChecks);
+
+    assertThat(file.getCheckMessages()).hasSize(6);
+    for (FunctionCheck check : checks) {
+      assertThat(check.file).isEqualTo(FILE);
+      int issues = 0;
+      for (CheckMessage message : file.getCheckMessages()) {
+        if (message.getCheck() == check) {
+          issues++;
+        }
+      }
+      assertThat(issues).isEqualTo(2);
+    }
+  }
+
+  @CxxParallelSafe
+  private static class FunctionCheck extends SquidCheck<Grammar> {
+
+    private File file;
+
+    @Override
+    public void init() {
+      subscribeTo(CxxGrammarImpl.functionDefinition);
+    }
+
+    @Override
+    public void visitFile(AstNode astNode) {
+      file = getContext().getFile();
+    }
+
+    @Override
+    public void visitNode(AstNode node) {
+      getContext().createLineViolation(this, "Function", node);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Pattern;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+import com.sonar.sslr.api.Grammar;
+
+public class CxxRegularExpressionsTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final SquidAstVisitorContext<Grammar> context = mock(SquidAstVisitorContext.class);
+  private final Object rule = new Object();
+
+  @Test
+  public void rules_of_a_file_pattern_are_matched_together() throws IOException {
+    CxxRegularExpressions expressions = expressions("a\nTODO\nb\nTODO later\n");
+    Object other = new Object();
+    expressions.addLineExpression(other, Pattern.compile("b"), "", false);
+
+    assertThat(expressions.getMatchingLines(rule).cardinality()).isEqualTo(2);
+    assertThat(expressions.getMatchingLines(rule).get(1)).isTrue();
+    assertThat(expressions.getMatchingLines(other).get(2)).isTrue();
+  }
+
+  @Test
+  public void rescans_a_modified_file_after_reset() throws IOException {
+    CxxSourceText text = new CxxSourceText(context, StandardCharsets.UTF_8);
+    CxxRegularExpressions expressions = expressions(text, "TODO\n");
+    assertThat(expressions.getMatchingLines(rule).cardinality()).isEqualTo(1);
+    Files.write(context.getFile().toPath(), "a\nTODO\nTODO\n".getBytes(StandardCharsets.UTF_8));
+    assertThat(expressions.getMatchingLines(rule).cardinality()).isEqualTo(1);
+
+    text.reset();
+    expressions.reset();
+    assertThat(expressions.getMatchingLines(rule).cardinality()).isEqualTo(2);
+    assertThat(expressions.getMatchingLines(rule).get(0)).isFalse();
+  }
+
+  private CxxRegularExpressions expressions(String content) throws IOException {
+    return expressions(new CxxSourceText(context, StandardCharsets.UTF_8), content);
+  }
+
+  private CxxRegularExpressions expressions(CxxSourceText text, String content) throws IOException {
+    File file = tmp.newFile();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    when(context.getFile()).thenReturn(file);
+    CxxRegularExpressions expressions = new CxxRegularExpressions(context, text);
+    expressions.addLineExpression(rule, Pattern.compile("TODO"), "", false);
+    return expressions;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+import com.sonar.sslr.api.Grammar;
+
+public class CxxSourceTextTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final SquidAstVisitorContext<Grammar> context = mock(SquidAstVisitorContext.class);
+
+  @Test
+  public void lines_follow_the_reader_rules() throws IOException {
+    CxxSourceText text = sourceText("a\r\nbb\rccc\n\nd\n", StandardCharsets.UTF_8);
+    assertThat(text.getLineCount()).isEqualTo(5);
+    assertThat(text.getLines()).containsExactly("a", "bb", "ccc", "", "d");
+    assertThat(text.getLine(3)).isEqualTo("ccc");
+    assertThat(text.getLineOffset(2)).isEqualTo(3);
+    assertThat(text.getContent().toString()).isEqualTo("a\r\nbb\rccc\n\nd\n");
+  }
+
+  @Test
+  public void last_line_without_terminator() throws IOException {
+    assertThat(sourceText("a\nb", StandardCharsets.UTF_8).getLines()).containsExactly("a", "b");
+    assertThat(sourceText("", StandardCharsets.UTF_8).getLineCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void reloads_when_the_file_changes() throws IOException {
+    CxxSourceText text = sourceText("first\n", StandardCharsets.UTF_8);
+    assertThat(text.getLine(1)).isEqualTo("first");
+    when(context.getFile()).thenReturn(file("second\nfile\n", StandardCharsets.UTF_8));
+    assertThat(text.getLines()).containsExactly("second", "file");
+  }
+
+  @Test
+  public void reloads_a_modified_file_after_reset() throws IOException {
+    CxxSourceText text = sourceText("first\n", StandardCharsets.UTF_8);
+    assertThat(text.getLine(1)).isEqualTo("first");
+    Files.write(context.getFile().toPath(), "second\nfile\n".getBytes(StandardCharsets.UTF_8));
+    assertThat(text.getLineCount()).isEqualTo(1);
+
+    text.reset();
+    assertThat(text.getLines()).containsExactly("second", "file");
+  }
+
+  @Test
+  public void encoding_errors() throws IOException {
+    CxxSourceText text = sourceText("caf\u00e9\n", StandardCharsets.UTF_8);
+    assertThat(text.hasEncodingErrors()).isFalse();
+
+    when(context.getFile()).thenReturn(file("caf\u00e9\n", StandardCharsets.ISO_8859_1));
+    assertThat(text.hasEncodingErrors()).isTrue();
+    assertThat(text.getLine(1)).isEqualTo("caf\ufffd");
+  }
+
+  private CxxSourceText sourceText(String content, Charset charset) throws IOException {
+    when(context.getFile()).thenReturn(file(content, charset));
+    return new CxxSourceText(context, StandardCharsets.UTF_8);
+  }
+
+  private File file(String content, Charset charset) throws IOException {
+    File file = tmp.newFile();
+    Files.write(file.toPath(), content.getBytes(charset));
+    return file;
+  }
+}
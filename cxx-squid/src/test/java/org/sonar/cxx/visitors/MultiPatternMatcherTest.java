@@ -0,0 +1,82 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class MultiPatternMatcherTest {
+
+  @Test
+  public void required_literal() {
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("stdafx\\.h"))).isEqualTo("stdafx.h");
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("#include\\s+\"a.h\""))).isEqualTo("#include");
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("^goto"))).isEqualTo("goto");
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("ab+c"))).isEqualTo("ab");
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("ab?c"))).isEqualTo("a");
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("foo(a|b)"))).isEqualTo("foo");
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("a.b", Pattern.LITERAL))).isEqualTo("a.b");
+  }
+
+  @Test
+  public void no_required_literal() {
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("abc|def"))).isEmpty();
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("(?i)todo"))).isEmpty();
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("todo", Pattern.CASE_INSENSITIVE))).isEmpty();
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("\\bfoo"))).isEmpty();
+    assertThat(MultiPatternMatcher.requiredLiteral(Pattern.compile("a\\Q(\\E|x"))).isEmpty();
+  }
+
+  @Test
+  public void find() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher(Arrays.asList(
+      Pattern.compile("stdafx\\.h"),
+      Pattern.compile("std"),
+      Pattern.compile("abc|stdafx"),
+      Pattern.compile("(?i)STDAFX"),
+      Pattern.compile("windows\\.h")));
+    BitSet result = new BitSet();
+
+    matcher.find("#include \"stdafx.h\"", result);
+    assertThat(result.toString()).isEqualTo("{0, 1, 2, 3}");
+
+    matcher.find("#include <windows.h>", result);
+    assertThat(result.toString()).isEqualTo("{4}");
+
+    matcher.find("", result);
+    assertThat(result.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void matches() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher(Arrays.asList(
+      Pattern.compile("// TODO.*"),
+      Pattern.compile("TODO")));
+    BitSet result = new BitSet();
+
+    matcher.matches("// TODO: fix", result);
+    assertThat(result.toString()).isEqualTo("{0}");
+  }
+}
@@ -68,6 +68,15 @@ public final class CxxPlugin extends SonarPlugin {
   public static final String FORCE_INCLUDE_FILES_KEY = "sonar.cxx.forceIncludes";
   public static final String C_FILES_PATTERNS_KEY = "sonar.cxx.cFilesPatterns";
   public static final String MISSING_INCLUDE_WARN = "sonar.cxx.missingIncludeWarnings";
+  public static final String SCAN_THREADS_KEY = "sonar.cxx.scanThreads";
+  public static final String PRECOMPILED_HEADERS_KEY = "sonar.cxx.precompiledHeaders";
+  public static final String PROFILING_KEY = "sonar.cxx.profiling";
+  public static final String PARSE_TIMEOUT_KEY = "sonar.cxx.parseTimeout";
+  public static final String PARSE_MEMORY_LIMIT_KEY = "sonar.cxx.parseMemoryLimit";
+  public static final String ANALYSIS_CACHE_PATH_KEY = "sonar.cxx.analysisCachePath";
+  public static final String COMPILATION_DATABASE_KEY = "sonar.cxx.compilationDatabase";
+  public static final String LEXER_ONLY_ANALYSIS_KEY = "sonar.cxx.lexerOnlyAnalysis";
+  public static final String PARALLEL_CHECKS_KEY = "sonar.cxx.parallelChecks";
 
   private static List<PropertyDefinition> generalProperties() {
     String subcateg = "(1) General";
@@ -136,6 +145,99 @@ public final class CxxPlugin extends SonarPlugin {
       .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
       .type(PropertyType.BOOLEAN)
       .index(8)
+      .build(),
+      PropertyDefinition.builder(CxxPlugin.SCAN_THREADS_KEY)
+      .defaultValue("1")
+      .name("Scan threads")
+      .description("Number of threads used to parse and analyse the source files. Use 0 to start one thread per available processor.")
+      .subCategory(subcateg)
+      .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+      .type(PropertyType.INTEGER)
+      .index(9)
+      .build(),
+      PropertyDefinition.builder(CxxPlugin.PRECOMPILED_HEADERS_KEY)
+      .defaultValue("False")
+      .name("Precompiled headers")
+      .description("Enables/disables the reuse of the preprocessor state after the includes at the beginning of a source file"
+        + " (e.g. 'stdafx.h') for all source files starting with the same includes.")
+      .subCategory(subcateg)
+      .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+      .type(PropertyType.BOOLEAN)
+      .index(10)
+      .build(),
+      PropertyDefinition.builder(CxxPlugin.PROFILING_KEY)
+      .defaultValue("False")
+      .name("Scan profiling")
+      .description("Enables/disables the measurement of the time and memory spent per file in reading, lexing, preprocessing,"
+        + " parsing and in every check. The most expensive checks and files are written to 'cxx-scan-profile.json'"
+        + " in the working directory and summarized in the log.")
+      .subCategory(subcateg)
+      .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+      .type(PropertyType.BOOLEAN)
+      .index(11)
+      .build(),
+      PropertyDefinition.builder(CxxPlugin.PARSE_TIMEOUT_KEY)
+      .defaultValue("0")
+      .name("Parse timeout")
+      .description("Maximum time in seconds spent in preprocessing and parsing a single file. Files exceeding it are reported"
+        + " in the log and get lexer metrics (lines, lines of code, comments) only. Use 0 for no limit.")
+      .subCategory(subcateg)
+      .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+      .type(PropertyType.INTEGER)
+      .index(12)
+      .build(),
+      PropertyDefinition.builder(CxxPlugin.PARSE_MEMORY_LIMIT_KEY)
+      .defaultValue("0")
+      .name("Parse memory limit")
+      .description("Maximum memory in MB allocated while preprocessing and parsing a single file. Files exceeding it are"
+        + " reported in the log and get lexer metrics (lines, lines of code, comments) only. Use 0 for no limit.")
+      .subCategory(subcateg)
+      .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+      .type(PropertyType.INTEGER)
+      .index(13)
+      .build(),
+      PropertyDefinition.builder(CxxPlugin.ANALYSIS_CACHE_PATH_KEY)
+      .defaultValue("")
+      .name("Analysis cache directory")
+      .description("Directory keeping the analysis results of the source files between analyses, relative to the project"
+        + " base directory or absolute. Files which did not change, including the files they include, are not parsed"
+        + " again as long as the configuration and the active rules are the same. Leave empty to disable the cache."
+        + " The directory has to survive the analysis, i.e. must not be inside of the working directory.")
+      .subCategory(subcateg)
+      .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+      .index(14)
+      .build(),
+      PropertyDefinition.builder(CxxPlugin.COMPILATION_DATABASE_KEY)
+      .defaultValue("")
+      .name("JSON compilation database")
+      .description("Path to a JSON compilation database (compile_commands.json, e.g. written by CMake with"
+        + " CMAKE_EXPORT_COMPILE_COMMANDS), relative to the project base directory or absolute. Each translation unit"
+        + " listed is preprocessed with its own include directories and defines, in addition to the ones configured"
+        + " above.")
+      .subCategory(subcateg)
+      .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+      .index(15)
+      .build(),
+      PropertyDefinition.builder(CxxPlugin.LEXER_ONLY_ANALYSIS_KEY)
+      .defaultValue("False")
+      .name("Lexer only analysis")
+      .description("Skips the parsing of the source files when none of the active rules needs the syntax tree, e.g. for"
+        + " quick feedback on pull requests. The files are still preprocessed and get lines, lines of code, comments and"
+        + " duplications, but no functions, classes, statements, complexity or public API metrics.")
+      .subCategory(subcateg)
+      .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+      .type(PropertyType.BOOLEAN)
+      .index(16)
+      .build(),
+      PropertyDefinition.builder(CxxPlugin.PARALLEL_CHECKS_KEY)
+      .defaultValue("0")
+      .name("Parallel check groups")
+      .description("Number of groups the thread safe checks are distributed to. On large files each group walks the syntax"
+        + " tree in its own task, in parallel to the other checks. Use 0 or 1 to run all checks in the scan thread.")
+      .subCategory(subcateg)
+      .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+      .type(PropertyType.INTEGER)
+      .index(17)
       .build()
     ));
   }
@@ -36,15 +36,15 @@ import com.sonar.sslr.impl.Lexer;
 
 public class CxxTokenizer implements Tokenizer {
 
-  private final Charset charset;
+  private final CxxConfiguration conf;
 
   public CxxTokenizer(Charset charset) {
-    this.charset = charset;
+    this.conf = new CxxConfiguration(charset);
   }
 
   @Override
   public final void tokenize(SourceCode source, Tokens cpdTokens) { //@todo deprecated SourceCode
-    Lexer lexer = CxxLexer.create(new CxxConfiguration(charset));
+    Lexer lexer = CxxLexer.getPool(conf).getLexer();
     String fileName = source.getFileName();
     List<Token> tokens = lexer.lex(new File(fileName));
     for (Token token : tokens) {
@@ -0,0 +1,458 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.cxx.squid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.CheckForNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.cxx.CxxCompilationUnitSettings;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.preprocessor.CxxPreprocessor.IncludeLookup;
+
+/**
+ * On-disk cache of the analysis results of the main files, used to skip the
+ * preprocessing and parsing of unchanged files.
+ *
+ * The whole cache is invalidated when the configuration of the analysis or
+ * the active rules change. A single entry is valid as long as the content of
+ * its file and of all files it includes, its compilation unit settings and
+ * the resolution of its include lookups are unchanged: a header created in an
+ * include root may resolve a missing include or shadow a header found in a
+ * later root. The cache is not thread-safe, it is used by the sensor before
+ * and after the scan.
+ */
+public class CxxAnalysisCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger("CxxAnalysisCache");
+  static final int FORMAT_VERSION = 2;
+  static final String CACHE_FILE_NAME = "cxx-analysis-cache.bin";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File cacheFile;
+  private final String configurationHash;
+  private final Map<String, Entry> previousEntries = new HashMap<>();
+  private final Map<String, Entry> currentEntries = new LinkedHashMap<>();
+  private final Map<String, String> contentHashes = new HashMap<>();
+  private final Map<String, Boolean> existingFiles = new HashMap<>();
+  private int hits;
+  private int misses;
+
+  /**
+   * @param directory directory of the cache file, kept between analyses
+   * @param configurationHash hash of everything besides the file contents
+   * influencing the results, see {@link #configurationHash(CxxConfiguration, ActiveRules)}
+   */
+  public CxxAnalysisCache(File directory, String configurationHash) {
+    this.cacheFile = new File(directory, CACHE_FILE_NAME);
+    this.configurationHash = configurationHash;
+  }
+
+  /**
+   * Hash of the analysis configuration (defines, include directories, ...)
+   * and the active rules with their parameters.
+   */
+  public static String configurationHash(CxxConfiguration conf, ActiveRules rules) {
+    List<String> activeRules = new ArrayList<>();
+    for (ActiveRule rule : rules.findAll()) {
+      activeRules.add(rule.ruleKey() + "|" + rule.severity() + "|" + new TreeMap<>(rule.params()));
+    }
+    Collections.sort(activeRules);
+    List<String> defines = new ArrayList<>(conf.getDefines());
+    Collections.sort(defines);
+
+    MessageDigest digest = createDigest();
+    update(digest, String.valueOf(FORMAT_VERSION));
+    update(digest, String.valueOf(CxxAnalysisCache.class.getPackage().getImplementationVersion()));
+    update(digest, conf.getCharset().name());
+    update(digest, String.valueOf(conf.getBaseDir()));
+    update(digest, defines.toString());
+    update(digest, conf.getIncludeDirectories().toString());
+    update(digest, conf.getForceIncludeFiles().toString());
+    update(digest, conf.getCFilesPatterns().toString());
+    update(digest, conf.getHeaderFileSuffixes().toString());
+    update(digest, String.valueOf(conf.getErrorRecoveryEnabled()));
+    update(digest, String.valueOf(conf.getIgnoreHeaderComments()));
+    update(digest, String.valueOf(conf.getPrecompiledHeadersEnabled()));
+    update(digest, String.valueOf(conf.getLexerOnlyAnalysisEnabled()));
+    update(digest, activeRules.toString());
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Reads the results of the previous analysis. A missing, unreadable or
+   * outdated cache is ignored.
+   */
+  public void load() {
+    previousEntries.clear();
+    if (!cacheFile.isFile()) {
+      LOG.info("No analysis cache found in '{}', all files are analysed", cacheFile);
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+      new BufferedInputStream(Files.newInputStream(cacheFile.toPath()), BUFFER_SIZE)))) {
+      if (in.readInt() != FORMAT_VERSION || !configurationHash.equals(in.readUTF())) {
+        LOG.info("Analysis cache '{}' is outdated (configuration or rules changed), all files are analysed", cacheFile);
+        return;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        Entry entry = readEntry(in);
+        previousEntries.put(entry.result.getPath(), entry);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      LOG.warn("Cannot read the analysis cache '{}', all files are analysed: {}", cacheFile, e.getMessage());
+      previousEntries.clear();
+    }
+  }
+
+  /**
+   * Hash of the compilation unit settings (defines and include directories)
+   * in effect for a single file.
+   */
+  public static String settingsHash(CxxCompilationUnitSettings settings) {
+    MessageDigest digest = createDigest();
+    update(digest, settings.getDefines().toString());
+    update(digest, settings.getIncludeDirectories().toString());
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Returns the cached result of the file if neither the file, any of the
+   * files it includes, its settings nor the resolution of its includes changed
+   * since it was stored, otherwise null.
+   */
+  @CheckForNull
+  public CxxFileResult get(File file, CxxConfiguration conf) {
+    Entry entry = previousEntries.get(file.getPath());
+    if (entry == null || !isUpToDate(file.getPath(), entry, conf)) {
+      misses++;
+      return null;
+    }
+    hits++;
+    currentEntries.put(file.getPath(), entry);
+    return entry.result;
+  }
+
+  /**
+   * Stores the result of a file together with the files it includes and the
+   * include lookups done for it.
+   */
+  public void put(CxxFileResult result, CxxConfiguration conf, Collection<String> includes,
+    Collection<IncludeLookup> lookups) {
+    Map<String, String> includeHashes = new TreeMap<>();
+    for (String include : includes) {
+      includeHashes.put(include, contentHash(include));
+    }
+    String settingsHash = settingsHash(conf.getCompilationUnitSettings(new File(result.getPath())));
+    currentEntries.put(result.getPath(), new Entry(contentHash(result.getPath()), settingsHash, includeHashes,
+      new LinkedHashSet<>(lookups), result));
+  }
+
+  /**
+   * Writes the entries of the current analysis, entries of files which are not
+   * part of it anymore are dropped.
+   */
+  public void save() throws IOException {
+    File parent = cacheFile.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Cannot create the directory '" + parent + "'");
+    }
+    File tmpFile = new File(parent, CACHE_FILE_NAME + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+      new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath()), BUFFER_SIZE)))) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(configurationHash);
+      out.writeInt(currentEntries.size());
+      for (Entry entry : currentEntries.values()) {
+        writeEntry(out, entry);
+      }
+    }
+    Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  public int getHits() {
+    return hits;
+  }
+
+  public int getMisses() {
+    return misses;
+  }
+
+  @Override
+  public String toString() {
+    return "hits=" + hits + ", misses=" + misses + ", entries=" + currentEntries.size();
+  }
+
+  private boolean isUpToDate(String path, Entry entry, CxxConfiguration conf) {
+    if (!entry.contentHash.equals(contentHash(path))) {
+      return false;
+    }
+    CxxCompilationUnitSettings settings = conf.getCompilationUnitSettings(new File(path));
+    if (!entry.settingsHash.equals(settingsHash(settings))) {
+      return false;
+    }
+    for (Map.Entry<String, String> include : entry.includeHashes.entrySet()) {
+      if (!include.getValue().equals(contentHash(include.getKey()))) {
+        return false;
+      }
+    }
+    List<File> includeRoots = includeRoots(settings, conf.getBaseDir());
+    for (IncludeLookup lookup : entry.lookups) {
+      String resolvedPath = resolve(lookup, includeRoots);
+      if (resolvedPath == null ? lookup.getResolvedPath() != null : !resolvedPath.equals(lookup.getResolvedPath())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The include roots searched with the given settings, in search order. Roots
+   * which do not exist are kept, they may have been created since.
+   */
+  private static List<File> includeRoots(CxxCompilationUnitSettings settings, String baseDir) {
+    List<File> roots = new ArrayList<>();
+    for (String directory : settings.getIncludeDirectories()) {
+      File root = new File(directory);
+      roots.add(root.isAbsolute() ? root : new File(baseDir, directory));
+    }
+    return roots;
+  }
+
+  /**
+   * Resolves the lookup again the same way the preprocessor does, returns the
+   * canonical path of the file found or null.
+   */
+  @CheckForNull
+  private String resolve(IncludeLookup lookup, List<File> includeRoots) {
+    File file = new File(lookup.getName());
+    List<File> candidates = new ArrayList<>();
+    if (file.isAbsolute()) {
+      candidates.add(file);
+    } else {
+      if (lookup.getDirectory() != null) {
+        candidates.add(new File(lookup.getDirectory(), lookup.getName()));
+      }
+      for (File root : includeRoots) {
+        candidates.add(new File(root, lookup.getName()));
+      }
+    }
+    for (File candidate : candidates) {
+      if (isFile(candidate)) {
+        try {
+          return candidate.getCanonicalPath();
+        } catch (IOException e) {
+          return candidate.getAbsolutePath();
+        }
+      }
+    }
+    return null;
+  }
+
+  private boolean isFile(File file) {
+    Boolean exists = existingFiles.get(file.getPath());
+    if (exists == null) {
+      exists = file.isFile();
+      existingFiles.put(file.getPath(), exists);
+    }
+    return exists;
+  }
+
+  /**
+   * Content hash of the file, the empty string if it cannot be read. Hashes
+   * are computed once per analysis since headers are shared by many files.
+   */
+  private String contentHash(String path) {
+    String hash = contentHashes.get(path);
+    if (hash == null) {
+      hash = computeContentHash(new File(path));
+      contentHashes.put(path, hash);
+    }
+    return hash;
+  }
+
+  private static String computeContentHash(File file) {
+    if (!file.isFile()) {
+      return "";
+    }
+    MessageDigest digest = createDigest();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream in = Files.newInputStream(file.toPath())) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      LOG.debug("Cannot read '{}': {}", file, e.getMessage());
+      return "";
+    }
+    return toHex(digest.digest());
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-1 is not supported", e);
+    }
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) '\n');
+  }
+
+  private static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+      chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+
+  private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+    CxxFileResult result = entry.result;
+    out.writeUTF(result.getPath());
+    out.writeUTF(entry.contentHash);
+    out.writeUTF(entry.settingsHash);
+    out.writeInt(entry.includeHashes.size());
+    for (Map.Entry<String, String> include : entry.includeHashes.entrySet()) {
+      out.writeUTF(include.getKey());
+      out.writeUTF(include.getValue());
+    }
+    out.writeInt(entry.lookups.size());
+    for (IncludeLookup lookup : entry.lookups) {
+      out.writeUTF(lookup.getName());
+      out.writeUTF(lookup.getDirectory() == null ? "" : lookup.getDirectory());
+      out.writeUTF(lookup.getResolvedPath() == null ? "" : lookup.getResolvedPath());
+    }
+    out.writeInt(result.getMeasures().size());
+    for (Map.Entry<CxxMetric, Double> measure : result.getMeasures().entrySet()) {
+      out.writeUTF(measure.getKey().name());
+      out.writeDouble(measure.getValue());
+    }
+    writeComplexities(out, result.getFunctions());
+    writeComplexities(out, result.getClasses());
+    out.writeInt(result.getIssues().size());
+    for (CxxFileResult.Issue issue : result.getIssues()) {
+      out.writeUTF(issue.getRuleKey() == null ? "" : issue.getRuleKey().toString());
+      out.writeInt(issue.getLine() == null ? -1 : issue.getLine());
+      out.writeUTF(issue.getMessage());
+    }
+  }
+
+  private static void writeComplexities(DataOutputStream out, List<CxxFileResult.Complexity> complexities)
+    throws IOException {
+    out.writeInt(complexities.size());
+    for (CxxFileResult.Complexity complexity : complexities) {
+      out.writeUTF(complexity.getKey());
+      out.writeDouble(complexity.getValue());
+    }
+  }
+
+  private static Entry readEntry(DataInputStream in) throws IOException {
+    CxxFileResult result = new CxxFileResult(in.readUTF());
+    String contentHash = in.readUTF();
+    String settingsHash = in.readUTF();
+    Map<String, String> includeHashes = new TreeMap<>();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      includeHashes.put(in.readUTF(), in.readUTF());
+    }
+    Set<IncludeLookup> lookups = new LinkedHashSet<>();
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      String name = in.readUTF();
+      String directory = in.readUTF();
+      String resolvedPath = in.readUTF();
+      lookups.add(new IncludeLookup(name, directory.isEmpty() ? null : directory,
+        resolvedPath.isEmpty() ? null : resolvedPath));
+    }
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      result.setMeasure(CxxMetric.valueOf(in.readUTF()), in.readDouble());
+    }
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      result.addFunction(in.readUTF(), in.readDouble());
+    }
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      result.addClass(in.readUTF(), in.readDouble());
+    }
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      String ruleKey = in.readUTF();
+      int line = in.readInt();
+      result.addIssue(ruleKey.isEmpty() ? null : RuleKey.parse(ruleKey), line < 0 ? null : line, in.readUTF());
+    }
+    return new Entry(contentHash, settingsHash, includeHashes, lookups, result);
+  }
+
+  private static final class Entry {
+
+    private final String contentHash;
+    private final String settingsHash;
+    private final Map<String, String> includeHashes;
+    private final Set<IncludeLookup> lookups;
+    private final CxxFileResult result;
+
+    Entry(String contentHash, String settingsHash, Map<String, String> includeHashes, Set<IncludeLookup> lookups,
+      CxxFileResult result) {
+      this.contentHash = contentHash;
+      this.settingsHash = settingsHash;
+      this.includeHashes = includeHashes;
+      this.lookups = lookups;
+      this.result = result;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.cxx.squid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.sonar.api.rule.RuleKey;
+import org.sonar.cxx.api.CxxMetric;
+
+/**
+ * Result of the analysis of one file: the measures of the file, the
+ * complexity of its functions and classes and the issues found. Results are
+ * either created from a scan or read from the {@link CxxAnalysisCache}.
+ */
+public class CxxFileResult {
+
+  private final String path;
+  private final Map<CxxMetric, Double> measures = new EnumMap<>(CxxMetric.class);
+  private final List<Complexity> functions = new ArrayList<>();
+  private final List<Complexity> classes = new ArrayList<>();
+  private final List<Issue> issues = new ArrayList<>();
+
+  public CxxFileResult(String path) {
+    this.path = path;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public void setMeasure(CxxMetric metric, double value) {
+    measures.put(metric, value);
+  }
+
+  public double getMeasure(CxxMetric metric) {
+    Double value = measures.get(metric);
+    return value == null ? 0.0 : value;
+  }
+
+  public Map<CxxMetric, Double> getMeasures() {
+    return Collections.unmodifiableMap(measures);
+  }
+
+  public void addFunction(String key, double complexity) {
+    functions.add(new Complexity(key, complexity));
+  }
+
+  public List<Complexity> getFunctions() {
+    return Collections.unmodifiableList(functions);
+  }
+
+  public void addClass(String key, double complexity) {
+    classes.add(new Complexity(key, complexity));
+  }
+
+  public List<Complexity> getClasses() {
+    return Collections.unmodifiableList(classes);
+  }
+
+  public void addIssue(@Nullable RuleKey ruleKey, @Nullable Integer line, String message) {
+    issues.add(new Issue(ruleKey, line, message));
+  }
+
+  public List<Issue> getIssues() {
+    return Collections.unmodifiableList(issues);
+  }
+
+  public static final class Complexity {
+
+    private final String key;
+    private final double value;
+
+    Complexity(String key, double value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public double getValue() {
+      return value;
+    }
+  }
+
+  public static final class Issue {
+
+    private final RuleKey ruleKey;
+    private final Integer line;
+    private final String message;
+
+    Issue(@Nullable RuleKey ruleKey, @Nullable Integer line, String message) {
+      this.ruleKey = ruleKey;
+      this.line = line;
+      this.message = message;
+    }
+
+    @Nullable
+    public RuleKey getRuleKey() {
+      return ruleKey;
+    }
+
+    @Nullable
+    public Integer getLine() {
+      return line;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+  }
+}
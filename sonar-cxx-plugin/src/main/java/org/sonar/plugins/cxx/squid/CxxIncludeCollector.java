@@ -0,0 +1,100 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.cxx.squid;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.sonar.cxx.preprocessor.CxxPreprocessor;
+import org.sonar.cxx.visitors.CxxInput;
+import org.sonar.cxx.visitors.CxxPreprocessorAwareVisitor;
+import org.sonar.cxx.visitors.CxxRequiresInput;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+
+/**
+ * Records the files included directly or indirectly by every scanned file and
+ * the include lookups done for it. The collected includes may be shared by the
+ * scanners of several threads.
+ */
+@CxxRequiresInput(CxxInput.TOKENS)
+public class CxxIncludeCollector extends SquidAstVisitor<Grammar> implements CxxPreprocessorAwareVisitor {
+
+  private final ConcurrentMap<String, Set<String>> includes;
+  private final ConcurrentMap<String, Set<CxxPreprocessor.IncludeLookup>> lookups;
+  private CxxPreprocessor cxxpp;
+
+  public CxxIncludeCollector() {
+    this(new ConcurrentHashMap<String, Set<String>>(),
+      new ConcurrentHashMap<String, Set<CxxPreprocessor.IncludeLookup>>());
+  }
+
+  CxxIncludeCollector(ConcurrentMap<String, Set<String>> includes,
+    ConcurrentMap<String, Set<CxxPreprocessor.IncludeLookup>> lookups) {
+    this.includes = includes;
+    this.lookups = lookups;
+  }
+
+  /**
+   * Returns a collector for another scanner, recording into the same maps.
+   */
+  public CxxIncludeCollector share() {
+    return new CxxIncludeCollector(includes, lookups);
+  }
+
+  @Override
+  public void setPreprocessor(CxxPreprocessor preprocessor) {
+    this.cxxpp = preprocessor;
+  }
+
+  @Override
+  public void leaveFile(@Nullable AstNode astNode) {
+    File file = getContext().getFile();
+    if (cxxpp != null && file != null) {
+      includes.put(file.getPath(), cxxpp.getIncludeClosure(file));
+      lookups.put(file.getPath(), new HashSet<>(cxxpp.getIncludeLookups(file)));
+    }
+  }
+
+  public Set<String> getIncludes(File file) {
+    Set<String> result = includes.get(file.getPath());
+    return result == null ? Collections.<String>emptySet() : result;
+  }
+
+  public Set<CxxPreprocessor.IncludeLookup> getIncludeLookups(File file) {
+    Set<CxxPreprocessor.IncludeLookup> result = lookups.get(file.getPath());
+    return result == null ? Collections.<CxxPreprocessor.IncludeLookup>emptySet() : result;
+  }
+
+  /**
+   * Returns true if the includes of the file were recorded.
+   */
+  public boolean contains(File file) {
+    return includes.containsKey(file.getPath());
+  }
+}
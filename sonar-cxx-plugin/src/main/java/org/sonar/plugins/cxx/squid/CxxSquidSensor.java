@@ -20,14 +20,29 @@
 package org.sonar.plugins.cxx.squid;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.AbstractCollection;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Sensor; //@todo deprecated
 import org.sonar.api.batch.SensorContext; //@todo deprecated
 import org.sonar.api.batch.fs.FileSystem;
@@ -46,9 +61,14 @@ import org.sonar.api.measures.Measure; //@todo deprecated
 import org.sonar.api.measures.PersistenceMode; //@todo deprecated
 import org.sonar.api.measures.RangeDistributionBuilder; //@todo deprecated
 import org.sonar.api.resources.Project; //@todo deprecated
+import org.sonar.api.rule.RuleKey;
 import org.sonar.cxx.CxxAstScanner;
 import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.parser.ParseBudget;
+import org.sonar.cxx.profiling.ProfileReport;
+import org.sonar.cxx.profiling.ScanProfile;
+import org.sonar.cxx.visitors.CxxInput;
 import org.sonar.plugins.cxx.api.CustomCxxRulesDefinition;
 import org.sonar.cxx.checks.CheckList;
 import org.sonar.plugins.cxx.CxxLanguage;
@@ -60,11 +80,14 @@ import org.sonar.squidbridge.AstScanner;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.api.CheckMessage;
 import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceCodeSearchEngine;
 import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.api.SourceFunction;
 import org.sonar.squidbridge.api.SourceClass;
+import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.squidbridge.indexer.QueryByParent;
 import org.sonar.squidbridge.indexer.QueryByType;
+import org.sonar.squidbridge.indexer.SquidIndex;
 import com.sonar.sslr.api.Grammar;
 
 /**
@@ -72,15 +95,23 @@ import com.sonar.sslr.api.Grammar;
  */
 public final class CxxSquidSensor implements Sensor {
 
+  private static final Logger LOG = LoggerFactory.getLogger("CxxSquidSensor");
   private static final Number[] FUNCTIONS_DISTRIB_BOTTOM_LIMITS = {1, 2, 4, 6, 8, 10, 12, 20, 30};
   private static final Number[] FILES_DISTRIB_BOTTOM_LIMITS = {0, 5, 10, 20, 30, 60, 90};
+  private static final String PROFILE_REPORT_NAME = "cxx-scan-profile.json";
+  private static final int PROFILE_TOP_ENTRIES = 20;
+  private static final long MILLIS_PER_SECOND = 1000L;
+  private static final long BYTES_PER_MB = 1024L * 1024L;
 
+  private final CheckFactory checkFactory;
+  private final CustomCxxRulesDefinition[] customRulesDefinition;
+  private final List<CxxChecks> workerChecks = new ArrayList<>();
   private final CxxChecks checks;
   private ActiveRules rules;
 
   private Project project;
   private SensorContext context;
-  private AstScanner<Grammar> scanner;
+  private SourceCodeSearchEngine index;
   private Settings settings;
   private FileSystem fs;
   private ResourcePerspectives resourcePerspectives;
@@ -100,9 +131,9 @@ public final class CxxSquidSensor implements Sensor {
   public CxxSquidSensor(ResourcePerspectives resourcePerspectives, Settings settings,
     FileSystem fs, CheckFactory checkFactory, ActiveRules rules,
     @Nullable CustomCxxRulesDefinition[] customRulesDefinition) {
-    this.checks = CxxChecks.createCxxCheck(checkFactory)
-      .addChecks(CheckList.REPOSITORY_KEY, CheckList.getChecks())
-      .addCustomChecks(customRulesDefinition);
+    this.checkFactory = checkFactory;
+    this.customRulesDefinition = customRulesDefinition;
+    this.checks = createChecks();
     this.rules = rules;
     this.settings = settings;
     this.fs = fs;
@@ -125,18 +156,312 @@ public final class CxxSquidSensor implements Sensor {
     this.project = project;
     this.context = context;
 
-    List<SquidAstVisitor<Grammar>> visitors = new ArrayList<>((Collection) checks.all());
-    this.scanner = CxxAstScanner.create(createConfiguration(this.fs, this.settings),
-      visitors.toArray(new SquidAstVisitor[visitors.size()]));
+    CxxConfiguration cxxConf = createConfiguration(this.fs, this.settings);
 
     List<File> files = new ArrayList<>();
     for(File file : fs.files(mainFilePredicate)) {
       files.add(file);
     }
-    scanner.scanFiles(files);
-    
-    Collection<SourceCode> squidSourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
-    save(squidSourceFiles);
+
+    CxxAnalysisCache cache = createCache(cxxConf);
+    List<CxxFileResult> results = new ArrayList<>();
+    List<File> filesToScan = files;
+    if (cache != null) {
+      filesToScan = new ArrayList<>();
+      for (File file : files) {
+        CxxFileResult result = cache.get(file, cxxConf);
+        if (result == null) {
+          filesToScan.add(file);
+        } else {
+          results.add(result);
+        }
+      }
+      LOG.info("Analysis cache: {} of {} files are unchanged and not scanned again", results.size(), files.size());
+    }
+
+    if (cxxConf.getLexerOnlyAnalysisEnabled()) {
+      logLexerOnlyAnalysis();
+    }
+    ScanProfile profile = settings.getBoolean(CxxPlugin.PROFILING_KEY) ? new ScanProfile() : null;
+    CxxIncludeCollector includes = cache == null ? null : new CxxIncludeCollector();
+    int threads = Math.min(getScanThreads(), filesToScan.size());
+    if (threads > 1) {
+      this.index = scanFilesInParallel(cxxConf, filesToScan, threads, profile, includes);
+    } else {
+      AstScanner<Grammar> scanner = createScanner(cxxConf, checks, profile, includes);
+      scanner.scanFiles(filesToScan);
+      this.index = scanner.getIndex();
+    }
+    LOG.info("Parsed header cache: {}", cxxConf.getHeaderCache());
+    LOG.info("Include directory index: {}", cxxConf.getDirectoryIndex());
+    LOG.debug("Interned token values: {}", cxxConf.getTokenValueInterner().size());
+    cxxConf.releaseLexers();
+    if (cxxConf.getPrecompiledHeadersEnabled()) {
+      LOG.info("Precompiled header cache: {}", cxxConf.getPrecompiledHeaderCache());
+    }
+    if (profile != null) {
+      saveProfile(profile);
+    }
+    ParseBudget budget = cxxConf.getParseBudget();
+    if (budget != null && !budget.getSkippedFiles().isEmpty()) {
+      LOG.warn("{} files exceeded the parse budget and have lexer metrics only:", budget.getSkippedFiles().size());
+      for (ParseBudget.SkippedFile skippedFile : budget.getSkippedFiles()) {
+        LOG.warn("  {}", skippedFile);
+      }
+    }
+
+    Collection<SourceCode> squidSourceFiles = index.search(new QueryByType(SourceFile.class));
+    for (SourceCode squidSourceFile : squidSourceFiles) {
+      CxxFileResult result = createResult((SourceFile) squidSourceFile);
+      if (cache != null && isCacheable(result, budget)) {
+        File file = new File(result.getPath());
+        cache.put(result, cxxConf, includes.getIncludes(file), includes.getIncludeLookups(file));
+      }
+      results.add(result);
+    }
+    if (cache != null) {
+      saveCache(cache);
+    }
+    save(results);
+  }
+
+  @Nullable
+  private CxxAnalysisCache createCache(CxxConfiguration cxxConf) {
+    String cachePath = settings.getString(CxxPlugin.ANALYSIS_CACHE_PATH_KEY);
+    if (cachePath == null || cachePath.isEmpty()) {
+      return null;
+    }
+    File cacheDir = new File(cachePath);
+    if (!cacheDir.isAbsolute()) {
+      cacheDir = new File(fs.baseDir(), cachePath);
+    }
+    CxxAnalysisCache cache = new CxxAnalysisCache(cacheDir, CxxAnalysisCache.configurationHash(cxxConf, rules));
+    cache.load();
+    return cache;
+  }
+
+  private static boolean isCacheable(CxxFileResult result, @Nullable ParseBudget budget) {
+    if (budget != null) {
+      for (ParseBudget.SkippedFile skippedFile : budget.getSkippedFiles()) {
+        if (skippedFile.getPath().equals(result.getPath())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static void saveCache(CxxAnalysisCache cache) {
+    try {
+      cache.save();
+      LOG.info("Analysis cache: {}", cache);
+    } catch (IOException e) {
+      LOG.warn("Cannot write the analysis cache: {}", e.getMessage());
+    }
+  }
+
+  private CxxFileResult createResult(SourceFile squidFile) {
+    CxxFileResult result = new CxxFileResult(squidFile.getKey());
+    for (CxxMetric metric : CxxMetric.values()) {
+      result.setMeasure(metric, squidFile.getDouble(metric));
+    }
+    for (SourceCode squidFunction : index.search(new QueryByParent(squidFile), new QueryByType(SourceFunction.class))) {
+      result.addFunction(squidFunction.getKey(), squidFunction.getDouble(CxxMetric.COMPLEXITY));
+    }
+    for (SourceCode squidClass : index.search(new QueryByParent(squidFile), new QueryByType(SourceClass.class))) {
+      result.addClass(squidClass.getKey(), squidClass.getDouble(CxxMetric.COMPLEXITY));
+    }
+    Collection<CheckMessage> messages = squidFile.getCheckMessages();
+    if (messages != null) {
+      for (CheckMessage message : messages) {
+        result.addIssue(ruleKey((SquidAstVisitor<Grammar>) message.getCheck()), message.getLine(),
+          message.getText(Locale.ENGLISH));
+      }
+    }
+    return result;
+  }
+
+  private CxxChecks createChecks() {
+    return CxxChecks.createCxxCheck(checkFactory)
+      .addChecks(CheckList.REPOSITORY_KEY, CheckList.getChecks())
+      .addCustomChecks(customRulesDefinition);
+  }
+
+  private void logLexerOnlyAnalysis() {
+    List<RuleKey> rules = new ArrayList<>();
+    for (SquidAstVisitor<Grammar> check : checks.all()) {
+      if (CxxInput.of(check) == CxxInput.AST) {
+        rules.add(checks.ruleKey(check));
+      }
+    }
+    if (rules.isEmpty()) {
+      LOG.info("Lexer only analysis: the files are preprocessed but not parsed");
+    } else {
+      LOG.info("Lexer only analysis is not possible, these active rules need the syntax tree: {}", rules);
+    }
+  }
+
+  private static AstScanner<Grammar> createScanner(CxxConfiguration cxxConf, CxxChecks checks,
+    @Nullable ScanProfile profile, @Nullable CxxIncludeCollector includes) {
+    List<SquidAstVisitor<Grammar>> visitors = new ArrayList<>((Collection) checks.all());
+    if (includes != null) {
+      visitors.add(includes.share());
+    }
+    return CxxAstScanner.create(cxxConf, profile, visitors.toArray(new SquidAstVisitor[visitors.size()]));
+  }
+
+  private void saveProfile(ScanProfile profile) {
+    ProfileReport report = new ProfileReport(profile, PROFILE_TOP_ENTRIES);
+    File reportFile = new File(fs.workDir(), PROFILE_REPORT_NAME);
+    try {
+      report.writeJson(reportFile);
+      LOG.info("Scan profile written to '{}'", reportFile);
+    } catch (IOException e) {
+      LOG.warn("Cannot write the scan profile to '{}': {}", reportFile, e.getMessage());
+    }
+    report.log(LOG);
+  }
+
+  private int getScanThreads() {
+    int threads = settings.getInt(CxxPlugin.SCAN_THREADS_KEY);
+    if (threads == 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    return Math.max(1, threads);
+  }
+
+  /**
+   * Scans the files on a pool of worker threads. Each worker owns its own
+   * parser, preprocessor and set of checks, only the configuration is shared.
+   * The workers take the files from a shared queue, largest first, so a worker
+   * done with its files continues with the remaining ones of the others. The
+   * files scanned by all workers are merged into one index under a single
+   * project afterwards.
+   */
+  private SourceCodeSearchEngine scanFilesInParallel(final CxxConfiguration cxxConf, List<File> files, int threads,
+    @Nullable ScanProfile profile, @Nullable final CxxIncludeCollector includes) {
+    LOG.info("Scanning {} files using {} threads", files.size(), threads);
+
+    final Queue<File> queue = workQueue(files);
+    List<CxxChecks> checksPerWorker = new ArrayList<>();
+    List<ScanProfile> profilesPerWorker = new ArrayList<>();
+    List<Callable<AstScanner<Grammar>>> tasks = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      final CxxChecks scannerChecks = createChecks();
+      final ScanProfile scannerProfile = profile == null ? null : new ScanProfile();
+      checksPerWorker.add(scannerChecks);
+      profilesPerWorker.add(scannerProfile);
+      tasks.add(new Callable<AstScanner<Grammar>>() {
+        @Override
+        public AstScanner<Grammar> call() {
+          AstScanner<Grammar> scanner = createScanner(cxxConf, scannerChecks, scannerProfile, includes);
+          scanner.scanFiles(new QueuedFiles(queue));
+          return scanner;
+        }
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    SourceProject mergedProject = new SourceProject("Cxx Project");
+    SquidIndex mergedIndex = new SquidIndex();
+    mergedIndex.index(mergedProject);
+    try {
+      for (Future<AstScanner<Grammar>> result : executor.invokeAll(tasks)) {
+        for (SourceCode file : result.get().getIndex().search(new QueryByType(SourceFile.class))) {
+          mergedProject.addChild(file);
+          for (CxxMetric metric : CxxMetric.values()) {
+            mergedProject.add(metric, file.getDouble(metric));
+          }
+          index(mergedIndex, file);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Parallel scan has been interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Parallel scan failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    workerChecks.addAll(checksPerWorker);
+    if (profile != null) {
+      for (ScanProfile scannerProfile : profilesPerWorker) {
+        profile.merge(scannerProfile);
+      }
+    }
+    return mergedIndex;
+  }
+
+  private static void index(SquidIndex index, SourceCode sourceCode) {
+    index.index(sourceCode);
+    if (sourceCode.hasChildren()) {
+      for (SourceCode child : sourceCode.getChildren()) {
+        index(index, child);
+      }
+    }
+  }
+
+  /**
+   * Queue of the files to be scanned by the workers, largest files first: the
+   * long running files are started early and the small ones fill the gaps.
+   */
+  static Queue<File> workQueue(List<File> files) {
+    List<File> sorted = new ArrayList<>(files);
+    Collections.sort(sorted, new Comparator<File>() {
+      @Override
+      public int compare(File f1, File f2) {
+        return Long.compare(f2.length(), f1.length());
+      }
+    });
+    return new ConcurrentLinkedQueue<>(sorted);
+  }
+
+  /**
+   * The files of a work queue shared by several scanners: iterating takes the
+   * next file from the queue, so each file is scanned by exactly one scanner.
+   */
+  static final class QueuedFiles extends AbstractCollection<File> {
+
+    private final Queue<File> queue;
+
+    QueuedFiles(Queue<File> queue) {
+      this.queue = queue;
+    }
+
+    @Override
+    public Iterator<File> iterator() {
+      return new Iterator<File>() {
+        private File next;
+
+        @Override
+        public boolean hasNext() {
+          if (next == null) {
+            next = queue.poll();
+          }
+          return next != null;
+        }
+
+        @Override
+        public File next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          File file = next;
+          next = null;
+          return file;
+        }
+      };
+    }
+
+    /**
+     * The number of files left in the queue, shrinks while other scanners
+     * take files.
+     */
+    @Override
+    public int size() {
+      return queue.size();
+    }
   }
 
   <P extends Perspective> P perspective(Class<P> clazz, @Nullable InputFile file) { //@todo deprecated Perspective
@@ -163,6 +488,14 @@ public final class CxxSquidSensor implements Sensor {
     cxxConf.setCFilesPatterns(settings.getStringArray(CxxPlugin.C_FILES_PATTERNS_KEY));
     cxxConf.setHeaderFileSuffixes(settings.getStringArray(CxxPlugin.HEADER_FILE_SUFFIXES_KEY));
     cxxConf.setMissingIncludeWarningsEnabled(settings.getBoolean(CxxPlugin.MISSING_INCLUDE_WARN));
+    cxxConf.setPrecompiledHeadersEnabled(settings.getBoolean(CxxPlugin.PRECOMPILED_HEADERS_KEY));
+    long parseTimeout = settings.getLong(CxxPlugin.PARSE_TIMEOUT_KEY);
+    long parseMemoryLimit = settings.getLong(CxxPlugin.PARSE_MEMORY_LIMIT_KEY);
+    if (parseTimeout > 0 || parseMemoryLimit > 0) {
+      cxxConf.setParseBudget(new ParseBudget(parseTimeout * MILLIS_PER_SECOND, parseMemoryLimit * BYTES_PER_MB));
+    }
+    cxxConf.setLexerOnlyAnalysisEnabled(settings.getBoolean(CxxPlugin.LEXER_ONLY_ANALYSIS_KEY));
+    cxxConf.setParallelCheckGroups(settings.getInt(CxxPlugin.PARALLEL_CHECKS_KEY));
 
     String filePaths = settings.getString(CxxCompilerSensor.REPORT_PATH_KEY);
     if (filePaths != null && !"".equals(filePaths)) {
@@ -172,22 +505,30 @@ public final class CxxSquidSensor implements Sensor {
         settings.getString(CxxCompilerSensor.REPORT_CHARSET_DEF));
     }
 
+    String database = settings.getString(CxxPlugin.COMPILATION_DATABASE_KEY);
+    if (database != null && !"".equals(database)) {
+      File databaseFile = new File(database);
+      if (!databaseFile.isAbsolute()) {
+        databaseFile = new File(fs.baseDir(), database);
+      }
+      cxxConf.setCompilationPropertiesWithCompilationDatabase(databaseFile);
+    }
+
     return cxxConf;
   }
 
-  private void save(Collection<SourceCode> squidSourceFiles) {
+  private void save(Collection<CxxFileResult> results) {
     int violationsCount = 0;
     DependencyAnalyzer dependencyAnalyzer = new DependencyAnalyzer(resourcePerspectives, project, context, rules);
 
-    for (SourceCode squidSourceFile : squidSourceFiles) {
-      SourceFile squidFile = (SourceFile) squidSourceFile;
-      File ioFile = new File(squidFile.getKey());
+    for (CxxFileResult result : results) {
+      File ioFile = new File(result.getPath());
       InputFile inputFile = fs.inputFile(fs.predicates().is(ioFile));
 
-      saveMeasures(inputFile, squidFile);
-      saveFunctionAndClassComplexityDistribution(inputFile, squidFile);
-      saveFilesComplexityDistribution(inputFile, squidFile);
-      violationsCount += saveViolations(inputFile, squidFile);
+      saveMeasures(inputFile, result);
+      saveFunctionAndClassComplexityDistribution(inputFile, result);
+      saveFilesComplexityDistribution(inputFile, result);
+      violationsCount += saveViolations(inputFile, result);
       //### @todo dependencyAnalyzer.addFile(inputFile, CxxParser.getIncludedFiles(ioFile));
     }
 
@@ -197,38 +538,36 @@ public final class CxxSquidSensor implements Sensor {
     dependencyAnalyzer.save();
   }
 
-  private void saveMeasures(InputFile inputFile, SourceFile squidFile) {
-    context.saveMeasure(inputFile, CoreMetrics.FILES, squidFile.getDouble(CxxMetric.FILES));
-    context.saveMeasure(inputFile, CoreMetrics.LINES, squidFile.getDouble(CxxMetric.LINES));
-    context.saveMeasure(inputFile, CoreMetrics.NCLOC, squidFile.getDouble(CxxMetric.LINES_OF_CODE));
-    context.saveMeasure(inputFile, CoreMetrics.STATEMENTS, squidFile.getDouble(CxxMetric.STATEMENTS));
-    context.saveMeasure(inputFile, CoreMetrics.FUNCTIONS, squidFile.getDouble(CxxMetric.FUNCTIONS));
-    context.saveMeasure(inputFile, CoreMetrics.CLASSES, squidFile.getDouble(CxxMetric.CLASSES));
-    context.saveMeasure(inputFile, CoreMetrics.COMPLEXITY, squidFile.getDouble(CxxMetric.COMPLEXITY));
-    context.saveMeasure(inputFile, CoreMetrics.COMMENT_LINES, squidFile.getDouble(CxxMetric.COMMENT_LINES));
-    context.saveMeasure(inputFile, CoreMetrics.PUBLIC_API, squidFile.getDouble(CxxMetric.PUBLIC_API));
-    context.saveMeasure(inputFile, CoreMetrics.PUBLIC_UNDOCUMENTED_API, squidFile.getDouble(CxxMetric.PUBLIC_UNDOCUMENTED_API));
+  private void saveMeasures(InputFile inputFile, CxxFileResult result) {
+    context.saveMeasure(inputFile, CoreMetrics.FILES, result.getMeasure(CxxMetric.FILES));
+    context.saveMeasure(inputFile, CoreMetrics.LINES, result.getMeasure(CxxMetric.LINES));
+    context.saveMeasure(inputFile, CoreMetrics.NCLOC, result.getMeasure(CxxMetric.LINES_OF_CODE));
+    context.saveMeasure(inputFile, CoreMetrics.STATEMENTS, result.getMeasure(CxxMetric.STATEMENTS));
+    context.saveMeasure(inputFile, CoreMetrics.FUNCTIONS, result.getMeasure(CxxMetric.FUNCTIONS));
+    context.saveMeasure(inputFile, CoreMetrics.CLASSES, result.getMeasure(CxxMetric.CLASSES));
+    context.saveMeasure(inputFile, CoreMetrics.COMPLEXITY, result.getMeasure(CxxMetric.COMPLEXITY));
+    context.saveMeasure(inputFile, CoreMetrics.COMMENT_LINES, result.getMeasure(CxxMetric.COMMENT_LINES));
+    context.saveMeasure(inputFile, CoreMetrics.PUBLIC_API, result.getMeasure(CxxMetric.PUBLIC_API));
+    context.saveMeasure(inputFile, CoreMetrics.PUBLIC_UNDOCUMENTED_API, result.getMeasure(CxxMetric.PUBLIC_UNDOCUMENTED_API));
   }
   
-  private void saveFunctionAndClassComplexityDistribution(InputFile inputFile, SourceFile squidFile) {
+  private void saveFunctionAndClassComplexityDistribution(InputFile inputFile, CxxFileResult result) {
     double complexityInFunctions = 0;
     double complexityInClasses = 0;
 
     RangeDistributionBuilder complexityDistribution = new RangeDistributionBuilder(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION, FUNCTIONS_DISTRIB_BOTTOM_LIMITS); //@todo deprecated RangeDistributionBuilder
-    Collection<SourceCode> squidFunctionsInFile = scanner.getIndex().search(new QueryByParent(squidFile), new QueryByType(SourceFunction.class));
-    for (SourceCode squidFunction : squidFunctionsInFile) {
-      double functionComplexity = squidFunction.getDouble(CxxMetric.COMPLEXITY);
+    for (CxxFileResult.Complexity function : result.getFunctions()) {
+      double functionComplexity = function.getValue();
       complexityInFunctions += functionComplexity;
-      if (squidFunction.getKey().contains("::")) {
+      if (function.getKey().contains("::")) {
         complexityInClasses += functionComplexity;
       }
       complexityDistribution.add(functionComplexity);
     }
     context.saveMeasure(inputFile, complexityDistribution.build().setPersistenceMode(PersistenceMode.MEMORY));
 
-    Collection<SourceCode> classes = scanner.getIndex().search(new QueryByParent(squidFile), new QueryByType(SourceClass.class));
-    for (SourceCode squidClass : classes) {
-      double classComplexity = squidClass.getDouble(CxxMetric.COMPLEXITY);
+    for (CxxFileResult.Complexity squidClass : result.getClasses()) {
+      double classComplexity = squidClass.getValue();
       complexityInClasses += classComplexity;
     }
 
@@ -236,33 +575,39 @@ public final class CxxSquidSensor implements Sensor {
     context.saveMeasure(inputFile, CoreMetrics.COMPLEXITY_IN_FUNCTIONS, complexityInFunctions);
   }
 
-  private void saveFilesComplexityDistribution(InputFile inputFile, SourceFile squidFile) {
+  private void saveFilesComplexityDistribution(InputFile inputFile, CxxFileResult result) {
     RangeDistributionBuilder complexityDistribution = new RangeDistributionBuilder(CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION, FILES_DISTRIB_BOTTOM_LIMITS); //@todo deprecated RangeDistributionBuilder
-    double complexity = squidFile.getDouble(CxxMetric.COMPLEXITY);
+    double complexity = result.getMeasure(CxxMetric.COMPLEXITY);
     complexityDistribution.add(complexity);
     context.saveMeasure(inputFile, complexityDistribution.build().setPersistenceMode(PersistenceMode.MEMORY));
   }
 
-  private int saveViolations(InputFile inputFile, SourceFile squidFile) {
-    Collection<CheckMessage> messages = squidFile.getCheckMessages();
+  private int saveViolations(InputFile inputFile, CxxFileResult result) {
     int violationsCount = 0;
-    if (messages != null) {
+    if (!result.getIssues().isEmpty()) {
       Issuable issuable = resourcePerspectives.as(Issuable.class, inputFile);
       if (issuable != null) {
-        for (CheckMessage message : messages) {
+        for (CxxFileResult.Issue message : result.getIssues()) {
           Issue issue = issuable.newIssueBuilder()
-            .ruleKey(checks.ruleKey((SquidAstVisitor<Grammar>) message.getCheck()))
+            .ruleKey(message.getRuleKey())
             .line(message.getLine()) //@todo deprecated line
-            .message(message.getText(Locale.ENGLISH)) //@todo deprecated message
+            .message(message.getMessage()) //@todo deprecated message
             .build();
           if (issuable.addIssue(issue)) {
             violationsCount++;
           }
         }
       }
-      return violationsCount;
     }
-    return 0;
+    return violationsCount;
+  }
+
+  private RuleKey ruleKey(SquidAstVisitor<Grammar> check) {
+    RuleKey ruleKey = checks.ruleKey(check);
+    for (int i = 0; ruleKey == null && i < workerChecks.size(); i++) {
+      ruleKey = workerChecks.get(i).ruleKey(check);
+    }
+    return ruleKey;
   }
 
   @Override
@@ -0,0 +1,186 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011-2016 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.cxx.squid;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.preprocessor.CxxPreprocessor.IncludeLookup;
+
+public class CxxAnalysisCacheTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File cacheDir;
+  private File source;
+  private File header;
+  private CxxConfiguration conf;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheDir = tmp.newFolder("cache");
+    source = write("a.cc", "#include \"a.h\"\nint a;\n");
+    header = write("a.h", "int b;\n");
+    conf = new CxxConfiguration();
+    // headers in the first root shadow the ones of the second
+    conf.setIncludeDirectories(Arrays.asList(tmp.newFolder("include").getPath(), tmp.getRoot().getPath()));
+  }
+
+  @Test
+  public void unchanged_files_are_read_from_the_cache() throws IOException {
+    store("config");
+
+    CxxAnalysisCache cache = new CxxAnalysisCache(cacheDir, "config");
+    cache.load();
+    CxxFileResult result = cache.get(source, conf);
+
+    assertThat(result).isNotNull();
+    assertThat(result.getMeasure(CxxMetric.LINES)).isEqualTo(2.0);
+    assertThat(result.getFunctions()).hasSize(1);
+    assertThat(result.getFunctions().get(0).getKey()).isEqualTo("A::f:1");
+    assertThat(result.getFunctions().get(0).getValue()).isEqualTo(3.0);
+    assertThat(result.getIssues()).hasSize(1);
+    assertThat(result.getIssues().get(0).getRuleKey()).isEqualTo(RuleKey.of("cxx", "MagicNumber"));
+    assertThat(result.getIssues().get(0).getLine()).isEqualTo(2);
+    assertThat(result.getIssues().get(0).getMessage()).isEqualTo("message");
+    assertThat(cache.getHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void changed_files_are_not_read_from_the_cache() throws IOException {
+    store("config");
+    write("a.cc", "int changed;\n");
+
+    CxxAnalysisCache cache = new CxxAnalysisCache(cacheDir, "config");
+    cache.load();
+
+    assertThat(cache.get(source, conf)).isNull();
+    assertThat(cache.getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void changed_includes_invalidate_the_entry() throws IOException {
+    store("config");
+    write("a.h", "int changed;\n");
+
+    CxxAnalysisCache cache = new CxxAnalysisCache(cacheDir, "config");
+    cache.load();
+
+    assertThat(cache.get(source, conf)).isNull();
+  }
+
+  @Test
+  public void changed_configuration_invalidates_the_cache() throws IOException {
+    store("config");
+
+    CxxAnalysisCache cache = new CxxAnalysisCache(cacheDir, "other config");
+    cache.load();
+
+    assertThat(cache.get(source, conf)).isNull();
+  }
+
+  @Test
+  public void changed_settings_of_the_file_invalidate_the_entry() throws IOException {
+    store("config");
+    conf.setDefines(Arrays.asList("FOO 1"));
+
+    CxxAnalysisCache cache = new CxxAnalysisCache(cacheDir, "config");
+    cache.load();
+
+    assertThat(cache.get(source, conf)).isNull();
+  }
+
+  @Test
+  public void resolving_a_missing_include_invalidates_the_entry() throws IOException {
+    store("config");
+    write("include/missing.h", "int missing;\n");
+
+    CxxAnalysisCache cache = new CxxAnalysisCache(cacheDir, "config");
+    cache.load();
+
+    assertThat(cache.get(source, conf)).isNull();
+  }
+
+  @Test
+  public void shadowing_an_include_invalidates_the_entry() throws IOException {
+    store("config");
+    write("include/a.h", "int shadow;\n");
+
+    CxxAnalysisCache cache = new CxxAnalysisCache(cacheDir, "config");
+    cache.load();
+
+    assertThat(cache.get(source, conf)).isNull();
+  }
+
+  @Test
+  public void unrelated_headers_keep_the_entry() throws IOException {
+    store("config");
+    write("include/other.h", "int other;\n");
+
+    CxxAnalysisCache cache = new CxxAnalysisCache(cacheDir, "config");
+    cache.load();
+
+    assertThat(cache.get(source, conf)).isNotNull();
+  }
+
+  @Test
+  public void missing_cache_is_ignored() {
+    CxxAnalysisCache cache = new CxxAnalysisCache(new File(cacheDir, "missing"), "config");
+    cache.load();
+
+    assertThat(cache.get(source, conf)).isNull();
+  }
+
+  private void store(String configurationHash) throws IOException {
+    CxxFileResult result = new CxxFileResult(source.getPath());
+    result.setMeasure(CxxMetric.LINES, 2.0);
+    result.addFunction("A::f:1", 3.0);
+    result.addIssue(RuleKey.of("cxx", "MagicNumber"), 2, "message");
+
+    CxxAnalysisCache cache = new CxxAnalysisCache(cacheDir, configurationHash);
+    cache.load();
+    List<IncludeLookup> lookups = Arrays.asList(
+      new IncludeLookup("a.h", null, header.getCanonicalPath()),
+      new IncludeLookup("missing.h", null, null));
+    cache.put(result, conf, Collections.singleton(header.getPath()), lookups);
+    cache.save();
+  }
+
+  private File write(String name, String content) throws IOException {
+    File file = new File(tmp.getRoot(), name);
+    Files.write(file.toPath(), Arrays.asList(content), StandardCharsets.UTF_8);
+    return file;
+  }
+}
@@ -19,6 +19,9 @@
  */
 package org.sonar.plugins.cxx.squid;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyDouble;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.eq;
@@ -30,11 +33,18 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.SensorContext; //@todo deprecated
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.rule.CheckFactory;
@@ -52,6 +62,9 @@ import org.sonar.api.batch.fs.InputFile;
 
 public class CxxSquidSensorTest {
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   private CxxSquidSensor sensor;
   private SensorContext context;
   private Settings settings;
@@ -157,6 +170,82 @@ public class CxxSquidSensorTest {
     verify(context, times(2)).saveMeasure((InputFile) anyObject(), eq(CoreMetrics.CLASSES), eq(0.0));
   }
 
+  @Test
+  public void testParallelScanning() {
+    settings.setProperty(CxxPlugin.SCAN_THREADS_KEY, "2");
+    settings.setProperty(CxxPlugin.INCLUDE_DIRECTORIES_KEY, "include");
+    settings.setProperty(CxxPlugin.FORCE_INCLUDE_FILES_KEY, "force1.hh,subfolder/force2.hh");
+    File baseDir = TestUtils.loadResource("/org/sonar/plugins/cxx/force-include-project");
+    setUpSensor(baseDir, Arrays.asList(new File("src")));
+
+    sensor.analyse(project, context);
+
+    verify(context, times(2)).saveMeasure((InputFile) anyObject(), eq(CoreMetrics.FILES), eq(1.0));
+    verify(context, times(2)).saveMeasure((InputFile) anyObject(), eq(CoreMetrics.NCLOC), eq(1.0));
+    verify(context, times(2)).saveMeasure((InputFile) anyObject(), eq(CoreMetrics.STATEMENTS), eq(2.0));
+    verify(context, times(2)).saveMeasure((InputFile) anyObject(), eq(CoreMetrics.FUNCTIONS), eq(1.0));
+  }
+
+  @Test
+  public void testPrecompiledHeaders() {
+    settings.setProperty(CxxPlugin.INCLUDE_DIRECTORIES_KEY, "include");
+    settings.setProperty(CxxPlugin.PRECOMPILED_HEADERS_KEY, "true");
+    File baseDir = TestUtils.loadResource("/org/sonar/plugins/cxx/precompiled-header-project");
+    setUpSensor(baseDir, Arrays.asList(new File("src")));
+
+    sensor.analyse(project, context);
+
+    // the macro state of the first include is reused for the following files
+    verify(context, times(3)).saveMeasure((InputFile) anyObject(), eq(CoreMetrics.FILES), eq(1.0));
+    verify(context, times(3)).saveMeasure((InputFile) anyObject(), eq(CoreMetrics.FUNCTIONS), eq(1.0));
+    verify(context, times(3)).saveMeasure((InputFile) anyObject(), eq(CoreMetrics.STATEMENTS), eq(1.0));
+  }
+
+  @Test
+  public void testAnalysisCache() throws IOException {
+    settings.setProperty(CxxPlugin.ANALYSIS_CACHE_PATH_KEY, tmp.newFolder("cache").getAbsolutePath());
+    settings.setProperty(CxxPlugin.INCLUDE_DIRECTORIES_KEY, "include");
+    File baseDir = TestUtils.loadResource("/org/sonar/plugins/cxx/include-directories-project");
+    setUpSensor(baseDir, Arrays.asList(new File("src")));
+
+    sensor.analyse(project, context);
+    setUpSensor(baseDir, Arrays.asList(new File("src")));
+    sensor.analyse(project, context);
+
+    // the second analysis reads the results from the cache
+    verify(context, times(2)).saveMeasure((InputFile) anyObject(), eq(CoreMetrics.LINES), eq(29.0));
+    verify(context, times(2)).saveMeasure((InputFile) anyObject(), eq(CoreMetrics.NCLOC), eq(9.0));
+    verify(context, times(2)).saveMeasure((InputFile) anyObject(), eq(CoreMetrics.FUNCTIONS), eq(9.0));
+  }
+
+  @Test
+  public void testWorkQueueStartsWithTheLargestFile() {
+    File baseDir = TestUtils.loadResource("/org/sonar/plugins/cxx/force-include-project");
+    File src1 = new File(baseDir, "src/src1.cc");
+    File src2 = new File(baseDir, "src/scr2.cc");
+    File largest = src1.length() >= src2.length() ? src1 : src2;
+
+    Queue<File> queue = CxxSquidSensor.workQueue(Arrays.asList(src1, src2));
+
+    assertEquals(2, queue.size());
+    assertEquals(largest, queue.peek());
+  }
+
+  @Test
+  public void testQueuedFilesAreTakenOnce() {
+    Queue<File> queue = CxxSquidSensor.workQueue(Arrays.asList(new File("a.cc"), new File("b.cc"), new File("c.cc")));
+    Iterator<File> first = new CxxSquidSensor.QueuedFiles(queue).iterator();
+    Iterator<File> second = new CxxSquidSensor.QueuedFiles(queue).iterator();
+
+    Set<File> taken = new HashSet<>();
+    assertTrue(taken.add(first.next()));
+    assertTrue(taken.add(second.next()));
+    assertTrue(taken.add(first.next()));
+    assertFalse(first.hasNext());
+    assertFalse(second.hasNext());
+    assertEquals(3, taken.size());
+  }
+
   @Test
   public void testBehaviourOnCircularIncludes() {
     // especially: when two files, both belonging to the set of
@@ -0,0 +1 @@
+#define DECLARE_FUNCTION(name) void name() { return; }